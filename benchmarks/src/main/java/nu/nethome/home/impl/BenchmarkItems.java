@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import nu.nethome.home.items.fineoffset.FineOffsetThermometer;
+import nu.nethome.home.items.nexa.NexaLamp;
+import nu.nethome.home.items.nexa.NexaRemapButton;
+import nu.nethome.home.system.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates the items and events used by the benchmarks. The item mix resembles a typical installation with
+ * a third each of lamps, remote control buttons switching the lamps and wireless thermometers.
+ */
+final class BenchmarkItems {
+
+    static final int FIRST_ID = 100;
+    private static final String HOUSE_CODES = "ABCDEFGHIJKLMNOP";
+    private static final int BUTTONS = 8;
+
+    private BenchmarkItems() {
+    }
+
+    static List<HomeItem> createItems(int count) {
+        List<HomeItem> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            HomeItem item;
+            switch (i % 3) {
+                case 0:
+                    NexaLamp lamp = new NexaLamp();
+                    lamp.setHouseCode(houseCode(i));
+                    lamp.setButton(Integer.toString(button(i)));
+                    item = lamp;
+                    break;
+                case 1:
+                    NexaRemapButton remapButton = new NexaRemapButton();
+                    remapButton.setHouseCode(houseCode(i));
+                    remapButton.setButton(Integer.toString(button(i)));
+                    remapButton.setOnCommand("call," + name(i - 1) + ",on");
+                    remapButton.setOffCommand("call," + name(i - 1) + ",off");
+                    item = remapButton;
+                    break;
+                default:
+                    FineOffsetThermometer thermometer = new FineOffsetThermometer();
+                    thermometer.setDeviceId(Integer.toString(i));
+                    item = thermometer;
+            }
+            item.setName(name(i));
+            item.setItemId(FIRST_ID + i);
+            items.add(item);
+        }
+        return items;
+    }
+
+    static String name(int index) {
+        switch (index % 3) {
+            case 0:
+                return "Lamp" + index;
+            case 1:
+                return "Button" + index;
+            default:
+                return "Thermometer" + index;
+        }
+    }
+
+    static HomeItemFactory createFactory() {
+        return new MultiHomeItemFactory(new SingleHomeItemFactory(NexaLamp.class),
+                new SingleHomeItemFactory(NexaRemapButton.class),
+                new SingleHomeItemFactory(FineOffsetThermometer.class));
+    }
+
+    /**
+     * Create events as received from the RF receivers of the installation: button presses and thermometer
+     * readings for the items, and messages from the neighbours' devices which no item is interested in.
+     */
+    static Event[] createEvents(int itemCount, int count) {
+        Event[] events = new Event[count];
+        for (int i = 0; i < count; i++) {
+            int item = (i * 7) % Math.max(itemCount, 1);
+            Event event;
+            if (i % 4 == 3) {
+                event = new InternalEvent("Oregon_Message");
+                event.setAttribute("Direction", "In");
+                event.setAttribute("Oregon.SensorId", i);
+                event.setAttribute("Oregon.Temp", 215);
+            } else if (item % 3 == 2) {
+                event = new InternalEvent("FineOffset_Message");
+                event.setAttribute("Direction", "In");
+                event.setAttribute("FineOffset.Identity", Integer.toString(item));
+                event.setAttribute("FineOffset.Temp", 200 + i % 50);
+            } else {
+                event = new InternalEvent("Nexa_Message");
+                event.setAttribute("Direction", "In");
+                event.setAttribute("Nexa.HouseCode", HOUSE_CODES.indexOf(houseCode(item)));
+                event.setAttribute("Nexa.Button", button(item));
+                event.setAttribute("Nexa.Command", i % 2);
+            }
+            events[i] = event;
+        }
+        return events;
+    }
+
+    private static String houseCode(int index) {
+        return Character.toString(HOUSE_CODES.charAt((index / BUTTONS) % HOUSE_CODES.length()));
+    }
+
+    private static int button(int index) {
+        return index % BUTTONS + 1;
+    }
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+
+/**
+ * Runs the benchmarks with the normal JMH command line options, but writes the results as JSON to
+ * jmh-result.json unless another result format is given, so each run can be collected for trend tracking.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions options = new CommandLineOptions(args);
+        if (options.getResultFormat().hasValue()) {
+            Main.main(args);
+            return;
+        }
+        String[] jsonArgs = new String[args.length + 2];
+        jsonArgs[0] = "-rf";
+        jsonArgs[1] = "json";
+        System.arraycopy(args, 0, jsonArgs, 2, args.length);
+        Main.main(jsonArgs);
+    }
+}
@@ -0,0 +1,98 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Executing command lines as the command ports, remap buttons and timers do. The command lines only read and
+ * write attributes, so no events are sent and the measurement is not disturbed by the distributor thread.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class CommandLineExecutorBenchmark {
+
+    private static final int ITEM_COUNT = 300;
+    // More distinct command lines than the executor caches plans for
+    private static final int UNCACHED_LINE_COUNT = 64;
+
+    private HomeServer server;
+    private CommandLineExecutor executor;
+    private String[] uncachedLines;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        server = new HomeServer();
+        for (HomeItem item : BenchmarkItems.createItems(ITEM_COUNT)) {
+            server.registerInstance(item);
+        }
+        executor = new CommandLineExecutor(server, false);
+        uncachedLines = new String[UNCACHED_LINE_COUNT];
+        for (int i = 0; i < UNCACHED_LINE_COUNT; i++) {
+            uncachedLines[i] = "get," + BenchmarkItems.name(i * 3) + ",State";
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+    }
+
+    @Benchmark
+    public String getAttribute() {
+        return executor.executeCommandLine("get,Lamp0,State");
+    }
+
+    @Benchmark
+    public String getAttributeUncachedPlan() {
+        return executor.executeCommandLine(uncachedLines[next++ % UNCACHED_LINE_COUNT]);
+    }
+
+    @Benchmark
+    public String setAttribute() {
+        return executor.executeCommandLine("set,Thermometer2,K,0.1");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String listInstances() {
+        return executor.executeCommandLine("dir");
+    }
+}
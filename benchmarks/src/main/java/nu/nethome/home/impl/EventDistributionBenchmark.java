@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.FinalEventListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Time from {@link HomeServer#send(Event)} until the event has been offered to all items and the final event
+ * listeners, with the distributor thread running as in the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventDistributionBenchmark {
+
+    private static final int EVENT_COUNT = 1024;
+    private static final long DISTRIBUTION_TIMEOUT_MS = 10000;
+
+    @Param({"30", "300"})
+    public int itemCount;
+
+    private HomeServer server;
+    private Event[] events;
+    private int next;
+    private volatile Event sentEvent;
+    private final Semaphore distributed = new Semaphore(0);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        server = new HomeServer();
+        server.setName("Home Server");
+        server.activate(server);
+        for (HomeItem item : BenchmarkItems.createItems(itemCount)) {
+            server.registerInstance(item);
+            item.activate(server);
+        }
+        server.registerFinalEventListener(new FinalEventListener() {
+            @Override
+            public void receiveFinalEvent(Event event, boolean isHandled) {
+                // Only count the sent events, not the events items send as a reaction
+                if (event == sentEvent) {
+                    distributed.release();
+                }
+            }
+        });
+        events = BenchmarkItems.createEvents(itemCount, EVENT_COUNT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.stopAndRemoveItems();
+        server.stop();
+    }
+
+    @Benchmark
+    public void distributeEvent() throws InterruptedException {
+        Event event = events[next++ % EVENT_COUNT];
+        sentEvent = event;
+        server.send(event);
+        if (!distributed.tryAcquire(DISTRIBUTION_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+            throw new IllegalStateException("Event was not distributed: " + event);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Saving and loading an item file with 1000 items, as done at start up and by the periodic save.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class HomeItemFileLoaderBenchmark {
+
+    private static final int ITEM_COUNT = 1000;
+
+    private final HomeItemFileLoader loader = new HomeItemFileLoader();
+    private HomeItemFactory factory;
+    private HomeServer server;
+    private List<HomeItem> items;
+    private File loadFile;
+    private File saveFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        server = new HomeServer();
+        factory = BenchmarkItems.createFactory();
+        items = BenchmarkItems.createItems(ITEM_COUNT);
+        loadFile = File.createTempFile("benchmark-load", ".xml");
+        saveFile = File.createTempFile("benchmark-save", ".xml");
+        loader.saveItems(items, loadFile.getPath());
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop();
+        loadFile.delete();
+        saveFile.delete();
+    }
+
+    @Benchmark
+    public void saveItems() {
+        loader.saveItems(items, saveFile.getPath());
+    }
+
+    @Benchmark
+    public List<HomeItem> loadItems() {
+        return loader.loadItems(loadFile.getPath(), factory, server);
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creating events and reading their attributes, as done by the protocol decoders and by every item testing
+ * an event in receiveEvent.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class InternalEventBenchmark {
+
+    private Event event;
+    private int value;
+
+    @Setup
+    public void setUp() {
+        event = createNexaEvent(3);
+    }
+
+    @Benchmark
+    public Event createEvent() {
+        return createNexaEvent(value++);
+    }
+
+    @Benchmark
+    public boolean matchEvent() {
+        // The typical test of a remap button
+        return event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("Nexa_Message")
+                && event.getAttribute("Direction").equals("In")
+                && event.getAttributeInt("Nexa.HouseCode") == 2
+                && event.getAttributeInt("Nexa.Button") == 3;
+    }
+
+    @Benchmark
+    public void readAllAttributes(Blackhole blackhole) {
+        for (String name : event.getAttributeNames()) {
+            blackhole.consume(event.getAttribute(name));
+        }
+    }
+
+    @Benchmark
+    public String eventToString() {
+        return event.toString();
+    }
+
+    private static Event createNexaEvent(int button) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Nexa.HouseCode", 2);
+        event.setAttribute("Nexa.Button", button);
+        event.setAttribute("Nexa.Command", 1);
+        return event;
+    }
+}
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finding items by name in a directory of 1000 items, from one thread and from several threads at the same
+ * time, optionally while another thread renames an item.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ItemDirectoryBenchmark {
+
+    private static final int ITEM_COUNT = 1000;
+    private ItemDirectory directory;
+    private String[] names;
+
+    @State(Scope.Thread)
+    public static class Lookup {
+        int next;
+    }
+
+    @State(Scope.Thread)
+    public static class Rename {
+        boolean renamed;
+    }
+
+    @Setup
+    public void setUp() {
+        directory = new ItemDirectory();
+        List<HomeItem> items = BenchmarkItems.createItems(ITEM_COUNT);
+        names = new String[ITEM_COUNT];
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            directory.registerInstance(items.get(i), true);
+            names[i] = items.get(i).getName();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public HomeItem findInstance(Lookup lookup) {
+        return find(lookup);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public HomeItem findInstanceContended(Lookup lookup) {
+        return find(lookup);
+    }
+
+    @Benchmark
+    @Group("findWhileRenaming")
+    @GroupThreads(3)
+    public HomeItem find(Lookup lookup) {
+        return directory.findInstance(names[lookup.next++ % ITEM_COUNT]);
+    }
+
+    @Benchmark
+    @Group("findWhileRenaming")
+    @GroupThreads(1)
+    public boolean rename(Rename rename) {
+        rename.renamed = !rename.renamed;
+        return rename.renamed ? directory.renameInstance(names[0], "Renamed") : directory.renameInstance("Renamed", names[0]);
+    }
+}
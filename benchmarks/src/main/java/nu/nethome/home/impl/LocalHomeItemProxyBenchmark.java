@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.Attribute;
+import nu.nethome.home.item.HomeItem;
+import nu.nethome.home.item.HomeItemProxy;
+import nu.nethome.home.item.IllegalValueException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading attributes through proxies, as the web GUI does when it renders a page with all items.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class LocalHomeItemProxyBenchmark {
+
+    private static final int ITEM_COUNT = 30;
+    private final List<HomeItemProxy> proxies = new ArrayList<>();
+    private HomeItemProxy lamp;
+
+    @Setup
+    public void setUp() throws ModelException {
+        for (HomeItem item : BenchmarkItems.createItems(ITEM_COUNT)) {
+            proxies.add(new LocalHomeItemProxy(item));
+        }
+        lamp = proxies.get(0);
+    }
+
+    @Benchmark
+    public void sweepAllAttributes(Blackhole blackhole) {
+        for (HomeItemProxy proxy : proxies) {
+            for (Attribute attribute : proxy.getAttributeValues()) {
+                blackhole.consume(attribute.getValue());
+            }
+        }
+    }
+
+    @Benchmark
+    public void sweepDefaultAttributes(Blackhole blackhole) {
+        for (HomeItemProxy proxy : proxies) {
+            blackhole.consume(proxy.getAttributeValue(proxy.getModel().getDefaultAttribute().getName()));
+        }
+    }
+
+    @Benchmark
+    public String getAttribute() {
+        return lamp.getAttributeValue("State");
+    }
+
+    @Benchmark
+    public boolean setAttribute() throws IllegalValueException {
+        return lamp.setAttributeValue("Button", "2");
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.items.nexa.NexaRemapButton;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up item models and their attributes. The cached lookup is done for every attribute access through
+ * a proxy, the uncached parse once per item class.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class StaticHomeItemModelBenchmark {
+
+    private NexaRemapButton item;
+    private StaticHomeItemModel model;
+
+    @Setup
+    public void setUp() throws ModelException {
+        item = new NexaRemapButton();
+        model = StaticHomeItemModel.getModel(item);
+    }
+
+    @Benchmark
+    public StaticHomeItemModel getCachedModel() throws ModelException {
+        return StaticHomeItemModel.getModel(item);
+    }
+
+    @Benchmark
+    public ReflectionAttributeModel getAttribute() throws ModelException {
+        return model.getAttribute("OnCommand");
+    }
+
+    @Benchmark
+    public boolean hasMissingAttribute() {
+        return model.hasAttribute("NoSuchAttribute");
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public StaticHomeItemModel parseModel() throws ModelException {
+        return new StaticHomeItemModel(item);
+    }
+}
@@ -0,0 +1,127 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Storing values and reading a day of values with the file based and the H2 value loggers. Both logs are
+ * filled with a week of values, one every five minutes, before the measurement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueItemLoggerBenchmark {
+
+    private static final String ITEM_ID = "42";
+    private static final long VALUE_INTERVAL_MS = 5 * 60 * 1000;
+    private static final long DAY_MS = 24 * 60 * 60 * 1000;
+    private static final int STORED_DAYS = 7;
+
+    private final ValueItemLoggerFileBased fileLogger = new ValueItemLoggerFileBased();
+    private final ValueItemLoggerH2Database databaseLogger = new ValueItemLoggerH2Database();
+    private File logFile;
+    private File databaseDirectory;
+    private String connectionString;
+    private long nextDatabaseTime;
+    private Date dayStart;
+    private Date dayEnd;
+
+    @Setup
+    public void setUp() throws IOException {
+        Logger.getLogger("").setLevel(Level.WARNING);
+        logFile = File.createTempFile("benchmark", ".log");
+        databaseDirectory = File.createTempFile("benchmark", "db");
+        databaseDirectory.delete();
+        connectionString = "jdbc:h2:" + new File(databaseDirectory, "values").getPath();
+        long now = System.currentTimeMillis();
+        long time = now - STORED_DAYS * DAY_MS;
+        // The file logger always stores with the current time, so the history is written in its format directly
+        SimpleDateFormat fileTimeFormat = new SimpleDateFormat("yyyy.MM.dd HH:mm:ss;");
+        try (BufferedWriter out = new BufferedWriter(new FileWriter(logFile))) {
+            for (; time < now; time += VALUE_INTERVAL_MS) {
+                String value = Double.toString(Math.round(200 + 50 * Math.sin(time / (double) DAY_MS)) / 10.0);
+                out.write(fileTimeFormat.format(new Date(time)) + value);
+                out.newLine();
+                databaseLogger.storeWithDate(connectionString, ITEM_ID, value, new Date(time));
+            }
+        }
+        nextDatabaseTime = time;
+        dayEnd = new Date(now);
+        dayStart = new Date(now - DAY_MS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        logFile.delete();
+        File[] files = databaseDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        databaseDirectory.delete();
+    }
+
+    @Benchmark
+    public boolean storeFile() {
+        return fileLogger.store(logFile.getPath(), ITEM_ID, "21.5");
+    }
+
+    @Benchmark
+    public boolean storeDatabase() {
+        nextDatabaseTime += VALUE_INTERVAL_MS;
+        return databaseLogger.storeWithDate(connectionString, ITEM_ID, "21.5", new Date(nextDatabaseTime));
+    }
+
+    @Benchmark
+    public List<Object[]> readDayFromFile() {
+        return fileLogger.loadBetweenDates(logFile.getPath(), ITEM_ID, dayStart, dayEnd);
+    }
+
+    @Benchmark
+    public List<Object[]> readDayFromDatabase() {
+        return databaseLogger.loadBetweenDates(connectionString, ITEM_ID, dayStart, dayEnd);
+    }
+}
@@ -0,0 +1,191 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.audio;
+
+import nu.nethome.coders.decoders.Decoders;
+import nu.nethome.coders.encoders.Encoders;
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.util.ps.ProtocolDecoder;
+import nu.nethome.util.ps.ProtocolDecoderSink;
+import nu.nethome.util.ps.ProtocolEncoder;
+import nu.nethome.util.ps.ProtocolMessage;
+import nu.nethome.util.ps.impl.ProtocolDecoderGroup;
+import nu.nethome.util.ps.impl.SimpleFlankDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decoding a recorded audio signal with all protocol decoders, as done by the AudioProtocolParser, either in
+ * the sampler thread or spread over decoder threads. The recording is the WAV file given by the system property
+ * nu.nethome.benchmark.AudioFile, or if not given a generated signal with a number of Nexa messages.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class AudioDecodingBenchmark {
+
+    private static final int SAMPLE_RATE = 44100;
+    private static final AudioFormat FORMAT = new AudioFormat(SAMPLE_RATE, 16, 1, true, false);
+
+    private byte[] recording;
+    private AudioFormat recordingFormat;
+    private ParallelDecoderGroup parallelDecoders;
+    private AudioFileSampleSource serialSource;
+    private AudioFileSampleSource parallelSource;
+    private final AtomicInteger decodedMessages = new AtomicInteger();
+
+    @Setup
+    public void setUp() throws Exception {
+        String fileName = System.getProperty("nu.nethome.benchmark.AudioFile");
+        if (fileName != null) {
+            File file = new File(fileName);
+            recordingFormat = AudioSystem.getAudioFileFormat(file).getFormat();
+            try (AudioInputStream audio = AudioSystem.getAudioInputStream(file)) {
+                recording = readAll(audio);
+            }
+        } else {
+            recordingFormat = FORMAT;
+            recording = generateNexaRecording(50);
+        }
+        ProtocolDecoderGroup serialDecoders = new ProtocolDecoderGroup();
+        parallelDecoders = new ParallelDecoderGroup("Benchmark", ParallelDecoderGroup.defaultWorkerCount());
+        addDecoders(serialDecoders);
+        addDecoders(parallelDecoders);
+        serialSource = new AudioFileSampleSource(flankDetector(serialDecoders));
+        parallelSource = new AudioFileSampleSource(flankDetector(parallelDecoders));
+        parallelDecoders.start();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        parallelDecoders.stop();
+    }
+
+    @Benchmark
+    public int serialDecoding() throws Exception {
+        serialSource.play(recordingStream());
+        return decodedMessages.get();
+    }
+
+    @Benchmark
+    public int parallelDecoding() throws Exception {
+        parallelSource.play(recordingStream());
+        parallelDecoders.getPulses().awaitProcessed(10, TimeUnit.SECONDS);
+        return decodedMessages.get();
+    }
+
+    private AudioInputStream recordingStream() {
+        return new AudioInputStream(new ByteArrayInputStream(recording), recordingFormat,
+                recording.length / recordingFormat.getFrameSize());
+    }
+
+    private void addDecoders(ProtocolDecoderGroup group) throws Exception {
+        ProtocolDecoderSink sink = new ProtocolDecoderSink() {
+            @Override
+            public void parsedMessage(ProtocolMessage message) {
+                decodedMessages.incrementAndGet();
+            }
+
+            @Override
+            public void partiallyParsedMessage(String protocol, int bits) {
+            }
+
+            @Override
+            public void reportLevel(int level) {
+            }
+        };
+        for (Class<? extends ProtocolDecoder> decoderType : Decoders.getAllTypes()) {
+            ProtocolDecoder decoder = decoderType.newInstance();
+            decoder.setTarget(sink);
+            group.add(decoder);
+            group.setActive(decoder, true);
+        }
+    }
+
+    private static SimpleFlankDetector flankDetector(ProtocolDecoder decoders) {
+        SimpleFlankDetector flankDetector = new SimpleFlankDetector();
+        flankDetector.setProtocolDecoder(decoders);
+        return flankDetector;
+    }
+
+    private static byte[] generateNexaRecording(int messageCount) throws Exception {
+        EncoderFactory factory = new EncoderFactory(Encoders.getAllTypes());
+        ByteArrayOutputStream samples = new ByteArrayOutputStream();
+        for (int i = 0; i < messageCount; i++) {
+            Event event = new InternalEvent("Nexa_Message");
+            event.setAttribute("Direction", "Out");
+            event.setAttribute("Nexa.HouseCode", i % 16);
+            event.setAttribute("Nexa.Button", i % 8 + 1);
+            event.setAttribute("Nexa.Command", i % 2);
+            ProtocolEncoder encoder = factory.getEncoder(event);
+            int[] pulses = encoder.encode(factory.extractMessage(event), ProtocolEncoder.Phase.REPEATED);
+            for (int repeat = 0; repeat < 4; repeat++) {
+                for (int pulse = 0; pulse < pulses.length; pulse++) {
+                    writeLevel(samples, pulse % 2 == 0 ? 16000 : -16000, pulses[pulse]);
+                }
+            }
+            // Silence between the messages
+            writeLevel(samples, 0, 50000);
+        }
+        return samples.toByteArray();
+    }
+
+    private static void writeLevel(ByteArrayOutputStream samples, int level, int microseconds) {
+        long count = (long) microseconds * SAMPLE_RATE / 1000000;
+        for (long i = 0; i < count; i++) {
+            samples.write(level & 0xFF);
+            samples.write((level >> 8) & 0xFF);
+        }
+    }
+
+    private static byte[] readAll(AudioInputStream audio) throws Exception {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = audio.read(buffer)) > 0) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+}
@@ -0,0 +1,261 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.web.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import nu.nethome.home.util.PooledHttpClient;
+import org.apache.commons.codec.binary.Hex;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Time for the cloud proxy to answer a session of requests from a stand-in cloud server, when each request to the
+ * local server takes a fixed time. In serial mode the time can never be less than the sum of the local latencies.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HomeCloudConnectionBenchmark {
+
+    private static final String ACCOUNT = "ACCOUNT";
+    private static final String PASSWORD = "PASSWORD";
+    private static final int REQUEST_COUNT = 20;
+    private static final int LOCAL_LATENCY_MS = 50;
+
+    @Param({"Serial", "Multiplexed"})
+    public String mode;
+
+    private HttpServer cloudServer;
+    private HttpServer localServer;
+    private ExecutorService localServerExecutor;
+    private volatile StandInCloud cloud;
+    private HomeCloudConnection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        localServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        localServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                try {
+                    Thread.sleep(LOCAL_LATENCY_MS);
+                } catch (InterruptedException e) {
+                    // Answer anyway
+                }
+                byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+            }
+        });
+        localServerExecutor = Executors.newFixedThreadPool(REQUEST_COUNT);
+        localServer.setExecutor(localServerExecutor);
+        localServer.start();
+
+        cloudServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        cloudServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                cloud.handle(exchange);
+            }
+        });
+        cloudServer.start();
+
+        connection = new HomeCloudConnection();
+        connection.setAccount(ACCOUNT);
+        connection.setPassword(PASSWORD);
+        connection.setServiceURL("http://127.0.0.1:" + cloudServer.getAddress().getPort() + "/");
+        connection.setLocalURL("http://127.0.0.1:" + localServer.getAddress().getPort() + "/");
+        connection.setMultiplexed(mode.equals("Multiplexed") ? "True" : "False");
+        connection.setMaxConcurrentRequests("4");
+        connection.jsonRestClient = new JsonRestClient();
+        connection.localHttpClient = new PooledHttpClient();
+        connection.isRunning = true;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cloudServer.stop(0);
+        localServer.stop(0);
+        localServerExecutor.shutdownNow();
+        connection.localHttpClient.close();
+        connection.jsonRestClient.close();
+    }
+
+    @Setup(Level.Invocation)
+    public void startSession() {
+        cloud = new StandInCloud();
+    }
+
+    @Benchmark
+    public int proxySession() throws Exception {
+        try {
+            connection.connectAndProxyCloudRequests();
+        } catch (HomeCloudConnection.ConnectionException e) {
+            // The stand-in cloud ends the session when all requests are answered
+        }
+        if (cloud.answeredCount != REQUEST_COUNT) {
+            throw new IllegalStateException("Only " + cloud.answeredCount + " requests were answered");
+        }
+        return cloud.answeredCount;
+    }
+
+    /**
+     * The cloud side of the serial and the multiplexed poll protocol. It logs in to the proxy, hands out
+     * REQUEST_COUNT proxy requests and ends the session when all have been answered.
+     */
+    private class StandInCloud implements HttpHandler {
+        final Deque<String> pendingRequests = new ArrayDeque<>();
+        String sessionToken;
+        int answeredCount;
+
+        StandInCloud() {
+            for (int i = 0; i < REQUEST_COUNT; i++) {
+                pendingRequests.add("request" + i);
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            JSONObject body = new JSONObject(readAll(exchange.getRequestBody()));
+            if (path.endsWith("/server-sessions")) {
+                reply(exchange, HttpURLConnection.HTTP_CREATED, new LoginResp("S1", "SERVER").toJson());
+            } else if (path.endsWith("/poll")) {
+                handleSerialPoll(exchange, body);
+            } else if (path.endsWith("/multipoll")) {
+                handleMultiplexedPoll(exchange, body);
+            } else {
+                reply(exchange, HttpURLConnection.HTTP_NOT_FOUND, null);
+            }
+        }
+
+        private void handleSerialPoll(HttpExchange exchange, JSONObject response) throws IOException {
+            if (sessionToken == null) {
+                if (!response.has("sessionToken")) {
+                    reply(exchange, HttpURLConnection.HTTP_CREATED, loginRequest(response.getString("challenge")));
+                    return;
+                }
+                sessionToken = response.getString("sessionToken");
+            } else {
+                answeredCount++;
+            }
+            if (pendingRequests.isEmpty()) {
+                reply(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, null);
+                return;
+            }
+            reply(exchange, HttpURLConnection.HTTP_CREATED, proxyRequest(pendingRequests.poll()));
+        }
+
+        private void handleMultiplexedPoll(HttpExchange exchange, JSONObject poll) throws IOException {
+            JSONArray requests = new JSONArray();
+            JSONArray responses = poll.getJSONArray("responses");
+            for (int i = 0; i < responses.length(); i++) {
+                JSONObject response = responses.getJSONObject(i);
+                if (!response.has("requestId")) {
+                    requests.put(loginRequest(response.getString("challenge")).put("requestId", "login"));
+                } else if (response.getString("requestId").equals("login")) {
+                    sessionToken = response.getString("sessionToken");
+                } else {
+                    answeredCount++;
+                }
+            }
+            if (answeredCount == REQUEST_COUNT) {
+                reply(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, null);
+                return;
+            }
+            if (sessionToken != null) {
+                for (int i = 0; i < poll.getInt("maxRequests") && !pendingRequests.isEmpty(); i++) {
+                    String id = pendingRequests.poll();
+                    requests.put(proxyRequest(id).put("requestId", id));
+                }
+            }
+            reply(exchange, requests.length() > 0 ? HttpURLConnection.HTTP_CREATED : HttpURLConnection.HTTP_NO_CONTENT,
+                    requests.length() > 0 ? new JSONObject().put("requests", requests) : null);
+        }
+
+        private JSONObject loginRequest(String challenge) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] hash = digest.digest((ACCOUNT + PASSWORD + challenge).getBytes(StandardCharsets.UTF_8));
+                return new HttpRequest("", new String[0], Hex.encodeHexString(hash), "").toJson();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private JSONObject proxyRequest(String id) {
+            return new HttpRequest(id, new String[]{"Accept: text/plain"}, "", sessionToken).toJson();
+        }
+
+        private void reply(HttpExchange exchange, int code, JSONObject body) throws IOException {
+            byte[] data = body == null ? new byte[0] : body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, data.length == 0 ? -1 : data.length);
+            if (data.length > 0) {
+                exchange.getResponseBody().write(data);
+            }
+            exchange.close();
+        }
+
+        private String readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                result.write(buffer, 0, read);
+            }
+            String data = new String(result.toByteArray(), StandardCharsets.UTF_8);
+            return data.isEmpty() ? "{}" : data;
+        }
+    }
+}
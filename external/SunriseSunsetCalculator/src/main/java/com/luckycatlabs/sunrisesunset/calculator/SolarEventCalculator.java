@@ -30,6 +30,8 @@ import com.luckycatlabs.sunrisesunset.dto.Location;
 public class SolarEventCalculator {
     final private Location location;
     final private TimeZone timeZone;
+    final private double latitude;
+    final private double longitude;
 
     /**
      * Constructs a new <code>SolarEventCalculator</code> using the given parameters.
@@ -43,6 +45,8 @@ public class SolarEventCalculator {
     public SolarEventCalculator(Location location, String timeZoneIdentifier) {
         this.location = location;
         this.timeZone = TimeZone.getTimeZone(timeZoneIdentifier);
+        this.latitude = location.getLatitude().doubleValue();
+        this.longitude = location.getLongitude().doubleValue();
     }
 
     /**
@@ -56,6 +60,8 @@ public class SolarEventCalculator {
     public SolarEventCalculator(Location location, TimeZone timeZone) {
         this.location = location;
         this.timeZone = timeZone;
+        this.latitude = location.getLatitude().doubleValue();
+        this.longitude = location.getLongitude().doubleValue();
     }
 
     /**
@@ -111,6 +117,119 @@ public class SolarEventCalculator {
         return getLocalTimeAsCalendar(computeSolarEventTime(solarZenith, date, false), date);
     }
 
+    /**
+     * Computes the local sunrise time for the given zenith at the given date, using <code>double</code>
+     * arithmetic. This follows the same algorithm as the <code>BigDecimal</code> based methods, but is much
+     * cheaper to compute. The results differ at most by rounding in the last decimals.
+     * 
+     * @param zenithDegrees
+     *            the zenith of the sunrise in degrees, see <code>Zenith</code>.
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the sunrise for.
+     * @return the sunrise time in hours [0,24) local time, or <code>Double.NaN</code> if the sun does not rise
+     *         on the given date.
+     */
+    public double computeSunriseHours(double zenithDegrees, Calendar date) {
+        date.setTimeZone(this.timeZone);
+        return computeSolarEventHours(zenithDegrees, date.get(Calendar.DAY_OF_YEAR),
+                date.get(Calendar.ZONE_OFFSET), timeZone.inDaylightTime(date.getTime()), true);
+    }
+
+    /**
+     * Computes the local sunset time for the given zenith at the given date, using <code>double</code>
+     * arithmetic. See {@link #computeSunriseHours(double, Calendar)}.
+     * 
+     * @param zenithDegrees
+     *            the zenith of the sunset in degrees, see <code>Zenith</code>.
+     * @param date
+     *            <code>Calendar</code> object representing the date to compute the sunset for.
+     * @return the sunset time in hours [0,24) local time, or <code>Double.NaN</code> if the sun does not set
+     *         on the given date.
+     */
+    public double computeSunsetHours(double zenithDegrees, Calendar date) {
+        date.setTimeZone(this.timeZone);
+        return computeSolarEventHours(zenithDegrees, date.get(Calendar.DAY_OF_YEAR),
+                date.get(Calendar.ZONE_OFFSET), timeZone.inDaylightTime(date.getTime()), false);
+    }
+
+    /**
+     * Returns a local time in hours in the form HH:MM.
+     * 
+     * @param localTime
+     *            the local time in hours, as returned by {@link #computeSunriseHours(double, Calendar)}.
+     * @return <code>String</code> representation of the local time in HH:MM format, 99:99 for none.
+     */
+    public static String formatLocalTime(double localTime) {
+        if (Double.isNaN(localTime)) {
+            return "99:99";
+        }
+        int hour = (int) Math.floor(localTime);
+        int minutes = (int) Math.rint((localTime - hour) * 60);
+        if (minutes == 60) {
+            minutes = 0;
+            hour += 1;
+        }
+        return (hour < 10 ? "0" : "") + hour + ":" + (minutes < 10 ? "0" : "") + minutes;
+    }
+
+    private double computeSolarEventHours(double zenithDegrees, int dayOfYear, int zoneOffsetMillis,
+                                          boolean inDaylightTime, boolean isSunrise) {
+        double baseLongitudeHour = longitude / 15;
+        double longitudeHour = dayOfYear + ((isSunrise ? 6 : 18) - baseLongitudeHour) / 24;
+        double meanAnomaly = 0.9856 * longitudeHour - 3.289;
+
+        double meanAnomalyRadians = Math.toRadians(meanAnomaly);
+        double sunTrueLong = meanAnomaly + 1.916 * Math.sin(meanAnomalyRadians)
+                + 0.020 * Math.sin(2 * meanAnomalyRadians) + 282.634;
+        if (sunTrueLong > 360) {
+            sunTrueLong -= 360;
+        }
+
+        double sinSunDeclination = 0.39782 * Math.sin(Math.toRadians(sunTrueLong));
+        double cosSunDeclination = Math.cos(Math.asin(sinSunDeclination));
+        double latitudeRadians = Math.toRadians(latitude);
+        double cosineSunLocalHour = (Math.cos(Math.toRadians(zenithDegrees)) - sinSunDeclination * Math.sin(latitudeRadians))
+                / (cosSunDeclination * Math.cos(latitudeRadians));
+        if (cosineSunLocalHour < -1.0 || cosineSunLocalHour > 1.0) {
+            return Double.NaN;
+        }
+
+        double sunLocalHour = Math.toDegrees(Math.acos(cosineSunLocalHour));
+        if (isSunrise) {
+            sunLocalHour = 360 - sunLocalHour;
+        }
+        sunLocalHour /= 15;
+
+        double rightAscension = Math.toDegrees(Math.atan(0.91764 * Math.tan(Math.toRadians(sunTrueLong))));
+        if (rightAscension < 0) {
+            rightAscension += 360;
+        } else if (rightAscension > 360) {
+            rightAscension -= 360;
+        }
+        double longitudeQuadrant = Math.floor(sunTrueLong / 90) * 90;
+        double rightAscensionQuadrant = Math.floor(rightAscension / 90) * 90;
+        rightAscension = (rightAscension + longitudeQuadrant - rightAscensionQuadrant) / 15;
+
+        double localMeanTime = sunLocalHour + rightAscension - 0.06571 * longitudeHour - 6.622;
+        if (localMeanTime < 0) {
+            localMeanTime += 24;
+        } else if (localMeanTime > 24) {
+            localMeanTime -= 24;
+        }
+
+        // Same whole hour UTC offset as getUTCOffSet
+        double localTime = localMeanTime - baseLongitudeHour + zoneOffsetMillis / 3600000;
+        if (inDaylightTime) {
+            localTime += 1;
+        }
+        if (localTime >= 24.0) {
+            localTime -= 24;
+        } else if (localTime < 0) {
+            localTime += 24;
+        }
+        return localTime;
+    }
+
     private BigDecimal computeSolarEventTime(Zenith solarZenith, Calendar date, boolean isSunrise) {
         date.setTimeZone(this.timeZone);
         BigDecimal longitudeHour = getLongitudeHour(date, isSunrise);
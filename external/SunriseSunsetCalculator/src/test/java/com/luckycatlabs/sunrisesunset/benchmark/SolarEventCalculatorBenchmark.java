@@ -0,0 +1,99 @@
+/*
+ * Copyright 2008-2009 Mike Reedell / LuckyCatLabs.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.luckycatlabs.sunrisesunset.benchmark;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.luckycatlabs.sunrisesunset.Zenith;
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+
+/**
+ * Compares the <code>BigDecimal</code> based calculation of sunrise with the <code>double</code> based one.
+ * Run the main method from the test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolarEventCalculatorBenchmark {
+
+    private static final double OFFICIAL_ZENITH = Zenith.OFFICIAL.degrees().doubleValue();
+
+    private SolarEventCalculator calculator;
+    private Calendar date;
+    private int day;
+
+    @Setup
+    public void setup() {
+        TimeZone timeZone = TimeZone.getTimeZone("Europe/Stockholm");
+        calculator = new SolarEventCalculator(new Location("59.225527", "18.000718"), timeZone);
+        date = Calendar.getInstance(timeZone);
+    }
+
+    @Benchmark
+    public String bigDecimalSunrise() {
+        date.set(Calendar.DAY_OF_YEAR, nextDay());
+        return calculator.computeSunriseTime(Zenith.OFFICIAL, date);
+    }
+
+    @Benchmark
+    public Calendar bigDecimalSunriseCalendar() {
+        date.set(Calendar.DAY_OF_YEAR, nextDay());
+        return calculator.computeSunriseCalendar(Zenith.OFFICIAL, date);
+    }
+
+    @Benchmark
+    public double doubleSunrise() {
+        date.set(Calendar.DAY_OF_YEAR, nextDay());
+        return calculator.computeSunriseHours(OFFICIAL_ZENITH, date);
+    }
+
+    @Benchmark
+    public String doubleSunriseFormatted() {
+        date.set(Calendar.DAY_OF_YEAR, nextDay());
+        return SolarEventCalculator.formatLocalTime(calculator.computeSunriseHours(OFFICIAL_ZENITH, date));
+    }
+
+    private int nextDay() {
+        day = (day % 365) + 1;
+        return day;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(SolarEventCalculatorBenchmark.class.getSimpleName())
+                .forks(1)
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .build();
+        new Runner(options).run();
+    }
+}
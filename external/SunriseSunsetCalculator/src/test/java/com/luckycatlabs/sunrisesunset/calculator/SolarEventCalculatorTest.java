@@ -17,11 +17,15 @@
 package com.luckycatlabs.sunrisesunset.calculator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Calendar;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.luckycatlabs.sunrisesunset.Zenith;
+import com.luckycatlabs.sunrisesunset.dto.Location;
 import com.luckycatlabs.sunrisesunset.util.BaseTestCase;
 
 public class SolarEventCalculatorTest extends BaseTestCase {
@@ -45,4 +49,37 @@ public class SolarEventCalculatorTest extends BaseTestCase {
         String localSunsetTime = "18:28";
         assertEquals(localSunsetTime, calc.computeSunsetTime(Zenith.CIVIL, this.eventDate));
     }
+
+    @Test
+    public void testComputeSunriseHours() {
+        assertEquals("07:05", SolarEventCalculator.formatLocalTime(calc.computeSunriseHours(96, this.eventDate)));
+    }
+
+    @Test
+    public void testComputeSunsetHours() {
+        assertEquals("18:28", SolarEventCalculator.formatLocalTime(calc.computeSunsetHours(96, this.eventDate)));
+    }
+
+    @Test
+    public void testDoublePathMatchesBigDecimalPath() {
+        Zenith[] zeniths = {Zenith.ASTRONOMICAL, Zenith.NAUTICAL, Zenith.CIVIL, Zenith.OFFICIAL};
+        for (int day = 1; day <= 365; day++) {
+            eventDate.set(Calendar.DAY_OF_YEAR, day);
+            for (Zenith zenith : zeniths) {
+                double zenithDegrees = zenith.degrees().doubleValue();
+                assertTimeEquals(calc.computeSunriseTime(zenith, eventDate),
+                        SolarEventCalculator.formatLocalTime(calc.computeSunriseHours(zenithDegrees, eventDate)), "" + day);
+                assertTimeEquals(calc.computeSunsetTime(zenith, eventDate),
+                        SolarEventCalculator.formatLocalTime(calc.computeSunsetHours(zenithDegrees, eventDate)), "" + day);
+            }
+        }
+    }
+
+    @Test
+    public void testNoSunriseInPolarNight() {
+        SolarEventCalculator polarCalc = new SolarEventCalculator(new Location("78.2", "15.6"), "Arctic/Longyearbyen");
+        eventDate.set(Calendar.DAY_OF_YEAR, 355);
+        assertTrue(Double.isNaN(polarCalc.computeSunriseHours(90.8333, eventDate)));
+        assertEquals("99:99", SolarEventCalculator.formatLocalTime(polarCalc.computeSunriseHours(90.8333, eventDate)));
+    }
 }
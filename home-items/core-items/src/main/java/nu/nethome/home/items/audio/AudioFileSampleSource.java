@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.audio;
+
+import nu.nethome.util.ps.ProtocolSampler;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.UnsupportedAudioFileException;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Feeds recorded audio to a {@link ProtocolSampler} instead of sampling a sound card, so the decoding pipeline
+ * of the {@link AudioProtocolParser} can be benchmarked and regression tested offline. Reads WAV files or raw
+ * PCM files with 16 bit signed little endian samples. Samples are passed on as signed 16 bit values, and for
+ * stereo recordings only the left channel is used.
+ *
+ * @author Stefan
+ */
+public class AudioFileSampleSource {
+
+    private static final int BUFFER_FRAMES = 4096;
+
+    private final ProtocolSampler sampler;
+
+    public AudioFileSampleSource(ProtocolSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    /**
+     * Play a WAV file, or any other file format the Java sound system can read
+     *
+     * @return number of samples played
+     */
+    public long playFile(File file) throws IOException, UnsupportedAudioFileException {
+        try (AudioInputStream audio = AudioSystem.getAudioInputStream(file)) {
+            return play(audio);
+        }
+    }
+
+    /**
+     * Play a raw PCM file with 16 bit signed little endian samples
+     *
+     * @return number of samples played
+     */
+    public long playRawFile(File file, int sampleRate, int channels) throws IOException {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            AudioFormat format = new AudioFormat(sampleRate, 16, channels, true, false);
+            return play(new AudioInputStream(in, format, AudioSystem.NOT_SPECIFIED));
+        }
+    }
+
+    /**
+     * Play an audio stream, converting it to 16 bit signed samples if needed
+     *
+     * @return number of samples played
+     */
+    public long play(AudioInputStream audio) throws IOException {
+        AudioFormat source = audio.getFormat();
+        AudioFormat pcm = new AudioFormat(source.getSampleRate(), 16, source.getChannels(), true, false);
+        AudioInputStream in = source.matches(pcm) ? audio : AudioSystem.getAudioInputStream(pcm, audio);
+        int frameSize = pcm.getFrameSize();
+        byte[] buffer = new byte[BUFFER_FRAMES * frameSize];
+        int buffered = 0;
+        long samples = 0;
+        sampler.setSampleRate((int) pcm.getSampleRate());
+        int read;
+        while ((read = in.read(buffer, buffered, buffer.length - buffered)) > 0) {
+            buffered += read;
+            int frames = buffered / frameSize;
+            for (int frame = 0; frame < frames; frame++) {
+                int offset = frame * frameSize;
+                sampler.addSample((short) ((buffer[offset] & 0xFF) | (buffer[offset + 1] << 8)));
+            }
+            samples += frames;
+            // Keep any partial frame for the next read
+            int used = frames * frameSize;
+            System.arraycopy(buffer, used, buffer, 0, buffered - used);
+            buffered -= used;
+        }
+        return samples;
+    }
+}
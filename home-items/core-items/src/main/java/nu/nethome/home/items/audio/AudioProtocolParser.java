@@ -24,6 +24,7 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.util.RepeatFilter;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.FieldValue;
 import nu.nethome.util.ps.ProtocolDecoder;
@@ -31,7 +32,6 @@ import nu.nethome.util.ps.ProtocolDecoderSink;
 import nu.nethome.util.ps.ProtocolMessage;
 import nu.nethome.util.ps.impl.AudioProtocolPort;
 import nu.nethome.util.ps.impl.FIRFilter6000;
-import nu.nethome.util.ps.impl.ProtocolDecoderGroup;
 import nu.nethome.util.ps.impl.SimpleFlankDetector;
 
 import javax.sound.sampled.Mixer.Info;
@@ -72,6 +72,10 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
             + "  <Attribute Name=\"MaxRepeats\" Type=\"String\" Get=\"getMaxRepeats\" 	Set=\"setMaxRepeats\" />"
             + "  <Attribute Name=\"Received\" Type=\"String\" Get=\"getReceived\"  />"
             + "  <Attribute Name=\"Sent\" Type=\"String\" Get=\"getSent\"  />"
+            + "  <Attribute Name=\"RepeatWindow\" Type=\"String\" Get=\"getRepeatWindow\" Set=\"setRepeatWindow\" />"
+            + "  <Attribute Name=\"SuppressedRepeats\" Type=\"String\" Get=\"getSuppressedRepeats\" />"
+            + "  <Attribute Name=\"DecoderThreads\" Type=\"String\" Get=\"getDecoderThreads\" />"
+            + "  <Attribute Name=\"DroppedPulses\" Type=\"String\" Get=\"getDroppedPulses\" />"
             + "  <Attribute Name=\"ActiveSource\" Type=\"String\" Get=\"getActiveSource\" />"
             + "</HomeItem> ");
 
@@ -83,7 +87,8 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
     private Timer reactivateTimer = new Timer("AudioProtocolParserReactivator");
     private AudioProtocolPort audioSampler;
     private SimpleFlankDetector flankDetector;
-    private ProtocolDecoderGroup decoders = new ProtocolDecoderGroup();
+    private ParallelDecoderGroup decoders = new ParallelDecoderGroup("AudioProtocolParser",
+            ParallelDecoderGroup.defaultWorkerCount());
     private FIRFilter6000 filter;
     private boolean isActive = false;
 
@@ -95,6 +100,7 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
     private String sourceName = "";
     private int sent;
     private int maxRepeats = 0;
+    private final RepeatFilter repeatFilter = new RepeatFilter();
     private boolean lostConnection = false;
 
     public String getModel() {
@@ -122,7 +128,8 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
      */
     public void activate() {
 
-        // Start the Sampler.
+        // Start the decoder threads and the Sampler.
+        decoders.start();
         audioSampler.open();
 
         // Start the restart timer. On the Windows platform it seems that after a while
@@ -211,6 +218,7 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
         if (audioSampler != null) {
             audioSampler.close();
         }
+        decoders.stop();
         super.stop();
     }
 
@@ -237,14 +245,13 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
 
     }
 
-    public void parsedMessage(ProtocolMessage message) {
+    public synchronized void parsedMessage(ProtocolMessage message) {
         received++;
 
         // Check if this is a repeated message, and if it is more repeats than specified
         if (message.getRepeat() > maxRepeats) {
             return;
         }
-        sent++;
         // Build an internal event from the protocol message
         Event event = server.createEvent(message.getProtocol() + "_Message", "");
         // Specify message direction
@@ -254,8 +261,11 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
         for (FieldValue f : message.getFields()) {
             event.setAttribute(message.getProtocol() + "." + f.getName(), f.getStringValue());
         }
-        // Send the event internally
-        server.send(event);
+        // Send the event internally, unless it is a repeat of a message we just received
+        if (!repeatFilter.isRepeat(event)) {
+            sent++;
+            server.send(event);
+        }
     }
 
     public void partiallyParsedMessage(String protocol, int bits) {
@@ -541,6 +551,26 @@ public class AudioProtocolParser extends HomeItemAdapter implements HomeItem, Pr
         return "[No active source]";
     }
 
+    public String getRepeatWindow() {
+        return repeatFilter.getWindows();
+    }
+
+    public void setRepeatWindow(String repeatWindow) {
+        repeatFilter.setWindows(repeatWindow);
+    }
+
+    public String getSuppressedRepeats() {
+        return Long.toString(repeatFilter.getSuppressedCount());
+    }
+
+    public String getDecoderThreads() {
+        return Integer.toString(decoders.getWorkerCount());
+    }
+
+    public String getDroppedPulses() {
+        return Long.toString(decoders.getPulses().getDroppedCount());
+    }
+
     public String getSent() {
         return Integer.toString(sent);
     }
@@ -26,6 +26,7 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.BadMessageException;
 import nu.nethome.util.ps.Message;
@@ -60,12 +61,22 @@ public class AudioProtocolTransmitter extends HomeItemAdapter implements HomeIte
             + "  <Action Name=\"PlayTestBeep\"		Method=\"playTestBeep\" />"
             + "  <Attribute Name=\"TestBeepFrequency\" Type=\"String\" Get=\"getTestBeepFrequency\" 	Set=\"setTestBeepFrequency\" />"
             + "  <Attribute Name=\"State\" Type=\"String\" Get=\"getState\"  Default=\"true\" />"
+            + "  <Attribute Name=\"QueuedMessages\" Type=\"String\" Get=\"getQueuedMessages\" />"
+            + "  <Attribute Name=\"SupersededMessages\" Type=\"String\" Get=\"getSupersededMessages\" />"
+            + "  <Attribute Name=\"ExpiredMessages\" Type=\"String\" Get=\"getExpiredMessages\" />"
             + "</HomeItem> ");
 
     private static Logger logger = Logger.getLogger(AudioProtocolTransmitter.class.getName());
     protected Timer m_Timer = new Timer("AudioProtocolTransmitterRestarter");
     protected static long RESTART_INTERVAL = 1000 * 60 * 60 * 6; // 6 hours
     private EncoderFactory factory;
+    private final TransmitScheduler<Runnable> transmitScheduler = new TransmitScheduler<Runnable>("AudioProtocol",
+            new TransmitScheduler.Transmitter<Runnable>() {
+                @Override
+                public void transmit(Runnable message) {
+                    message.run();
+                }
+            });
 
 
     // Public attributes
@@ -90,9 +101,15 @@ public class AudioProtocolTransmitter extends HomeItemAdapter implements HomeIte
         if (foundEncoder != null) {
             try {
                 Message parameters = factory.extractMessage(event);
-                int repeat = factory.calculateRepeat(event, foundEncoder);
-                m_PulsePlayer.playMessage(foundEncoder.encode(parameters, ProtocolEncoder.Phase.FIRST),
-                        foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED), repeat);
+                final int repeat = factory.calculateRepeat(event, foundEncoder);
+                final int[] first = foundEncoder.encode(parameters, ProtocolEncoder.Phase.FIRST);
+                final int[] repeated = foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED);
+                transmitScheduler.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        m_PulsePlayer.playMessage(first, repeated, repeat);
+                    }
+                }, event, TransmitScheduler.airTimeUs(first, 1) + TransmitScheduler.airTimeUs(repeated, repeat));
                 return true;
             } catch (BadMessageException e) {
                 logger.warning("Bad protocol message received: " + event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE));
@@ -138,6 +155,7 @@ public class AudioProtocolTransmitter extends HomeItemAdapter implements HomeIte
                     }, RESTART_INTERVAL, RESTART_INTERVAL);
         }
         factory.addEncoderTypes(server.getPluginProvider().getPluginsForInterface(ProtocolEncoder.class));
+        transmitScheduler.start();
     }
 
     /**
@@ -146,6 +164,7 @@ public class AudioProtocolTransmitter extends HomeItemAdapter implements HomeIte
     public void stop() {
         // Stop the timer
         m_Timer.cancel();
+        transmitScheduler.stop();
 
         // Stop the sampler
         if (m_PulsePlayer.isOpen()) {
@@ -164,6 +183,18 @@ public class AudioProtocolTransmitter extends HomeItemAdapter implements HomeIte
         m_PulsePlayer.playMessage(beep.encode());
     }
 
+    public String getQueuedMessages() {
+        return Integer.toString(transmitScheduler.getQueueDepth());
+    }
+
+    public String getSupersededMessages() {
+        return Long.toString(transmitScheduler.getSupersededCount());
+    }
+
+    public String getExpiredMessages() {
+        return Long.toString(transmitScheduler.getExpiredCount());
+    }
+
     /**
      * @return Returns the SourceNumber.
      */
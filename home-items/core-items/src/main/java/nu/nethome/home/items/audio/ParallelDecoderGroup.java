@@ -0,0 +1,111 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.audio;
+
+import nu.nethome.home.util.PulseRing;
+import nu.nethome.util.ps.ProtocolDecoder;
+import nu.nethome.util.ps.impl.ProtocolDecoderGroup;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A decoder group that runs its decoders in a number of worker threads instead of in the sampler thread.
+ * The decoders are divided over the workers when they are added, and the pulses from the flank detector are
+ * passed to the workers through a {@link PulseRing}. Each decoder is only called from its own worker thread.
+ * <p/>
+ * The decoders report messages from the worker threads, so the decoder sink must be thread safe.
+ *
+ * @author Stefan
+ */
+public class ParallelDecoderGroup extends ProtocolDecoderGroup {
+
+    private final ProtocolDecoderGroup[] partitions;
+    private final Map<ProtocolDecoder, ProtocolDecoderGroup> partitionOfDecoder = new HashMap<>();
+    private final PulseRing pulses;
+    private int addedDecoders;
+
+    /**
+     * @return a reasonable number of decoder threads, leaving one core for the sampler thread
+     */
+    public static int defaultWorkerCount() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public ParallelDecoderGroup(String name, int workerCount) {
+        partitions = new ProtocolDecoderGroup[workerCount];
+        List<PulseRing.PulseConsumer> consumers = new ArrayList<>();
+        for (int i = 0; i < workerCount; i++) {
+            final ProtocolDecoderGroup partition = new ProtocolDecoderGroup();
+            partitions[i] = partition;
+            consumers.add(new PulseRing.PulseConsumer() {
+                @Override
+                public void pulse(double length, boolean mark) {
+                    partition.parse(length, mark);
+                }
+            });
+        }
+        pulses = new PulseRing(name, PulseRing.DEFAULT_CAPACITY, consumers);
+    }
+
+    @Override
+    public void add(ProtocolDecoder decoder) {
+        super.add(decoder);
+        ProtocolDecoderGroup partition = partitions[addedDecoders++ % partitions.length];
+        partition.add(decoder);
+        partitionOfDecoder.put(decoder, partition);
+    }
+
+    @Override
+    public void setActive(ProtocolDecoder decoder, boolean active) {
+        super.setActive(decoder, active);
+        ProtocolDecoderGroup partition = partitionOfDecoder.get(decoder);
+        if (partition != null) {
+            partition.setActive(decoder, active);
+        }
+    }
+
+    /**
+     * Pass a pulse on to the decoder workers. Called from the flank detector in the sampler thread.
+     */
+    @Override
+    public int parse(double pulse, boolean state) {
+        pulses.publish(pulse, state);
+        return 0;
+    }
+
+    public void start() {
+        pulses.start();
+    }
+
+    public void stop() {
+        pulses.stop();
+    }
+
+    public PulseRing getPulses() {
+        return pulses;
+    }
+
+    public int getWorkerCount() {
+        return partitions.length;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.misc;
+
+import nu.nethome.home.impl.EventLogWriter;
+import nu.nethome.home.item.HomeItem;
+import nu.nethome.home.item.HomeItemAdapter;
+import nu.nethome.home.item.HomeItemType;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.FinalEventListener;
+import nu.nethome.home.system.HomeService;
+import nu.nethome.util.plugin.Plugin;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Records all distributed events with their time to a binary event log. The log can be replayed into a test
+ * server with {@link nu.nethome.home.impl.EventReplay} to reproduce the load of this installation.
+ */
+@Plugin
+@HomeItemType("Ports")
+public class EventRecorder extends HomeItemAdapter implements HomeItem {
+
+    private static final String MODEL = ("<?xml version = \"1.0\"?> \n"
+            + "<HomeItem Class=\"EventRecorder\" Category=\"Ports\" >"
+            + "  <Attribute Name=\"State\" Type=\"String\" Get=\"getState\" Default=\"true\" />"
+            + "  <Attribute Name=\"FileName\" Type=\"String\" Get=\"getFileName\" Set=\"setFileName\" />"
+            + "  <Attribute Name=\"RecordAtStart\" Type=\"Boolean\" Get=\"getRecordAtStart\" Set=\"setRecordAtStart\" />"
+            + "  <Attribute Name=\"RecordedEvents\" Type=\"String\" Get=\"getRecordedEvents\" />"
+            + "  <Action Name=\"StartRecording\" Method=\"startRecording\" />"
+            + "  <Action Name=\"StopRecording\" Method=\"stopRecording\" />"
+            + "</HomeItem> ");
+
+    private static Logger logger = Logger.getLogger(EventRecorder.class.getName());
+    private String fileName = "events.log";
+    private boolean recordAtStart = false;
+    private EventLogWriter writer;
+    private long recordedEvents;
+    private final FinalEventListener listener = new FinalEventListener() {
+        @Override
+        public void receiveFinalEvent(Event event, boolean isHandled) {
+            recordEvent(event, isHandled);
+        }
+    };
+
+    public String getModel() {
+        return MODEL;
+    }
+
+    @Override
+    public void activate(HomeService server) {
+        super.activate(server);
+        server.registerFinalEventListener(listener);
+        if (recordAtStart) {
+            startRecording();
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (isActivated()) {
+            server.unregisterFinalEventListener(listener);
+        }
+        stopRecording();
+        super.stop();
+    }
+
+    public synchronized String startRecording() {
+        stopRecording();
+        try {
+            writer = new EventLogWriter(new FileOutputStream(fileName), System.currentTimeMillis());
+            recordedEvents = 0;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not create event log " + fileName, e);
+        }
+        return "";
+    }
+
+    public synchronized String stopRecording() {
+        if (writer != null) {
+            recordedEvents = writer.getEventCount();
+            try {
+                writer.close();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Could not close event log " + fileName, e);
+            }
+            writer = null;
+        }
+        return "";
+    }
+
+    private synchronized void recordEvent(Event event, boolean isHandled) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(event, isHandled, System.currentTimeMillis());
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not write to event log " + fileName + ", recording stopped", e);
+            stopRecording();
+        }
+    }
+
+    public synchronized String getState() {
+        return writer != null ? "Recording" : "Stopped";
+    }
+
+    public String getFileName() {
+        return fileName;
+    }
+
+    public void setFileName(String fileName) {
+        this.fileName = fileName;
+    }
+
+    public String getRecordAtStart() {
+        return getBooleanAttribute(recordAtStart);
+    }
+
+    public void setRecordAtStart(String recordAtStart) {
+        this.recordAtStart = setBooleanAttribute(recordAtStart);
+    }
+
+    public synchronized String getRecordedEvents() {
+        return Long.toString(writer != null ? writer.getEventCount() : recordedEvents);
+    }
+}
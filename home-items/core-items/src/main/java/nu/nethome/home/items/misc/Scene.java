@@ -23,9 +23,12 @@ import nu.nethome.home.impl.CommandLineExecutor;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
+import nu.nethome.home.item.StepSequencer;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 
@@ -58,6 +61,7 @@ public class Scene extends HomeItemAdapter implements HomeItem {
 	private static Logger logger = Logger.getLogger(Scene.class.getName());
     protected boolean activeState = true;
 	private CommandLineExecutor commandExecutor;
+	private StepSequencer sequencer;
 	
 
 	// Public attributes
@@ -79,9 +83,13 @@ public class Scene extends HomeItemAdapter implements HomeItem {
 	public void activate(HomeService server) {
         super.activate(server);
         commandExecutor = new CommandLineExecutor(server, true);
+        sequencer = new StepSequencer(getScheduler());
 	}
 
 	public void stop() {
+        if (sequencer != null) {
+            sequencer.cancel();
+        }
 	}
 
     public String getState(){
@@ -93,25 +101,22 @@ public class Scene extends HomeItemAdapter implements HomeItem {
     }
 
     public void action() {
-        if (!activeState) {
+        if (!activeState || sequencer == null) {
             return;
         }
-		try {
-			performCommand(command1);
-			if (command2.length() != 0) Thread.sleep(commandDelay);
-			performCommand(command2);
-			if (command3.length() != 0) Thread.sleep(commandDelay);
-			performCommand(command3);
-			if (command4.length() != 0) Thread.sleep(commandDelay);
-			performCommand(command4);
-			if (command5.length() != 0) Thread.sleep(commandDelay);
-			performCommand(command5);
-			if (command6.length() != 0) Thread.sleep(commandDelay);
-			performCommand(command6);
-		}
-		catch (InterruptedException i) {
-        	// Do Dinada
-		}
+        // The commands are executed by the scheduler, so the caller is not blocked during the delays
+        List<Runnable> steps = new ArrayList<>();
+        for (final String command : new String[]{command1, command2, command3, command4, command5, command6}) {
+            if (command.length() != 0) {
+                steps.add(new Runnable() {
+                    @Override
+                    public void run() {
+                        performCommand(command);
+                    }
+                });
+            }
+        }
+        sequencer.start(steps, commandDelay);
 	}
 	
 	protected void performCommand(String commandString) {
@@ -128,6 +133,9 @@ public class Scene extends HomeItemAdapter implements HomeItem {
 	  
     public String disableScene() {
         activeState = false;
+        if (sequencer != null) {
+            sequencer.cancel();
+        }
         return "";
     }
 
@@ -20,19 +20,30 @@
 package nu.nethome.home.items.misc;
 
 import nu.nethome.home.impl.CommandLineExecutor;
+import nu.nethome.home.impl.CommandLineParser;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
+import nu.nethome.home.item.HomeItemProxy;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.item.IllegalValueException;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.TaskScheduler;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 
 /**
- * ClassName
+ * Reads a value from another item and performs actions when the value passes the Max or Min limits.
+ * In Polling evaluation the value is read once a minute. In OnChange evaluation the trigger listens for
+ * {@link HomeService#VALUE_CHANGED_EVENT_TYPE} events from the item in the ValueAction and evaluates the value
+ * as soon as it changes. Items report changes with {@link HomeItemAdapter#reportValueChange},
+ * for example the RF thermometers and hygrometers through {@link nu.nethome.home.item.SensorValue}. Until the item
+ * has reported a change, the value is polled as before, so OnChange also works for items that cannot report changes.
+ * Hysteresis is how far back inside the limit the value has to go before the limit can be passed again, and
+ * Debounce is the time in seconds a limit has to stay passed before the action is performed.
  *
  * @author Stefan
  */
@@ -48,6 +59,10 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"ValueAction\" Type=\"Value\" Get=\"getValueAction\" 	Set=\"setValueAction\" />"
             + "  <Attribute Name=\"Max\" Type=\"String\" Get=\"getMaxLimit\" 	Set=\"setMaxLimit\" />"
             + "  <Attribute Name=\"Min\" Type=\"String\" Get=\"getMinLimit\" 	Set=\"setMinLimit\" />"
+            + "  <Attribute Name=\"Evaluation\" Type=\"StringList\" Get=\"getEvaluation\" 	Set=\"setEvaluation\" >"
+            + "   <item>Polling</item><item>OnChange</item></Attribute>"
+            + "  <Attribute Name=\"Hysteresis\" Type=\"String\" Get=\"getHysteresis\" 	Set=\"setHysteresis\" />"
+            + "  <Attribute Name=\"Debounce\" Type=\"String\" Get=\"getDebounce\" 	Set=\"setDebounce\" Unit=\"s\" />"
             + "  <Attribute Name=\"ActionOnExceedingMax\" Type=\"Command\" Get=\"getPassingMaxAction\" 	Set=\"setPassingMaxAction\" />"
             + "  <Attribute Name=\"ActionOnDeceedingMin\" Type=\"Command\" Get=\"getPassingMinAction\" 	Set=\"setPassingMinAction\" />"
             + "  <Attribute Name=\"ActionWhileOverMax\" Type=\"Command\" Get=\"getActionWhileOverMax\" 	Set=\"setActionWhileOverMax\" />"
@@ -75,14 +90,41 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
     protected String passingMinAction = "";
     protected String actionWhileOverMax = "";
     protected String actionWhileUnderMin = "";
+    protected boolean evaluateOnChange = false;
+    protected double hysteresis = 0.0;
+    protected int debounceSeconds = 0;
+
+    // The item and attribute the ValueAction reads, if it is a simple get command
+    private String sourceName;
+    private String sourceAttribute;
+    private String sourceId;
+    private boolean sourceReportsChanges = false;
+    private double lastValue;
+    private State pendingState;
+    private TaskScheduler.ScheduledTask debounceTask;
 
     public ValueTrigger() {
+        parseValueAction();
     }
 
     public boolean receiveEvent(Event event) {
-        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(HomeService.MINUTE_EVENT_TYPE) && (state != State.deactivated)
-                && activated) {
-            checkValueAndTakeAction();
+        if (!activated || state == State.deactivated) {
+            return false;
+        }
+        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(HomeService.MINUTE_EVENT_TYPE)) {
+            if (evaluateOnChange && sourceReportsChanges) {
+                performWhileActions();
+            } else {
+                checkValueAndTakeAction();
+            }
+            return true;
+        } else if (evaluateOnChange && event.isType(HomeService.VALUE_CHANGED_EVENT_TYPE) && isFromSource(event)) {
+            sourceReportsChanges = true;
+            try {
+                evaluate(parseValue(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)), false);
+            } catch (NumberFormatException e) {
+                logger.fine("Bad value from " + sourceName + ": " + event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE));
+            }
             return true;
         }
         return false;
@@ -95,41 +137,90 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
         } catch (IllegalValueException e) {
             return;
         }
+        evaluate(value, true);
+    }
+
+    private synchronized void evaluate(double value, boolean includeWhileActions) {
         latestValue = Double.toString(value);
+        lastValue = value;
+        if (state == State.deactivated) {
+            return;
+        }
+        State newState = nextState(value);
+        if (newState == state) {
+            cancelDebounce();
+        } else if (debounceSeconds == 0 || !isActivated()) {
+            changeState(newState);
+        } else if (newState != pendingState) {
+            startDebounce(newState);
+        }
+        if (includeWhileActions) {
+            performWhileActions();
+        }
+    }
 
+    /**
+     * Calculates the state for a new value. A passed limit is not left until the value is back inside
+     * the limit by the hysteresis.
+     */
+    private State nextState(double value) {
         switch (state) {
-            case normal: {
-                if (value > maxLimit) {
-                    state = State.overMax;
-                    performAction(passingMaxAction);
-                }
+            case overMax:
                 if (value < minLimit) {
-                    state = State.underMin;
-                    performAction(passingMinAction);
+                    return State.underMin;
                 }
-                break;
-            }
-            case overMax: {
-                if (value <= maxLimit) {
-                    state = State.normal;
+                return value <= maxLimit - hysteresis ? State.normal : State.overMax;
+            case underMin:
+                if (value > maxLimit) {
+                    return State.overMax;
                 }
+                return value >= minLimit + hysteresis ? State.normal : State.underMin;
+            default:
                 if (value < minLimit) {
-                    state = State.underMin;
-                    performAction(passingMinAction);
-                }
-                break;
-            }
-            case underMin: {
-                if (value >= minLimit) {
-                    state = State.normal;
-                }
-                if (value > maxLimit) {
-                    state = State.overMax;
-                    performAction(passingMaxAction);
+                    return State.underMin;
                 }
-                break;
+                return value > maxLimit ? State.overMax : State.normal;
+        }
+    }
+
+    private void changeState(State newState) {
+        cancelDebounce();
+        state = newState;
+        if (newState == State.overMax) {
+            performAction(passingMaxAction);
+        } else if (newState == State.underMin) {
+            performAction(passingMinAction);
+        }
+    }
+
+    private void startDebounce(State newState) {
+        cancelDebounce();
+        pendingState = newState;
+        debounceTask = getScheduler().schedule(new Runnable() {
+            @Override
+            public void run() {
+                debounceExpired();
             }
+        }, debounceSeconds * 1000L);
+    }
+
+    private synchronized void debounceExpired() {
+        debounceTask = null;
+        if (pendingState != null && state != State.deactivated && nextState(lastValue) == pendingState) {
+            changeState(pendingState);
+        }
+        pendingState = null;
+    }
+
+    private synchronized void cancelDebounce() {
+        pendingState = null;
+        if (debounceTask != null) {
+            debounceTask.cancel();
+            debounceTask = null;
         }
+    }
+
+    private void performWhileActions() {
         if (state == State.overMax) {
             performAction(actionWhileOverMax);
         }
@@ -138,6 +229,35 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
         }
     }
 
+    private boolean isFromSource(Event event) {
+        return sourceId != null && sourceId.equals(event.getAttribute(HomeService.VALUE_CHANGED_ITEM_ID_ATTRIBUTE)) &&
+                sourceAttribute.equalsIgnoreCase(event.getAttribute(HomeService.VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE));
+    }
+
+    private void parseValueAction() {
+        List<String> tokens = CommandLineParser.parseLine(valueAction);
+        if (tokens.size() == 3 && tokens.get(0).equalsIgnoreCase("get")) {
+            sourceName = tokens.get(1);
+            sourceAttribute = tokens.get(2);
+        } else {
+            sourceName = null;
+            sourceAttribute = null;
+        }
+        sourceId = null;
+        sourceReportsChanges = false;
+    }
+
+    private void resolveSource() {
+        if (sourceName != null && isActivated()) {
+            HomeItemProxy source = server.openInstance(sourceName);
+            sourceId = source != null ? source.getAttributeValue(HomeItemProxy.ID_ATTRIBUTE) : null;
+        }
+    }
+
+    private static double parseValue(String value) {
+        return Double.parseDouble(value.replace("%2C", ".").replace(",", "."));
+    }
+
     private void performAction(String action) {
         String result = executor.executeCommandLine(action);
         if (!result.startsWith("ok")) {
@@ -152,8 +272,11 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
         if (results.length != 3 || !results[0].equalsIgnoreCase("ok") || results[2].length() == 0) {
             throw new IllegalValueException("Could not get value", getValueAction());
         }
+        if (sourceId == null) {
+            resolveSource();
+        }
         try {
-            resultValue = Double.parseDouble(results[2].replace("%2C", "."));
+            resultValue = parseValue(results[2]);
         } catch (NumberFormatException e) {
             throw new IllegalValueException("Bad value", getValueAction());
         }
@@ -161,11 +284,13 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
     }
 
     public void enableTrigger() {
+        cancelDebounce();
         state = State.normal;
         checkValueAndTakeAction();
     }
 
     public void disableTrigger() {
+        cancelDebounce();
         state = State.deactivated;
     }
 
@@ -177,12 +302,16 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
         super.activate(server);
         activated = true;
         executor = new CommandLineExecutor(server, true);
+        resolveSource();
     }
 
     /**
      * HomeItem method which stops all object activity for program termination
      */
     public void stop() {
+        cancelDebounce();
+        activated = false;
+        super.stop();
     }
 
     public String getState() {
@@ -203,6 +332,8 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
 
     public void setValueAction(String valueAction) {
         this.valueAction = valueAction;
+        parseValueAction();
+        resolveSource();
     }
 
     public String getMaxLimit() {
@@ -221,6 +352,38 @@ public class ValueTrigger extends HomeItemAdapter implements HomeItem {
         this.minLimit = Double.parseDouble(minLimit);
     }
 
+    public String getEvaluation() {
+        return evaluateOnChange ? "OnChange" : "Polling";
+    }
+
+    public void setEvaluation(String evaluation) {
+        evaluateOnChange = evaluation.equalsIgnoreCase("OnChange");
+    }
+
+    public String getHysteresis() {
+        return Double.toString(hysteresis);
+    }
+
+    public void setHysteresis(String hysteresis) throws IllegalValueException {
+        try {
+            double value = Double.parseDouble(hysteresis);
+            if (value < 0) {
+                throw new IllegalValueException("Hysteresis may not be negative", hysteresis);
+            }
+            this.hysteresis = value;
+        } catch (NumberFormatException e) {
+            throw new IllegalValueException("Illegal number format", hysteresis);
+        }
+    }
+
+    public String getDebounce() {
+        return getIntAttribute(debounceSeconds);
+    }
+
+    public void setDebounce(String debounce) throws IllegalValueException {
+        debounceSeconds = setIntAttribute(debounce, 0, 24 * 60 * 60);
+    }
+
     public String getPassingMaxAction() {
         return passingMaxAction;
     }
@@ -20,12 +20,10 @@
 package nu.nethome.home.items.net;
 
 import nu.nethome.home.item.*;
+import nu.nethome.home.system.TaskScheduler;
 import nu.nethome.util.plugin.Plugin;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.*;
 import java.util.*;
 import java.util.logging.Logger;
 
@@ -38,22 +36,42 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
 
     public static final String ARP_SCAN_MESSAGE = "ArpScan_Message";
     public static final int MAX_ERROR_DISPLAY_SIZE = 30;
+    public static final String ARP_SCAN_SOURCE = "arp-scan";
+    public static final String ARP_TABLE_SOURCE = "/proc/net/arp";
+    private static final int ATF_COM = 0x02; // Flag for completed entries in the ARP table
     private final String m_Model = ("<?xml version = \"1.0\"?> \n"
             + "<HomeItem Class=\"ArpScanner\"  Category=\"Ports\" >"
             + "  <Attribute Name=\"MacCount\" 	Type=\"String\" Get=\"getMacCount\" Default=\"true\" />"
+            + "  <Attribute Name=\"Source\" Type=\"StringList\" Get=\"getSource\" 	Set=\"setSource\" >"
+            + "   <item>" + ARP_SCAN_SOURCE + "</item> <item>" + ARP_TABLE_SOURCE + "</item></Attribute>"
             + "  <Attribute Name=\"ArpScan\"	Type=\"String\" Get=\"getExecName\" 	Set=\"setExecName\" />"
             + "  <Attribute Name=\"ScanInterval\"	Type=\"String\" Get=\"getScanInterval\"  Set=\"setScanInterval\" />"
             + "  <Action Name=\"Scan\" 	Method=\"reportScanResult\" />"
             + "</HomeItem> ");
 
     private static Logger logger = Logger.getLogger(ArpScanner.class.getName());
-    private volatile Timer scanTimer;
+    private volatile TaskScheduler.ScheduledTask scanTask;
+    private final PresenceEngine presenceEngine;
+    private ScanSource scanSource;
+    private String source = ARP_SCAN_SOURCE;
 
     private String execName = "/usr/bin/arp-scan -r 3 -b 2 -q --interface=eth0 --localnet";
     private String macCount = "";
     long scanInterval = 30000;
 
+    /**
+     * Source of MAC addresses present on the network
+     */
+    public interface ScanSource {
+        List<String> scan() throws ExecutionFailure;
+    }
+
     public ArpScanner() {
+        this(PresenceEngine.getSharedEngine());
+    }
+
+    ArpScanner(PresenceEngine presenceEngine) {
+        this.presenceEngine = presenceEngine;
     }
 
     public String getModel() {
@@ -66,8 +84,7 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
     }
 
     private void startTimer() {
-        scanTimer = new Timer("ArpScanner", true);
-        scanTimer.schedule(new TimerTask() {
+        scanTask = getScheduler().scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 reportScanResult();
@@ -78,27 +95,28 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
     @Override
     public void stop() {
         stopTimer();
+        presenceEngine.removeSource(this);
         super.stop();
     }
 
     private void stopTimer() {
-        if (scanTimer != null) {
-            scanTimer.cancel();
-            scanTimer = null;
+        if (scanTask != null) {
+            scanTask.cancel();
+            scanTask = null;
         }
     }
 
     public String reportScanResult() {
         try {
-            List<String> macs = null;
-            macs = scan();
-            String macString = "";
+            List<String> macs = scan();
+            presenceEngine.update(this, macs);
+            StringBuilder macString = new StringBuilder();
             String separator = "";
             for (String mac : macs) {
-                macString += separator + mac;
+                macString.append(separator).append(mac);
                 separator = ",";
             }
-            server.send(server.createEvent(ARP_SCAN_MESSAGE, macString));
+            server.send(server.createEvent(ARP_SCAN_MESSAGE, macString.toString()));
             macCount = "" + macs.size();
         } catch (ExecutionFailure executionFailure) {
             macCount = executionFailure.getMessage().substring(0, Math.min(MAX_ERROR_DISPLAY_SIZE, executionFailure.getMessage().length()));
@@ -108,6 +126,22 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
     }
 
     public List<String> scan() throws ExecutionFailure {
+        if (scanSource != null) {
+            return scanSource.scan();
+        } else if (source.equals(ARP_TABLE_SOURCE)) {
+            return readArpTable(ARP_TABLE_SOURCE);
+        }
+        return runArpScan();
+    }
+
+    /**
+     * Use a custom source for the scans instead of the configured one
+     */
+    public void setScanSource(ScanSource scanSource) {
+        this.scanSource = scanSource;
+    }
+
+    private List<String> runArpScan() throws ExecutionFailure {
         try {
             Runtime r = Runtime.getRuntime();
             Process proc = r.exec(execName);
@@ -123,6 +157,40 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
         }
     }
 
+    /**
+     * Reads the MAC addresses from the kernel ARP table, which avoids starting a process. The table only
+     * contains the hosts this machine has communicated with recently, so it is less complete than arp-scan.
+     */
+    static List<String> readArpTable(String fileName) throws ExecutionFailure {
+        try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
+            return parseArpTable(reader);
+        } catch (IOException e) {
+            logger.warning("Failed to read ARP table: " + e.getMessage());
+            throw new ExecutionFailure(e.getMessage());
+        }
+    }
+
+    static List<String> parseArpTable(BufferedReader reader) throws IOException {
+        List<String> result = new ArrayList<>();
+        String line = reader.readLine(); // Skip header
+        while ((line = reader.readLine()) != null) {
+            // IP address, HW type, Flags, HW address, Mask, Device
+            String[] columns = line.trim().split("\\s+");
+            if (columns.length >= 4 && isComplete(columns[2]) && !columns[3].equals("00:00:00:00:00:00")) {
+                result.add(columns[3].toLowerCase());
+            }
+        }
+        return result;
+    }
+
+    private static boolean isComplete(String flags) {
+        try {
+            return (Integer.decode(flags) & ATF_COM) != 0;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
     public String getMacCount() {
         return macCount;
     }
@@ -135,6 +203,14 @@ public class ArpScanner extends HomeItemAdapter implements HomeItem {
         return execName;
     }
 
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source.equals(ARP_TABLE_SOURCE) ? ARP_TABLE_SOURCE : ARP_SCAN_SOURCE;
+    }
+
     public String getScanInterval() {
         return "" + (scanInterval / 1000);
     }
@@ -27,8 +27,6 @@ import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.logging.Logger;
 
 @SuppressWarnings("UnusedDeclaration")
@@ -53,7 +51,22 @@ public class MacDevice extends HomeItemAdapter implements HomeItem {
     private String actionWhileAbsent = "";
     private String actionWhilePresent = "";
     private CommandLineExecutor commandLineExecutor;
-    private Boolean isPresent = null;
+    private volatile Boolean isPresent = null;
+    private final PresenceEngine presenceEngine;
+    private final PresenceEngine.Listener presenceListener = new PresenceEngine.Listener() {
+        @Override
+        public void presenceUpdated(boolean isPresent) {
+            updatePresence(isPresent);
+        }
+    };
+
+    public MacDevice() {
+        this(PresenceEngine.getSharedEngine());
+    }
+
+    MacDevice(PresenceEngine presenceEngine) {
+        this.presenceEngine = presenceEngine;
+    }
 
     public String getModel() {
         return MODEL;
@@ -62,42 +75,34 @@ public class MacDevice extends HomeItemAdapter implements HomeItem {
     public void activate(HomeService service) {
         super.activate(service);
         commandLineExecutor = new CommandLineExecutor(service, true);
+        presenceEngine.addListener(macAddress, presenceListener);
     }
 
     @Override
-    public boolean receiveEvent(Event event) {
-        if (isMacMessage(event) && isActivated()) {
-            return processEvent(event);
-        }
-        return false;
+    public void stop() {
+        presenceEngine.removeListener(macAddress, presenceListener);
+        super.stop();
     }
 
-    private boolean processEvent(Event event) {
-        boolean ourMacIsPresent = isOurMacPresent(event);
-        if (ourMacIsPresent) {
-            commandLineExecutor.executeCommandLine(actionWhilePresent);
-            if (isPresent != null && !isPresent) {
-                commandLineExecutor.executeCommandLine(actionOnPresent);
-            }
-        } else {
-            commandLineExecutor.executeCommandLine(actionWhileAbsent);
-            if (isPresent != null && isPresent) {
-                commandLineExecutor.executeCommandLine(actionOnAbsent);
-            }
+    /**
+     * The scan message is only used for the "while" actions, the presence itself is updated by the
+     * {@link PresenceEngine} before the message is sent.
+     */
+    @Override
+    public boolean receiveEvent(Event event) {
+        Boolean isPresent = this.isPresent;
+        if (isMacMessage(event) && isActivated() && isPresent != null) {
+            commandLineExecutor.executeCommandLine(isPresent ? actionWhilePresent : actionWhileAbsent);
         }
-        isPresent = ourMacIsPresent;
         return false;
     }
 
-    private boolean isOurMacPresent(Event event) {
-        boolean ourMacIsPresent = false;
-        for (String mac : event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE).split(",")) {
-            if (!mac.isEmpty() && mac.equals(this.macAddress)) {
-                ourMacIsPresent = true;
-                break;
-            }
+    private synchronized void updatePresence(boolean isPresent) {
+        Boolean wasPresent = this.isPresent;
+        this.isPresent = isPresent;
+        if (wasPresent != null && wasPresent != isPresent && isActivated()) {
+            commandLineExecutor.executeCommandLine(isPresent ? actionOnPresent : actionOnAbsent);
         }
-        return ourMacIsPresent;
     }
 
     private boolean isMacMessage(Event event) {
@@ -109,6 +114,13 @@ public class MacDevice extends HomeItemAdapter implements HomeItem {
     }
 
     public void setMacAddress(String macAddress) {
+        if (isActivated()) {
+            presenceEngine.removeListener(this.macAddress, presenceListener);
+            presenceEngine.addListener(macAddress, presenceListener);
+        }
+        if (!macAddress.equals(this.macAddress)) {
+            isPresent = null;
+        }
         this.macAddress = macAddress;
     }
 
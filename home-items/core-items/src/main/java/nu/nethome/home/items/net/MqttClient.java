@@ -24,6 +24,7 @@ import nu.nethome.home.item.HomeItemProxy;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.AsyncIoExecutor;
 import nu.nethome.util.plugin.Plugin;
 import org.eclipse.paho.client.mqttv3.*;
 
@@ -51,6 +52,8 @@ public class MqttClient extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"UserName\" Type=\"String\" Get=\"getUserName\" Set=\"setUserName\" />"
             + "  <Attribute Name=\"Password\" Type=\"String\" Get=\"getPassword\" Set=\"setPassword\" />"
             + "  <Attribute Name=\"BaseTopic\" Type=\"String\" Get=\"getBaseTopic\" Set=\"setBaseTopic\" />"
+            + "  <Attribute Name=\"InFlight\" Type=\"String\" Get=\"getIoInFlight\" />"
+            + "  <Attribute Name=\"Latency\" Type=\"String\" Get=\"getIoLatency\" Unit=\"ms\" />"
             + "</HomeItem> ");
     public static final String MQTT_MESSAGE_TYPE = "Mqtt_Message";
     public static final String MQTT_MESSAGE = "Mqtt.Message";
@@ -73,8 +76,8 @@ public class MqttClient extends HomeItemAdapter implements HomeItem {
 	 * Internal attributes
      */
     private static Logger logger = Logger.getLogger(MqttClient.class.getName());
-    protected org.eclipse.paho.client.mqttv3.MqttClient client;
-    private boolean connected = false;
+    protected volatile org.eclipse.paho.client.mqttv3.MqttClient client;
+    private volatile boolean connected = false;
 
     public MqttClient() {
         clientName = "OpenNetHomeServer-" + new Random().nextInt(10000);
@@ -217,8 +220,14 @@ public class MqttClient extends HomeItemAdapter implements HomeItem {
 
     public boolean receiveEvent(Event event) {
         if (event.isType("MinuteEvent") && !connected) {
-            disconnect();
-            connect(false);
+            executeIo("Mqtt.Connect", new AsyncIoExecutor.IoTask<Void>() {
+                @Override
+                public Void call() {
+                    disconnect();
+                    connect(false);
+                    return null;
+                }
+            }, null);
             return true;
         } else if (isMqttMessageForThisClient(event) && connected) {
             final MqttMessage mqttMessage = new MqttMessage(event.getAttribute(MQTT_MESSAGE).getBytes());
@@ -228,16 +237,36 @@ public class MqttClient extends HomeItemAdapter implements HomeItem {
             if (event.hasAttribute(MQTT_RETAIN)) {
                 mqttMessage.setRetained(event.getAttribute(MQTT_RETAIN).equalsIgnoreCase("yes"));
             }
-            try {
-                client.publish(event.getAttribute(MQTT_TOPIC), mqttMessage);
-            } catch (MqttException e) {
-                connected = false;
-                logger.log(Level.WARNING, "Failed to send MQTT-message", e);
-            };
+            publish(event.getAttribute(MQTT_TOPIC), mqttMessage);
         }
         return false;
     }
 
+    /**
+     * Publish the message on the I/O thread, so a slow or lost connection to the MQTT server does not
+     * block the event distribution
+     */
+    private void publish(final String topic, final MqttMessage mqttMessage) {
+        final org.eclipse.paho.client.mqttv3.MqttClient currentClient = client;
+        executeIo("Mqtt.Publish", new AsyncIoExecutor.IoTask<Void>() {
+            @Override
+            public Void call() throws MqttException {
+                currentClient.publish(topic, mqttMessage);
+                return null;
+            }
+        }, new AsyncIoExecutor.Completion<Void>() {
+            @Override
+            public void completed(Void result) {
+            }
+
+            @Override
+            public void failed(Exception e) {
+                connected = false;
+                logger.log(Level.WARNING, "Failed to send MQTT-message", e);
+            }
+        });
+    }
+
     private boolean isMqttMessageForThisClient(Event event) {
         boolean forUs = !event.hasAttribute("Mqtt.Client") || event.getAttribute("Mqtt.Client").equals(this.name) || (event.getAttributeInt("Mqtt.Client") == this.id);
         return event.isType(MQTT_MESSAGE_TYPE) && event.getAttribute("Direction").equals("Out") && forUs;
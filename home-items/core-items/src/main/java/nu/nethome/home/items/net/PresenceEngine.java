@@ -0,0 +1,171 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.net;
+
+import java.util.*;
+
+/**
+ * Keeps track of which MAC addresses are present on the network. Each scan result is compared with the
+ * previous scan from the same source, and only the listeners of the MAC addresses that changed state are
+ * notified. A MAC address is present as long as any source reports it.
+ * Listeners are notified on the thread reporting the scan, outside of the engine lock.
+ */
+public class PresenceEngine {
+
+    public interface Listener {
+        /**
+         * Called when the presence of the MAC address changes, and at the first scan after the listener
+         * was added
+         */
+        void presenceUpdated(boolean isPresent);
+    }
+
+    private static final PresenceEngine sharedEngine = new PresenceEngine();
+
+    private final Map<Object, Set<String>> scansBySource = new HashMap<>();
+    private final Map<String, Integer> sourceCount = new HashMap<>();
+    private final Map<String, List<Listener>> listenersByMac = new HashMap<>();
+    private final Map<Listener, String> newListeners = new IdentityHashMap<>();
+
+    /**
+     * @return the engine shared by all scanners and devices in the server
+     */
+    public static PresenceEngine getSharedEngine() {
+        return sharedEngine;
+    }
+
+    public synchronized void addListener(String mac, Listener listener) {
+        String key = normalize(mac);
+        List<Listener> listeners = listenersByMac.get(key);
+        if (listeners == null) {
+            listeners = new ArrayList<>(1);
+            listenersByMac.put(key, listeners);
+        }
+        listeners.add(listener);
+        newListeners.put(listener, key);
+    }
+
+    public synchronized void removeListener(String mac, Listener listener) {
+        String key = normalize(mac);
+        List<Listener> listeners = listenersByMac.get(key);
+        if (listeners != null) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                listenersByMac.remove(key);
+            }
+        }
+        newListeners.remove(listener);
+    }
+
+    public synchronized boolean isPresent(String mac) {
+        return sourceCount.containsKey(normalize(mac));
+    }
+
+    public synchronized int getPresentCount() {
+        return sourceCount.size();
+    }
+
+    /**
+     * Report the result of a scan
+     *
+     * @param source the scanner reporting, scans are compared with the previous scan from the same source
+     * @param macs   MAC addresses found in the scan
+     */
+    public void update(Object source, Collection<String> macs) {
+        Map<Listener, Boolean> notifications = new LinkedHashMap<>();
+        synchronized (this) {
+            Set<String> current = new HashSet<>(macs.size() * 2);
+            for (String mac : macs) {
+                if (!mac.isEmpty()) {
+                    current.add(normalize(mac));
+                }
+            }
+            Set<String> previous = scansBySource.put(source, current);
+            if (previous == null) {
+                previous = Collections.emptySet();
+            }
+            for (String mac : current) {
+                if (!previous.contains(mac) && increment(mac)) {
+                    addNotifications(notifications, mac, true);
+                }
+            }
+            for (String mac : previous) {
+                if (!current.contains(mac) && decrement(mac)) {
+                    addNotifications(notifications, mac, false);
+                }
+            }
+            for (Map.Entry<Listener, String> entry : newListeners.entrySet()) {
+                notifications.put(entry.getKey(), sourceCount.containsKey(entry.getValue()));
+            }
+            newListeners.clear();
+        }
+        for (Map.Entry<Listener, Boolean> notification : notifications.entrySet()) {
+            notification.getKey().presenceUpdated(notification.getValue());
+        }
+    }
+
+    /**
+     * Forget the scans of a source that has stopped. Listeners are not notified, the next scan will
+     * report any differences.
+     */
+    public synchronized void removeSource(Object source) {
+        Set<String> previous = scansBySource.remove(source);
+        if (previous != null) {
+            for (String mac : previous) {
+                decrement(mac);
+            }
+        }
+    }
+
+    /**
+     * @return true if the MAC address became present
+     */
+    private boolean increment(String mac) {
+        Integer count = sourceCount.get(mac);
+        sourceCount.put(mac, count == null ? 1 : count + 1);
+        return count == null;
+    }
+
+    /**
+     * @return true if the MAC address became absent
+     */
+    private boolean decrement(String mac) {
+        Integer count = sourceCount.get(mac);
+        if (count == null || count <= 1) {
+            sourceCount.remove(mac);
+            return count != null;
+        }
+        sourceCount.put(mac, count - 1);
+        return false;
+    }
+
+    private void addNotifications(Map<Listener, Boolean> notifications, String mac, boolean isPresent) {
+        List<Listener> listeners = listenersByMac.get(mac);
+        if (listeners != null) {
+            for (Listener listener : listeners) {
+                notifications.put(listener, isPresent);
+            }
+        }
+    }
+
+    private static String normalize(String mac) {
+        return mac.trim().toLowerCase();
+    }
+}
@@ -25,53 +25,43 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.TCPLineServer;
 import nu.nethome.util.plugin.Plugin;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.net.ServerSocket;
-import java.net.Socket;
-import java.text.SimpleDateFormat;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Logger;
 
 /**
  * HomeItem class which listens for TCP/IP-connections on the specified port and sends
  * the content of the message as an event of type <b>TCPMessage</b> and the message in the
  * <b>Value</b>-attribute.
+ * All connections are served by a single selector thread, see {@link TCPLineServer}. Subscribed events are
+ * queued in a bounded buffer per session, so a slow client can never block event delivery to the others.
  * @author Stefan
  */
 @Plugin
 @HomeItemType("Ports")
-public class TCPCommandPort extends HomeItemAdapter implements HomeItem, Runnable {
+public class TCPCommandPort extends HomeItemAdapter implements HomeItem {
 
 	/**
 	 * Represents a session with a connected TCP-Client. 
 	 */
-	class Session extends CommandLineExecutor implements Runnable {
+	class Session extends CommandLineExecutor implements TCPLineServer.LineHandler {
 		
-		protected Socket socket;
-		protected boolean sessionIsRunning = true;
-		protected String remoteAddress;
+		protected TCPLineServer.Session connection;
 		
 		/**
-		 * Creates a new session which immediately will start listening
-		 * for commands on the given socket. It starts its own listening thread
-		 * which ends when the connection is ended, or the stop-method is called.
+		 * Creates a new session for commands received on the given connection.
          * @param server Broker to use for command execution
-         * @param socket A connected socket where the commands are read
+         * @param connection A connected session where the commands are read
          */
-		public Session(HomeService server, Socket socket) {
+		public Session(HomeService server, TCPLineServer.Session connection) {
 			super(server, false);
             this.server = server;
-			this.socket = socket;
-			remoteAddress = this.socket.getInetAddress().getHostAddress();
-			Thread me = new Thread(this, "TCPCommandThread");
-			me.start();
+			this.connection = connection;
 		}
 		
 		/**
@@ -79,101 +69,63 @@ public class TCPCommandPort extends HomeItemAdapter implements HomeItem, Runnabl
 		 * itself from the sessions list when it is done.
 		 */
 		public void stop() {
-			sessionIsRunning = false;
-			try {
-				socket.close();
-			} catch (IOException e) {
-				// Not much to do about it...
-			}
+			connection.close();
 		}
 
-		public void run() {
-			try {
-				BufferedReader in = new BufferedReader(new InputStreamReader(socket.
-						getInputStream()));
-				String inString;
-				while(sessionIsRunning && (inString = in.readLine()) != null) {
-					logger.finer("Received: " + inString + " from " + socket.getRemoteSocketAddress().toString());
-					String result = executeCommandLine(inString);
-					if (result == null){
-						break;
-					}
-					result += "\n\r";
-					socket.getOutputStream().write(result.getBytes());
-					messageCount++;
-				}
-				socket.close();
-			}
-			catch (Exception e) {
-				if (sessionIsRunning){
-					logger.warning("Failed reading from socket in TCPCommandPort " + e);
-					try {
-						socket.close();
-					} catch (IOException e1) {
-						// OK, close failed - not much to do about it...
-					}
-				}
-			}
-			sessionIsRunning = false;
-			// We are done closing down actions, remove us from list of active
-			// sessions
+		@Override
+		public String executeLine(String line) {
+			logger.finer("Received: " + line + " from " + connection.getRemoteAddress());
+			messageCount++;
+			return executeCommandLine(line);
+		}
+
+		@Override
+		public void sessionClosed() {
+			// We are done closing down actions, remove us from list of active sessions
 			sessions.remove(this);
-			logger.info("Disconnected from " + remoteAddress);
 		}
-		
-		public int receiveEvent(Event event) {
-			try {
-				if ((sessionIsRunning == true) && subscriptionActivated) {
-					String ev = event.toString();
-					ev += "\n\r";
-					socket.getOutputStream().write(ev.getBytes());
-				}
-			}
-			catch (IOException io) {
-				// Exception in write, close down
-				logger.warning("Failed writing to socket in TCPCommandPort " + io);
-				sessionIsRunning = false;
-				try {
-					socket.close();
-				} catch (IOException e1) {
-					// OK, close failed - not much to do about it...
-				}
-			}
-			return 0;
+
+		public boolean isSubscribing() {
+			return subscriptionActivated && connection.isOpen();
 		}
 
+		public void receiveEvent(String event) {
+			connection.sendLine(event);
+		}
 	}
 
-	private static final int MAX_QUEUE_SIZE = 20;
+	private static final int WORKER_THREAD_COUNT = 2;
+	private static final int BYTES_PER_KB = 1024;
 	
 	private final String m_Model = ("<?xml version = \"1.0\"?> \n"
 			+ "<HomeItem Class=\"TCPCommandPort\" Category=\"Ports\" >"
 			+ "  <Attribute Name=\"ListenPort\" Type=\"String\" Get=\"getListenPort\" Init=\"setListenPort\" Default=\"true\" />"
 			+ "  <Attribute Name=\"MessageCount\" Type=\"String\" Get=\"getMessageCount\" />"
 			+ "  <Attribute Name=\"SessionCount\" Type=\"String\" Get=\"getSessionCount\" />"
+			+ "  <Attribute Name=\"OutputBufferSize\" Type=\"String\" Get=\"getOutputBufferSize\" Set=\"setOutputBufferSize\" Unit=\"kB\" />"
+			+ "  <Attribute Name=\"SlowClientPolicy\" Type=\"StringList\" Get=\"getSlowClientPolicy\" Set=\"setSlowClientPolicy\" >"
+			+ "  <item>Drop</item><item>Disconnect</item></Attribute>"
+			+ "  <Attribute Name=\"DroppedEventCount\" Type=\"String\" Get=\"getDroppedEventCount\" />"
+			+ "  <Attribute Name=\"SlowClientDisconnects\" Type=\"String\" Get=\"getSlowClientDisconnects\" />"
 			+ "</HomeItem> "); 
 
 	/*
 	 * Externally visible attributes
 	 */ 
 	protected int listenPort = 8005;
-	protected int messageCount = 0;
+	protected volatile int messageCount = 0;
+	protected int outputBufferSize = TCPLineServer.DEFAULT_MAX_OUTBOUND_BYTES / BYTES_PER_KB;
+	protected TCPLineServer.SlowConsumerPolicy slowClientPolicy = TCPLineServer.SlowConsumerPolicy.DROP;
 
 	/*
 	 * Internal attributes
 	 */
-	private static final String QUIT_EVENT = "CommanderQuitEvent";
 	private static Logger logger = Logger.getLogger(TCPCommandPort.class.getName());
-	protected Thread listenThread;
 	protected volatile boolean isRunning = false;
-	protected ServerSocket serverSocket = null;
-	protected SimpleDateFormat formatter = new SimpleDateFormat ("yyyy.MM.dd HH:mm:ss;");
+	protected TCPLineServer lineServer;
 	protected List<Session> sessions = Collections.synchronizedList(new LinkedList<Session>());
-	protected LinkedBlockingQueue<Event> eventQueue;
-	private Thread eventThread;
 	
 	public TCPCommandPort() {
-		eventQueue = new LinkedBlockingQueue<Event>(MAX_QUEUE_SIZE);
 	}
 	
 	/* (non-Javadoc)
@@ -195,70 +147,45 @@ public class TCPCommandPort extends HomeItemAdapter implements HomeItem, Runnabl
         if (!isActivated()) {
             return false;
         }
-		// Put the Event in the distribution queue
-		if (!eventQueue.offer(event)) {
-			logger.warning("TCPCommandPort could not send event, TCP stream blocked");
-		}
-		return false;
-	}
-	
-	/**
-	 * Event distribution task. Reads Events from the queue and distributes it to all
-	 * open sessions
-	 */
-	protected void eventDistributorTask() {
-		while (true) {
-			Event event;
-			try {
-				// Take the next event from the queue, will wait if no events yet
-				event = eventQueue.take();
-				// Check if it was the quit event, quit in that case exit and terminate the thread
-				if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(QUIT_EVENT)) return;
-				// Loop over all Items and offer the event
-				for (Session s : sessions) {
-					s.receiveEvent(event);
+		// Format the event once and queue it on every subscribing session, this never blocks
+		String formattedEvent = null;
+		synchronized (sessions) {
+			for (Session s : sessions) {
+				if (s.isSubscribing()) {
+					if (formattedEvent == null) {
+						formattedEvent = event.toString();
+					}
+					s.receiveEvent(formattedEvent);
 				}
-			} catch (InterruptedException e) {
-				// Do Dinada
 			}
 		}
+		return false;
 	}
 
 	public void activate(HomeService service) {
         super.activate(service);
-		listenThread = new Thread(this, "TCPListenThread");
-		listenThread.start();
-		eventThread = new Thread("CommandPortEventDistributor") {
+		lineServer = new TCPLineServer(listenPort, "TCPCommandPort", WORKER_THREAD_COUNT, new TCPLineServer.SessionFactory() {
 			@Override
-			public void run(){
-				eventDistributorTask();
+			public TCPLineServer.LineHandler createHandler(TCPLineServer.Session connection) {
+				Session newSession = new Session(server, connection);
+				sessions.add(newSession);
+				return newSession;
 			}
-		};
-		eventThread.start();
+		});
+		lineServer.setMaxOutboundBytes(outputBufferSize * BYTES_PER_KB);
+		lineServer.setSlowConsumerPolicy(slowClientPolicy);
+		try {
+			lineServer.start();
+			isRunning = true;
+		} catch (IOException e) {
+			logger.warning("Failed creating socket in TCPCommandPort " + e);
+		}
 	}
 
 	public void stop() {
 		isRunning = false;
-
-		// Close listening socket
-		try {
-			if (serverSocket != null) {
-				serverSocket.close();
-			}
-		} 
-		catch (IOException e){
-			logger.warning(e.toString());
-		}
-		
-		// Stop the event distribution thread by sending the quit event
-		Event quitEvent = server.createEvent(QUIT_EVENT, "");
-        eventQueue.clear();
-        eventQueue.offer(quitEvent);
-
-		// Stop all open sessions
-		LinkedList<Session> temp = new LinkedList<Session>(sessions);
-		for (Session s : temp) {
-			s.stop();
+		if (lineServer != null) {
+			lineServer.stop();
 		}
         super.stop();
 	}
@@ -277,32 +204,6 @@ public class TCPCommandPort extends HomeItemAdapter implements HomeItem, Runnabl
 	public void setListenPort(String lp) {
 		listenPort = Integer.parseInt(lp);
 	}
-
-	public void run() {
-		try {
-            isRunning = true;
-            serverSocket = new ServerSocket(listenPort);
-			while (isRunning) {
-				try {
-					// Wait for a new connection
-					Socket inSocket = serverSocket.accept();
-					
-					// Got a new connection, create a new session and register it
-					logger.info("Connection from " + inSocket.getInetAddress().getHostAddress());
-					Session newSession = new Session(server, inSocket);
-					sessions.add(newSession);
-				}
-				catch (Exception e) {
-					if (isRunning){
-						logger.warning("Failed reading from socket in TCPCommandPort " + e);
-					}
-				}
-			}
-		}
-		catch (Exception e) {
-			logger.warning("Failed creating socket in TCPCommandPort " + e);
-		}
-	}
 	
 	/**
 	 * @return Returns the messageCount.
@@ -317,5 +218,35 @@ public class TCPCommandPort extends HomeItemAdapter implements HomeItem, Runnabl
 	public String getSessionCount(){
 		return String.valueOf(sessions.size());
 	}
-}
 
+	public String getOutputBufferSize() {
+		return String.valueOf(outputBufferSize);
+	}
+
+	public void setOutputBufferSize(String size) {
+		outputBufferSize = Integer.parseInt(size);
+		if (lineServer != null) {
+			lineServer.setMaxOutboundBytes(outputBufferSize * BYTES_PER_KB);
+		}
+	}
+
+	public String getSlowClientPolicy() {
+		return slowClientPolicy == TCPLineServer.SlowConsumerPolicy.DISCONNECT ? "Disconnect" : "Drop";
+	}
+
+	public void setSlowClientPolicy(String policy) {
+		slowClientPolicy = policy.equalsIgnoreCase("Disconnect") ?
+				TCPLineServer.SlowConsumerPolicy.DISCONNECT : TCPLineServer.SlowConsumerPolicy.DROP;
+		if (lineServer != null) {
+			lineServer.setSlowConsumerPolicy(slowClientPolicy);
+		}
+	}
+
+	public String getDroppedEventCount() {
+		return lineServer != null ? String.valueOf(lineServer.getDroppedLineCount()) : "0";
+	}
+
+	public String getSlowClientDisconnects() {
+		return lineServer != null ? String.valueOf(lineServer.getSlowConsumerDisconnectCount()) : "0";
+	}
+}
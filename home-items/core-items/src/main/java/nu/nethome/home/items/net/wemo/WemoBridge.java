@@ -6,10 +6,10 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.AsyncIoExecutor;
 import nu.nethome.util.plugin.Plugin;
 
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,7 +32,6 @@ public class WemoBridge extends HomeItemAdapter implements HomeItem {
     public static final String CAPABILITY_IDS = "CapabilityIDs";
     public static final String ON_STATE = "OnState";
     public static final String BRIGHTNESS = "Brightness";
-    public static final String QUIT_EVENT = "QUIT";
     public static final int UPDATE_ATTEMPTS = 3;
 
     public static class WemoCreationInfo implements AutoCreationInfo {
@@ -61,6 +60,8 @@ public class WemoBridge extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"RefreshInterval\" Type=\"String\" Get=\"getRefreshInterval\" Set=\"setRefreshInterval\" />"
             + "  <Attribute Name=\"Identity\" Type=\"String\" Get=\"getUDN\" Init=\"setUDN\" />"
             + "  <Attribute Name=\"ConnectedLamps\" Type=\"String\" Get=\"getConnectedLamps\" />"
+            + "  <Attribute Name=\"InFlight\" Type=\"String\" Get=\"getIoInFlight\" />"
+            + "  <Attribute Name=\"Latency\" Type=\"String\" Get=\"getIoLatency\" Unit=\"ms\" />"
             + "  <Action Name=\"ReportDevices\" Method=\"reportAllDevices\" />"
             + "</HomeItem> ");
 
@@ -69,13 +70,11 @@ public class WemoBridge extends HomeItemAdapter implements HomeItem {
     private String udn = "";
     private WemoBridgeSoapClient soapClient;
     private int connectedLamps = -1;
-    private LinkedBlockingQueue<Event> eventQueue;
     private int refreshInterval = 63;
     private int refreshCounter = 3;
 
     public WemoBridge() {
         soapClient = new WemoBridgeSoapClient("");
-        eventQueue = new LinkedBlockingQueue<Event>(5);
     }
 
     WemoBridgeSoapClient getSoapClient() {
@@ -88,24 +87,7 @@ public class WemoBridge extends HomeItemAdapter implements HomeItem {
 
     @Override
     public void activate() {
-        startBackgroundProcessThread();
-        backgroundProcess(server.createEvent("ReportItems", ""));
-    }
-
-    @Override
-    public void stop() {
-        eventQueue.clear();
-        backgroundProcess(server.createEvent(QUIT_EVENT, ""));
-        super.stop();
-    }
-
-    private void startBackgroundProcessThread() {
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                backgroundProcessor();
-            }
-        }, "WemoBridge").start();
+        requestDeviceReport();
     }
 
     public boolean receiveEvent(Event event) {
@@ -114,36 +96,43 @@ public class WemoBridge extends HomeItemAdapter implements HomeItem {
                 event.getAttribute("UDN").equals(udn)) {
             setDeviceURL(event.getAttribute("Location"));
             return true;
-        } else if (event.isType("ReportItems") || event.isType(WEMO_LIGHT_MESSAGE) || event.isType(HomeService.MINUTE_EVENT_TYPE)) {
-            backgroundProcess(event);
+        } else if (event.isType("ReportItems")) {
+            requestDeviceReport();
+        } else if (event.isType(WEMO_LIGHT_MESSAGE) && event.getAttribute("Direction").equals("Out")) {
+            requestDeviceUpdate(event);
+        } else if (event.isType(HomeService.MINUTE_EVENT_TYPE) && --refreshCounter <= 0) {
+            refreshCounter = refreshInterval;
+            requestDeviceStateReport();
         }
         return handleInit(event);
     }
 
-    private boolean backgroundProcess(Event event) {
-        return eventQueue.offer(event);
+    private void requestDeviceReport() {
+        executeIo("Wemo.ReportDevices", new AsyncIoExecutor.IoTask<String>() {
+            @Override
+            public String call() {
+                return reportAllDevices();
+            }
+        }, null);
+    }
+
+    private void requestDeviceUpdate(final Event event) {
+        executeIo("Wemo.SetDeviceStatus", new AsyncIoExecutor.IoTask<Boolean>() {
+            @Override
+            public Boolean call() {
+                return updateDeviceState(event);
+            }
+        }, null);
     }
 
-    public void backgroundProcessor() {
-        while (true) {
-            Event event;
-            try {
-                event = eventQueue.take();
-                if (event.isType(QUIT_EVENT)) {
-                    return;
-                } else if (event.isType("ReportItems")) {
-                    reportAllDevices();
-                } else if (event.isType(WEMO_LIGHT_MESSAGE) &&
-                        event.getAttribute("Direction").equals("Out")) {
-                    updateDeviceState(event);
-                } else if (event.isType(HomeService.MINUTE_EVENT_TYPE) && --refreshCounter <= 0) {
-                    refreshCounter = refreshInterval;
-                    reportAllDeviceStates();
-                }
-            } catch (InterruptedException e) {
-                return;
+    private void requestDeviceStateReport() {
+        executeIo("Wemo.ReportDeviceStates", new AsyncIoExecutor.IoTask<Void>() {
+            @Override
+            public Void call() {
+                reportAllDeviceStates();
+                return null;
             }
-        }
+        }, null);
     }
 
     private void reportAllDeviceStates() {
@@ -6,8 +6,10 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.UPnPScanner;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.util.AsyncIoExecutor;
 import nu.nethome.util.plugin.Plugin;
 
+import java.io.IOException;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.logging.Level;
@@ -54,6 +56,8 @@ public class WemoSwitch extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"State\" Type=\"String\" Get=\"getState\" Default=\"true\" />"
             + "  <Attribute Name=\"DeviceURL\" Type=\"String\" Get=\"getDeviceURL\" 	Set=\"setDeviceURL\" />"
             + "  <Attribute Name=\"SerialNumber\" Type=\"String\" Get=\"getSerialNumber\" 	Init=\"setSerialNumber\" />"
+            + "  <Attribute Name=\"InFlight\" Type=\"String\" Get=\"getIoInFlight\" />"
+            + "  <Attribute Name=\"Latency\" Type=\"String\" Get=\"getIoLatency\" Unit=\"ms\" />"
             + "  <Action Name=\"on\" 	Method=\"on\" />"
             + "  <Action Name=\"off\" 	Method=\"off\" />"
             + "  <Action Name=\"toggle\" 	Method=\"toggle\" Default=\"true\" />"
@@ -130,22 +134,52 @@ public class WemoSwitch extends HomeItemAdapter implements HomeItem {
         setOnStateWithRetry(false);
     }
 
-    protected synchronized void setOnStateWithRetry(boolean isOn) {
+    /**
+     * Set the on state on the I/O thread. If it fails a UPnP scan is requested, in case the switch has
+     * a new address, and the state is set again later.
+     */
+    protected void setOnStateWithRetry(final boolean isOn) {
         lastWantedOnState = isOn;
+        cancelRetry();
+        executeIo("Wemo.SetOnState", new AsyncIoExecutor.IoTask<Boolean>() {
+            @Override
+            public Boolean call() {
+                return setInternalOnState(isOn);
+            }
+        }, new RetryOnFailure());
+    }
+
+    private class RetryOnFailure implements AsyncIoExecutor.Completion<Boolean> {
+        @Override
+        public void completed(Boolean isSet) {
+            if (!isSet) {
+                scheduleRetry();
+            }
+        }
+
+        @Override
+        public void failed(Exception e) {
+            logger.warning("Failed to contact Wemo device: " + e.getMessage());
+        }
+    }
+
+    private synchronized void cancelRetry() {
         if (retryTimer != null) {
             retryTimer.cancel();
             retryTimer = null;
         }
-        if (!setInternalOnState(isOn)) {
-            server.send(server.createEvent(UPnPScanner.UPN_P_SCAN_MESSAGE, ""));
-            retryTimer = new Timer("WemoSwithRetryTimer", true);
-            retryTimer.schedule(new TimerTask() {
-                @Override
-                public void run() {
-                    setInternalOnState(lastWantedOnState);
-                }
-            }, RETRY_DELAY);
-        }
+    }
+
+    private synchronized void scheduleRetry() {
+        cancelRetry();
+        server.send(server.createEvent(UPnPScanner.UPN_P_SCAN_MESSAGE, ""));
+        retryTimer = new Timer("WemoSwithRetryTimer", true);
+        retryTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                setInternalOnState(lastWantedOnState);
+            }
+        }, RETRY_DELAY);
     }
 
     boolean setInternalOnState(boolean isOn) {
@@ -163,11 +197,18 @@ public class WemoSwitch extends HomeItemAdapter implements HomeItem {
 
 
     public void toggle() {
-        try {
-            setOnStateWithRetry(!insightSwitch.getOnState());
-        } catch (WemoException e) {
-            logger.warning("Failed to contact Wemo device: " + e.getMessage());
-        }
+        cancelRetry();
+        executeIo("Wemo.Toggle", new AsyncIoExecutor.IoTask<Boolean>() {
+            @Override
+            public Boolean call() throws IOException {
+                try {
+                    lastWantedOnState = !getInsightSwitch().getOnState();
+                } catch (WemoException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+                return setInternalOnState(lastWantedOnState);
+            }
+        }, new RetryOnFailure());
     }
 
     public String getSerialNumber() {
@@ -32,6 +32,7 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemProxy;
 import nu.nethome.home.item.HomeItemType;
+import nu.nethome.home.system.TaskScheduler;
 import nu.nethome.util.plugin.Plugin;
 import org.apache.xmlrpc.XmlRpcException;
 import org.apache.xmlrpc.client.XmlRpcClient;
@@ -69,7 +70,7 @@ public class SatelliteLogger extends HomeItemAdapter implements HomeItem {
 
 	private static Logger logger = Logger.getLogger(SatelliteLogger.class
 			.getName());
-	protected Timer m_TickTimer = null;
+	protected TaskScheduler.ScheduledTask m_TickTimer = null;
 	protected String m_TimeFormat = "yyyy.MM.dd HH:mm:ss Z";
 
 	// Public attributes
@@ -265,16 +266,13 @@ public class SatelliteLogger extends HomeItemAdapter implements HomeItem {
 		}
 
 		if (m_TickIntervalMin != 0.0f) {
-			Calendar tickDate = Calendar.getInstance();
-			tickDate.add(Calendar.MILLISECOND,
-					(int) (1000 * 60 * m_TickIntervalMin));
-			m_TickTimer = new Timer();
+			long tickPeriod = (long) (1000 * 60 * m_TickIntervalMin);
 			// Schedule the job at m_Time minutes interval
-			m_TickTimer.schedule(new TimerTask() {
+			m_TickTimer = getScheduler().scheduleAtFixedRate(new Runnable() {
 				public void run() {
 					tickTimerExpired();
 				}
-			}, tickDate.getTime(), (int) (1000 * 60 * m_TickIntervalMin));
+			}, tickPeriod, tickPeriod);
 		}
 		// Perform the start command
 		postToService(false);
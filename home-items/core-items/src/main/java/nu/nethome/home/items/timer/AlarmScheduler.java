@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.timer;
+
+import com.jtheory.jdring.AlarmEntry;
+import com.jtheory.jdring.AlarmListener;
+import com.jtheory.jdring.PastDateException;
+import nu.nethome.home.system.TaskScheduler;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs jdring alarms on the server wide {@link TaskScheduler} instead of on a dedicated AlarmManager thread.
+ * The AlarmEntry is only used to calculate the next alarm time. Alarms may be added before the item is
+ * activated, they are scheduled when {@link #start(TaskScheduler)} is called.
+ */
+public class AlarmScheduler {
+
+    private static Logger logger = Logger.getLogger(AlarmScheduler.class.getName());
+
+    // AlarmEntry.equals depends on the alarm time, which changes when the alarm is rescheduled
+    private final Map<AlarmEntry, TaskScheduler.ScheduledTask> alarms = new IdentityHashMap<>();
+    private TaskScheduler scheduler;
+
+    public synchronized AlarmEntry addAlarm(String name, int minute, int hour, int dayOfMonth, int month,
+                                            int dayOfWeek, int year, AlarmListener listener) throws PastDateException {
+        return addAlarm(new AlarmEntry(name, minute, hour, dayOfMonth, month, dayOfWeek, year, listener));
+    }
+
+    public synchronized AlarmEntry addAlarm(String name, int[] minutes, int[] hours, int[] daysOfMonth, int[] months,
+                                            int[] daysOfWeek, int year, AlarmListener listener) throws PastDateException {
+        return addAlarm(new AlarmEntry(name, minutes, hours, daysOfMonth, months, daysOfWeek, year, listener));
+    }
+
+    public synchronized AlarmEntry addAlarm(AlarmEntry entry) {
+        alarms.put(entry, null);
+        if (scheduler != null) {
+            scheduleAlarm(entry);
+        }
+        return entry;
+    }
+
+    public synchronized boolean removeAlarm(AlarmEntry entry) {
+        if (entry == null || !alarms.containsKey(entry)) {
+            return false;
+        }
+        TaskScheduler.ScheduledTask task = alarms.remove(entry);
+        if (task != null) {
+            task.cancel();
+        }
+        return true;
+    }
+
+    /**
+     * Start scheduling all added alarms
+     */
+    public synchronized void start(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+        for (AlarmEntry entry : alarms.keySet()) {
+            scheduleAlarm(entry);
+        }
+    }
+
+    public synchronized void removeAllAlarmsAndStop() {
+        for (TaskScheduler.ScheduledTask task : alarms.values()) {
+            if (task != null) {
+                task.cancel();
+            }
+        }
+        alarms.clear();
+        scheduler = null;
+    }
+
+    public synchronized int getAlarmCount() {
+        return alarms.size();
+    }
+
+    private void scheduleAlarm(final AlarmEntry entry) {
+        alarms.put(entry, scheduler.scheduleAt(new Runnable() {
+            @Override
+            public void run() {
+                ringAlarm(entry);
+            }
+        }, entry.alarmTime));
+    }
+
+    private void ringAlarm(AlarmEntry entry) {
+        synchronized (this) {
+            if (!alarms.containsKey(entry)) {
+                return;
+            }
+        }
+        try {
+            entry.ringAlarm();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Failed to execute alarm " + entry.getName(), e);
+        }
+        synchronized (this) {
+            if (!alarms.containsKey(entry) || scheduler == null) {
+                return;
+            }
+            if (entry.isRepeating) {
+                entry.updateAlarmTime();
+                scheduleAlarm(entry);
+            } else {
+                alarms.remove(entry);
+            }
+        }
+    }
+}
@@ -417,7 +417,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 			if (!calcAll()) {
 				throw new ExecutionFailure("Can't start the timer due to errors!");
 			}
-			m_recalcAlarm = alarmManager.addAlarm("Recalc Alarms", 1, 0, -1,
+			m_recalcAlarm = alarmScheduler.addAlarm("Recalc Alarms", 1, 0, -1,
 					-1, -1, -1, new AlarmListener() {
 						public void handleAlarm(AlarmEntry entry) {
 							calcAll();
@@ -436,7 +436,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 			return;
 		}
 
-		alarmManager.removeAlarm(m_recalcAlarm);
+		alarmScheduler.removeAlarm(m_recalcAlarm);
 		removeAlarm(mondayAlarms);
 		removeAlarm(tuesdayAlarms);
 		removeAlarm(wednesdayAlarms);
@@ -469,7 +469,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 
 	private void removeAlarm(LinkedList<AlarmEntry> alarms) {
 		while (alarms.size() > 0) {
-			alarmManager.removeAlarm(alarms.remove());
+			alarmScheduler.removeAlarm(alarms.remove());
 		}
 	}
 
@@ -477,7 +477,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 			String timePeriodsString, int weekDay) throws ExecutionFailure{
 		// First remove all alarm entries for this day (alarm list)
 		while (alarms.size() > 0) {
-			alarmManager.removeAlarm(alarms.remove());
+			alarmScheduler.removeAlarm(alarms.remove());
 		}
 
 		if (timePeriodsString.length() == 0) {
@@ -510,7 +510,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 				}
 				
 				if (startsAt != null) {
-					AlarmEntry onEntry = alarmManager.addAlarm("On Alarm ",
+					AlarmEntry onEntry = alarmScheduler.addAlarm("On Alarm ",
 							startsAt.get(Calendar.MINUTE),
 							startsAt.get(Calendar.HOUR_OF_DAY), -1, -1,
 							weekDay, -1, new AlarmListener() {
@@ -533,7 +533,7 @@ public class DayLiteTimer extends WeekTimer implements HomeItem{
 				}
 
 				if (endsAt != null) {
-					AlarmEntry offEntry = alarmManager.addAlarm("Off Alarm ",
+					AlarmEntry offEntry = alarmScheduler.addAlarm("Off Alarm ",
 							endsAt.get(Calendar.MINUTE),
 							endsAt.get(Calendar.HOUR_OF_DAY), -1, -1, weekDay,
 							-1, new AlarmListener() {
@@ -28,8 +28,6 @@
  */
 package nu.nethome.home.items.timer;
 
-import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
-import com.luckycatlabs.sunrisesunset.dto.Location;
 import nu.nethome.home.item.ExecutionFailure;
 
 import java.text.DateFormat;
@@ -560,7 +558,8 @@ public class FlexableAlarm {
     public String getSunRiseStringByCalendar(Calendar cal) throws ExecutionFailure {
         if (cal == null)
             cal = Calendar.getInstance();
-        return getCalculator().getOfficialSunriseForDate(cal);
+        parseLocationIfNeeded();
+        return SolarEventCache.getOfficialSunrise(m_latitude, m_longitude, m_timeZone, cal);
     }
 
     /**
@@ -573,7 +572,8 @@ public class FlexableAlarm {
     public String getSunSetStringByCalendar(Calendar cal) throws ExecutionFailure {
         if (cal == null)
             cal = Calendar.getInstance();
-        return getCalculator().getOfficialSunsetForDate(cal);
+        parseLocationIfNeeded();
+        return SolarEventCache.getOfficialSunset(m_latitude, m_longitude, m_timeZone, cal);
     }
 
     /**
@@ -613,7 +613,10 @@ public class FlexableAlarm {
         return stringToCalendar(d).getTime();
     }
 
-    private SunriseSunsetCalculator m_calculator = null;
+    // Parsed from m_LatLong and m_timeZoneIdentifier, m_timeZone is null until parsed
+    private double m_latitude;
+    private double m_longitude;
+    private TimeZone m_timeZone = null;
 
     private int internalDebug = 0;
 
@@ -680,7 +683,9 @@ public class FlexableAlarm {
                 c.get(Calendar.MINUTE));
     }
 
-    private void createCalculator() throws ExecutionFailure {
+    private void parseLocationIfNeeded() throws ExecutionFailure {
+        if (m_timeZone != null)
+            return;
         if (m_LatLong == null || m_LatLong.trim().length() == 0)
             throw new ExecutionFailure("Missing latitude and longitude");
         if (m_timeZoneIdentifier == null || m_timeZoneIdentifier.trim().length() == 0)
@@ -694,17 +699,9 @@ public class FlexableAlarm {
         ll[1] = ll[1].trim();
 
         // Location of sunrise/set, as latitude/longitude.
-        Location location = new Location(ll[0], ll[1]);
-        // Create m_calculator object with the location and time zone
-        // identifier.
-        m_calculator = new SunriseSunsetCalculator(location,
-                m_timeZoneIdentifier);
-    }
-
-    protected SunriseSunsetCalculator getCalculator() throws ExecutionFailure {
-        if (m_calculator == null)
-            createCalculator();
-        return m_calculator;
+        m_latitude = Double.parseDouble(ll[0]);
+        m_longitude = Double.parseDouble(ll[1]);
+        m_timeZone = TimeZone.getTimeZone(m_timeZoneIdentifier);
     }
 
     /**
@@ -833,8 +830,8 @@ public class FlexableAlarm {
      * @param longLat the latLong to set
      */
     public void setLongitudeAndLatitude(String longLat) {
-        // Dispose the calculator, needs to be recalculated depending on the position.
-        m_calculator = null;
+        // Dispose the parsed location, needs to be parsed again depending on the position.
+        m_timeZone = null;
         this.m_LatLong = longLat;
     }
 
@@ -842,7 +839,7 @@ public class FlexableAlarm {
      * @param timeZoneIdentifier the m_timeZoneIdentifier to set
      */
     public void setTimeZoneIdentifier(String timeZoneIdentifier) {
-        m_calculator = null;
+        m_timeZone = null;
         this.m_timeZoneIdentifier = timeZoneIdentifier;
     }
 
@@ -24,11 +24,10 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.TaskScheduler;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 
-import java.util.Calendar;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 /**
@@ -54,8 +53,8 @@ public class IntervalTimer extends HomeItemAdapter implements HomeItem {
 			+ "</HomeItem> "); 
 
 	private static Logger logger = Logger.getLogger(IntervalTimer.class.getName());
-	protected Timer timer = null;
-	protected Timer tickTimer = null;
+	protected TaskScheduler.ScheduledTask timer = null;
+	protected TaskScheduler.ScheduledTask tickTimer = null;
 	protected CommandLineExecutor executor;
 
 
@@ -80,6 +79,7 @@ public class IntervalTimer extends HomeItemAdapter implements HomeItem {
 	public void activate(HomeService server) {
         super.activate(server);
 		executor = new CommandLineExecutor(server, true);
+		executor.setTransmitPriority(TransmitScheduler.Priority.TIMER);
 	}
 
 	/**
@@ -106,24 +106,17 @@ public class IntervalTimer extends HomeItemAdapter implements HomeItem {
 		if (active) {
 			return;
 		}
-		// Get current time
-	    Calendar date = Calendar.getInstance();
-	    date.add(Calendar.MILLISECOND, (int)(1000 * 60 * time));
-	    timer = new Timer();
 	    // Schedule the job at time minutes interval
-	    timer.schedule(
-	    		new TimerTask(){public void run() {timerExpired();}},
-				date.getTime()
+	    timer = getScheduler().schedule(
+	    		new Runnable(){public void run() {timerExpired();}},
+				(long)(1000 * 60 * time)
 	    );
 	    if (tickInterval != 0.0f) {
-		    Calendar tickDate = Calendar.getInstance();
-		    tickDate.add(Calendar.MILLISECOND, (int)(1000 * 60 * tickInterval));
-		    tickTimer = new Timer();
-		    // Schedule the job at time minutes interval
-		    tickTimer.schedule(
-		    		new TimerTask(){public void run() {tickTimerExpired();}},
-		    		tickDate.getTime(),
-					(int)(1000 * 60 * tickInterval)
+		    long tickPeriod = (long)(1000 * 60 * tickInterval);
+		    tickTimer = getScheduler().scheduleAtFixedRate(
+		    		new Runnable(){public void run() {tickTimerExpired();}},
+		    		tickPeriod,
+					tickPeriod
 		    );
 	    }
 	    // Perform the start command
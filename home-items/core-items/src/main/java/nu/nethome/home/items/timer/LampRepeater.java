@@ -3,12 +3,12 @@ package nu.nethome.home.items.timer;
 import nu.nethome.home.item.*;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.TaskScheduler;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
 @Plugin
@@ -24,7 +24,7 @@ public class LampRepeater extends HomeItemAdapter implements HomeItem {
 
     private static Logger logger = Logger.getLogger(IntervalTimer.class.getName());
     Map<Long, LampState> states = new HashMap<Long, LampState>();
-    Timer timer;
+    TaskScheduler.ScheduledTask repeatTask;
 
     // Public attributes
     private String items = "";
@@ -44,8 +44,7 @@ public class LampRepeater extends HomeItemAdapter implements HomeItem {
 
     @Override
     public void activate() {
-        timer = new Timer("LampRepeater", true);
-        timer.schedule(new TimerTask() {
+        repeatTask = getScheduler().scheduleAtFixedRate(new Runnable() {
             @Override
             public void run() {
                 checkLampStates();
@@ -53,6 +52,15 @@ public class LampRepeater extends HomeItemAdapter implements HomeItem {
         }, PERIOD_MS, PERIOD_MS);
     }
 
+    @Override
+    public void stop() {
+        if (repeatTask != null) {
+            repeatTask.cancel();
+            repeatTask = null;
+        }
+        super.stop();
+    }
+
     private void checkLampStates() {
         String[] lampIds = items.split(",");
         for (String lampId : lampIds) {
@@ -65,16 +73,25 @@ public class LampRepeater extends HomeItemAdapter implements HomeItem {
                     lampState.setOn(lampIsOn);
                 }
                 if (lampState.decrementCounter() > 0) {
-                    try {
-                        lamp.callAction(lampIsOn ? "on" : "off");
-                    } catch (ExecutionFailure executionFailure) {
-                        // Ignore
-                    }
+                    repeatLampState(lamp, lampIsOn);
                 }
             }
         }
     }
 
+    private void repeatLampState(final HomeItemProxy lamp, final boolean lampIsOn) {
+        TransmitScheduler.runWithPriority(TransmitScheduler.Priority.REFRESH, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    lamp.callAction(lampIsOn ? "on" : "off");
+                } catch (ExecutionFailure executionFailure) {
+                    // Ignore
+                }
+            }
+        });
+    }
+
     private LampState findLampState(HomeItemProxy lamp) {
         Long lampId = Long.parseLong(lamp.getAttributeValue(HomeItemProxy.ID_ATTRIBUTE));
         LampState result = states.get(lampId);
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.timer;
+
+import com.luckycatlabs.sunrisesunset.Zenith;
+import com.luckycatlabs.sunrisesunset.calculator.SolarEventCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Shared cache of sunrise and sunset times. The first time a location is asked for, the times for every day
+ * of the year are calculated at once, so that later lookups for the same location, zenith and year are
+ * just an array access. The number of cached year tables is limited, the least recently used is dropped.
+ */
+public class SolarEventCache {
+
+    public static final double OFFICIAL_ZENITH = Zenith.OFFICIAL.degrees().doubleValue();
+    private static final int MAX_TABLES = 32;
+
+    private static final Map<TableKey, YearTable> tables = new LinkedHashMap<TableKey, YearTable>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TableKey, YearTable> eldest) {
+            return size() > MAX_TABLES;
+        }
+    };
+
+    private SolarEventCache() {
+    }
+
+    /**
+     * @return the official sunrise at the location on the specified date in HH:MM format, 99:99 if the sun
+     * does not rise on that date
+     */
+    public static String getOfficialSunrise(double latitude, double longitude, TimeZone timeZone, Calendar date) {
+        return SolarEventCalculator.formatLocalTime(getSunriseHours(latitude, longitude, timeZone, OFFICIAL_ZENITH, date));
+    }
+
+    /**
+     * @return the official sunset at the location on the specified date in HH:MM format, 99:99 if the sun
+     * does not set on that date
+     */
+    public static String getOfficialSunset(double latitude, double longitude, TimeZone timeZone, Calendar date) {
+        return SolarEventCalculator.formatLocalTime(getSunsetHours(latitude, longitude, timeZone, OFFICIAL_ZENITH, date));
+    }
+
+    /**
+     * @return local sunrise time in hours, or Double.NaN if the sun does not rise on that date
+     */
+    public static double getSunriseHours(double latitude, double longitude, TimeZone timeZone, double zenith, Calendar date) {
+        Calendar localDate = toLocalDate(timeZone, date);
+        return getTable(latitude, longitude, timeZone, zenith, localDate).sunrise[localDate.get(Calendar.DAY_OF_YEAR)];
+    }
+
+    /**
+     * @return local sunset time in hours, or Double.NaN if the sun does not set on that date
+     */
+    public static double getSunsetHours(double latitude, double longitude, TimeZone timeZone, double zenith, Calendar date) {
+        Calendar localDate = toLocalDate(timeZone, date);
+        return getTable(latitude, longitude, timeZone, zenith, localDate).sunset[localDate.get(Calendar.DAY_OF_YEAR)];
+    }
+
+    static synchronized int getTableCount() {
+        return tables.size();
+    }
+
+    static synchronized void clear() {
+        tables.clear();
+    }
+
+    private static Calendar toLocalDate(TimeZone timeZone, Calendar date) {
+        Calendar localDate = Calendar.getInstance(timeZone);
+        localDate.setTimeInMillis(date.getTimeInMillis());
+        return localDate;
+    }
+
+    private static synchronized YearTable getTable(double latitude, double longitude, TimeZone timeZone,
+                                                   double zenith, Calendar localDate) {
+        TableKey key = new TableKey(latitude, longitude, timeZone.getID(), zenith, localDate.get(Calendar.YEAR));
+        YearTable table = tables.get(key);
+        if (table == null) {
+            table = new YearTable(latitude, longitude, timeZone, zenith, key.year);
+            tables.put(key, table);
+        }
+        return table;
+    }
+
+    private static class YearTable {
+        // Indexed by day of year, which starts at 1
+        final double[] sunrise;
+        final double[] sunset;
+
+        YearTable(double latitude, double longitude, TimeZone timeZone, double zenith, int year) {
+            SolarEventCalculator calculator = new SolarEventCalculator(new Location(latitude, longitude), timeZone);
+            Calendar day = Calendar.getInstance(timeZone);
+            day.clear();
+            day.set(year, Calendar.JANUARY, 1, 12, 0);
+            int days = day.getActualMaximum(Calendar.DAY_OF_YEAR);
+            sunrise = new double[days + 1];
+            sunset = new double[days + 1];
+            for (int i = 1; i <= days; i++) {
+                day.set(Calendar.DAY_OF_YEAR, i);
+                sunrise[i] = calculator.computeSunriseHours(zenith, day);
+                sunset[i] = calculator.computeSunsetHours(zenith, day);
+            }
+        }
+    }
+
+    private static class TableKey {
+        final double latitude;
+        final double longitude;
+        final String timeZone;
+        final double zenith;
+        final int year;
+
+        TableKey(double latitude, double longitude, String timeZone, double zenith, int year) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.timeZone = timeZone;
+            this.zenith = zenith;
+            this.year = year;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof TableKey)) return false;
+            TableKey other = (TableKey) o;
+            return Double.compare(other.latitude, latitude) == 0 && Double.compare(other.longitude, longitude) == 0 &&
+                    Double.compare(other.zenith, zenith) == 0 && year == other.year && timeZone.equals(other.timeZone);
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(latitude) * 31 + Double.doubleToLongBits(longitude);
+            bits = bits * 31 + Double.doubleToLongBits(zenith);
+            return (int) (bits ^ (bits >>> 32)) * 31 * 31 + timeZone.hashCode() * 31 + year;
+        }
+    }
+}
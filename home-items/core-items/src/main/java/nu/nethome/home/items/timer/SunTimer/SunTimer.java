@@ -1,12 +1,13 @@
 package nu.nethome.home.items.timer.SunTimer;
 
-import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
-import com.luckycatlabs.sunrisesunset.dto.Location;
 import nu.nethome.home.impl.CommandLineExecutor;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
+import nu.nethome.home.items.timer.SolarEventCache;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.TaskScheduler;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 
 import java.util.*;
@@ -48,7 +49,6 @@ public class SunTimer extends HomeItemAdapter {
             + "  <Action Name=\"Enable timer\" 	Method=\"enableTimer\" />"
             + "  <Action Name=\"Disable timer\" 	Method=\"disableTimer\" />"
             + "</HomeItem> ");
-    private static final Location DEFAULT_LOCATION = new Location("0.0", "0.0");
     private static final int DAYS_IN_A_WEEK = 7;
     public static final String REPEAT_STRING = "\"";
 
@@ -59,8 +59,9 @@ public class SunTimer extends HomeItemAdapter {
     private String latLong = "59.225527,18.000718";
     private Map<String, String> variables = new HashMap<>();
     private CommandLineExecutor executor;
-    private Timer timer;
-    private SunriseSunsetCalculator sunriseSunsetCalculator = new SunriseSunsetCalculator(DEFAULT_LOCATION, TimeZone.getDefault());
+    private final List<TaskScheduler.ScheduledTask> switchTasks = new ArrayList<>();
+    private double latitude = 0.0;
+    private double longitude = 0.0;
     private int currentDay = 0;
     private boolean isEnabled = true;
     private boolean isOn = false;
@@ -82,25 +83,26 @@ public class SunTimer extends HomeItemAdapter {
     public void activate(HomeService server) {
         super.activate(server);
         executor = new CommandLineExecutor(server, true);
-        createSunCalculator();
+        executor.setTransmitPriority(TransmitScheduler.Priority.TIMER);
+        parseLocation();
         applySwitchTimesForToday();
         currentDay = getDayToday();
     }
 
-    private void createSunCalculator() {
+    private void parseLocation() {
         String[] latAndLong = latLong.split(",");
-        Location location;
         if (latAndLong.length == 2) {
-            location = new Location(latAndLong[0], latAndLong[1]);
+            latitude = Double.parseDouble(latAndLong[0]);
+            longitude = Double.parseDouble(latAndLong[1]);
         } else {
-            location = DEFAULT_LOCATION;
+            latitude = 0.0;
+            longitude = 0.0;
         }
-        sunriseSunsetCalculator = new SunriseSunsetCalculator(location, TimeZone.getDefault());
     }
 
     @Override
     public void stop() {
-        stopCurrentTimer();
+        cancelSwitchTasks();
         super.stop();
     }
 
@@ -118,11 +120,11 @@ public class SunTimer extends HomeItemAdapter {
         return false;
     }
 
-    private void stopCurrentTimer() {
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+    private void cancelSwitchTasks() {
+        for (TaskScheduler.ScheduledTask task : switchTasks) {
+            task.cancel();
         }
+        switchTasks.clear();
     }
 
     void applySwitchTimesForToday() {
@@ -135,8 +137,7 @@ public class SunTimer extends HomeItemAdapter {
             } catch (TimeExpressionParser.TimeExpressionException e) {
                 switchTimesToday = Collections.emptyList();
             }
-            stopCurrentTimer();
-            timer = createTimer();
+            cancelSwitchTasks();
             createTimerTasksForSwitchTimes();
         }
     }
@@ -164,7 +165,7 @@ public class SunTimer extends HomeItemAdapter {
         for (SwitchTime switchTime : switchTimesToday) {
             long currentSwitchTime = switchTime.value() * 1000 + baseTime;
             if (currentSwitchTime > nowTime) {
-                timer.schedule(new SunTimerTask(switchTime.isOn()), new Date(currentSwitchTime));
+                switchTasks.add(getScheduler().scheduleAt(new SunTimerTask(switchTime.isOn()), currentSwitchTime));
             } else {
                 mostRecentSwitchTime = switchTime;
             }
@@ -192,7 +193,7 @@ public class SunTimer extends HomeItemAdapter {
 
     public String disableTimer() {
         isEnabled = false;
-        stopCurrentTimer();
+        cancelSwitchTasks();
         switchTimesToday = Collections.emptyList();
         return "";
     }
@@ -229,11 +230,11 @@ public class SunTimer extends HomeItemAdapter {
     }
 
     public String getSunriseToday() {
-        return sunriseSunsetCalculator.getOfficialSunriseForDate(getTime());
+        return SolarEventCache.getOfficialSunrise(latitude, longitude, TimeZone.getDefault(), getTime());
     }
 
     public String getSunsetToday() {
-        return sunriseSunsetCalculator.getOfficialSunsetForDate(getTime());
+        return SolarEventCache.getOfficialSunset(latitude, longitude, TimeZone.getDefault(), getTime());
     }
 
     public String getMondays() {
@@ -350,10 +351,6 @@ public class SunTimer extends HomeItemAdapter {
         updateVariable(value, "C");
     }
 
-    Timer createTimer() {
-        return new Timer("SunTimer", true);
-    }
-
     Calendar getTime() {
         return Calendar.getInstance();
     }
@@ -365,7 +362,7 @@ public class SunTimer extends HomeItemAdapter {
     public void setLatLong(String latLong) {
         if (!latLong.equals(this.latLong)) {
             this.latLong = latLong;
-            createSunCalculator();
+            parseLocation();
         }
     }
 
@@ -388,7 +385,7 @@ public class SunTimer extends HomeItemAdapter {
         }
     }
 
-    class SunTimerTask extends TimerTask {
+    class SunTimerTask implements Runnable {
 
         private final boolean on;
 
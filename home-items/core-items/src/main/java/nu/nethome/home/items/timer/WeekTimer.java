@@ -21,7 +21,6 @@ package nu.nethome.home.items.timer;
 
 import com.jtheory.jdring.AlarmEntry;
 import com.jtheory.jdring.AlarmListener;
-import com.jtheory.jdring.AlarmManager;
 import com.jtheory.jdring.PastDateException;
 import nu.nethome.home.impl.CommandLineExecutor;
 import nu.nethome.home.item.HomeItem;
@@ -29,6 +28,7 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.item.IllegalValueException;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 
 import java.util.LinkedList;
@@ -55,7 +55,7 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 			+ "</HomeItem> "); 
 
 	private static Logger logger = Logger.getLogger(WeekTimer.class.getName());
-	protected AlarmManager alarmManager;
+	protected AlarmScheduler alarmScheduler;
 	protected LinkedList<AlarmEntry> weekDayAlarms = new LinkedList<AlarmEntry>();
 	protected LinkedList<AlarmEntry> weekEndAlarms = new LinkedList<AlarmEntry>();
 	protected CommandLineExecutor executor;
@@ -73,7 +73,7 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 
 
 	public WeekTimer() {
-        alarmManager = new AlarmManager();
+        alarmScheduler = new AlarmScheduler();
 	}
 
 	/* (non-Javadoc)
@@ -89,13 +89,15 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 	public void activate(HomeService server) {
         super.activate(server);
         executor = new CommandLineExecutor(server, true);
+        executor.setTransmitPriority(TransmitScheduler.Priority.TIMER);
+        alarmScheduler.start(getScheduler());
 	}
 
 	/**
 	 * HomeItem method which stops all object activity for program termination
 	 */
 	public void stop() {
-		alarmManager.removeAllAlarmsAndStop();
+		alarmScheduler.removeAllAlarmsAndStop();
 	}
 
 	protected void performCommand(String commandString) {
@@ -124,7 +126,7 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 	public void calculateAlarmEntries(LinkedList<AlarmEntry> alarms, String timePeriodsString, int weekDays[]) {
 		// First remove all on alarm entries
 		while (alarms.size() > 0) {
-			alarmManager.removeAlarm(alarms.remove());
+			alarmScheduler.removeAlarm(alarms.remove());
 		}
         if (timePeriodsString.isEmpty()) return;
 		// Scan through the string and add all the on time alarms
@@ -142,7 +144,7 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 			onMinutes[0] = Integer.parseInt(times[1]);
 			onHours[0] = Integer.parseInt(times[0]);
             logger.fine(String.format("Adding on alarm entry: %d:%d", onHours[0], onMinutes[0]));
-			AlarmEntry onEntry = alarmManager.addAlarm("On Alarm ", onMinutes, onHours, empty, empty, weekDays, -1, new AlarmListener() {
+			AlarmEntry onEntry = alarmScheduler.addAlarm("On Alarm ", onMinutes, onHours, empty, empty, weekDays, -1, new AlarmListener() {
 				public void handleAlarm(AlarmEntry entry) {
 					 performCommand(m_OnCommand);
 				}
@@ -158,7 +160,7 @@ public class WeekTimer extends HomeItemAdapter implements HomeItem {
 			offMinutes[0] = Integer.parseInt(times[1]);
 			offHours[0] = Integer.parseInt(times[0]);
             logger.fine(String.format("Adding off alarm entry: %d:%d", offHours[0], offMinutes[0]));
-			AlarmEntry offEntry = alarmManager.addAlarm("Off Alarm ", offMinutes, offHours, empty, empty, weekDays, -1, new AlarmListener() {
+			AlarmEntry offEntry = alarmScheduler.addAlarm("Off Alarm ", offMinutes, offHours, empty, empty, weekDays, -1, new AlarmListener() {
 				public void handleAlarm(AlarmEntry entry) {
 					 performCommand(m_OffCommand);
 				}
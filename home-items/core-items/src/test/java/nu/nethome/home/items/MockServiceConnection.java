@@ -19,12 +19,15 @@
 
 package nu.nethome.home.items;
 
+import nu.nethome.home.impl.EventRuleNetwork;
+import nu.nethome.home.impl.TimingWheelScheduler;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemInfo;
 import nu.nethome.home.item.HomeItemProxy;
 import nu.nethome.home.system.*;
 import nu.nethome.util.plugin.PluginProvider;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
 /**
@@ -34,19 +37,23 @@ import java.util.*;
  *
  * @author Stefan
  */
-public class MockServiceConnection implements HomeService {
+public class MockServiceConnection implements HomeService, SharedServices {
 
     protected Map<String, MockHomeItemProxy> m_Instances = new HashMap<String, MockHomeItemProxy>();
     public List<HomeItem> m_Items = new LinkedList<HomeItem>();
+    private TaskScheduler scheduler;
+    private final EventRuleNetwork eventRules = new EventRuleNetwork();
+    private final List<FinalEventListener> finalEventListeners = new ArrayList<>();
     
     @Override
     public boolean executePython(String pythonCode) {
         return true;
     }
     
-    public static class MockEvent implements Event {
+    public static class MockEvent implements PayloadEvent {
 
         private Map<String, String> attributes = new TreeMap<String, String>();
+        private byte[] payload;
 
         public String toString() {
             return "event," + getAttribute(Event.EVENT_TYPE_ATTRIBUTE);
@@ -97,6 +104,21 @@ public class MockServiceConnection implements HomeService {
             return false;  //To change body of implemented methods use File | Settings | File Templates.
         }
 
+        @Override
+        public void setPayload(byte[] payload) {
+            this.payload = payload;
+        }
+
+        @Override
+        public byte[] getPayload() {
+            return payload;
+        }
+
+        @Override
+        public ByteBuffer getPayloadBuffer() {
+            return payload != null ? ByteBuffer.wrap(payload).asReadOnlyBuffer() : null;
+        }
+
         @Override
         public String[] getAttributeNames() {
             return attributes.keySet().toArray(new String[attributes.size()]);
@@ -123,8 +145,12 @@ public class MockServiceConnection implements HomeService {
     }
 
     public void send(Event event) {
+        boolean handled = eventRules.distribute(event);
         for (HomeItem i : m_Items) {
-            i.receiveEvent(event);
+            handled |= i.receiveEvent(event);
+        }
+        for (FinalEventListener listener : new ArrayList<>(finalEventListeners)) {
+            listener.receiveFinalEvent(event, handled);
         }
     }
 
@@ -162,17 +188,36 @@ public class MockServiceConnection implements HomeService {
         return null;  //To change body of implemented methods use File | Settings | File Templates.
     }
 
+    @Override
+    public synchronized TaskScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new TimingWheelScheduler("TestScheduler", 1);
+        }
+        return scheduler;
+    }
+
+    @Override
+    public EventRules getEventRules() {
+        return eventRules;
+    }
+
+    @Override
+    public long getDirectoryVersion() {
+        // Instances are never renamed or removed
+        return 0;
+    }
+
     @Override
     public void stopServer() {
     }
 
     @Override
     public void registerFinalEventListener(FinalEventListener listener) {
-
+        finalEventListeners.add(listener);
     }
 
     @Override
     public void unregisterFinalEventListener(FinalEventListener listener) {
-
+        finalEventListeners.remove(listener);
     }
 }
@@ -0,0 +1,90 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.audio;
+
+import nu.nethome.util.ps.ProtocolSampler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import javax.sound.sampled.AudioFileFormat;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioInputStream;
+import javax.sound.sampled.AudioSystem;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class AudioFileSampleSourceTest {
+
+    private ProtocolSampler sampler;
+    private AudioFileSampleSource source;
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        sampler = mock(ProtocolSampler.class);
+        source = new AudioFileSampleSource(sampler);
+        file = File.createTempFile("samples", ".wav");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    @Test
+    public void playsWavFile() throws Exception {
+        byte[] samples = {0x00, 0x00, (byte) 0xE8, 0x03, 0x18, (byte) 0xFC, (byte) 0xFF, 0x7F};
+        AudioFormat format = new AudioFormat(44100, 16, 1, true, false);
+        AudioSystem.write(new AudioInputStream(new ByteArrayInputStream(samples), format, 4),
+                AudioFileFormat.Type.WAVE, file);
+
+        assertThat(source.playFile(file), is(4L));
+
+        InOrder order = inOrder(sampler);
+        order.verify(sampler).setSampleRate(44100);
+        order.verify(sampler).addSample(0);
+        order.verify(sampler).addSample(1000);
+        order.verify(sampler).addSample(-1000);
+        order.verify(sampler).addSample(32767);
+    }
+
+    @Test
+    public void playsLeftChannelOfRawStereoFile() throws Exception {
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{0x64, 0x00, 0x01, 0x00, (byte) 0x9C, (byte) 0xFF, 0x02, 0x00});
+        }
+
+        assertThat(source.playRawFile(file, 22050, 2), is(2L));
+
+        verify(sampler).setSampleRate(22050);
+        InOrder order = inOrder(sampler);
+        order.verify(sampler).addSample(100);
+        order.verify(sampler).addSample(-100);
+    }
+}
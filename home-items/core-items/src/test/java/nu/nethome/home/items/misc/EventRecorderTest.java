@@ -0,0 +1,84 @@
+package nu.nethome.home.items.misc;
+
+import nu.nethome.home.impl.EventLogReader;
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.impl.LocalHomeItemProxy;
+import nu.nethome.home.items.MockServiceConnection;
+import nu.nethome.home.system.Event;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class EventRecorderTest {
+
+    private MockServiceConnection server;
+    private EventRecorder recorder;
+    private LocalHomeItemProxy recorderProxy;
+    private File logFile;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockServiceConnection();
+        logFile = File.createTempFile("events", ".log");
+        recorder = new EventRecorder();
+        recorderProxy = new LocalHomeItemProxy(recorder);
+        recorderProxy.setAttributeValue("FileName", logFile.getPath());
+        recorder.activate(server);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        recorder.stop();
+        logFile.delete();
+    }
+
+    @Test
+    public void recordsDistributedEventsWhileRecording() throws Exception {
+        server.send(nexaEvent(1));
+        recorderProxy.callAction("StartRecording");
+        server.send(nexaEvent(2));
+        server.send(nexaEvent(3));
+        recorderProxy.callAction("StopRecording");
+        server.send(nexaEvent(4));
+
+        assertThat(recorderProxy.getAttributeValue("RecordedEvents"), is("2"));
+        try (EventLogReader reader = new EventLogReader(new FileInputStream(logFile))) {
+            assertThat(reader.next().getEvent().getAttribute("Nexa.Button"), is("2"));
+            assertThat(reader.next().getEvent().getAttribute("Nexa.Button"), is("3"));
+            assertThat(reader.next(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void reportsRecordingState() throws Exception {
+        assertThat(recorderProxy.getAttributeValue("State"), is("Stopped"));
+        recorderProxy.callAction("StartRecording");
+        assertThat(recorderProxy.getAttributeValue("State"), is("Recording"));
+    }
+
+    @Test
+    public void stopsRecordingWhenStopped() throws Exception {
+        recorderProxy.callAction("StartRecording");
+        server.send(nexaEvent(1));
+
+        recorder.stop();
+        server.send(nexaEvent(2));
+
+        assertThat(recorderProxy.getAttributeValue("State"), is("Stopped"));
+        assertThat(recorderProxy.getAttributeValue("RecordedEvents"), is("1"));
+    }
+
+    private static Event nexaEvent(int button) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Nexa.Button", button);
+        return event;
+    }
+}
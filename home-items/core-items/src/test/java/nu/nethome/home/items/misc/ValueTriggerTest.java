@@ -0,0 +1,160 @@
+package nu.nethome.home.items.misc;
+
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.impl.LocalHomeItemProxy;
+import nu.nethome.home.item.HomeItemProxy;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
+import nu.nethome.home.system.TaskScheduler;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.*;
+
+public class ValueTriggerTest {
+
+    private static final String SOURCE_ID = "17";
+    private HomeService server;
+    private TaskScheduler scheduler;
+    private HomeItemProxy thermometer;
+    private HomeItemProxy lamp;
+    private ValueTrigger trigger;
+    private LocalHomeItemProxy triggerProxy;
+
+    @Before
+    public void setUp() throws Exception {
+        server = mock(HomeService.class, withSettings().extraInterfaces(SharedServices.class));
+        scheduler = mock(TaskScheduler.class);
+        doReturn(scheduler).when((SharedServices) server).getScheduler();
+        doReturn(mock(TaskScheduler.ScheduledTask.class)).when(scheduler).schedule(any(Runnable.class), anyLong());
+        thermometer = mock(HomeItemProxy.class);
+        doReturn(SOURCE_ID).when(thermometer).getAttributeValue(HomeItemProxy.ID_ATTRIBUTE);
+        doReturn("20.0").when(thermometer).getAttributeValue("Temperature");
+        doReturn(thermometer).when(server).openInstance("Thermometer");
+        lamp = mock(HomeItemProxy.class);
+        doReturn(lamp).when(server).openInstance("Lamp");
+
+        trigger = new ValueTrigger();
+        triggerProxy = new LocalHomeItemProxy(trigger);
+        triggerProxy.setAttributeValue("ValueAction", "get,Thermometer,Temperature");
+        triggerProxy.setAttributeValue("Max", "25");
+        triggerProxy.setAttributeValue("Min", "10");
+        triggerProxy.setAttributeValue("ActionOnExceedingMax", "call,Lamp,on");
+        triggerProxy.setAttributeValue("ActionOnDeceedingMin", "call,Lamp,off");
+        triggerProxy.setAttributeValue("ActionWhileOverMax", "call,Lamp,whileOver");
+        trigger.activate(server);
+    }
+
+    @Test
+    public void pollsValueOnMinuteEvent() throws Exception {
+        doReturn("26.0").when(thermometer).getAttributeValue("Temperature");
+
+        trigger.receiveEvent(new InternalEvent(HomeService.MINUTE_EVENT_TYPE));
+
+        verify(lamp).callAction("on");
+        verify(lamp).callAction("whileOver");
+        assertThat(triggerProxy.getAttributeValue("State"), is("overMax"));
+    }
+
+    @Test
+    public void ignoresValueChangesWhenPolling() throws Exception {
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26.0"));
+
+        verify(lamp, never()).callAction("on");
+    }
+
+    @Test
+    public void evaluatesValueChangeImmediately() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26,5"));
+
+        verify(lamp).callAction("on");
+        verify(lamp, never()).callAction("whileOver");
+        assertThat(triggerProxy.getAttributeValue("LatestValue"), is("26.5"));
+    }
+
+    @Test
+    public void ignoresChangesOfOtherItemsAndAttributes() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+
+        trigger.receiveEvent(valueChanged("18", "Temperature", "26.0"));
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Humidity", "26.0"));
+
+        verify(lamp, never()).callAction("on");
+    }
+
+    @Test
+    public void stopsPollingWhenSourceReportsChanges() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+        trigger.receiveEvent(new InternalEvent(HomeService.MINUTE_EVENT_TYPE));
+        verify(thermometer, times(1)).getAttributeValue("Temperature");
+
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26.0"));
+        trigger.receiveEvent(new InternalEvent(HomeService.MINUTE_EVENT_TYPE));
+
+        verify(thermometer, times(1)).getAttributeValue("Temperature");
+        verify(lamp).callAction("whileOver");
+    }
+
+    @Test
+    public void hysteresisDelaysLeavingLimit() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+        triggerProxy.setAttributeValue("Hysteresis", "1");
+
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26.0"));
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "24.5"));
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "25.5"));
+        assertThat(triggerProxy.getAttributeValue("State"), is("overMax"));
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "23.9"));
+        assertThat(triggerProxy.getAttributeValue("State"), is("normal"));
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "25.5"));
+
+        verify(lamp, times(2)).callAction("on");
+    }
+
+    @Test
+    public void debounceRequiresLimitToStayPassed() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+        triggerProxy.setAttributeValue("Debounce", "30");
+
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26.0"));
+        verify(lamp, never()).callAction("on");
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(task.capture(), eq(30000L));
+
+        task.getValue().run();
+
+        verify(lamp).callAction("on");
+        assertThat(triggerProxy.getAttributeValue("State"), is("overMax"));
+    }
+
+    @Test
+    public void debounceIgnoresShortExcursions() throws Exception {
+        triggerProxy.setAttributeValue("Evaluation", "OnChange");
+        triggerProxy.setAttributeValue("Debounce", "30");
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "26.0"));
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).schedule(task.capture(), eq(30000L));
+
+        trigger.receiveEvent(valueChanged(SOURCE_ID, "Temperature", "24.0"));
+        task.getValue().run();
+
+        verify(lamp, never()).callAction("on");
+        assertThat(triggerProxy.getAttributeValue("State"), is("normal"));
+    }
+
+    private Event valueChanged(String itemId, String attribute, String value) {
+        InternalEvent event = new InternalEvent(HomeService.VALUE_CHANGED_EVENT_TYPE);
+        event.setAttribute(Event.EVENT_VALUE_ATTRIBUTE, value);
+        event.setAttribute(HomeService.VALUE_CHANGED_ITEM_ID_ATTRIBUTE, itemId);
+        event.setAttribute(HomeService.VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE, attribute);
+        return event;
+    }
+}
@@ -2,16 +2,21 @@ package nu.nethome.home.items.net;
 
 import nu.nethome.home.impl.InternalEvent;
 import nu.nethome.home.impl.LocalHomeItemProxy;
+import nu.nethome.home.impl.TimingWheelScheduler;
 import nu.nethome.home.item.ExecutionFailure;
 import nu.nethome.home.items.net.ArpScanner;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.StringReader;
 import java.util.Arrays;
+import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -51,23 +56,35 @@ public class ArpScannerTest {
             "10 packets received by filter, 0 packets dropped by kernel\n" +
             "Ending arp-scan 1.8.1: 256 hosts scanned in 4.033 seconds (63.48 hosts/sec). 8 responded";
 
+    private static final String ARP_TABLE = "IP address       HW type     Flags       HW address            Mask     Device\n" +
+            "192.168.1.1      0x1         0x2         e4:f4:c6:09:2c:26     *        eth0\n" +
+            "192.168.1.4      0x1         0x2         20:D5:BF:02:BD:AB     *        eth0\n" +
+            "192.168.1.6      0x1         0x0         00:00:00:00:00:00     *        eth0\n" +
+            "192.168.1.9      0x1         0x0         24:0a:64:10:4a:2d     *        eth0\n";
+
     private ArpScanner scanner;
     private HomeService server;
     private InternalEvent sentEvent;
     private LocalHomeItemProxy itemProxy;
+    private TimingWheelScheduler scheduler;
+    private PresenceEngine presenceEngine;
 
     @Before
     public void setUp() throws Exception {
-        scanner = spy(new ArpScanner());
+        presenceEngine = new PresenceEngine();
+        scanner = spy(new ArpScanner(presenceEngine));
         itemProxy = new LocalHomeItemProxy(scanner);
         sentEvent = new InternalEvent("Foo");
-        server = mock(HomeService.class);
+        server = mock(HomeService.class, withSettings().extraInterfaces(SharedServices.class));
         doReturn(sentEvent).when(server).createEvent(anyString(), anyString());
+        scheduler = new TimingWheelScheduler("Test", 1);
+        doReturn(scheduler).when((SharedServices) server).getScheduler();
     }
 
     @After
     public void tearDown() throws Exception {
         scanner.stop();
+        scheduler.stop();
     }
 
     @Test
@@ -137,4 +154,43 @@ public class ArpScannerTest {
         assertThat(parser.responseLines.get(1), is("20:d5:bf:02:bd:ab"));
         assertThat(parser.responseLines.get(7), is("80:ea:96:1f:03:b5"));
     }
+
+    @Test
+    public void updatesPresenceEngine() throws Exception {
+        scanner.activate(server);
+        doReturn(Arrays.asList("e4:f4:c6:09:2c:26", "80:ea:96:1f:03:b5")).when(scanner).scan();
+
+        scanner.reportScanResult();
+
+        assertThat(presenceEngine.isPresent("e4:f4:c6:09:2c:26"), is(true));
+        assertThat(presenceEngine.getPresentCount(), is(2));
+    }
+
+    @Test
+    public void usesCustomScanSource() throws Exception {
+        scanner.setScanSource(new ArpScanner.ScanSource() {
+            @Override
+            public List<String> scan() {
+                return Arrays.asList("e4:f4:c6:09:2c:26");
+            }
+        });
+
+        assertThat(scanner.scan(), is(Arrays.asList("e4:f4:c6:09:2c:26")));
+    }
+
+    @Test
+    public void canSetSource() throws Exception {
+        assertThat(itemProxy.getAttributeValue("Source"), is(ArpScanner.ARP_SCAN_SOURCE));
+        itemProxy.setAttributeValue("Source", ArpScanner.ARP_TABLE_SOURCE);
+        assertThat(itemProxy.getAttributeValue("Source"), is(ArpScanner.ARP_TABLE_SOURCE));
+    }
+
+    @Test
+    public void canParseArpTable() throws Exception {
+        BufferedReader reader = new BufferedReader(new StringReader(ARP_TABLE));
+
+        List<String> macs = ArpScanner.parseArpTable(reader);
+
+        assertThat(macs, is(Arrays.asList("e4:f4:c6:09:2c:26", "20:d5:bf:02:bd:ab")));
+    }
 }
@@ -8,6 +8,9 @@ import nu.nethome.home.system.HomeService;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Collections;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
 import static org.mockito.Matchers.anyString;
@@ -23,10 +26,12 @@ public class MacDeviceTest {
     private MacDevice macDevice;
     private LocalHomeItemProxy itemProxy;
     private HomeItemProxy fooItem;
+    private PresenceEngine presenceEngine;
 
     @Before
     public void setUp() throws Exception {
-        macDevice = new MacDevice();
+        presenceEngine = new PresenceEngine();
+        macDevice = new MacDevice(presenceEngine);
         itemProxy = new LocalHomeItemProxy(macDevice);
         itemProxy.setAttributeValue("MacAddress", CORRECT_MAC);
         itemProxy.setAttributeValue("ActionWhilePresent", "call,foo,present");
@@ -52,18 +57,14 @@ public class MacDeviceTest {
 
     @Test
     public void performsActionWhileNotPresentWhenEmpty() throws Exception {
-        doReturn("").when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-
-        macDevice.receiveEvent(receivedEvent);
+        scan();
 
         verify(fooItem).callAction("absent");
     }
 
     @Test
     public void performsActionWhileNotPresentWhenWrongMacs() throws Exception {
-        doReturn(WRONG_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-
-        macDevice.receiveEvent(receivedEvent);
+        scan(WRONG_MAC);
 
         verify(fooItem, times(1)).callAction("absent");
         verify(fooItem, times(0)).callAction("present");
@@ -71,9 +72,7 @@ public class MacDeviceTest {
 
     @Test
     public void performsActionWhilePresentWhenRightMac() throws Exception {
-        doReturn(CORRECT_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-
-        macDevice.receiveEvent(receivedEvent);
+        scan(CORRECT_MAC);
 
         verify(fooItem, times(1)).callAction("present");
         verify(fooItem, times(0)).callAction("absent");
@@ -83,26 +82,57 @@ public class MacDeviceTest {
     public void showsPresentState() throws Exception {
         assertThat(itemProxy.getAttributeValue("State"), is(""));
 
-        doReturn(CORRECT_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-        macDevice.receiveEvent(receivedEvent);
+        scan(CORRECT_MAC);
         assertThat(itemProxy.getAttributeValue("State"), is("Present"));
 
-        doReturn(WRONG_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-        macDevice.receiveEvent(receivedEvent);
+        scan(WRONG_MAC);
         assertThat(itemProxy.getAttributeValue("State"), is("Absent"));
     }
 
     @Test
     public void callsOnAbsent() throws Exception {
-        doReturn(CORRECT_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-        macDevice.receiveEvent(receivedEvent);
+        scan(CORRECT_MAC);
         verify(fooItem, times(0)).callAction("onPresent");
         verify(fooItem, times(0)).callAction("onAbsent");
 
-        doReturn(WRONG_MAC).when(receivedEvent).getAttribute(Event.EVENT_VALUE_ATTRIBUTE);
-        macDevice.receiveEvent(receivedEvent);
+        scan(WRONG_MAC);
         verify(fooItem, times(1)).callAction("onAbsent");
         verify(fooItem, times(0)).callAction("onPresent");
     }
 
+    @Test
+    public void callsOnPresent() throws Exception {
+        scan(WRONG_MAC);
+        scan(WRONG_MAC, CORRECT_MAC);
+        scan(CORRECT_MAC);
+
+        verify(fooItem, times(1)).callAction("onPresent");
+        verify(fooItem, times(0)).callAction("onAbsent");
+    }
+
+    @Test
+    public void isPresentWhileAnySourceReportsMac() throws Exception {
+        presenceEngine.update("Other", Arrays.asList(CORRECT_MAC));
+        scan(CORRECT_MAC);
+        scan(WRONG_MAC);
+
+        assertThat(itemProxy.getAttributeValue("State"), is("Present"));
+        verify(fooItem, times(0)).callAction("onAbsent");
+    }
+
+    @Test
+    public void ignoresScansAfterStop() throws Exception {
+        scan(CORRECT_MAC);
+        macDevice.stop();
+
+        presenceEngine.update(this, Collections.<String>emptyList());
+
+        assertThat(itemProxy.getAttributeValue("State"), is("Present"));
+        verify(fooItem, times(0)).callAction("onAbsent");
+    }
+
+    private void scan(String... macs) {
+        presenceEngine.update(this, Arrays.asList(macs));
+        macDevice.receiveEvent(receivedEvent);
+    }
 }
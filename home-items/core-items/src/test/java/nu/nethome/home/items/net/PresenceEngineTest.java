@@ -0,0 +1,105 @@
+package nu.nethome.home.items.net;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.*;
+
+public class PresenceEngineTest {
+
+    private static final String MAC1 = "e4:f4:c6:09:2c:26";
+    private static final String MAC2 = "20:d5:bf:02:bd:ab";
+    private static final String SOURCE1 = "Source1";
+    private static final String SOURCE2 = "Source2";
+
+    private PresenceEngine engine;
+    private PresenceEngine.Listener listener1;
+    private PresenceEngine.Listener listener2;
+
+    @Before
+    public void setUp() throws Exception {
+        engine = new PresenceEngine();
+        listener1 = mock(PresenceEngine.Listener.class);
+        listener2 = mock(PresenceEngine.Listener.class);
+        engine.addListener(MAC1, listener1);
+        engine.addListener(MAC2, listener2);
+    }
+
+    @Test
+    public void notifiesNewListenersAtFirstScan() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+
+        verify(listener1).presenceUpdated(true);
+        verify(listener2).presenceUpdated(false);
+    }
+
+    @Test
+    public void onlyNotifiesListenersOfChangedMacs() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+        reset(listener1, listener2);
+
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+        engine.update(SOURCE1, Arrays.asList(MAC1, MAC2));
+
+        verifyZeroInteractions(listener1);
+        verify(listener2).presenceUpdated(true);
+    }
+
+    @Test
+    public void notifiesAbsentMac() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1, MAC2));
+        reset(listener1, listener2);
+
+        engine.update(SOURCE1, Arrays.asList(MAC2));
+
+        verify(listener1).presenceUpdated(false);
+        verifyZeroInteractions(listener2);
+        assertThat(engine.isPresent(MAC1), is(false));
+        assertThat(engine.getPresentCount(), is(1));
+    }
+
+    @Test
+    public void macIsPresentWhileAnySourceReportsIt() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+        engine.update(SOURCE2, Arrays.asList(MAC1));
+        reset(listener1);
+
+        engine.update(SOURCE1, Collections.<String>emptyList());
+        assertThat(engine.isPresent(MAC1), is(true));
+        verifyZeroInteractions(listener1);
+
+        engine.update(SOURCE2, Collections.<String>emptyList());
+        verify(listener1).presenceUpdated(false);
+    }
+
+    @Test
+    public void ignoresCaseOfMacs() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1.toUpperCase()));
+
+        verify(listener1).presenceUpdated(true);
+        assertThat(engine.isPresent(MAC1), is(true));
+    }
+
+    @Test
+    public void removedListenerIsNotNotified() throws Exception {
+        engine.removeListener(MAC1, listener1);
+
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+
+        verifyZeroInteractions(listener1);
+    }
+
+    @Test
+    public void removedSourceNoLongerCounts() throws Exception {
+        engine.update(SOURCE1, Arrays.asList(MAC1));
+
+        engine.removeSource(SOURCE1);
+
+        assertThat(engine.isPresent(MAC1), is(false));
+    }
+}
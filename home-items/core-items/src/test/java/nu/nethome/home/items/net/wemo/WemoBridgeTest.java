@@ -85,8 +85,11 @@ public class WemoBridgeTest {
 
     @Test
     public void canListDevices() throws Exception, WemoException {
-        doReturn(new InternalEvent("WemoLight_Message")).when(homeService).createEvent(anyString(), anyString());
         wemoBridge.activate(homeService);
+        waitForIoToComplete();
+        // Forget the events of the device report made at activation
+        reset(homeService);
+        doReturn(new InternalEvent("WemoLight_Message")).when(homeService).createEvent(anyString(), anyString());
         BridgeDevice device = new BridgeDevice(1, "ID", "Name", "", "FW", "xx", "1,128:0,0:0,,");
         doReturn(Arrays.asList(device)).when(soapClient).getEndDevices(anyString());
 
@@ -103,4 +106,10 @@ public class WemoBridgeTest {
         assertThat(captor.getValue().getAttribute("OnState"), is("1"));
         assertThat(captor.getValue().getAttribute("Brightness"), is("128"));
     }
+
+    private void waitForIoToComplete() throws InterruptedException {
+        for (int i = 0; i < 100 && !wemoBridge.getIoInFlight().equals("0"); i++) {
+            Thread.sleep(10);
+        }
+    }
 }
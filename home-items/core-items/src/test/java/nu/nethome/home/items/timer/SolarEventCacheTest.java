@@ -0,0 +1,105 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.timer;
+
+import com.luckycatlabs.sunrisesunset.SunriseSunsetCalculator;
+import com.luckycatlabs.sunrisesunset.dto.Location;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class SolarEventCacheTest {
+
+    private static final double LATITUDE = 59.225527;
+    private static final double LONGITUDE = 18.000718;
+    private TimeZone stockholm;
+
+    @Before
+    public void setUp() throws Exception {
+        SolarEventCache.clear();
+        stockholm = TimeZone.getTimeZone("Europe/Stockholm");
+    }
+
+    @Test
+    public void givesSameTimesAsCalculatorWithinAMinute() throws Exception {
+        SunriseSunsetCalculator calculator = new SunriseSunsetCalculator(
+                new Location(Double.toString(LATITUDE), Double.toString(LONGITUDE)), stockholm);
+        Calendar date = Calendar.getInstance(stockholm);
+        date.set(2015, Calendar.JANUARY, 1, 12, 0);
+        for (int day = 0; day < 365; day++) {
+            assertWithinAMinute(calculator.getOfficialSunriseForDate(date),
+                    SolarEventCache.getOfficialSunrise(LATITUDE, LONGITUDE, stockholm, date));
+            assertWithinAMinute(calculator.getOfficialSunsetForDate(date),
+                    SolarEventCache.getOfficialSunset(LATITUDE, LONGITUDE, stockholm, date));
+            date.add(Calendar.DAY_OF_YEAR, 1);
+        }
+    }
+
+    @Test
+    public void reusesTableForSameLocationAndYear() throws Exception {
+        Calendar date = Calendar.getInstance(stockholm);
+        date.set(2015, Calendar.MARCH, 1, 12, 0);
+        SolarEventCache.getOfficialSunrise(LATITUDE, LONGITUDE, stockholm, date);
+        date.set(2015, Calendar.JUNE, 1, 12, 0);
+        SolarEventCache.getOfficialSunset(LATITUDE, LONGITUDE, stockholm, date);
+
+        assertThat(SolarEventCache.getTableCount(), is(1));
+
+        SolarEventCache.getOfficialSunrise(LATITUDE + 1, LONGITUDE, stockholm, date);
+        date.set(2016, Calendar.JUNE, 1, 12, 0);
+        SolarEventCache.getOfficialSunrise(LATITUDE, LONGITUDE, stockholm, date);
+
+        assertThat(SolarEventCache.getTableCount(), is(3));
+    }
+
+    @Test
+    public void usesDateInLocationTimeZone() throws Exception {
+        Calendar utcDate = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        utcDate.set(2015, Calendar.JUNE, 1, 23, 30);
+        Calendar localDate = Calendar.getInstance(stockholm);
+        localDate.set(2015, Calendar.JUNE, 2, 12, 0);
+
+        assertThat(SolarEventCache.getOfficialSunrise(LATITUDE, LONGITUDE, stockholm, utcDate),
+                is(SolarEventCache.getOfficialSunrise(LATITUDE, LONGITUDE, stockholm, localDate)));
+    }
+
+    @Test
+    public void reportsMissingSunriseDuringPolarNight() throws Exception {
+        Calendar date = Calendar.getInstance(stockholm);
+        date.set(2015, Calendar.DECEMBER, 21, 12, 0);
+
+        assertThat(SolarEventCache.getOfficialSunrise(78.2, 15.6, stockholm, date), is("99:99"));
+    }
+
+    private static void assertWithinAMinute(String expected, String actual) {
+        int difference = Math.abs(toMinutes(expected) - toMinutes(actual));
+        assertThat(expected + " vs " + actual, difference <= 1, is(true));
+    }
+
+    private static int toMinutes(String time) {
+        String[] parts = time.split(":");
+        return Integer.parseInt(parts[0]) * 60 + Integer.parseInt(parts[1]);
+    }
+}
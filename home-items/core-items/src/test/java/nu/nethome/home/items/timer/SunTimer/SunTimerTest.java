@@ -4,6 +4,8 @@ import com.sun.org.apache.xerces.internal.parsers.SAXParser;
 import nu.nethome.home.impl.InternalEvent;
 import nu.nethome.home.impl.LocalHomeItemProxy;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
+import nu.nethome.home.system.TaskScheduler;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -30,7 +32,8 @@ public class SunTimerTest {
     private SunTimer sunTimer;
     private LocalHomeItemProxy proxy;
     private HomeService server;
-    private Timer timer;
+    private TaskScheduler scheduler;
+    private TaskScheduler.ScheduledTask scheduledTask;
     private Calendar calendar;
     private DateFormat dateFormat;
     private TimeZone timeZone;
@@ -45,9 +48,11 @@ public class SunTimerTest {
         for (String weekday : weekdays) {
             proxy.setAttributeValue(weekday, "");
         }
-        server = mock(HomeService.class);
-        timer = mock(Timer.class);
-        doReturn(timer).when(sunTimer).createTimer();
+        server = mock(HomeService.class, withSettings().extraInterfaces(SharedServices.class));
+        scheduler = mock(TaskScheduler.class);
+        scheduledTask = mock(TaskScheduler.ScheduledTask.class);
+        doReturn(scheduledTask).when(scheduler).scheduleAt(any(Runnable.class), anyLong());
+        doReturn(scheduler).when((SharedServices) server).getScheduler();
         calendar = Calendar.getInstance();
         calendar.set(Calendar.HOUR_OF_DAY, 12);
         calendar.set(Calendar.MINUTE, 0);
@@ -122,12 +127,12 @@ public class SunTimerTest {
 
         sunTimer.activate(server);
 
-        ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
-        verify(timer, times(2)).schedule(taskCaptor.capture(), dateCaptor.capture());
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Long> timeCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler, times(2)).scheduleAt(taskCaptor.capture(), timeCaptor.capture());
         assertThat(taskCaptor.getAllValues().size(), is(2));
-        assertThat(dateFormat.format(dateCaptor.getAllValues().get(0)), is("13:00"));
-        assertThat(dateFormat.format(dateCaptor.getAllValues().get(1)), is("14:00"));
+        assertThat(dateFormat.format(timeCaptor.getAllValues().get(0)), is("13:00"));
+        assertThat(dateFormat.format(timeCaptor.getAllValues().get(1)), is("14:00"));
         assertThat(taskCaptor.getAllValues().get(0), instanceOf(SunTimer.SunTimerTask.class));
         assertThat(taskCaptor.getAllValues().get(1), instanceOf(SunTimer.SunTimerTask.class));
     }
@@ -139,9 +144,9 @@ public class SunTimerTest {
 
         sunTimer.activate(server);
 
-        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
-        verify(timer).schedule(any(TimerTask.class), dateCaptor.capture());
-        assertThat(dateFormat.format(dateCaptor.getAllValues().get(0)), is("12:30"));
+        ArgumentCaptor<Long> timeCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler).scheduleAt(any(Runnable.class), timeCaptor.capture());
+        assertThat(dateFormat.format(timeCaptor.getAllValues().get(0)), is("12:30"));
     }
 
     @Test
@@ -151,8 +156,8 @@ public class SunTimerTest {
 
         sunTimer.activate(server);
 
-        ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-        verify(timer).schedule(taskCaptor.capture(), any(Date.class));
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleAt(taskCaptor.capture(), anyLong());
         taskCaptor.getValue().run();
         verify(server,times(1)).openInstance("foo"); // Verify that the executor tries to open foo
     }
@@ -164,8 +169,8 @@ public class SunTimerTest {
 
         sunTimer.activate(server);
 
-        ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-        verify(timer).schedule(taskCaptor.capture(), any(Date.class));
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).scheduleAt(taskCaptor.capture(), anyLong());
         taskCaptor.getValue().run();
         verify(server,times(1)).openInstance("foo"); // Verify that the executor tries to open foo
     }
@@ -194,28 +199,30 @@ public class SunTimerTest {
 
     @Test
     public void stopsTimerWhenItemIsStopped() throws Exception {
+        proxy.setAttributeValue("Thursdays", "13:00->14:00");
         sunTimer.activate(server);
 
         sunTimer.stop();
 
-        verify(timer).cancel();
+        verify(scheduledTask, times(2)).cancel();
     }
 
     @Test
     public void updateDayTimeExpressionCreatesTimerTasksAndCancelsExistingTimer() throws Exception {
+        proxy.setAttributeValue("Thursdays", "15:00->16:00");
         sunTimer.activate(server);
 
         proxy.setAttributeValue("Thursdays", "13:00->14:00");
 
-        verify(timer).cancel();
-        ArgumentCaptor<TimerTask> taskCaptor = ArgumentCaptor.forClass(TimerTask.class);
-        ArgumentCaptor<Date> dateCaptor = ArgumentCaptor.forClass(Date.class);
-        verify(timer, times(2)).schedule(taskCaptor.capture(), dateCaptor.capture());
-        assertThat(taskCaptor.getAllValues().size(), is(2));
-        assertThat(dateFormat.format(dateCaptor.getAllValues().get(0)), is("13:00"));
-        assertThat(dateFormat.format(dateCaptor.getAllValues().get(1)), is("14:00"));
-        assertThat(taskCaptor.getAllValues().get(0), instanceOf(SunTimer.SunTimerTask.class));
-        assertThat(taskCaptor.getAllValues().get(1), instanceOf(SunTimer.SunTimerTask.class));
+        verify(scheduledTask, times(2)).cancel();
+        ArgumentCaptor<Runnable> taskCaptor = ArgumentCaptor.forClass(Runnable.class);
+        ArgumentCaptor<Long> timeCaptor = ArgumentCaptor.forClass(Long.class);
+        verify(scheduler, times(4)).scheduleAt(taskCaptor.capture(), timeCaptor.capture());
+        assertThat(taskCaptor.getAllValues().size(), is(4));
+        assertThat(dateFormat.format(timeCaptor.getAllValues().get(2)), is("13:00"));
+        assertThat(dateFormat.format(timeCaptor.getAllValues().get(3)), is("14:00"));
+        assertThat(taskCaptor.getAllValues().get(2), instanceOf(SunTimer.SunTimerTask.class));
+        assertThat(taskCaptor.getAllValues().get(3), instanceOf(SunTimer.SunTimerTask.class));
     }
 
     @Test
@@ -240,8 +247,8 @@ public class SunTimerTest {
         sunTimer.activate(server);
         proxy.setAttributeValue("Variable A", "14:00");
 
-        verify(timer).cancel();
-        verify(timer, times(4)).schedule(any(TimerTask.class), any(Date.class));
+        verify(scheduledTask, times(2)).cancel();
+        verify(scheduler, times(4)).scheduleAt(any(Runnable.class), anyLong());
     }
 
     @Test
@@ -24,7 +24,6 @@ import nu.nethome.util.plugin.Plugin;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
 
 /**
  * Created by Stefan 2013-11-17
@@ -49,72 +48,12 @@ public class LampGroup extends HomeItemAdapter implements HomeItem {
             + "  <Action Name=\"dim4\" 	Method=\"performDim4\" />"
             + "</HomeItem> ");
 
-    private static final int MAX_QUEUE_SIZE = 10;
-    public static final String QUIT_COMMAND = "quit";
-    private enum Command {
-        quit, on, off, recall, dim1, dim2, dim3, dim4;
-    }
-
     private String lamps = "";
     private String lampsOn = "";
-    private LinkedBlockingQueue<Command> commandQueue = new LinkedBlockingQueue<Command>(MAX_QUEUE_SIZE);
+    private StepSequencer sequencer;
     private long delay = 300;
     private boolean lampState = false;
 
-
-    public void commandDistributorTask() {
-        while (true) {
-            try {
-                // Take the next event from the queue, will wait if no events yet
-                Command command = commandQueue.take();
-                // Check if it was the quit event, quit in that case
-                switch (command) {
-                    case quit:
-                        return;
-                    case on:
-                        on();
-                        break;
-                    case off:
-                        off();
-                        break;
-                    case recall:
-                        recall();
-                        break;
-                    case dim1:
-                        dim1();
-                        break;
-                    case dim2:
-                        dim2();
-                        break;
-                    case dim3:
-                        dim3();
-                        break;
-                    case dim4:
-                        dim4();
-                        break;
-                }
-            } catch (InterruptedException e) {
-                // Do Dinada
-            }
-        }
-    }
-
-    private void dim1() {
-        tryPerformActionOnItems(lamps, "dim1", "on");
-    }
-
-    private void dim2() {
-        tryPerformActionOnItems(lamps, "dim2", "on");
-    }
-
-    private void dim3() {
-        tryPerformActionOnItems(lamps, "dim3", "on");
-    }
-
-    private void dim4() {
-        tryPerformActionOnItems(lamps, "dim4", "on");
-    }
-
     @Override
     public String getModel() {
         return MODEL;
@@ -122,18 +61,14 @@ public class LampGroup extends HomeItemAdapter implements HomeItem {
 
     @Override
     public void activate() {
-        Thread eventThread = new Thread("CommandDistributor") {
-            @Override
-            public void run() {
-                commandDistributorTask();
-            }
-        };
-        eventThread.start();
+        sequencer = new StepSequencer(getScheduler());
     }
 
     @Override
     public void stop() {
-        commandQueue.add(Command.quit);
+        if (sequencer != null) {
+            sequencer.cancel();
+        }
         super.stop();
     }
 
@@ -167,37 +102,37 @@ public class LampGroup extends HomeItemAdapter implements HomeItem {
 
     public void performOn() {
         lampState = true;
-        commandQueue.add(Command.on);
+        performActionOnItems(lamps, "on");
     }
 
     public void performOff() {
         lampState = false;
-        commandQueue.add(Command.off);
+        off();
     }
 
     public void performRecall() {
         lampState = true;
-        commandQueue.add(Command.recall);
+        performActionOnItems(lampsOn, "on");
     }
 
     public void performDim1() {
         lampState = true;
-        commandQueue.add(Command.dim1);
+        performActionOnItems(lamps, "dim1", "on");
     }
 
     public void performDim2() {
         lampState = true;
-        commandQueue.add(Command.dim2);
+        performActionOnItems(lamps, "dim2", "on");
     }
 
     public void performDim3() {
         lampState = true;
-        commandQueue.add(Command.dim3);
+        performActionOnItems(lamps, "dim3", "on");
     }
 
     public void performDim4() {
         lampState = true;
-        commandQueue.add(Command.dim4);
+        performActionOnItems(lamps, "dim4", "on");
     }
 
     public void toggle() {
@@ -208,61 +143,57 @@ public class LampGroup extends HomeItemAdapter implements HomeItem {
         }
     }
 
-    private void on() {
-        performActionOnItems(lamps, "on");
-    }
-
     private void off() {
         StringBuilder result = new StringBuilder();
         String separator = "";
-        for (HomeItemProxy item : getAsItems(lamps)) {
+        List<HomeItemProxy> items = getAsItems(lamps);
+        for (HomeItemProxy item : items) {
             if (item.getAttributeValue("State").equalsIgnoreCase("on")) {
                 result.append(separator).append(item.getAttributeValue(HomeItemProxy.ID_ATTRIBUTE));
                 separator = ",";
             }
-            try {
-                item.callAction("off");
-                Thread.sleep(delay);
-            } catch (ExecutionFailure executionFailure) {
-                // fail silently
-            } catch (InterruptedException e) {
-                // fail silently
-            }
         }
         lampsOn = result.toString();
+        performActionOnItems(items, "off", "off");
     }
 
-    private void recall() {
-        performActionOnItems(lampsOn, "on");
+    private void performActionOnItems(String items, String action) {
+        performActionOnItems(getAsItems(items), action, action);
     }
 
-    private void performActionOnItems(String items, String action) {
-        for (HomeItemProxy item : getAsItems(items)) {
-            try {
-                item.callAction(action);
-                Thread.sleep(delay);
-            } catch (ExecutionFailure executionFailure) {
-                // fail silently
-            } catch (InterruptedException e) {
-                // fail silently
-            }
-        }
+    private void performActionOnItems(String items, String action, String fallbackAction) {
+        performActionOnItems(getAsItems(items), action, fallbackAction);
     }
 
-    private void tryPerformActionOnItems(String items, String action, String fallbackAction) {
-        for (HomeItemProxy item : getAsItems(items)) {
-            try {
-                if (item.getModel().hasAction(action)) {
-                    item.callAction(action);
-                } else {
-                    item.callAction(fallbackAction);
+    /**
+     * The actions are performed by the scheduler with the configured delay between the lamps. A new command
+     * cancels the lamps not yet reached by the previous command.
+     */
+    private void performActionOnItems(List<HomeItemProxy> items, final String action, final String fallbackAction) {
+        if (sequencer == null) {
+            return;
+        }
+        List<Runnable> steps = new ArrayList<Runnable>(items.size());
+        for (final HomeItemProxy item : items) {
+            steps.add(new Runnable() {
+                @Override
+                public void run() {
+                    tryPerformAction(item, action, fallbackAction);
                 }
-                Thread.sleep(delay);
-            } catch (ExecutionFailure executionFailure) {
-                // fail silently
-            } catch (InterruptedException e) {
-                // fail silently
+            });
+        }
+        sequencer.start(steps, delay);
+    }
+
+    private void tryPerformAction(HomeItemProxy item, String action, String fallbackAction) {
+        try {
+            if (action.equals(fallbackAction) || item.getModel().hasAction(action)) {
+                item.callAction(action);
+            } else {
+                item.callAction(fallbackAction);
             }
+        } catch (ExecutionFailure executionFailure) {
+            // fail silently
         }
     }
 
@@ -21,10 +21,14 @@ package nu.nethome.home.items;
 
 import nu.nethome.home.impl.CommandLineExecutor;
 import nu.nethome.home.item.HomeItemAdapter;
+import nu.nethome.home.item.ItemEventRules;
 import nu.nethome.home.items.nexa.NexaRemapButton;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
+import nu.nethome.home.system.EventRules;
 import nu.nethome.home.system.HomeService;
 
+import java.util.List;
 import java.util.Timer;
 import java.util.TimerTask;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -36,6 +40,8 @@ import java.util.logging.Logger;
  * while the causing RF signal is still active, by waiting until it has not seen a command in a configurable
  * number of ms.
  * It also holds the CommandLineExecutor needed by all remap buttons.
+ * The buttons declare the events they act on with {@link #getMatchConditions()}, which are registered in the
+ * server's event rules when the button is activated.
  */
 public abstract class RemapButton extends HomeItemAdapter {
     public static final int SAMPLE_INTERVAL_MS = 60;
@@ -50,6 +56,47 @@ public abstract class RemapButton extends HomeItemAdapter {
     private String offCommand = "";
     private int holdOffTime = 200;
     private boolean isEnabled = true;
+    private final ItemEventRules matchRules = new ItemEventRules(new EventRules.Action() {
+        @Override
+        public void perform(Event event) {
+            processEvent(event);
+        }
+    });
+    private boolean hasMatchConditions = false;
+
+    @Override
+    public boolean receiveEvent(Event event) {
+        // When registered, matching events are delivered by the event rules instead
+        if (!matchRules.isRegistered() && getMatchRules().matches(event)) {
+            processEvent(event);
+            return true;
+        }
+        return handleInit(event);
+    }
+
+    /**
+     * @return conditions for the events the button acts on
+     */
+    protected abstract List<EventCondition> getMatchConditions();
+
+    /**
+     * Must be called when an attribute used in the match conditions has changed
+     */
+    protected void updateMatchConditions() {
+        synchronized (matchRules) {
+            matchRules.setConditions(getMatchConditions());
+            hasMatchConditions = true;
+        }
+    }
+
+    private ItemEventRules getMatchRules() {
+        synchronized (matchRules) {
+            if (!hasMatchConditions) {
+                updateMatchConditions();
+            }
+        }
+        return matchRules;
+    }
 
     protected void processEvent(Event event) {
         if (!isEnabled) {
@@ -95,10 +142,12 @@ public abstract class RemapButton extends HomeItemAdapter {
     public void activate(HomeService server) {
         super.activate(server);
         commandExecutor = new CommandLineExecutor(server, true);
+        getMatchRules().register(getEventRules());
     }
 
     @Override
     public void stop() {
+        matchRules.unregister();
         holdOffTimer.cancel();
         super.stop();
     }
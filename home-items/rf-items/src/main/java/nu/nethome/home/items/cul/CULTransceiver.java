@@ -27,7 +27,10 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.EncodedMessageCache;
 import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.home.util.RepeatFilter;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.*;
 import nu.nethome.util.ps.impl.CULProtocolPort;
@@ -52,6 +55,12 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
             + "  <Attribute Name=\"TransmissionPower\" Type=\"StringList\" Get=\"getTransmissionPower\" 	Set=\"setTransmissionPower\">"
             + "    <item>0</item><item>1</item><item>2</item><item>3</item><item>4</item><item>5</item><item>6</item><item>7</item></Attribute>"
             + "  <Attribute Name=\"SendCount\" Type=\"String\" Get=\"getSendCount\"  />"
+            + "  <Attribute Name=\"RepeatWindow\" Type=\"String\" Get=\"getRepeatWindow\" Set=\"setRepeatWindow\" />"
+            + "  <Attribute Name=\"SuppressedRepeats\" Type=\"String\" Get=\"getSuppressedRepeats\" />"
+            + "  <Attribute Name=\"QueuedMessages\" Type=\"String\" Get=\"getQueuedMessages\"  />"
+            + "  <Attribute Name=\"SupersededMessages\" Type=\"String\" Get=\"getSupersededMessages\"  />"
+            + "  <Attribute Name=\"ExpiredMessages\" Type=\"String\" Get=\"getExpiredMessages\"  />"
+            + "  <Attribute Name=\"EncoderCacheHitRate\" Type=\"String\" Get=\"getEncoderCacheHitRate\" Unit=\"%\" />"
             + "  <Attribute Name=\"Connected\" Type=\"String\" Get=\"getConnected\" Default=\"true\" />"
             + "  <Action Name=\"Reconnect\"		Method=\"reconnect\" Default=\"true\" />"
             + "  <Action Name=\"PlayTestBeep\"		Method=\"playTestBeep\" />"
@@ -65,10 +74,39 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
     private int testBeepFrequency = 2000;
     CULProtocolPort culPort;
     private long sendCount = 0;
+    private final RepeatFilter repeatFilter = new RepeatFilter();
     private float modulationFrequency = 0;
     private EncoderFactory factory;
+    private final EncodedMessageCache<EncodedMessage> encodedMessages = new EncodedMessageCache<EncodedMessage>();
+    private final TransmitScheduler<Runnable> transmitScheduler = new TransmitScheduler<Runnable>("CUL",
+            new TransmitScheduler.Transmitter<Runnable>() {
+                @Override
+                public void transmit(Runnable message) {
+                    message.run();
+                }
+            });
 
 
+    /**
+     * An encoded protocol message, cached and played when its turn comes in the transmit scheduler
+     */
+    private class EncodedMessage implements Runnable {
+        final int[] message;
+        final int repeat;
+        final int modulationFrequency;
+
+        EncodedMessage(int[] message, int repeat, int modulationFrequency) {
+            this.message = message;
+            this.repeat = repeat;
+            this.modulationFrequency = modulationFrequency;
+        }
+
+        @Override
+        public void run() {
+            playMessage(message, repeat, modulationFrequency);
+        }
+    }
+
     public CULTransceiver() {
 
         // Create the Protocol-Decoders and add them to the decoder group
@@ -111,13 +149,16 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
         ProtocolEncoder foundEncoder = factory.getEncoder(event);
         if (foundEncoder != null) {
             try {
-                Message parameters = factory.extractMessage(event);
-                int repeat = calculateRepeat(event, foundEncoder);
-                int modulationFrequency = calculateModulationFrequency(event, foundEncoder, parameters);
-                setModulationFrequencyOnPort(modulationFrequency);
-                culPort.playMessage(foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED), repeat, 0);
-                setModulationFrequency(getModulationFrequency());
-                sendCount++;
+                String key = EncodedMessageCache.keyOf(event);
+                EncodedMessage message = encodedMessages.get(key);
+                if (message == null) {
+                    Message parameters = factory.extractMessage(event);
+                    message = new EncodedMessage(foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED),
+                            calculateRepeat(event, foundEncoder),
+                            calculateModulationFrequency(event, foundEncoder, parameters));
+                    encodedMessages.put(key, message);
+                }
+                transmitScheduler.submit(message, event, TransmitScheduler.airTimeUs(message.message, message.repeat));
                 return true;
             } catch (BadMessageException e) {
                 logger.warning("Bad protocol message received: " + event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE));
@@ -126,6 +167,16 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
         return false;
     }
 
+    private void playMessage(int[] message, int repeat, int modulationFrequency) {
+        if (!culPort.isOpen()) {
+            return;
+        }
+        setModulationFrequencyOnPort(modulationFrequency);
+        culPort.playMessage(message, repeat, 0);
+        setModulationFrequency(getModulationFrequency());
+        sendCount++;
+    }
+
     private int calculateModulationFrequency(Event event, ProtocolEncoder encoder, Message message) {
         if (event.getAttribute("Modulation").equals("On")) {
             return encoder.modulationFrequency(message);
@@ -152,12 +203,14 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
         super.activate(server);
         factory.addEncoderTypes(server.getPluginProvider().getPluginsForInterface(ProtocolEncoder.class));
         culPort.open();
+        transmitScheduler.start();
     }
 
     /**
      * HomeItem method which stops all object activity for program termination
      */
     public void stop() {
+        transmitScheduler.stop();
         if (culPort.isOpen()) {
             culPort.close();
         }
@@ -221,8 +274,19 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
     }
 
     public void parsedMessage(ProtocolMessage message) {
-        // TODO Auto-generated method stub
-
+        // Build an internal event from the protocol message
+        Event event = server.createEvent(message.getProtocol() + "_Message", "");
+        // Specify message direction
+        event.setAttribute("Direction", "In");
+        // Add all protocol specific parameters as event attributes. Use protocol
+        // name as prefix to avoid mix with standard attribute names
+        for (FieldValue f : message.getFields()) {
+            event.setAttribute(message.getProtocol() + "." + f.getName(), f.getStringValue());
+        }
+        // Send the event internally, unless it is a repeat of a message we just received
+        if (!repeatFilter.isRepeat(event)) {
+            server.send(event);
+        }
     }
 
     public void partiallyParsedMessage(String protocol, int bits) {
@@ -271,7 +335,35 @@ public class CULTransceiver extends HomeItemAdapter implements HomeItem, Protoco
         }
     }
 
+    public String getRepeatWindow() {
+        return repeatFilter.getWindows();
+    }
+
+    public void setRepeatWindow(String repeatWindow) {
+        repeatFilter.setWindows(repeatWindow);
+    }
+
+    public String getSuppressedRepeats() {
+        return Long.toString(repeatFilter.getSuppressedCount());
+    }
+
     public String getSendCount() {
         return Long.toString(sendCount);
     }
+
+    public String getEncoderCacheHitRate() {
+        return Integer.toString(encodedMessages.getHitRate());
+    }
+
+    public String getQueuedMessages() {
+        return Integer.toString(transmitScheduler.getQueueDepth());
+    }
+
+    public String getSupersededMessages() {
+        return Long.toString(transmitScheduler.getSupersededCount());
+    }
+
+    public String getExpiredMessages() {
+        return Long.toString(transmitScheduler.getExpiredCount());
+    }
 }
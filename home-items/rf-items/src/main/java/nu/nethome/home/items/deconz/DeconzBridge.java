@@ -27,6 +27,12 @@ import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -39,14 +45,18 @@ import org.json.JSONObject;
 import nu.nethome.home.item.AutoCreationInfo;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
-import nu.nethome.home.items.fineoffset.FineOffsetThermometer;
 import nu.nethome.home.items.ikea.JSONData;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.AsyncIoExecutor;
 import nu.nethome.util.plugin.Plugin;
 
 /**
- * Represents a deCONZ bridge and handles communications with it
+ * Represents a deCONZ bridge and handles communications with it. The bridge subscribes to the deCONZ WebSocket
+ * event stream and applies the incremental changes to a {@link DeconzStateModel}, so only lights, groups and
+ * sensors that have actually changed are reported as events. The complete state is only read with the REST API
+ * when the WebSocket is (re)connected. WebSocket messages arriving while the state is read are held back and
+ * applied on top of the read state, so a REST snapshot never overwrites a newer pushed change.
  */
 @SuppressWarnings("UnusedDeclaration")
 @Plugin
@@ -86,7 +96,11 @@ public class DeconzBridge extends HomeItemAdapter {
 			+ "  <Attribute Name=\"DeviceName\" Type=\"String\" Get=\"getDeviceName\"  />"
 			+ "  <Attribute Name=\"SWVersion\" Type=\"String\" Get=\"getSWVersion\"  />"
 			+ "  <Attribute Name=\"Token\" Type=\"String\" Get=\"getToken\" Init=\"setToken\" />"
-			+ "  <Attribute Name=\"RefreshInterval\" Type=\"String\" Get=\"getRefreshInterval\" Set=\"setRefreshInterval\" />"
+			+ "  <Attribute Name=\"PushedChanges\" Type=\"String\" Get=\"getPushedChanges\" />"
+			+ "  <Attribute Name=\"Resyncs\" Type=\"String\" Get=\"getResyncs\" />"
+			+ "  <Attribute Name=\"ConnectionReuse\" Type=\"String\" Get=\"getConnectionReuse\" Unit=\"%\" />"
+			+ "  <Attribute Name=\"InFlight\" Type=\"String\" Get=\"getIoInFlight\" />"
+			+ "  <Attribute Name=\"Latency\" Type=\"String\" Get=\"getIoLatency\" Unit=\"ms\" />"
 			+ "  <Action Name=\"registerUser\" Method=\"registerUser\" />"
 			+ "  <Action Name=\"reconnect\" Method=\"reconnect\" />" + "</HomeItem> ");
 
@@ -95,13 +109,22 @@ public class DeconzBridge extends HomeItemAdapter {
 	private String token = "";
 	private String url = "";
 	private String bridgeIdentity = "";
-	private int refreshInterval = 5;
-	private int refreshCounter = 0;
 	private DeconzConfig configuration = null;
-	private String state = "Disconnected";
+	private volatile String state = "Disconnected";
 
 	JsonRestClient client = new JsonRestClient();
-	private DeconzWebsocketClient webSocketClient;
+	private final DeconzStateModel stateModel = new DeconzStateModel();
+	private final Map<String, Light> reportedLights = new ConcurrentHashMap<>();
+	private final Map<String, LightGroup> reportedGroups = new ConcurrentHashMap<>();
+	private final Map<String, JSONObject> reportedSensors = new ConcurrentHashMap<>();
+	private volatile boolean isFullReportPending;
+	private volatile long pushedChanges;
+	private volatile long resyncs;
+	private ExecutorService syncExecutor;
+	private volatile DeconzWebsocketClient webSocketClient;
+	private final Object stateLock = new Object();
+	// Not null while the state is read with the REST API, guarded by stateLock
+	private List<String> heldBackMessages;
 
 	@Override
 	public String getModel() {
@@ -110,24 +133,69 @@ public class DeconzBridge extends HomeItemAdapter {
 
 	@Override
 	public void activate() {
+		syncExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+				new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, name + "-Sync");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}, new ThreadPoolExecutor.DiscardPolicy());
 		reconnect();
 	}
 
+	@Override
+	public void stop() {
+		closeWebSocket();
+		if (syncExecutor != null) {
+			syncExecutor.shutdownNow();
+		}
+		super.stop();
+	}
+
+	/**
+	 * Connect to the WebSocket event stream of the bridge. The complete state is synced when the connection is open.
+	 */
 	public void reconnect() {
+		if (url.isEmpty()) {
+			return;
+		}
 		checkConnection();
+		closeWebSocket();
 		try {
-			if (!url.startsWith("http")) {
-				webSocketClient = new DeconzWebsocketClient(new URI("ws://" + url + ":443"));
-			} else {
-				webSocketClient = new DeconzWebsocketClient(new URI("ws" + url.substring(4) + ":443"));
-			}
-
+			int port = configuration != null ? configuration.getWebsocketPort() : DeconzConfig.DEFAULT_WEBSOCKET_PORT;
+			webSocketClient = new DeconzWebsocketClient(new URI("ws://" + new URI(url).getHost() + ":" + port));
 			webSocketClient.connect();
 		} catch (URISyntaxException e) {
 			logger.severe(e.getMessage());
 		}
 	}
 
+	private void closeWebSocket() {
+		DeconzWebsocketClient oldClient = webSocketClient;
+		webSocketClient = null;
+		if (oldClient != null) {
+			oldClient.close();
+		}
+	}
+
+	private boolean isWebSocketOpen() {
+		DeconzWebsocketClient currentClient = webSocketClient;
+		return currentClient != null && currentClient.isOpen();
+	}
+
+	private void requestReconnect() {
+		if (syncExecutor != null) {
+			syncExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					reconnect();
+				}
+			});
+		}
+	}
+
 	private void checkConnection() {
 		try {
 			String resource = String.format("/api/%s/config", token);
@@ -165,10 +233,8 @@ public class DeconzBridge extends HomeItemAdapter {
 			String command = event.getAttribute("deCONZ.Command");
 			if (command.equals("On") && lampId.length() > 0) {
 				turnLampOn(lampId, event);
-				reportLampState(lampId);
 			} else if (command.equals("Off") && lampId.length() > 0) {
 				turnLampOff(lampId);
-				reportLampState(lampId);
 			}
 			return true;
 		} else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("deCONZ_lightgroup")
@@ -183,13 +249,16 @@ public class DeconzBridge extends HomeItemAdapter {
 //				reportLampGroupState(lampId);
 			}
 			return true;
-		} else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems")
-				|| (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("MinuteEvent")
-						&& refreshCounter++ > refreshInterval)) {
-			reportAllLampsState();
-			reportAllGroupsState();
-			if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems")) {
-				reportKnownSensors();
+		} else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems")) {
+			if (isWebSocketOpen()) {
+				reportResources(true);
+			} else {
+				requestStateSync(true);
+			}
+			return true;
+		} else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("MinuteEvent")) {
+			if (!isWebSocketOpen()) {
+				requestReconnect();
 			}
 			return true;
 		} else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportdeCONZLamp")) {
@@ -218,217 +287,296 @@ public class DeconzBridge extends HomeItemAdapter {
 		return url;
 	}
 
-	private void reportAllLampsState() {
+	/**
+	 * Request a sync of the complete state on the sync thread. At most one sync is waiting while another
+	 * one runs, so requests arriving during a sync are coalesced into one.
+	 *
+	 * @param isFullReport if true all lamps, groups and sensors are reported, otherwise only changed ones
+	 */
+	private void requestStateSync(boolean isFullReport) {
+		if (isFullReport) {
+			isFullReportPending = true;
+		}
+		if (syncExecutor != null) {
+			syncExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					syncState();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Read the complete state with the REST API and report the resources that have changed since they were
+	 * last reported, for example while the WebSocket was disconnected
+	 */
+	private void syncState() {
+		boolean isFullReport = isFullReportPending;
+		isFullReportPending = false;
+		synchronized (stateLock) {
+			heldBackMessages = new ArrayList<>();
+		}
+		boolean isLoaded = false;
 		try {
-			List<LightId> ids = listaAllLights();
-			for (LightId id : ids) {
-				reportLampState(id.getLampId());
-			}
+			loadResources(DeconzStateModel.LIGHTS, reportedLights);
+			loadResources(DeconzStateModel.GROUPS, reportedGroups);
+			loadResources(DeconzStateModel.SENSORS, reportedSensors);
+			resyncs++;
+			isLoaded = true;
 		} catch (IOException e) {
 			this.state = "Disconnected";
 			logger.log(Level.INFO, "Failed to contact deCONZBridge", e);
 		} catch (JSONException e) {
 			logger.log(Level.INFO, "Command failed in deCONZBridge", e);
+		} finally {
+			synchronized (stateLock) {
+				List<String> messages = heldBackMessages;
+				heldBackMessages = null;
+				for (String message : messages) {
+					applyWebSocketMessage(message);
+				}
+				if (isLoaded) {
+					reportResources(isFullReport);
+				}
+			}
 		}
 	}
-	
-	private void reportAllGroupsState() {
-		try {
-			List<LightId> ids = listaAllGroups();
-			for (LightId id : ids) {
-				reportGroupState(id.getLampId());
+
+	private void loadResources(String type, Map<String, ?> reported) throws IOException {
+		JSONObject resources = client.get(url, String.format("/api/%s/%s", token, type), null).getObject();
+		for (String id : stateModel.getIds(type)) {
+			if (!resources.has(id)) {
+				stateModel.remove(type, id);
 			}
-		} catch (IOException e) {
-			this.state = "Disconnected";
-			logger.log(Level.INFO, "Failed to contact deCONZBridge", e);
-		} catch (JSONException e) {
-			logger.log(Level.INFO, "Command failed in deCONZBridge", e);
 		}
+		for (String id : getFieldNames(resources)) {
+			stateModel.put(type, id, resources.getJSONObject(id));
+		}
+		reported.keySet().retainAll(stateModel.getIds(type));
 	}
 
-	private void reportLampState(String lampId) {
+	/**
+	 * @param always if false only resources that differ from what was last reported are reported
+	 */
+	private void reportResources(boolean always) {
+		for (String type : new String[]{DeconzStateModel.LIGHTS, DeconzStateModel.GROUPS, DeconzStateModel.SENSORS}) {
+			for (String id : stateModel.getIds(type)) {
+				reportResource(type, id, always);
+			}
+		}
+	}
+
+	/**
+	 * Apply an event from the deCONZ WebSocket to the state model, and report the resource if it has changed.
+	 * While the state is read with the REST API the event is held back until the read state has been loaded.
+	 */
+	void processWebSocketMessage(String text) {
+		synchronized (stateLock) {
+			if (heldBackMessages != null) {
+				heldBackMessages.add(text);
+			} else {
+				applyWebSocketMessage(text);
+			}
+		}
+	}
+
+	private void applyWebSocketMessage(String text) {
 		try {
-			Light light = getLight(lampId);
-			Event event = server.createEvent("deCONZ_Message", "");
-			event.setAttribute("Direction", "In");
-			event.setAttribute(DE_CONZ_ID, lampId);
-			event.setAttribute("deCONZ.Command", light.getState().isOn() ? "On" : "Off");
-			event.setAttribute("deCONZ.Brightness", light.getState().getBrightness());
-			event.setAttribute("deCONZ.Name", light.getName());
-			event.setAttribute("deCONZ.Model", light.getModelid());
-			event.setAttribute("deCONZ.Type", light.getType());
-			event.setAttribute("deCONZ.Version", light.getSwversion());
-			if (light.getState().hasHueSat()) {
-				event.setAttribute("deCONZ.Hue", light.getState().getHue());
-				event.setAttribute("deCONZ.Saturation", light.getState().getSaturation());
+			JSONObject message = new JSONObject(text);
+			if (!message.optString("t").equals("event")) {
+				return;
 			}
-			if (light.getState().hasColorTemperature()) {
-				event.setAttribute("deCONZ.Temperature", light.getState().getColorTemperature());
+			String type = message.optString("r");
+			String id = message.optString("id");
+			String change = message.optString("e");
+			if (change.equals("changed")) {
+				if (stateModel.applyChange(message)) {
+					pushedChanges++;
+					reportResource(type, id, false);
+				}
+			} else if (change.equals("added")) {
+				// The added resource is included, as "light", "group" or "sensor"
+				JSONObject resource = message.optJSONObject(type.substring(0, Math.max(0, type.length() - 1)));
+				if (resource != null) {
+					stateModel.put(type, id, resource);
+					reportResource(type, id, false);
+				}
+			} else if (change.equals("deleted")) {
+				stateModel.remove(type, id);
 			}
-			server.send(event);
-		} catch (IOException e) {
-			this.state = "Disconnected";
-			logger.log(Level.INFO, "Failed to contact deCONZBridge", e);
 		} catch (JSONException e) {
-			logger.log(Level.INFO, "Command failed in deCONZBridge", e);
+			logger.log(Level.INFO, "Bad message from deCONZ WebSocket", e);
 		}
 	}
-	
-	private void reportGroupState(String lampId) {
+
+	/**
+	 * Report the current state of a resource in the state model as an event
+	 *
+	 * @param always if false the resource is only reported if it differs from what was last reported
+	 */
+	private void reportResource(String type, String id, boolean always) {
+		JSONObject resource = stateModel.get(type, id);
+		if (resource == null) {
+			return;
+		}
 		try {
-			LightGroup light = getLightGroup(lampId);
-			Event event = server.createEvent("deCONZ_lightgroup", "");
-			event.setAttribute("Direction", "In");
-			event.setAttribute(DE_CONZ_ID, lampId);
-			event.setAttribute("deCONZ.Command", light.getState().isAllOn() ? "On" : "Off");
-			event.setAttribute("deCONZ.Name", light.getName());
-			event.setAttribute("deCONZ.Type", light.getType());
-			server.send(event);
-		} catch (IOException e) {
-			this.state = "Disconnected";
-			logger.log(Level.INFO, "Failed to contact deCONZBridge", e);
+			if (type.equals(DeconzStateModel.LIGHTS)) {
+				Light light = new Light(resource);
+				if (always || !light.equals(reportedLights.get(id))) {
+					reportLampState(id, light);
+				}
+			} else if (type.equals(DeconzStateModel.GROUPS)) {
+				LightGroup group = new LightGroup(resource);
+				if (always || !group.equals(reportedGroups.get(id))) {
+					reportGroupState(id, group);
+				}
+			} else if (type.equals(DeconzStateModel.SENSORS)) {
+				JSONObject sensorState = resource.optJSONObject("state");
+				JSONObject reportedState = reportedSensors.get(id);
+				if (sensorState != null && (always || reportedState == null
+						|| !DeconzStateModel.isSameValue(sensorState, reportedState))) {
+					reportedSensors.put(id, sensorState);
+					reportSensorState(id, resource);
+				}
+			}
 		} catch (JSONException e) {
-			logger.log(Level.INFO, "Command failed in deCONZBridge", e);
+			logger.log(Level.INFO, String.format("Incomplete deCONZ resource %s/%s", type, id), e);
 		}
 	}
 
-	private Light getLight(String lampId) throws IOException {
-		String resource = String.format("/api/%s/lights/%s", token, lampId);
-		JSONData jResult = client.get(url, resource, null);
-		return new Light(jResult.getObject());
-	}
-	
-	private LightGroup getLightGroup(String lampId) throws IOException {
-		String resource = String.format("/api/%s/groups/%s", token , lampId);
-		JSONData jResult = client.get(url, resource, null);
-		return new LightGroup(jResult.getObject());
+	private void reportLampStateIfNotPushed(String lampId) {
+		if (!isWebSocketOpen()) {
+			reportLampState(lampId);
+		}
 	}
 
-	private ZHAPowerSensor getZHAPowerSensor(String id) throws IOException {
-		String resource = getSensor(id);
-		JSONData jResult = client.get(url, resource, null);
-		return new ZHAPowerSensor(id, jResult.getObject());
-	}
+	private void reportLampState(final String lampId) {
+		executeIo("deCONZ.GetLight", new AsyncIoExecutor.IoTask<Light>() {
+			@Override
+			public Light call() throws IOException {
+				return getLight(lampId);
+			}
+		}, new AsyncIoExecutor.Completion<Light>() {
+			@Override
+			public void completed(Light light) {
+				reportLampState(lampId, light);
+			}
 
-	private ZHAConsumptionSensor getZHAConsumptionSensor(String id) throws IOException {
-		String resource = getSensor(id);
-		JSONData jResult = client.get(url, resource, null);
-		return new ZHAConsumptionSensor(id, jResult.getObject());
+			@Override
+			public void failed(Exception e) {
+				logFailure(e);
+			}
+		});
 	}
 
-	private ZHAThermometer getZHAThermometer(String id) throws IOException {
-		String resource = getSensor(id);
-		JSONData jResult = client.get(url, resource, null);
-		return new ZHAThermometer(id, jResult.getObject());
-	}
-	
-	private String getSensor(String id) {
-		String resource = String.format("/api/%s/sensors/" + id, token);
-		return resource;
+	private void logFailure(Exception e) {
+		if (e instanceof IOException) {
+			this.state = "Disconnected";
+			logger.log(Level.INFO, "Failed to contact deCONZBridge", e);
+		} else {
+			logger.log(Level.INFO, "Command failed in deCONZBridge", e);
+		}
 	}
 
-	private void reportKnownSensors() {
-
-		if (!url.startsWith("http")) {
-			url = "http://" + url;
+	private void reportLampState(String lampId, Light light) {
+		reportedLights.put(lampId, light);
+		Event event = server.createEvent("deCONZ_Message", "");
+		event.setAttribute("Direction", "In");
+		event.setAttribute(DE_CONZ_ID, lampId);
+		event.setAttribute("deCONZ.Command", light.getState().isOn() ? "On" : "Off");
+		event.setAttribute("deCONZ.Brightness", light.getState().getBrightness());
+		event.setAttribute("deCONZ.Name", light.getName());
+		event.setAttribute("deCONZ.Model", light.getModelid());
+		event.setAttribute("deCONZ.Type", light.getType());
+		event.setAttribute("deCONZ.Version", light.getSwversion());
+		if (light.getState().hasHueSat()) {
+			event.setAttribute("deCONZ.Hue", light.getState().getHue());
+			event.setAttribute("deCONZ.Saturation", light.getState().getSaturation());
 		}
-		try {
-			List<Sensor> sensors = listaAllSensors();
-			for (Sensor sensor : sensors) {
-				if (sensor.getType().equals(ZGP_SWITCH_TYPE)) {
-					Event event = server.createEvent(DE_CONZ_SENSOR_MESSAGE, "");
-					event.setAttribute("Direction", "In");
-					event.setAttribute(DE_CONZ_ID, sensor.getId());
-					event.setAttribute("deCONZ.Name", sensor.getName());
-					event.setAttribute("deCONZ.Model", sensor.getModelid());
-					event.setAttribute("deCONZ.Type", sensor.getType());
-					event.setAttribute("deCONZ.Manufacturername", sensor.getManufacturername());
-					server.send(event);
-				} else if (sensor.getType().equals(ZHA_POWER)) {
-					ZHAPowerSensor zhaSensor = getZHAPowerSensor(sensor.getId());
-					Event event = server.createEvent(DE_CONZ_SENSOR_MESSAGE, "");
-					event.setAttribute("Direction", "In");
-					event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
-					event.setAttribute("deCONZ.Name", zhaSensor.getName());
-					event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
-					event.setAttribute("deCONZ.Type", zhaSensor.getType());
-					event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
-					event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
-					event.setAttribute("deCONZ.current", zhaSensor.getCurrent());
-					event.setAttribute("deCONZ.power", zhaSensor.getPower());
-					event.setAttribute("deCONZ.voltage", zhaSensor.getVoltage());
-					event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
-					server.send(event);
-				} else if (sensor.getType().equals(ZHA_CONSUMPTION)) {
-					ZHAConsumptionSensor zhaSensor = getZHAConsumptionSensor(sensor.getId());
-					Event event = server.createEvent(DE_CONZ_SENSOR_MESSAGE_ZHA_CONSUMPTION, "");
-					event.setAttribute("Direction", "In");
-					event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
-					event.setAttribute("deCONZ.Name", zhaSensor.getName());
-					event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
-					event.setAttribute("deCONZ.Type", zhaSensor.getType());
-					event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
-					event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
-					event.setAttribute("deCONZ.consumption", zhaSensor.getConsumption());
-					event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
-					server.send(event);
-				} else if (sensor.getType().equals(ZHA_TEMPERATURE)) {
-					ZHAThermometer zhaSensor = getZHAThermometer(sensor.getId());
-					Event event = server.createEvent(DE_CONZ_SENSOR_MESSAGE_ZHA_THERMOMETER, "");
-					event.setAttribute("Direction", "In");
-					event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
-					event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
-					event.setAttribute("deCONZ.Name", zhaSensor.getName());
-					event.setAttribute("deCONZ.Type", zhaSensor.getType());
-					event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
-					event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
-					event.setAttribute("deCONZ.temperature", zhaSensor.getTemperature());
-					event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
-					server.send(event);
-				}
-			}
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		if (light.getState().hasColorTemperature()) {
+			event.setAttribute("deCONZ.Temperature", light.getState().getColorTemperature());
 		}
+		server.send(event);
 	}
 
-	private List<Sensor> listaAllSensors() throws IOException {
-		String resource = String.format("/api/%s/sensors", token);
-		List<Sensor> sensors = new ArrayList<Sensor>();
-		JSONData jResult = client.get(url, resource, null);
-		JSONObject obj = jResult.getObject();
-		String[] names = JSONObject.getNames(obj);
-		for (String name : names) {
-			sensors.add(new Sensor(name, obj.getJSONObject(name)));
-		}
-		return sensors;
+	private void reportGroupState(String groupId, LightGroup group) {
+		reportedGroups.put(groupId, group);
+		Event event = server.createEvent("deCONZ_lightgroup", "");
+		event.setAttribute("Direction", "In");
+		event.setAttribute(DE_CONZ_ID, groupId);
+		event.setAttribute("deCONZ.Command", group.getState().isAllOn() ? "On" : "Off");
+		event.setAttribute("deCONZ.Name", group.getName());
+		event.setAttribute("deCONZ.Type", group.getType());
+		server.send(event);
 	}
 
-	private List<LightId> listaAllLights() throws IOException {
-		String resource = String.format("/api/%s/lights", token);
-		List<LightId> lights = new ArrayList<LightId>();
+	private Light getLight(String lampId) throws IOException {
+		String resource = String.format("/api/%s/lights/%s", token, lampId);
 		JSONData jResult = client.get(url, resource, null);
-		JSONObject obj = jResult.getObject();
-		String[] names = JSONObject.getNames(obj);
-		for (String name : names) {
-			lights.add(new LightId(name, obj.getJSONObject(name).getString("name")));
-		}
-		return lights;
+		return new Light(jResult.getObject());
 	}
 
-	private List<LightId> listaAllGroups() throws IOException {
-		String resource = String.format("/api/%s/groups", token);
-		List<LightId> lights = new ArrayList<LightId>();
-		JSONData jResult = client.get(url, resource, null);
-		JSONObject obj = jResult.getObject();
-		String[] names = JSONObject.getNames(obj);
-		for (String name : names) {
-			lights.add(new LightId(name, obj.getJSONObject(name).getString("name")));
+	private void reportSensorState(String id, JSONObject resource) {
+		Sensor sensor = new Sensor(id, resource);
+		Event event;
+		if (sensor.getType().equals(ZGP_SWITCH_TYPE)) {
+			event = server.createEvent(DE_CONZ_SENSOR_MESSAGE, "");
+			event.setAttribute("Direction", "In");
+			event.setAttribute(DE_CONZ_ID, sensor.getId());
+			event.setAttribute("deCONZ.Name", sensor.getName());
+			event.setAttribute("deCONZ.Model", sensor.getModelid());
+			event.setAttribute("deCONZ.Type", sensor.getType());
+			event.setAttribute("deCONZ.Manufacturername", sensor.getManufacturername());
+		} else if (sensor.getType().equals(ZHA_POWER)) {
+			ZHAPowerSensor zhaSensor = new ZHAPowerSensor(id, resource);
+			event = server.createEvent(DE_CONZ_SENSOR_MESSAGE, "");
+			event.setAttribute("Direction", "In");
+			event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
+			event.setAttribute("deCONZ.Name", zhaSensor.getName());
+			event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
+			event.setAttribute("deCONZ.Type", zhaSensor.getType());
+			event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
+			event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
+			event.setAttribute("deCONZ.current", zhaSensor.getCurrent());
+			event.setAttribute("deCONZ.power", zhaSensor.getPower());
+			event.setAttribute("deCONZ.voltage", zhaSensor.getVoltage());
+			event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
+		} else if (sensor.getType().equals(ZHA_CONSUMPTION)) {
+			ZHAConsumptionSensor zhaSensor = new ZHAConsumptionSensor(id, resource);
+			event = server.createEvent(DE_CONZ_SENSOR_MESSAGE_ZHA_CONSUMPTION, "");
+			event.setAttribute("Direction", "In");
+			event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
+			event.setAttribute("deCONZ.Name", zhaSensor.getName());
+			event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
+			event.setAttribute("deCONZ.Type", zhaSensor.getType());
+			event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
+			event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
+			event.setAttribute("deCONZ.consumption", zhaSensor.getConsumption());
+			event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
+		} else if (sensor.getType().equals(ZHA_TEMPERATURE)) {
+			ZHAThermometer zhaSensor = new ZHAThermometer(id, resource);
+			event = server.createEvent(DE_CONZ_SENSOR_MESSAGE_ZHA_THERMOMETER, "");
+			event.setAttribute("Direction", "In");
+			event.setAttribute(DE_CONZ_ID, zhaSensor.getId());
+			event.setAttribute("deCONZ.Model", zhaSensor.getModelid());
+			event.setAttribute("deCONZ.Name", zhaSensor.getName());
+			event.setAttribute("deCONZ.Type", zhaSensor.getType());
+			event.setAttribute("deCONZ.Version", zhaSensor.getSwversion());
+			event.setAttribute("deCONZ.Manufacturername", zhaSensor.getManufacturername());
+			event.setAttribute("deCONZ.temperature", zhaSensor.getTemperature());
+			event.setAttribute("deCONZ.lastupdated", zhaSensor.getLastupdated());
+		} else {
+			return;
 		}
-		return lights;
+		server.send(event);
 	}
-	
+
+	private String[] getFieldNames(JSONObject object) {
+		String[] result = JSONObject.getNames(object);
+		return result == null ? new String[0] : result;
+	}
+
 	private void turnLampOff(String lampId) {
 		setLightState(lampId, new LightState());
 	}
@@ -437,7 +585,7 @@ public class DeconzBridge extends HomeItemAdapter {
 		setLightGroupState(lampId, new LightState());
 	}
 
-	private void setLightState(String lampId, LightState state) {
+	private void setLightState(final String lampId, LightState state) {
 		JSONObject stateParameter = new JSONObject();
 		if (state.isOn()) {
 			stateParameter.put("on", true);
@@ -451,20 +599,10 @@ public class DeconzBridge extends HomeItemAdapter {
 		} else {
 			stateParameter.put("on", false);
 		}
-		String resource = String.format("/api/%s/lights/%s/state", token, lampId);
-		try {
-			JSONData result = client.put(url, resource, stateParameter);
-			checkForErrorResponse(result);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (DeconzProcessingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		putState(String.format("/api/%s/lights/%s/state", token, lampId), stateParameter, lampId);
 	}
 
-	private void setLightGroupState(String lampId, LightState state) {
+	private void setLightGroupState(final String lampId, LightState state) {
 		JSONObject stateParameter = new JSONObject();
 		if (state.isOn()) {
 			stateParameter.put("on", true);
@@ -478,19 +616,37 @@ public class DeconzBridge extends HomeItemAdapter {
 		} else {
 			stateParameter.put("on", false);
 		}
-		String resource = String.format("/api/%s/groups/%s/action", token, lampId);
-		try {
-			JSONData result = client.put(url, resource, stateParameter);
-			checkForErrorResponse(result);
-		} catch (IOException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (DeconzProcessingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		putState(String.format("/api/%s/groups/%s/action", token, lampId), stateParameter, null);
 	}
 	
+	/**
+	 * Send a state change to the gateway on the I/O thread
+	 *
+	 * @param lampId if not null the state of the lamp is reported afterwards, unless it is pushed over the WebSocket
+	 */
+	private void putState(final String resource, final JSONObject stateParameter, final String lampId) {
+		executeIo("deCONZ.PutState", new AsyncIoExecutor.IoTask<Void>() {
+			@Override
+			public Void call() throws IOException, DeconzProcessingException {
+				JSONData result = client.put(url, resource, stateParameter);
+				checkForErrorResponse(result);
+				return null;
+			}
+		}, new AsyncIoExecutor.Completion<Void>() {
+			@Override
+			public void completed(Void result) {
+				if (lampId != null) {
+					reportLampStateIfNotPushed(lampId);
+				}
+			}
+
+			@Override
+			public void failed(Exception e) {
+				logFailure(e);
+			}
+		});
+	}
+
 	private void turnLampOn(String lampId, Event event) {
 		Integer brightness = null;
 		if(event.getAttribute("deCONZ.Brightness")!="") {
@@ -560,14 +716,12 @@ public class DeconzBridge extends HomeItemAdapter {
 		this.bridgeIdentity = bridgeIdentity;
 	}
 
-	public String getRefreshInterval() {
-		return Integer.toString(refreshInterval);
-
+	public String getPushedChanges() {
+		return Long.toString(pushedChanges);
 	}
 
-	public void setRefreshInterval(String refreshInterval) {
-		this.refreshInterval = Integer.parseInt(refreshInterval);
-		refreshCounter = this.refreshInterval + 1;
+	public String getResyncs() {
+		return Long.toString(resyncs);
 	}
 
 	public String getState() {
@@ -582,6 +736,10 @@ public class DeconzBridge extends HomeItemAdapter {
 		return configuration != null ? configuration.getName() : "";
 	}
 
+	public String getConnectionReuse() {
+		return Integer.toString(client.getHttpClient().getReusePercentage());
+	}
+
 	public class DeconzWebsocketClient extends WebSocketClient {
 
 		public DeconzWebsocketClient(URI serverUri, Draft draft) {
@@ -598,45 +756,15 @@ public class DeconzBridge extends HomeItemAdapter {
 
 		@Override
 		public void onOpen(ServerHandshake handshakedata) {
-			System.out.println("opened connection");
-			// if you plan to refuse connection based on ip or httpfields overload:
-			// onWebsocketHandshakeReceivedAsClient
+			logger.info("Connected to deCONZ WebSocket " + getURI());
+			state = "Connected";
+			// Changes may have been missed while disconnected
+			requestStateSync(false);
 		}
 
 		@Override
 		public void onMessage(String message) {
-			JSONData data = new JSONData(message);
-			JSONObject jObject = data.getObject();
-			Event event;
-			String type = jObject.getString("r");
-			if (type.equalsIgnoreCase("sensors")) {
-				event = server.createEvent(DE_CONZ_SENSOR_MESSAGE, "");
-			} else if (type.equalsIgnoreCase("groups")) {
-				event = server.createEvent("deCONZ_lightgroup", "");
-			} else {
-				event = server.createEvent("deCONZ_Message", "");
-			}
-			event.setAttribute(DE_CONZ_ID, jObject.getString("id"));
-			event.setAttribute("Direction", "In");
-
-			try {
-			JSONObject state = jObject.getJSONObject("state");
-			String[] names = JSONObject.getNames(state);
-			for (String name : names) {
-				try {
-					event.setAttribute("deCONZ." + name, state.getString(name));
-				} catch (JSONException je) {
-					try {
-						event.setAttribute("deCONZ." + name, Integer.toString(state.getInt(name)));
-					} catch (JSONException je2) {
-						event.setAttribute("deCONZ." + name, Boolean.toString(state.getBoolean(name)));
-					}
-				}
-			}
-			} catch (JSONException je) {
-				logger.finest("Json object with no state object");
-			}
-			server.send(event);
+			processWebSocketMessage(message);
 		}
 
 		@Override
@@ -644,13 +772,15 @@ public class DeconzBridge extends HomeItemAdapter {
 			// The codecodes are documented in class org.java_websocket.framing.CloseFrame
 			logger.info("Connection closed by " + (remote ? "remote peer" : "us") + " Code: " + code + " Reason: "
 					+ reason);
-			state = "Disconnected";
+			if (this == webSocketClient) {
+				state = "Disconnected";
+			}
 		}
 
 		@Override
 		public void onError(Exception ex) {
-			ex.printStackTrace();
 			// if the error is fatal then onClose will be called additionally
+			logger.log(Level.INFO, "Error in deCONZ WebSocket", ex);
 		}
 	}
 }
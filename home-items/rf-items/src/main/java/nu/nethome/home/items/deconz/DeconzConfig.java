@@ -26,20 +26,25 @@ import org.json.JSONObject;
  */
 public class DeconzConfig {
 
+    public static final int DEFAULT_WEBSOCKET_PORT = 443;
+
     private final String name;
     private final String swVersion;
     private final String mac;
+    private final int websocketPort;
 
     public DeconzConfig(String name, String swVersion, String mac) {
         this.name = name;
         this.swVersion = swVersion;
         this.mac = mac;
+        this.websocketPort = DEFAULT_WEBSOCKET_PORT;
     }
 
     public DeconzConfig(JSONObject data) {
         this.name = data.getString("name");
         this.swVersion = data.getString("swversion");
         this.mac = data.getString("mac");
+        this.websocketPort = data.optInt("websocketport", DEFAULT_WEBSOCKET_PORT);
     }
 
     public String getName() {
@@ -53,4 +58,8 @@ public class DeconzConfig {
     public String getMac() {
         return mac;
     }
+
+    public int getWebsocketPort() {
+        return websocketPort;
+    }
 }
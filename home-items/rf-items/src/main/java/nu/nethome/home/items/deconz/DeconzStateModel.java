@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.deconz;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The last known state of the lights, groups and sensors of a deCONZ bridge. The model is loaded with the
+ * complete resources from the REST API and then kept up to date by the incremental events from the deCONZ
+ * WebSocket, which only contain the changed parts of a resource.
+ */
+public class DeconzStateModel {
+
+    public static final String LIGHTS = "lights";
+    public static final String GROUPS = "groups";
+    public static final String SENSORS = "sensors";
+
+    private static final String[] MERGED_SECTIONS = {"state", "config", "action"};
+
+    private final Map<String, Map<String, JSONObject>> resources = new HashMap<>();
+
+    public synchronized void clear() {
+        resources.clear();
+    }
+
+    /**
+     * Set the complete resource, as read from the REST API
+     */
+    public synchronized void put(String type, String id, JSONObject resource) {
+        resourcesOf(type).put(id, resource);
+    }
+
+    public synchronized void remove(String type, String id) {
+        resourcesOf(type).remove(id);
+    }
+
+    public synchronized boolean contains(String type, String id) {
+        return resourcesOf(type).containsKey(id);
+    }
+
+    /**
+     * @return a copy of the resource, or null if it is not known
+     */
+    public synchronized JSONObject get(String type, String id) {
+        JSONObject resource = resourcesOf(type).get(id);
+        return resource != null ? new JSONObject(resource.toString()) : null;
+    }
+
+    public synchronized List<String> getIds(String type) {
+        return new ArrayList<>(resourcesOf(type).keySet());
+    }
+
+    /**
+     * Apply a "changed" event from the deCONZ WebSocket to the resource it refers to.
+     *
+     * @param message the event
+     * @return true if the event changed any value of a known resource
+     */
+    public synchronized boolean applyChange(JSONObject message) {
+        JSONObject resource = resourcesOf(message.getString("r")).get(message.getString("id"));
+        if (resource == null) {
+            return false;
+        }
+        boolean changed = false;
+        for (String section : MERGED_SECTIONS) {
+            if (message.has(section)) {
+                if (!resource.has(section)) {
+                    resource.put(section, new JSONObject());
+                }
+                changed |= merge(message.getJSONObject(section), resource.getJSONObject(section));
+            }
+        }
+        if (message.has("attr")) {
+            changed |= merge(message.getJSONObject("attr"), resource);
+        }
+        if (message.has("name")) {
+            changed |= merge(new JSONObject().put("name", message.get("name")), resource);
+        }
+        return changed;
+    }
+
+    private static boolean merge(JSONObject changes, JSONObject target) {
+        boolean changed = false;
+        for (String key : fieldNames(changes)) {
+            Object value = changes.get(key);
+            if (!target.has(key) || !isSameValue(value, target.get(key))) {
+                target.put(key, value);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Compare two JSON values by content, regardless of the order of the fields in objects
+     */
+    public static boolean isSameValue(Object value1, Object value2) {
+        if (value1 instanceof JSONObject && value2 instanceof JSONObject) {
+            JSONObject object1 = (JSONObject) value1;
+            JSONObject object2 = (JSONObject) value2;
+            if (object1.length() != object2.length()) {
+                return false;
+            }
+            for (String key : fieldNames(object1)) {
+                if (!object2.has(key) || !isSameValue(object1.get(key), object2.get(key))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value1 instanceof JSONArray && value2 instanceof JSONArray) {
+            JSONArray array1 = (JSONArray) value1;
+            JSONArray array2 = (JSONArray) value2;
+            if (array1.length() != array2.length()) {
+                return false;
+            }
+            for (int i = 0; i < array1.length(); i++) {
+                if (!isSameValue(array1.get(i), array2.get(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (value1 instanceof Number && value2 instanceof Number) {
+            return ((Number) value1).doubleValue() == ((Number) value2).doubleValue();
+        }
+        return value1.equals(value2);
+    }
+
+    private static String[] fieldNames(JSONObject object) {
+        String[] result = JSONObject.getNames(object);
+        return result == null ? new String[0] : result;
+    }
+
+    private Map<String, JSONObject> resourcesOf(String type) {
+        Map<String, JSONObject> result = resources.get(type);
+        if (result == null) {
+            result = new HashMap<>();
+            resources.put(type, result);
+        }
+        return result;
+    }
+}
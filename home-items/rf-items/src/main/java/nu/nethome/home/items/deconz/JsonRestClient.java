@@ -19,80 +19,65 @@
 
 package nu.nethome.home.items.deconz;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import nu.nethome.home.items.ikea.JSONData;
+import nu.nethome.home.util.PooledHttpClient;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
 import java.net.ProtocolException;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
 
-import org.json.JSONObject;
+/**
+ * Performs JSON requests over a pooled keep-alive HTTP client. By default the client shared by all local
+ * network bridges is used, and responses are parsed directly from the connection.
+ */
+public class JsonRestClient {
 
-import nu.nethome.home.items.ikea.JSONData;
+    private static final Map<String, String> HEADERS = Collections.singletonMap("Content-Type", "application/json");
 
-public class JsonRestClient {
+    private static final PooledHttpClient.ResponseReader<JSONData> JSON_READER = new PooledHttpClient.ResponseReader<JSONData>() {
+        @Override
+        public JSONData read(int responseCode, Map<String, String> headers, InputStream body) throws IOException {
+            if (responseCode < 200 || responseCode > 299) {
+                throw new ProtocolException("Bad HTTP response code: " + responseCode);
+            }
+            return new JSONData(new JSONTokener(new InputStreamReader(body, StandardCharsets.UTF_8)));
+        }
+    };
+
+    private final PooledHttpClient httpClient;
+
+    public JsonRestClient() {
+        this(PooledHttpClient.getSharedInstance());
+    }
+
+    public JsonRestClient(PooledHttpClient httpClient) {
+        this.httpClient = httpClient;
+    }
 
     public JSONData get(String baseUrl, String resource, JSONObject argument) throws IOException {
-        return new JSONData(performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "GET"));
+        return performRequest(baseUrl, resource, argument, "GET");
     }
 
     public JSONData put(String baseUrl, String resource, JSONObject argument) throws IOException {
-        return new JSONData(performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "PUT"));
+        return performRequest(baseUrl, resource, argument, "PUT");
     }
 
     public JSONData post(String baseUrl, String resource, JSONObject argument) throws IOException {
-        return new JSONData(performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "POST"));
+        return performRequest(baseUrl, resource, argument, "POST");
     }
 
-    private String performRequest(String baseUrl, String resource, String body, String method) throws IOException {
-        HttpURLConnection connection = null;
-        DataOutputStream wr = null;
-        BufferedReader rd = null;
-        StringBuilder sb = new StringBuilder();
-        String line;
-        URL serverAddress;
-
-        try {
-            serverAddress = new URL(baseUrl + resource);
-
-            //Set up the initial connection
-            connection = (HttpURLConnection) serverAddress.openConnection();
-            connection.setRequestMethod(method);
-            connection.setDoOutput(true);
-            connection.setReadTimeout(10000);
-            connection.setInstanceFollowRedirects(false);
-            connection.setRequestProperty("Content-Type", "application/json");
-            connection.setUseCaches(false);
-            if (body.length() > 0) {
-                connection.setRequestProperty("Content-Length", "" + Integer.toString(body.getBytes().length));
-                wr = new DataOutputStream(connection.getOutputStream());
-                wr.writeBytes(body);
-                wr.flush();
-                wr.close();
-            }
-            connection.connect();
-            if (connection.getResponseCode() < 200 || connection.getResponseCode() > 299) {
-                throw new ProtocolException("Bad HTTP response code: " + connection.getResponseCode());
-            }
-            rd = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-
-            while ((line = rd.readLine()) != null) {
-                sb.append(line);
-                sb.append('\n');
-            }
+    public PooledHttpClient getHttpClient() {
+        return httpClient;
+    }
 
-        } finally {
-            if (rd != null) {
-                rd.close();
-            }
-            if (wr != null) {
-                wr.close();
-            }
-            if (connection != null) {
-                connection.disconnect();
-            }
-        }
-        return sb.toString();
+    private JSONData performRequest(String baseUrl, String resource, JSONObject argument, String method) throws IOException {
+        byte[] body = argument != null ? argument.toString().getBytes(StandardCharsets.UTF_8) : null;
+        return httpClient.execute(method, baseUrl + resource, HEADERS, body, JSON_READER);
     }
 }
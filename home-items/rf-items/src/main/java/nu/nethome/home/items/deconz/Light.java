@@ -21,6 +21,8 @@ package nu.nethome.home.items.deconz;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 /**
  *
  */
@@ -66,4 +68,22 @@ public class Light {
     public String getSwversion() {
         return swversion;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Light other = (Light) o;
+        return Objects.equals(state, other.state) &&
+                Objects.equals(type, other.type) &&
+                Objects.equals(name, other.name) &&
+                Objects.equals(modelid, other.modelid) &&
+                Objects.equals(swversion, other.swversion);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(state, type, name, modelid, swversion);
+    }
 }
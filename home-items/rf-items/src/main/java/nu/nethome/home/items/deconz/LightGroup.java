@@ -21,6 +21,8 @@ package nu.nethome.home.items.deconz;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 /**
  *
  */
@@ -53,4 +55,19 @@ public class LightGroup {
         return name;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        LightGroup other = (LightGroup) o;
+        return Objects.equals(state, other.state) &&
+                Objects.equals(type, other.type) &&
+                Objects.equals(name, other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(state, type, name);
+    }
 }
@@ -21,6 +21,8 @@ package nu.nethome.home.items.deconz;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 /**
  *
  */
@@ -54,4 +56,18 @@ public class LightGroupState {
 		this.anyOn = anyOn;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		LightGroupState other = (LightGroupState) o;
+		return allOn == other.allOn &&
+				anyOn == other.anyOn;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(allOn, anyOn);
+	}
 }
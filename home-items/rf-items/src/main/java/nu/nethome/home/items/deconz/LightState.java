@@ -21,6 +21,8 @@ package nu.nethome.home.items.deconz;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 /**
  *
  */
@@ -117,4 +119,23 @@ public class LightState {
 	public void setAnyOn(boolean anyOn) {
 		this.anyOn = anyOn;
 	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) return true;
+		if (o == null || getClass() != o.getClass()) return false;
+
+		LightState other = (LightState) o;
+		return allOn == other.allOn &&
+				anyOn == other.anyOn &&
+				Objects.equals(brightness, other.brightness) &&
+				Objects.equals(hue, other.hue) &&
+				Objects.equals(saturation, other.saturation) &&
+				Objects.equals(colorTemperature, other.colorTemperature);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(allOn, anyOn, brightness, hue, saturation, colorTemperature);
+	}
 }
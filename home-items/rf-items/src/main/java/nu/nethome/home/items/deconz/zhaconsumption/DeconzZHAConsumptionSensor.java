@@ -81,7 +81,7 @@ public class DeconzZHAConsumptionSensor extends HomeItemAdapter implements HomeI
 	}
 
 	public boolean receiveEvent(Event event) {
-		if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(DE_CONZ_SENSOR_MESSAGE)
+		if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(DE_CONZ_SENSOR_MESSAGE_ZHA_CONSUMPTION)
 				&& event.getAttribute("Direction").equals("In")
 				&& event.getAttribute(DE_CONZ_ID).equals(itemDeviceId)) {
 			setConsumption(event.getAttribute("deCONZ.consumption"));
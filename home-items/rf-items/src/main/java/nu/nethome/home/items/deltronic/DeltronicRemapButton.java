@@ -23,8 +23,11 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.RemapButton;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -56,24 +59,19 @@ public class DeltronicRemapButton extends RemapButton implements HomeItem {
     private int itemButton = 0;
     private int itemAddress = 0;
 
-    public boolean receiveEvent(Event event) {
-        // Check the event and see if they affect our current state.
-        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("Deltronic_Message") &&
-                event.getAttribute("Direction").equals("In") &&
-                (event.getAttributeInt("Deltronic.Button") == itemButton) &&
-                (event.getAttributeInt("Deltronic.Address") == itemAddress)) {
-
-            processEvent(event);
-            return true;
-        } else {
-            return handleInit(event);
-        }
+    @Override
+    protected List<EventCondition> getMatchConditions() {
+        return Collections.singletonList(new EventCondition("Deltronic_Message")
+                .with("Direction", "In")
+                .with("Deltronic.Button", itemButton)
+                .with("Deltronic.Address", itemAddress));
     }
 
     @Override
     protected boolean initAttributes(Event event) {
         itemAddress = event.getAttributeInt("Deltronic.Address");
         itemButton = event.getAttributeInt("Deltronic.Button");
+        updateMatchConditions();
         return true;
     }
 
@@ -108,6 +106,7 @@ public class DeltronicRemapButton extends RemapButton implements HomeItem {
             int result = Integer.parseInt(address);
             if ((result >= 0) && (result < 64)) {
                 itemAddress = result;
+                updateMatchConditions();
             }
         } catch (NumberFormatException e) {
             // Ignore
@@ -134,6 +133,7 @@ public class DeltronicRemapButton extends RemapButton implements HomeItem {
         if ((upperButton.length() == 1) && (upperButton.compareTo("A") >= 0) &&
                 (upperButton.compareTo("D") <= 0)) {
             itemButton = (int) upperButton.charAt(0) - (int) 'A';
+            updateMatchConditions();
         }
     }
 }
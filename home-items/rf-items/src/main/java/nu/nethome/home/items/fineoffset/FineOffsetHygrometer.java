@@ -48,6 +48,8 @@ public class FineOffsetHygrometer extends FineOffsetThermometer implements HomeI
             + "  <Attribute Name=\"LastUpdate\" Type=\"String\" Get=\"getLastUpdate\"  Unit=\"s\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getK\" 	Set=\"setK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getM\" 	Set=\"setM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
 
     // Public attributes
@@ -55,6 +57,7 @@ public class FineOffsetHygrometer extends FineOffsetThermometer implements HomeI
 
     public FineOffsetHygrometer() {
         constantK = 1;
+        sensorValue = new SensorValue(this, "Humidity");
         logger = Logger.getLogger(FineOffsetHygrometer.class.getName());
     }
 
@@ -65,6 +68,11 @@ public class FineOffsetHygrometer extends FineOffsetThermometer implements HomeI
         return super.handleEvent(event);
     }
 
+    @Override
+    protected double getSensorValue() {
+        return humidity;
+    }
+
     public String getModel() {
         return MODEL;
     }
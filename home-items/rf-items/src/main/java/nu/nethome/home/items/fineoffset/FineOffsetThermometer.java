@@ -24,8 +24,6 @@ import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.logging.Logger;
 
 /**
@@ -48,18 +46,19 @@ public class FineOffsetThermometer extends HomeItemAdapter implements HomeItem,
             + "  <Attribute Name=\"LastUpdate\" Type=\"String\" Get=\"getLastUpdate\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getK\" 	Set=\"setK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getM\" 	Set=\"setM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
 
     protected Logger logger = Logger.getLogger(FineOffsetThermometer.class.getName());
     private ExtendedLoggerComponent tempLoggerComponent = new ExtendedLoggerComponent(this);
-    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("HH:mm:ss yyyy.MM.dd ");
+    protected SensorValue sensorValue = new SensorValue(this, "Temperature");
 
     // Public attributes
     private double temperature = 0;
     protected double constantK = 0.1;
     protected double constantM = 0;
     private String itemDeviceId = "";
-    private Date latestUpdateOrCreation = new Date();
     protected boolean hasBeenUpdated = false;
 
     public FineOffsetThermometer() {
@@ -79,12 +78,18 @@ public class FineOffsetThermometer extends HomeItemAdapter implements HomeItem,
     protected boolean handleEvent(Event event) {
         temperature = constantK * event.getAttributeInt("FineOffset.Temp") + constantM;
         logger.finer("Temperature update: " + temperature + " degrees");
-        // Format and store the current time.
-        latestUpdateOrCreation = new Date();
         hasBeenUpdated = true;
+        sensorValue.update(getSensorValue());
         return true;
     }
 
+    /**
+     * @return the value presented as the default attribute, which is reported when it changes
+     */
+    protected double getSensorValue() {
+        return temperature;
+    }
+
     @Override
     protected boolean initAttributes(Event event) {
         itemDeviceId = event.getAttribute("FineOffset.Identity");
@@ -144,7 +149,7 @@ public class FineOffsetThermometer extends HomeItemAdapter implements HomeItem,
     }
 
     public String getLastUpdate() {
-        return hasBeenUpdated ? dateFormatter.format(latestUpdateOrCreation) : "";
+        return sensorValue.getLastUpdate();
     }
 
     public String getLogFile() {
@@ -156,6 +161,22 @@ public class FineOffsetThermometer extends HomeItemAdapter implements HomeItem,
     }
 
     public String getTimeSinceUpdate() {
-        return Long.toString((new Date().getTime() - latestUpdateOrCreation.getTime()) / 1000);
+        return sensorValue.getTimeSinceUpdate();
+    }
+
+    public String getReportDeadband() {
+        return sensorValue.getDeadband();
+    }
+
+    public void setReportDeadband(String deadband) {
+        sensorValue.setDeadband(deadband);
+    }
+
+    public String getReportMinInterval() {
+        return sensorValue.getMinReportInterval();
+    }
+
+    public void setReportMinInterval(String minInterval) {
+        sensorValue.setMinReportInterval(minInterval);
     }
 }
@@ -20,6 +20,7 @@
 package nu.nethome.home.items.fs20;
 
 import gnu.io.*;
+import nu.nethome.home.util.SerialFramer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -149,6 +150,12 @@ public class FHZ1000PC {
 	    protected SerialPort serialPort;
 	    protected CommPortIdentifier portId = null;
 		protected boolean m_CallbackActive = false;
+		private final SerialFramer m_Framer = SerialFramer.lengthPrefixed(START_BYTE, new SerialFramer.FrameListener() {
+			@Override
+			public void frameReceived(byte[] data, int offset, int length) {
+				messageReceived(data, offset, length);
+			}
+		});
 		public void activate() throws IOException {
 			m_CallbackActive = true;
 		}
@@ -223,7 +230,11 @@ public class FHZ1000PC {
 	    		break;
 	    	case SerialPortEvent.DATA_AVAILABLE:
 	    		if (m_CallbackActive) {
-	    			deviceEvent();
+	    			try {
+	    				m_Framer.readAvailable(inputStream);
+	    			} catch (IOException e) {
+	    				logger.warning("Failed to read from FHZ1000PC: " + e);
+	    			}
 	    		}
 	    		break;
 	    	}
@@ -236,20 +247,18 @@ public class FHZ1000PC {
 	    
 	    public byte[] read(int length)throws IOException {
 	    	byte result[] = new byte[length];
-	    	byte tempResult[] = new byte[1];
 	    	int read;
 	    	int i = 0;
 	    	int waitCount = 0;
 	    	long start = System.currentTimeMillis();    // starting time 
 
 	    	// The Linux drivers for the FTDI serial chip does not appear to support waiting for more
-	    	// than one character at the time. Therefore we have to read the characters one at the time
-	    	// and then assemble the result.
+	    	// than one character at the time. Therefore we read what has arrived so far and assemble
+	    	// the result.
 	    	while (i < length) {
-	    		read = inputStream.read(tempResult);
-	    		if (read == 1) {
-	    			result[i] = tempResult[0];
-	    			i++;
+	    		read = inputStream.read(result, i, length - i);
+	    		if (read > 0) {
+	    			i += read;
 	    		} else {
 	    			// If we did not get any character, we wait approximately one character "time"
 	    			// and try again, but max for MAX_WAIT_TIME_MS milliseconds.
@@ -382,24 +391,22 @@ public class FHZ1000PC {
 	}
 
 
-	public void deviceEvent() {
-		try {
-				byte message[] = read();
-				// Verify that this seems to be a legitimate message
-				if ((message.length == 11) && (message[0] == 4) && (message[2] == 1)) {
-					// Ok, extract the data and create an event
-					int houseCode = (message[6] << 8) + message[7];
-					byte function = message[10];
-					byte button = message[8];
-					FS20Event event = new FS20Event(houseCode, function, button);
-					// Notify the event listener
-					if (m_EventListener != null) {
-						m_EventListener.fs20Event(event);
-					}
-				}
-		}
-		catch (IOException e) {
-			// NYI - handle read faliure
+	/**
+	 * Called with the payload of each message received from the FHZ1000PC device while an
+	 * event listener is registered. The payload has the same layout as returned by read().
+	 */
+	public void messageReceived(byte message[], int offset, int length) {
+		// Verify that this seems to be a legitimate message
+		if ((length == 11) && (message[offset] == 4) && (message[offset + 2] == 1)) {
+			// Ok, extract the data and create an event
+			int houseCode = (message[offset + 6] << 8) + message[offset + 7];
+			byte function = message[offset + 10];
+			byte button = message[offset + 8];
+			FS20Event event = new FS20Event(houseCode, function, button);
+			// Notify the event listener
+			if (m_EventListener != null) {
+				m_EventListener.fs20Event(event);
+			}
 		}
 	}
 
@@ -23,8 +23,12 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.RemapButton;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * Receives messages from a FS20-button, for example a wall switch and
@@ -76,22 +80,18 @@ public class FS20RemapButton extends RemapButton implements HomeItem {
 	public FS20RemapButton() {
 	}
 
-	public boolean receiveEvent(Event event) {
-		// Check the events and see if they affect our current state.
-		if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals(FHZ1000PcPort.EVENT_TYPE_FS20_EVENT) &&
-                event.getAttribute(FHZ1000PcPort.EVENT_HOUSECODE_ATTRIBUTE).equals(houseCode) &&
-				event.getAttribute(FHZ1000PcPort.EVENT_DEVICECODE_ATTRIBUTE).equals(deviceCode)) {
-		    processEvent(event);
-            return true;
-        } else {
-            return handleInit(event);
-        }
+    @Override
+    protected List<EventCondition> getMatchConditions() {
+        return Collections.singletonList(new EventCondition(FHZ1000PcPort.EVENT_TYPE_FS20_EVENT)
+                .with(FHZ1000PcPort.EVENT_HOUSECODE_ATTRIBUTE, houseCode)
+                .with(FHZ1000PcPort.EVENT_DEVICECODE_ATTRIBUTE, deviceCode));
     }
 
     @Override
     protected boolean initAttributes(Event event) {
         houseCode = event.getAttribute(FHZ1000PcPort.EVENT_HOUSECODE_ATTRIBUTE);
         deviceCode = event.getAttribute(FHZ1000PcPort.EVENT_DEVICECODE_ATTRIBUTE);
+        updateMatchConditions();
         return true;
     }
 
@@ -129,6 +129,7 @@ public class FS20RemapButton extends RemapButton implements HomeItem {
 
 	public void setDeviceCode(String deviceCode) {
 		this.deviceCode = deviceCode;
+		updateMatchConditions();
 	}
 
 	public String getHouseCode() {
@@ -137,6 +138,7 @@ public class FS20RemapButton extends RemapButton implements HomeItem {
 
 	public void setHouseCode(String houseCode) {
 		this.houseCode = houseCode;
+		updateMatchConditions();
 	}
 	
 	public String getFHZ1000PcPort() {
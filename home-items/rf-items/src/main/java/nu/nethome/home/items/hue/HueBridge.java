@@ -23,10 +23,19 @@ import nu.nethome.home.item.AutoCreationInfo;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.util.AsyncIoExecutor;
+import nu.nethome.home.util.PooledHttpClient;
 import nu.nethome.util.plugin.Plugin;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -71,6 +80,9 @@ public class HueBridge extends HomeItemAdapter {
             + "  <Attribute Name=\"SWVersion\" Type=\"String\" Get=\"getSWVersion\"  />"
             + "  <Attribute Name=\"UserName\" Type=\"String\" Get=\"getUserName\" Init=\"setUserName\" />"
             + "  <Attribute Name=\"RefreshInterval\" Type=\"String\" Get=\"getRefreshInterval\" Set=\"setRefreshInterval\" />"
+            + "  <Attribute Name=\"ConnectionReuse\" Type=\"String\" Get=\"getConnectionReuse\" Unit=\"%\" />"
+            + "  <Attribute Name=\"InFlight\" Type=\"String\" Get=\"getIoInFlight\" />"
+            + "  <Attribute Name=\"Latency\" Type=\"String\" Get=\"getIoLatency\" Unit=\"ms\" />"
             + "  <Action Name=\"findBridge\" Method=\"findBridge\" />"
             + "  <Action Name=\"registerUser\" Method=\"registerUser\" />"
             + "  <Action Name=\"reconnect\" Method=\"reconnect\" />"
@@ -87,6 +99,9 @@ public class HueBridge extends HomeItemAdapter {
     private int refreshCounter = 0;
     private HueConfig configuration = null;
     private String state = "Disconnected";
+    private final Map<String, Light> reportedLights = new ConcurrentHashMap<>();
+    private volatile boolean isFullReportPending;
+    private ExecutorService syncExecutor;
 
 
     @Override
@@ -96,9 +111,26 @@ public class HueBridge extends HomeItemAdapter {
 
     @Override
     public void activate() {
+        syncExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1),
+                new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-Sync");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.DiscardPolicy());
         reconnect();
     }
 
+    @Override
+    public void stop() {
+        if (syncExecutor != null) {
+            syncExecutor.shutdownNow();
+        }
+        super.stop();
+    }
+
     public void reconnect() {
         hueBridge = new PhilipsHueBridge(url, bridgeIdentity);
         checkConnection();
@@ -144,23 +176,13 @@ public class HueBridge extends HomeItemAdapter {
             String command = event.getAttribute("Hue.Command");
             if (command.equals("On") && lampId.length() > 0) {
                 turnLampOn(lampId, event);
-                reportLampState(lampId);
             } else if (command.equals("Off") && lampId.length() > 0) {
                 turnLampOff(lampId);
-                reportLampState(lampId);
             }
             return true;
         } else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems") ||
                 (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("MinuteEvent") && refreshCounter++ > refreshInterval)) {
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    reportAllLampsState();
-                }
-            }).run();
-            if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems")) {
-                reportKnownSensors();
-            }
+            requestStateSync(event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportItems"));
             return true;
         }  else if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("ReportHueLamp")) {
             String lampId = event.getAttribute("Hue.Lamp");
@@ -189,52 +211,109 @@ public class HueBridge extends HomeItemAdapter {
         return url;
     }
 
-    private void reportAllLampsState() {
+    /**
+     * Request a sync of the lamp states on the sync thread. At most one sync is waiting while another one runs,
+     * so requests arriving during a sync are coalesced into one.
+     *
+     * @param isFullReport if true all lamps and sensors are reported, otherwise only lamps which have changed
+     */
+    private void requestStateSync(boolean isFullReport) {
         refreshCounter = 0;
+        if (isFullReport) {
+            isFullReportPending = true;
+        }
+        if (syncExecutor != null) {
+            syncExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    syncState();
+                }
+            });
+        }
+    }
+
+    private void syncState() {
+        boolean isFullReport = isFullReportPending;
+        isFullReportPending = false;
         try {
-            List<LightId> ids = hueBridge.listLights(userName);
-            for (LightId id : ids) {
-                reportLampState(id.getLampId());
-                Thread.sleep(100);
+            Map<String, Light> lights = hueBridge.listLightStates(userName);
+            for (Map.Entry<String, Light> light : lights.entrySet()) {
+                if (isFullReport || !light.getValue().equals(reportedLights.get(light.getKey()))) {
+                    reportLampState(light.getKey(), light.getValue());
+                }
             }
+            reportedLights.keySet().retainAll(lights.keySet());
         } catch (IOException e) {
             this.state = "Disconnected";
             logger.log(Level.INFO, "Failed to contact HueBridge", e);
         } catch (HueProcessingException e) {
             logger.log(Level.INFO, "Command failed in HueBridge", e);
-        } catch (InterruptedException e) {
-            // Do Dinada
+        }
+        if (isFullReport) {
+            reportKnownSensors();
         }
     }
 
-    private void reportLampState(String lampId) {
-        try {
-            Light light = hueBridge.getLight(userName, lampId);
-            Event event = server.createEvent("Hue_Message", "");
-            event.setAttribute("Direction", "In");
-            event.setAttribute("Hue.Lamp", lampId);
-            event.setAttribute("Hue.Command", light.getState().isOn() ? "On" : "Off");
-            event.setAttribute("Hue.Brightness", light.getState().getBrightness());
-            event.setAttribute("Hue.Name", light.getName());
-            event.setAttribute("Hue.Model", light.getModelid());
-            event.setAttribute("Hue.Type", light.getType());
-            event.setAttribute("Hue.Version", light.getSwversion());
-            if (light.getState().hasHueSat()) {
-                event.setAttribute("Hue.Hue", light.getState().getHue());
-                event.setAttribute("Hue.Saturation", light.getState().getSaturation());
-            }
-            if (light.getState().hasColorTemperature()) {
-                event.setAttribute("Hue.Temperature", light.getState().getColorTemperature());
+    private void reportLampState(final String lampId) {
+        executeIo("Hue.GetLight", new AsyncIoExecutor.IoTask<Light>() {
+            @Override
+            public Light call() throws Exception {
+                return hueBridge.getLight(userName, lampId);
             }
-            server.send(event);
-        } catch (IOException e) {
+        }, new LampStateReporter(lampId));
+    }
+
+    /**
+     * Reports the lamp state read from the bridge when an I/O operation is done
+     */
+    private class LampStateReporter implements AsyncIoExecutor.Completion<Light> {
+        private final String lampId;
+
+        LampStateReporter(String lampId) {
+            this.lampId = lampId;
+        }
+
+        @Override
+        public void completed(Light light) {
+            reportLampState(lampId, light);
+        }
+
+        @Override
+        public void failed(Exception e) {
+            logFailure(e);
+        }
+    }
+
+    private void logFailure(Exception e) {
+        if (e instanceof HueProcessingException) {
+            logger.log(Level.INFO, "Command failed in HueBridge", e);
+        } else {
             this.state = "Disconnected";
             logger.log(Level.INFO, "Failed to contact HueBridge", e);
-        } catch (HueProcessingException e) {
-            logger.log(Level.INFO, "Command failed in HueBridge", e);
         }
     }
 
+    private void reportLampState(String lampId, Light light) {
+        reportedLights.put(lampId, light);
+        Event event = server.createEvent("Hue_Message", "");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Hue.Lamp", lampId);
+        event.setAttribute("Hue.Command", light.getState().isOn() ? "On" : "Off");
+        event.setAttribute("Hue.Brightness", light.getState().getBrightness());
+        event.setAttribute("Hue.Name", light.getName());
+        event.setAttribute("Hue.Model", light.getModelid());
+        event.setAttribute("Hue.Type", light.getType());
+        event.setAttribute("Hue.Version", light.getSwversion());
+        if (light.getState().hasHueSat()) {
+            event.setAttribute("Hue.Hue", light.getState().getHue());
+            event.setAttribute("Hue.Saturation", light.getState().getSaturation());
+        }
+        if (light.getState().hasColorTemperature()) {
+            event.setAttribute("Hue.Temperature", light.getState().getColorTemperature());
+        }
+        server.send(event);
+    }
+
     private void reportKnownSensors() {
         try {
             List<Sensor> sensors = hueBridge.listSensors(userName);
@@ -263,15 +342,17 @@ public class HueBridge extends HomeItemAdapter {
         setLightState(lampId, new LightState());
     }
 
-    private void setLightState(String lampId, LightState state) {
-        try {
-            hueBridge.setLightState(userName, lampId, state);
-        } catch (IOException e) {
-            this.state = "Disconnected";
-            logger.log(Level.INFO, "Failed to contact HueBridge", e);
-        } catch (HueProcessingException e) {
-            logger.log(Level.INFO, "Command failed in HueBridge", e);
-        }
+    /**
+     * Set the state of the lamp and read back the resulting state on the I/O thread
+     */
+    private void setLightState(final String lampId, final LightState state) {
+        executeIo("Hue.SetLightState", new AsyncIoExecutor.IoTask<Light>() {
+            @Override
+            public Light call() throws Exception {
+                hueBridge.setLightState(userName, lampId, state);
+                return hueBridge.getLight(userName, lampId);
+            }
+        }, new LampStateReporter(lampId));
     }
 
     private void turnLampOn(String lampId, Event event) {
@@ -349,4 +430,8 @@ public class HueBridge extends HomeItemAdapter {
         return configuration != null ? configuration.getName() : "";
     }
 
+    public String getConnectionReuse() {
+        return Integer.toString(PooledHttpClient.getSharedInstance().getReusePercentage());
+    }
+
 }
@@ -22,6 +22,7 @@ package nu.nethome.home.items.hue;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 /**
  *
@@ -42,6 +43,20 @@ public class JSONData {
         }
     }
 
+    public JSONData(JSONTokener tokener) {
+        char first = tokener.nextClean();
+        tokener.back();
+        if (first == '[') {
+            array = new JSONArray(tokener);
+            object = null;
+        } else if (first == '{') {
+            object = new JSONObject(tokener);
+            array = null;
+        } else {
+            throw new JSONException("Data not object or array");
+        }
+    }
+
     public boolean isObject() {
         return object != null;
     }
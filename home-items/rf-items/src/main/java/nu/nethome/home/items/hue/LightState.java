@@ -21,6 +21,8 @@ package nu.nethome.home.items.hue;
 
 import org.json.JSONObject;
 
+import java.util.Objects;
+
 /**
  *
  */
@@ -94,4 +96,22 @@ public class LightState {
     public Boolean hasHueSat() {
         return saturation > 0;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        LightState other = (LightState) o;
+        return isOn == other.isOn &&
+                brightness == other.brightness &&
+                hue == other.hue &&
+                saturation == other.saturation &&
+                colorTemperature == other.colorTemperature;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(isOn, brightness, hue, saturation, colorTemperature);
+    }
 }
@@ -28,7 +28,9 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -140,6 +142,29 @@ public class PhilipsHueBridge {
         }
     }
 
+    /**
+     * Get the state of all lamps known to the bridge with one request
+     *
+     * @param user Registered user
+     * @return Map from lamp identity to lamp
+     * @throws IOException            If communication fails
+     * @throws HueProcessingException If the command cannot be executed
+     */
+    public Map<String, Light> listLightStates(String user) throws HueProcessingException, IOException {
+        try {
+            String resource = String.format("/api/%s/lights", user);
+            JSONData result = client.get(url, resource, null);
+            checkForErrorResponse(result);
+            Map<String, Light> lights = new LinkedHashMap<>();
+            for (String lampId : getFieldNames(result.getObject())) {
+                lights.put(lampId, new Light(result.getObject().getJSONObject(lampId)));
+            }
+            return lights;
+        } catch (JSONException e) {
+            throw new HueProcessingException(e);
+        }
+    }
+
     /**
      * List all sensors known to the bridge
      *
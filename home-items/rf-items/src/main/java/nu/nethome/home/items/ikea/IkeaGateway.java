@@ -24,11 +24,13 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.MDNSScanner;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
+import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.net.InetSocketAddress;
-import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import static nu.nethome.home.items.MDNSScanner.MDNS_CREATION_MESSAGE;
@@ -87,10 +89,12 @@ public class IkeaGateway extends HomeItemAdapter {
             + "  <Attribute Name=\"ClientCode\" Type=\"Password\" Get=\"getClientCode\" Init=\"setClientCode\" />"
             + "  <Attribute Name=\"ClientName\" Type=\"String\" Get=\"getClientName\" Init=\"setClientName\" />"
             + "  <Attribute Name=\"NodeCount\" Type=\"String\" Get=\"getNodeCount\" />"
+            + "  <Attribute Name=\"ObservedNodes\" Type=\"String\" Get=\"getObservedNodes\" />"
             + "</HomeItem> ");
 
     private static Logger logger = Logger.getLogger(IkeaGateway.class.getName());
     private static final int DESTINATION_PORT = 5684;
+    private static final String NODES = "/15001";
 
     private String securityCode = "";
     private String clientCode = "";
@@ -98,11 +102,10 @@ public class IkeaGateway extends HomeItemAdapter {
     private String address = "";
     private String port = "";
     private String bridgeIdentity = "";
-    private int refreshInterval = 5;
-    private int refreshCounter = 0;
     private String state = "";
     private IkeaGatewayClient client = new IkeaGatewayClient();
-    private int nodeCount = 0;
+    private volatile int nodeCount = 0;
+    private boolean hasKey = false;
 
     @Override
     public String getModel() {
@@ -136,10 +139,61 @@ public class IkeaGateway extends HomeItemAdapter {
         String preSharedKey = !clientCode.isEmpty() ? clientCode : securityCode;
         if (!preSharedKey.isEmpty() && !address.isEmpty()) {
             client.setRouterKey(new InetSocketAddress(getAddress(), DESTINATION_PORT),clientName, preSharedKey.getBytes());
-            nodeCount = client.getNodeIds(address, port).size();
+            client.cancelObservations();
+            hasKey = true;
+            discoverNodes();
         }
     }
 
+    /**
+     * List the nodes of the gateway and observe the nodes not observed yet. This is done at activation and then
+     * every minute, so nodes are observed even if the gateway was unreachable at activation, and nodes paired
+     * later are observed as well.
+     */
+    private void discoverNodes() {
+        client.sendCoapRequestAsync(createUri(NODES), "GET", "", new IkeaGatewayClient.ResponseListener() {
+            @Override
+            public void responseReceived(String uri, JSONData response) {
+                if (!response.isObject()) {
+                    observeNodes(response.getArray());
+                }
+            }
+        });
+    }
+
+    /**
+     * Let the gateway push all state changes of the nodes, which are then sent as IKEA_Message events to the
+     * items of the nodes. This way the items do not have to poll their state. Observations of nodes which are
+     * no longer in the gateway are cancelled.
+     */
+    private synchronized void observeNodes(JSONArray nodeIds) {
+        nodeCount = nodeIds.length();
+        Set<String> removedUris = client.getObservedUris();
+        for (int i = 0; i < nodeIds.length(); i++) {
+            String nodeId = Integer.toString(nodeIds.getInt(i));
+            String uri = createUri(NODES + "/" + nodeId);
+            if (!removedUris.remove(uri)) {
+                client.observe(uri, nodeMessageSender(nodeId));
+            }
+        }
+        for (String uri : removedUris) {
+            client.cancelObservation(uri);
+        }
+    }
+
+    private IkeaGatewayClient.ResponseListener nodeMessageSender(final String nodeId) {
+        final HomeService service = server;
+        return new IkeaGatewayClient.ResponseListener() {
+            @Override
+            public void responseReceived(String uri, JSONData response) {
+                Event event = service.createEvent(IKEA_MESSAGE, response.toString());
+                event.setAttribute("Direction", "In");
+                event.setAttribute(IKEA_NODE_ID, nodeId);
+                service.send(event);
+            }
+        };
+    }
+
     @Override
     public void stop() {
         client.stop();
@@ -159,6 +213,11 @@ public class IkeaGateway extends HomeItemAdapter {
             return true;
         } else if (event.isType("ReportItems")) {
             reportNodes();
+        } else if (event.isType("MinuteEvent")) {
+            client.restoreFailedObservations();
+            if (hasKey) {
+                discoverNodes();
+            }
         } else if (event.isType(MDNS_CREATION_MESSAGE) && event.getAttribute(MDNSScanner.MDNS_SERVICE_NAME).equals(bridgeIdentity)) {
             setAddress(event.getAttribute(MDNSScanner.MDNS_LOCATION));
             setPort(event.getAttribute(MDNSScanner.MDNS_PORT));
@@ -177,31 +236,44 @@ public class IkeaGateway extends HomeItemAdapter {
 
 
     private void reportNodes() {
-        List<JSONObject> nodes = client.getNodes(address, port);
-        nodeCount = nodes.size();
-        for (JSONObject node : nodes) {
-            Event event = server.createEvent(IKEA_NODE_MESSAGE, node.toString());
-            event.setAttribute("Direction", "In");
-            event.setAttribute(IKEA_NODE_TYPE, node.getInt("5750"));
-            event.setAttribute(IKEA_NODE_ID, node.getInt("9003"));
-            event.setAttribute(IKEA_NODE_NAME, node.getString("9001"));
-            server.send(event);
-        }
+        final HomeService service = server;
+        final IkeaGatewayClient.ResponseListener nodeReporter = new IkeaGatewayClient.ResponseListener() {
+            @Override
+            public void responseReceived(String uri, JSONData response) {
+                if (response.isObject()) {
+                    JSONObject node = response.getObject();
+                    Event event = service.createEvent(IKEA_NODE_MESSAGE, node.toString());
+                    event.setAttribute("Direction", "In");
+                    event.setAttribute(IKEA_NODE_TYPE, node.getInt("5750"));
+                    event.setAttribute(IKEA_NODE_ID, node.getInt("9003"));
+                    event.setAttribute(IKEA_NODE_NAME, node.getString("9001"));
+                    service.send(event);
+                }
+            }
+        };
+        client.sendCoapRequestAsync(createUri(NODES), "GET", "", new IkeaGatewayClient.ResponseListener() {
+            @Override
+            public void responseReceived(String uri, JSONData response) {
+                if (!response.isObject()) {
+                    JSONArray nodeIds = response.getArray();
+                    observeNodes(nodeIds);
+                    for (int i = 0; i < nodeIds.length(); i++) {
+                        client.sendCoapRequestAsync(createUri(NODES + "/" + nodeIds.getInt(i)), "GET", "", nodeReporter);
+                    }
+                }
+            }
+        });
     }
 
     private void sendCoapsMessage(String resource, String method, String body, String id) {
-        String uri = createUri(resource);
-        JSONData jsonResponse = client.sendCoapRequest(uri, method, body, method.equalsIgnoreCase("GET"));
-        if (!id.isEmpty() && jsonResponse != null) {
-            Event event = server.createEvent(IKEA_MESSAGE, jsonResponse.toString());
-            event.setAttribute("Direction", "In");
-            event.setAttribute(IKEA_NODE_ID, id);
-            server.send(event);
-        }
+        // The response of a GET is passed on to the item, for other requests the new state of the node is
+        // pushed by the node observation
+        boolean forwardResponse = !id.isEmpty() && method.equalsIgnoreCase("GET");
+        client.sendCoapRequestAsync(createUri(resource), method, body, forwardResponse ? nodeMessageSender(id) : null);
     }
 
     private String createUri(String resource) {
-        return String.format("coaps://%s%s%s%s", address, port.isEmpty() ? "" : ":", port, resource);
+        return client.createUri(address, port, resource);
     }
 
     public String getSecurityCode() {
@@ -236,16 +308,6 @@ public class IkeaGateway extends HomeItemAdapter {
         this.bridgeIdentity = bridgeIdentity;
     }
 
-    public String getRefreshInterval() {
-        return Integer.toString(refreshInterval);
-
-    }
-
-    public void setRefreshInterval(String refreshInterval) {
-        this.refreshInterval = Integer.parseInt(refreshInterval);
-        refreshCounter = this.refreshInterval + 1;
-    }
-
     public String getState() {
         return client.isConnected() ? "Connected" : "Not Connected";
     }
@@ -254,6 +316,10 @@ public class IkeaGateway extends HomeItemAdapter {
         return Integer.toString(nodeCount);
     }
 
+    public String getObservedNodes() {
+        return Integer.toString(client.getObservationCount());
+    }
+
     public String getPort() {
         return port;
     }
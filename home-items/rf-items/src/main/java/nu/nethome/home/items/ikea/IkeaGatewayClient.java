@@ -2,6 +2,7 @@ package nu.nethome.home.items.ikea;
 
 import org.eclipse.californium.core.coap.CoAP;
 import org.eclipse.californium.core.coap.MediaTypeRegistry;
+import org.eclipse.californium.core.coap.MessageObserverAdapter;
 import org.eclipse.californium.core.coap.Request;
 import org.eclipse.californium.core.coap.Response;
 import org.eclipse.californium.core.network.CoapEndpoint;
@@ -12,26 +13,43 @@ import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.cipher.CipherSuite;
 import org.eclipse.californium.scandium.dtls.pskstore.InMemoryPskStore;
 import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
- *
+ * CoAP client for the IKEA gateway. Requests can be sent either synchronously or asynchronously, where the
+ * response is passed to a {@link ResponseListener} in a CoAP thread. The client can also observe resources on
+ * the gateway, so the gateway pushes every change of a resource instead of the resource being polled.
  */
 public class IkeaGatewayClient {
 
+    /**
+     * Receives the responses of asynchronous requests and the notifications of observed resources. Called from
+     * a CoAP thread.
+     */
+    public interface ResponseListener {
+        void responseReceived(String uri, JSONData response);
+    }
+
     private static final long MESSAGE_TIMEOUT = 1000L;
     private final String NODES = "/15001";
     private static Logger logger = Logger.getLogger(IkeaGatewayClient.class.getName());
 
     private InMemoryPskStore pskStore;
-    private CoapEndpoint dtlsEndpoint;
-    private boolean isConnected;
+    private CoapEndpoint endpoint;
+    private String scheme = "coaps";
+    private final Map<String, Observation> observations = new ConcurrentHashMap<>();
+    private volatile boolean isConnected;
 
     public void start() {
         DtlsConnectorConfig.Builder builder = new DtlsConnectorConfig.Builder(new InetSocketAddress(0));
@@ -40,61 +58,220 @@ public class IkeaGatewayClient {
         builder.setSupportedCipherSuites(new CipherSuite[]{CipherSuite.TLS_PSK_WITH_AES_128_CCM_8});
         DTLSConnector dtlsconnector = new DTLSConnector(builder.build(), null);
         try {
-            dtlsEndpoint = new CoapEndpoint(dtlsconnector, NetworkConfig.getStandard());
-            dtlsEndpoint.start();
-            EndpointManager.getEndpointManager().setDefaultSecureEndpoint(dtlsEndpoint);
+            endpoint = new CoapEndpoint(dtlsconnector, NetworkConfig.getStandard());
+            endpoint.start();
+            EndpointManager.getEndpointManager().setDefaultSecureEndpoint(endpoint);
         } catch (IOException e) {
-            dtlsEndpoint = null;
+            endpoint = null;
         }
     }
 
+    /**
+     * Start the client on an unsecured CoAP endpoint, used for testing against a local CoAP server
+     */
+    void start(CoapEndpoint endpoint) throws IOException {
+        pskStore = new InMemoryPskStore();
+        this.endpoint = endpoint;
+        scheme = "coap";
+        endpoint.start();
+    }
+
     public void setRouterKey(InetSocketAddress peerAddress, String identity, byte[] key) {
         pskStore.addKnownPeer(peerAddress, identity, key);
     }
 
     public void stop() {
-        if (dtlsEndpoint != null) {
-            dtlsEndpoint.stop();
-            dtlsEndpoint.destroy();
-            dtlsEndpoint = null;
+        cancelObservations();
+        if (endpoint != null) {
+            endpoint.stop();
+            endpoint.destroy();
+            endpoint = null;
         }
     }
 
+    public String createUri(String address, String port, String resource) {
+        return String.format("%s://%s%s%s%s", scheme, address, port.isEmpty() ? "" : ":", port, resource);
+    }
+
     public JSONData sendCoapRequest(String uri, String method, String body, boolean getResponse) {
+        Request request = createRequest(uri, method, body);
+        if (!send(request)) {
+            return null;
+        }
+        if (getResponse) {
+            try {
+                return handleResponse(uri, request.waitForResponse(MESSAGE_TIMEOUT));
+            } catch (InterruptedException e) {
+                return null;
+            }
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Send a request without waiting for the response. The response is correlated with the request by the
+     * CoAP layer and passed to the listener, if the request succeeds and the response has any data.
+     *
+     * @param listener receives the response, may be null if the response is not needed
+     */
+    public void sendCoapRequestAsync(final String uri, String method, String body, final ResponseListener listener) {
+        Request request = createRequest(uri, method, body);
+        request.addMessageObserver(new MessageObserverAdapter() {
+            @Override
+            public void onResponse(Response response) {
+                JSONData data = handleResponse(uri, response);
+                if (data != null && listener != null) {
+                    listener.responseReceived(uri, data);
+                }
+            }
+
+            @Override
+            public void onTimeout() {
+                handleResponse(uri, null);
+            }
+        });
+        send(request);
+    }
+
+    /**
+     * Register an observe relation on a resource. The current state of the resource and then every change of it
+     * is passed to the listener. Any earlier observation of the resource is cancelled.
+     */
+    public void observe(String uri, ResponseListener listener) {
+        cancelObservation(uri);
+        Observation observation = new Observation(uri, listener);
+        observations.put(uri, observation);
+        observation.start();
+    }
+
+    /**
+     * Register the observe relations again that have been lost, for example because the gateway has restarted
+     *
+     * @return number of restored observations
+     */
+    public int restoreFailedObservations() {
+        int restored = 0;
+        for (Observation observation : observations.values()) {
+            if (observation.failed) {
+                observation.start();
+                restored++;
+            }
+        }
+        return restored;
+    }
+
+    public void cancelObservation(String uri) {
+        Observation observation = observations.remove(uri);
+        if (observation != null) {
+            observation.cancel();
+        }
+    }
+
+    public void cancelObservations() {
+        for (String uri : observations.keySet()) {
+            cancelObservation(uri);
+        }
+    }
+
+    public int getObservationCount() {
+        return observations.size();
+    }
+
+    /**
+     * @return the uris of the observed resources
+     */
+    public Set<String> getObservedUris() {
+        return new HashSet<>(observations.keySet());
+    }
+
+    private class Observation extends MessageObserverAdapter {
+        private final String uri;
+        private final ResponseListener listener;
+        private Request request;
+        private volatile boolean failed;
+
+        Observation(String uri, ResponseListener listener) {
+            this.uri = uri;
+            this.listener = listener;
+        }
+
+        synchronized void start() {
+            failed = false;
+            request = createRequest(uri, "GET", "");
+            request.setObserve();
+            request.addMessageObserver(this);
+            failed = !send(request);
+        }
+
+        synchronized void cancel() {
+            if (request != null) {
+                request.setCanceled(true);
+                request = null;
+            }
+        }
+
+        @Override
+        public void onResponse(Response response) {
+            JSONData data = handleResponse(uri, response);
+            if (!response.getOptions().hasObserve()) {
+                // The gateway did not accept the observe relation, or has ended it
+                failed = true;
+            }
+            if (data != null) {
+                listener.responseReceived(uri, data);
+            }
+        }
+
+        @Override
+        public void onTimeout() {
+            handleResponse(uri, null);
+            failed = true;
+        }
+
+        @Override
+        public void onReject() {
+            failed = true;
+        }
+    }
+
+    private Request createRequest(String uri, String method, String body) {
         Request request = requestFromType(method);
         request.setURI(uri);
         if (!isGetRequest(request)) {
             request.setPayload(body);
         }
         request.getOptions().setContentFormat(MediaTypeRegistry.TEXT_PLAIN);
+        return request;
+    }
 
-        request.send();
+    private boolean send(Request request) {
+        if (endpoint == null) {
+            logger.info("Cannot send request to IKEA GW, client is not started: " + request.getURI());
+            return false;
+        }
+        request.send(endpoint);
+        return true;
+    }
 
-        if (getResponse) {
-            Response response;
+    private JSONData handleResponse(String uri, Response response) {
+        if (response != null &&
+                response.getPayloadSize() > 0 &&
+                CoAP.ResponseCode.isSuccess(response.getCode())) {
+            isConnected = true;
             try {
-                response = request.waitForResponse(MESSAGE_TIMEOUT);
-                if (response != null &&
-                        response.getPayloadSize() > 0 &&
-                        CoAP.ResponseCode.isSuccess(response.getCode())) {
-                    isConnected = true;
-                    JSONData jsonData = new JSONData(response.getPayloadString());
-                    return jsonData;
-                } else {
-                    isConnected = false;
-                    if (response == null) {
-                        logger.info("Timeout waiting for response from IKEA GW " + uri);
-                    } else if (!CoAP.ResponseCode.isSuccess(response.getCode())) {
-                        logger.info(String.format("Failed request for IKEA GW (%s), error: %s", uri, response.getCode().toString()));
-                    } else if (response.getPayloadSize() == 0) {
-                        logger.info("Failed GET request for IKEA GW, no response data: " + uri);
-                    }
-                    return null;
-                }
-            } catch (InterruptedException e) {
+                return new JSONData(response.getPayloadString());
+            } catch (JSONException e) {
+                logger.info("Bad response data from IKEA GW " + uri + ": " + e.getMessage());
                 return null;
             }
         } else {
+            isConnected = response != null && CoAP.ResponseCode.isSuccess(response.getCode());
+            if (response == null) {
+                logger.info("Timeout waiting for response from IKEA GW " + uri);
+            } else if (!CoAP.ResponseCode.isSuccess(response.getCode())) {
+                logger.info(String.format("Failed request for IKEA GW (%s), error: %s", uri, response.getCode().toString()));
+            }
             return null;
         }
     }
@@ -109,7 +286,7 @@ public class IkeaGatewayClient {
 
     public List<Integer> getNodeIds(String address, String port) {
         ArrayList<Integer> result = new ArrayList<>();
-        JSONData nodelist = getJsonMessage(String.format("coaps://%s%s%s%s", address, port.isEmpty() ? "" : ":", port, NODES));
+        JSONData nodelist = getJsonMessage(createUri(address, port, NODES));
         if (nodelist != null && !nodelist.isObject()) {
             JSONArray jsonArray = nodelist.getArray();
             for (int i = 0; i < jsonArray.length(); i++) {
@@ -122,7 +299,7 @@ public class IkeaGatewayClient {
     public List<JSONObject> getNodes(String address, String port) {
         ArrayList<JSONObject> result = new ArrayList<>();
         for (int nodeId : getNodeIds(address, port)) {
-            JSONData nodeInfo = getJsonMessage(String.format("coaps://%s%s%s%s/%d", address, port.isEmpty() ? "" : ":", port, NODES, nodeId));
+            JSONData nodeInfo = getJsonMessage(createUri(address, port, NODES + "/" + nodeId));
             if (nodeInfo != null && nodeInfo.isObject()) {
                 result.add(nodeInfo.getObject());
             }
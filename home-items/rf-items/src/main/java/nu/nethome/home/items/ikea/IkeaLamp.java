@@ -36,8 +36,6 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
 
     protected static final String ONOFF = "5850";
     protected static final String DIMMER = "5851";
-    private static final int MAX_UPDATE_WAIT_TIME_SECONDS = 10;
-    private static final int MS_PER_S = 1000;
     protected static final int NOT_SET = -1;
     protected static final String LIGHT = "3311";
     protected static final String DEVICE = "3";
@@ -82,7 +80,6 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"DimLevel3\" Type=\"String\" Get=\"getDimLevel3\" 	Set=\"setDimLevel3\" />"
             + "  <Attribute Name=\"DimLevel4\" Type=\"String\" Get=\"getDimLevel4\" 	Set=\"setDimLevel4\" />"
             + "  <Attribute Name=\"DimStep\" Type=\"String\" Get=\"getDimStep\" 	Set=\"setDimStep\" />"
-            + "  <Attribute Name=\"RefreshInterval\" Type=\"String\" Get=\"getRefreshInterval\"  Set=\"setRefreshInterval\"  Unit=\"Minutes\"/>"
             + "  <Action Name=\"toggle\" 	Method=\"toggle\" Default=\"true\" />"
             + "  <Action Name=\"on\" 	Method=\"on\" />"
             + "  <Action Name=\"off\" 	Method=\"off\" />"
@@ -107,8 +104,6 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
     private int dimStep = 10;
     private String lampModel = "";
     private String lampVersion = "";
-    private int refreshInterval = 10;
-    private int refreshCounter = 0;
 
     public IkeaLamp() {
     }
@@ -117,6 +112,10 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
         return MODEL;
     }
 
+    /**
+     * The state of the lamp is pushed by the gateway as IKEA_Message events whenever it changes, so there is no
+     * need to poll it
+     */
     @Override
     public boolean receiveEvent(Event event) {
         if ((event.isType(IkeaGateway.IKEA_NODE_MESSAGE) || event.isType(IkeaGateway.IKEA_MESSAGE)) &&
@@ -124,28 +123,10 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
                 event.getAttribute(IkeaGateway.IKEA_NODE_ID).equals(lampId)) {
             updateAttributes(event);
             return true;
-        } else if ((event.isType("MinuteEvent") && (++refreshCounter >= refreshInterval) && isActivated())) {
-            refreshCounter = 0;
-            new Thread(new Runnable() {
-                @Override
-                public void run() {
-                    sleepRandomTime();
-                    fetchCurrentState();
-                }
-            }).run();
-            return true;
         }
         return handleInit(event);
     }
 
-    private void sleepRandomTime() {
-        try {
-            Thread.sleep((Integer.parseInt(lampId) % MAX_UPDATE_WAIT_TIME_SECONDS) * MS_PER_S);
-        } catch (InterruptedException e) {
-            // Ignore
-        }
-    }
-
     private void updateAttributes(Event event) {
         JSONObject node = new JSONObject(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE));
         JSONObject info = node.getJSONObject(DEVICE);
@@ -368,13 +349,5 @@ public class IkeaLamp extends HomeItemAdapter implements HomeItem {
     public void setDimStep(String dimStep) {
         this.dimStep = Integer.parseInt(dimStep);
     }
-
-    public String getRefreshInterval() {
-        return getIntAttribute(refreshInterval);
-    }
-
-    public void setRefreshInterval(String refreshInterval) throws IllegalValueException {
-        this.refreshInterval = setIntAttribute(refreshInterval, 1, Integer.MAX_VALUE);
-    }
 }
 
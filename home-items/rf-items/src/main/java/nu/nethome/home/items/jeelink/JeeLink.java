@@ -30,6 +30,7 @@ import nu.nethome.home.items.UsbScanner;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.home.util.RepeatFilter;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.*;
 import nu.nethome.util.ps.impl.ProtocolDecoderGroup;
@@ -77,6 +78,8 @@ public class JeeLink extends HomeItemAdapter implements HomeItem, ProtocolDecode
 
     private final String MODEL2 = ("  <Attribute Name=\"FirmwareVersion\" Type=\"String\" Get=\"getFirmwareVersion\"  />"
             + "  <Attribute Name=\"SendCount\" Type=\"String\" Get=\"getSendCount\"  />"
+            + "  <Attribute Name=\"RepeatWindow\" Type=\"String\" Get=\"getRepeatWindow\" Set=\"setRepeatWindow\" />"
+            + "  <Attribute Name=\"SuppressedRepeats\" Type=\"String\" Get=\"getSuppressedRepeats\" />"
             + "  <Action Name=\"Reconnect\"		Method=\"reconnect\" Default=\"true\" />"
             + "  <Action Name=\"PlayTestBeep\"		Method=\"playTestBeep\" />"
             + "  <Attribute Name=\"TestBeepFrequency\" Type=\"String\" Get=\"getTestBeepFrequency\" 	Set=\"setTestBeepFrequency\" />"
@@ -89,6 +92,7 @@ public class JeeLink extends HomeItemAdapter implements HomeItem, ProtocolDecode
     private int testBeepFrequency = 2000;
     JeeLinkProtocolPort port;
     private long sendCount = 0;
+    private final RepeatFilter repeatFilter = new RepeatFilter();
     private float modulationFrequency = 0;
     private EncoderFactory factory;
     private String portName = "Select Serial Port";
@@ -270,8 +274,19 @@ public class JeeLink extends HomeItemAdapter implements HomeItem, ProtocolDecode
     }
 
     public void parsedMessage(ProtocolMessage message) {
-        // TODO Auto-generated method stub
-
+        // Build an internal event from the protocol message
+        Event event = server.createEvent(message.getProtocol() + "_Message", "");
+        // Specify message direction
+        event.setAttribute("Direction", "In");
+        // Add all protocol specific parameters as event attributes. Use protocol
+        // name as prefix to avoid mix with standard attribute names
+        for (FieldValue f : message.getFields()) {
+            event.setAttribute(message.getProtocol() + "." + f.getName(), f.getStringValue());
+        }
+        // Send the event internally, unless it is a repeat of a message we just received
+        if (!repeatFilter.isRepeat(event)) {
+            server.send(event);
+        }
     }
 
     public void partiallyParsedMessage(String protocol, int bits) {
@@ -309,6 +324,18 @@ public class JeeLink extends HomeItemAdapter implements HomeItem, ProtocolDecode
         port.setModulationOffPeriod(modulationPeriod);
     }
 
+    public String getRepeatWindow() {
+        return repeatFilter.getWindows();
+    }
+
+    public void setRepeatWindow(String repeatWindow) {
+        repeatFilter.setWindows(repeatWindow);
+    }
+
+    public String getSuppressedRepeats() {
+        return Long.toString(repeatFilter.getSuppressedCount());
+    }
+
     public String getSendCount() {
         return Long.toString(sendCount);
     }
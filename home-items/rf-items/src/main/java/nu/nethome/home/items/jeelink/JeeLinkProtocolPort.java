@@ -21,6 +21,7 @@ package nu.nethome.home.items.jeelink;
 
 
 import jssc.*;
+import nu.nethome.home.util.SerialFramer;
 import nu.nethome.util.ps.ProtocolDecoder;
 
 import java.io.IOException;
@@ -44,6 +45,12 @@ public class JeeLinkProtocolPort  {
     private int modulationOnPeriod = 0;
     private int modulationOffPeriod = 0;
     private List<String> portList;
+    private final SerialFramer framer = SerialFramer.lines(new SerialFramer.FrameListener() {
+        @Override
+        public void frameReceived(byte[] data, int offset, int length) {
+            analyzeReceivedCommand(SerialFramer.toString(data, offset, length).trim());
+        }
+    });
 
     public JeeLinkProtocolPort(String portName, ProtocolDecoder decoder) throws PortException {
         this.decoder = decoder;
@@ -62,18 +69,21 @@ public class JeeLinkProtocolPort  {
             if (!serialPort.setParams(SerialPort.BAUDRATE_115200, SerialPort.DATABITS_8, SerialPort.STOPBITS_1, SerialPort.PARITY_NONE)) {
                 throw new PortException("Could not set serial port parameters");
             }
+            isOpen = true;
+            serialPort.addEventListener(new SerialPortEventListener() {
+                @Override
+                public void serialEvent(SerialPortEvent event) {
+                    if (event.isRXCHAR() && event.getEventValue() > 0) {
+                        receiveData(event.getEventValue());
+                    }
+                }
+            }, SerialPort.MASK_RXCHAR);
             sendQueryVersionCommand();
             sendQueryVersionCommand();
         } catch (SerialPortException e) {
+            isOpen = false;
             throw new PortException("Could not open port " + portName, e);
         }
-        new Thread(new Runnable() {
-            @Override
-            public void run() {
-                receiveLoop();
-            }
-        }, "Port receive thread").start();
-        isOpen = true;
     }
 
     public void close() {
@@ -91,25 +101,21 @@ public class JeeLinkProtocolPort  {
         return isOpen;
     }
 
-    private void receiveLoop() {
-        String result = "";
-        SerialPort localPort = serialPort;
-        while(localPort.isOpened() && isOpen) {
-            try {
-                String nextChar = localPort.readString(1, 10000);
-                result += nextChar;
-                if (nextChar.charAt(0) == 0x0A) {
-                    analyzeReceivedCommand(result);
-                    result = "";
-                }
-
-            } catch (SerialPortException e) {
-                // Probably port is closed, ignore and will exit the while
-            } catch (SerialPortTimeoutException e) {
-                // Ignore
-            } catch (Exception e) {
-                // Problem in the decoders.
+    /**
+     * Read the received data and pass it to the framer, which reports each complete line
+     *
+     * @param count number of bytes available
+     */
+    private void receiveData(int count) {
+        try {
+            byte[] data = serialPort.readBytes(count);
+            if (data != null && isOpen) {
+                framer.receive(data, 0, data.length);
             }
+        } catch (SerialPortException e) {
+            // Probably port is closed, ignore
+        } catch (Exception e) {
+            // Problem in the decoders.
         }
     }
 
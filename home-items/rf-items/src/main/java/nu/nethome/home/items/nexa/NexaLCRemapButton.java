@@ -23,8 +23,11 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.RemapButton;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.logging.Logger;
 
 
@@ -63,24 +66,22 @@ public class NexaLCRemapButton extends RemapButton implements HomeItem {
     }
 
     @Override
-    public boolean receiveEvent(Event event) {
-        // Check the event and see if they affect our current state.
-        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("NexaL_Message") &&
-                event.getAttribute("Direction").equals("In") &&
-                (event.getAttributeInt("NexaL.Address") == buttonAddress) &&
-                (event.getAttributeInt("NexaL.Button") == buttonId)) {
-            //Ok, this event affects us, act on it
-            processEvent(event);
-            return true;
-        } else {
-            return handleInit(event);
-        }
+    protected List<EventCondition> getMatchConditions() {
+        return Collections.singletonList(createMatchCondition(buttonId));
+    }
+
+    protected EventCondition createMatchCondition(int button) {
+        return new EventCondition("NexaL_Message")
+                .with("Direction", "In")
+                .with("NexaL.Address", buttonAddress)
+                .with("NexaL.Button", button);
     }
 
     @Override
     protected boolean initAttributes(Event event) {
         buttonAddress = event.getAttributeInt("NexaL.Address");
         buttonId = event.getAttributeInt("NexaL.Button");
+        updateMatchConditions();
         return true;
     }
 
@@ -118,6 +119,7 @@ public class NexaLCRemapButton extends RemapButton implements HomeItem {
             int button = Integer.parseInt(sbutton);
             if ((button > 0) && (button < 33)) {
                 buttonId = button;
+                updateMatchConditions();
             }
         } catch (NumberFormatException e) {
             // Ignore
@@ -141,6 +143,7 @@ public class NexaLCRemapButton extends RemapButton implements HomeItem {
             int newAddress = Integer.parseInt(address);
             if ((newAddress >= 0) && (newAddress < 1 << 26)) {
                 buttonAddress = newAddress;
+                updateMatchConditions();
             }
         } catch (NumberFormatException e) {
             // Ignore
@@ -22,8 +22,11 @@ package nu.nethome.home.items.nexa;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 
@@ -118,18 +121,12 @@ public class NexaLCRemapButton4 extends NexaLCRemapButton implements HomeItem {
     }
 
     @Override
-    public boolean receiveEvent(Event event) {
-        // Check the event and see if they affect our current state.
-        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("NexaL_Message") &&
-                event.getAttribute("Direction").equals("In") &&
-                (event.getAttributeInt("NexaL.Address") == buttonAddress) &&
-                getButton(event.getAttributeInt("NexaL.Button")) != null) {
-            //Ok, this event affects us, act on it
-            processEvent(event);
-            return true;
-        } else {
-            return handleInit(event);
+    protected List<EventCondition> getMatchConditions() {
+        List<EventCondition> conditions = new ArrayList<>();
+        for (Button button : buttons) {
+            conditions.add(createMatchCondition(button.getButton()));
         }
+        return conditions;
     }
 
     @Override
@@ -155,6 +152,7 @@ public class NexaLCRemapButton4 extends NexaLCRemapButton implements HomeItem {
 
     public void setButton1(String sbutton) {
         buttons[0].setButton(sbutton);
+        updateMatchConditions();
     }
 
     public String getButton2() {
@@ -163,6 +161,7 @@ public class NexaLCRemapButton4 extends NexaLCRemapButton implements HomeItem {
 
     public void setButton2(String sbutton) {
         buttons[1].setButton(sbutton);
+        updateMatchConditions();
     }
 
     public String getButton3() {
@@ -171,6 +170,7 @@ public class NexaLCRemapButton4 extends NexaLCRemapButton implements HomeItem {
 
     public void setButton3(String sbutton) {
         buttons[2].setButton(sbutton);
+        updateMatchConditions();
     }
 
     public String getButton4() {
@@ -179,6 +179,7 @@ public class NexaLCRemapButton4 extends NexaLCRemapButton implements HomeItem {
 
     public void setButton4(String sbutton) {
         buttons[3].setButton(sbutton);
+        updateMatchConditions();
     }
 
     public String getOnCommand1() {
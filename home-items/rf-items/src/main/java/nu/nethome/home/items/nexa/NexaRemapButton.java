@@ -23,8 +23,12 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.items.RemapButton;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
 import nu.nethome.util.plugin.Plugin;
 
+import java.util.Collections;
+import java.util.List;
+
 
 /**
  * @author Stefan
@@ -59,24 +63,19 @@ public class NexaRemapButton extends RemapButton implements HomeItem {
     public NexaRemapButton() {
     }
 
-    public boolean receiveEvent(Event event) {
-        // Check the event and see if they affect our current state.
-        if (event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE).equals("Nexa_Message") &&
-                event.getAttribute("Direction").equals("In") &&
-                (event.getAttributeInt("Nexa.HouseCode") == buttonHouseCode) &&
-                (event.getAttributeInt("Nexa.Button") == buttonNumber)) {
-
-            processEvent(event);
-            return true;
-        } else {
-            return handleInit(event);
-        }
+    @Override
+    protected List<EventCondition> getMatchConditions() {
+        return Collections.singletonList(new EventCondition("Nexa_Message")
+                .with("Direction", "In")
+                .with("Nexa.HouseCode", buttonHouseCode)
+                .with("Nexa.Button", buttonNumber));
     }
 
     @Override
     protected boolean initAttributes(Event event) {
         buttonHouseCode = event.getAttributeInt("Nexa.HouseCode");
         buttonNumber = event.getAttributeInt("Nexa.Button");
+        updateMatchConditions();
         return true;
     }
 
@@ -110,6 +109,7 @@ public class NexaRemapButton extends RemapButton implements HomeItem {
             int result = Integer.parseInt(deviceCode);
             if ((result > 0) && (result <= 8)) {
                 buttonNumber = result;
+                updateMatchConditions();
             }
         } catch (NumberFormatException e) {
             // Ignore
@@ -136,6 +136,7 @@ public class NexaRemapButton extends RemapButton implements HomeItem {
         if ((hc.length() == 1) && (hc.compareTo("A") >= 0) &&
                 (hc.compareTo("P") <= 0)) {
             buttonHouseCode = (int) hc.charAt(0) - (int) 'A';
+            updateMatchConditions();
         }
     }
 }
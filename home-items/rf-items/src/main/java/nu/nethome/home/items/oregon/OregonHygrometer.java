@@ -69,6 +69,8 @@ public class OregonHygrometer extends OregonThermometer implements HomeItem {
             + "  <Attribute Name=\"LastUpdate\" Type=\"String\" Get=\"getLastUpdate\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getK\" 	Set=\"setK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getM\" 	Set=\"setM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
 
     private static Logger logger = Logger.getLogger(OregonHygrometer.class.getName());
@@ -78,6 +80,7 @@ public class OregonHygrometer extends OregonThermometer implements HomeItem {
 
     public OregonHygrometer() {
         constantK = 1;
+        sensorValue = new SensorValue(this, "Humidity");
         logger = Logger.getLogger(OregonHygrometer.class.getName());
     }
 
@@ -87,6 +90,11 @@ public class OregonHygrometer extends OregonThermometer implements HomeItem {
         return super.handleEvent(event);
     }
 
+    @Override
+    protected double getSensorValue() {
+        return humidity;
+    }
+
     public String getModel() {
         return MODEL;
     }
@@ -24,8 +24,6 @@ import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.logging.Logger;
 
 /**
@@ -70,11 +68,13 @@ public class OregonThermometer extends HomeItemAdapter implements HomeItem, Valu
             + "  <Attribute Name=\"LastUpdate\" Type=\"String\" Get=\"getLastUpdate\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getK\" 	Set=\"setK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getM\" 	Set=\"setM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
 
     protected Logger logger = Logger.getLogger(OregonThermometer.class.getName());
     private ExtendedLoggerComponent tempLoggerComponent = new ExtendedLoggerComponent(this);
-    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("HH:mm:ss yyyy.MM.dd ");
+    protected SensorValue sensorValue = new SensorValue(this, "Temperature");
 
     // Public attributes
     private double temperature = 0;
@@ -82,7 +82,6 @@ public class OregonThermometer extends HomeItemAdapter implements HomeItem, Valu
     protected double constantM = 0;
     private String itemChannel = "";
     private String itemDeviceId = "";
-    private Date latestUpdateOrCreation = new Date();
     protected boolean hasBeenUpdated = false;
     private boolean batteryIsLow = false;
     private String sensorType = "";
@@ -112,12 +111,18 @@ public class OregonThermometer extends HomeItemAdapter implements HomeItem, Valu
         batteryIsLow = newBatteryLevel;
         sensorType = String.format("%4X", event.getAttributeInt("Oregon.SensorId"));
         logger.finer("Temperature update: " + temperature + " degrees");
-        // Format and store the current time.
-        latestUpdateOrCreation = new Date();
         hasBeenUpdated = true;
+        sensorValue.update(getSensorValue());
         return true;
     }
 
+    /**
+     * @return the value presented as the default attribute, which is reported when it changes
+     */
+    protected double getSensorValue() {
+        return temperature;
+    }
+
     @Override
     protected boolean initAttributes(Event event) {
         itemChannel = event.getAttribute("Oregon.Channel");
@@ -218,7 +223,7 @@ public class OregonThermometer extends HomeItemAdapter implements HomeItem, Valu
      */
     @SuppressWarnings("UnusedDeclaration")
     public String getLastUpdate() {
-        return hasBeenUpdated ? dateFormatter.format(latestUpdateOrCreation) : "";
+        return sensorValue.getLastUpdate();
     }
 
     /**
@@ -247,10 +252,30 @@ public class OregonThermometer extends HomeItemAdapter implements HomeItem, Valu
 
     @SuppressWarnings("UnusedDeclaration")
     public String getTimeSinceUpdate() {
-        return Long.toString((new Date().getTime() - latestUpdateOrCreation.getTime()) / 1000);
+        return sensorValue.getTimeSinceUpdate();
     }
 
     public String getSensorType() {
         return sensorType;
     }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportDeadband() {
+        return sensorValue.getDeadband();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportDeadband(String deadband) {
+        sensorValue.setDeadband(deadband);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportMinInterval() {
+        return sensorValue.getMinReportInterval();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportMinInterval(String minInterval) {
+        sensorValue.setMinReportInterval(minInterval);
+    }
 }
@@ -26,7 +26,9 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.EncodedMessageCache;
 import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.BadMessageException;
 import nu.nethome.util.ps.Message;
@@ -44,6 +46,10 @@ public class RFBitBangerTransmitter extends HomeItemAdapter implements HomeItem
             + "  <Attribute Name=\"State\" Type=\"String\" Get=\"getState\"  Default=\"true\" />"
             + "  <Attribute Name=\"DeviceName\" Type=\"String\" Get=\"getDeviceName\" 	Set=\"setDeviceName\" />"
             + "  <Attribute Name=\"SendCount\" Type=\"String\" Get=\"getSendCount\"  />"
+            + "  <Attribute Name=\"QueuedMessages\" Type=\"String\" Get=\"getQueuedMessages\"  />"
+            + "  <Attribute Name=\"SupersededMessages\" Type=\"String\" Get=\"getSupersededMessages\"  />"
+            + "  <Attribute Name=\"ExpiredMessages\" Type=\"String\" Get=\"getExpiredMessages\"  />"
+            + "  <Attribute Name=\"EncoderCacheHitRate\" Type=\"String\" Get=\"getEncoderCacheHitRate\" Unit=\"%\" />"
             + "  <Action Name=\"Reconnect\"		Method=\"reconnect\" Default=\"true\" />"
             + "  <Action Name=\"PlayTestBeep\"		Method=\"playTestBeep\" />"
             + "  <Attribute Name=\"TestBeepFrequency\" Type=\"String\" Get=\"getTestBeepFrequency\" 	Set=\"setTestBeepFrequency\" />"
@@ -58,8 +64,35 @@ public class RFBitBangerTransmitter extends HomeItemAdapter implements HomeItem
     private long sendCount = 0;
     private EncoderFactory factory;
     private boolean connected = false;
+    private final EncodedMessageCache<EncodedMessage> encodedMessages = new EncodedMessageCache<EncodedMessage>();
+    private final TransmitScheduler<Runnable> transmitScheduler = new TransmitScheduler<Runnable>("RFBitBanger",
+            new TransmitScheduler.Transmitter<Runnable>() {
+                @Override
+                public void transmit(Runnable message) {
+                    message.run();
+                }
+            });
 
 
+    /**
+     * An encoded protocol message, cached and played when its turn comes in the transmit scheduler
+     */
+    private class EncodedMessage implements Runnable {
+        final int[] message;
+        final int repeat;
+
+        EncodedMessage(int[] message, int repeat) {
+            this.message = message;
+            this.repeat = repeat;
+        }
+
+        @Override
+        public void run() {
+            connected = port.playMessage(message, repeat, 0);
+            sendCount += connected ? 1 : 0;
+        }
+    }
+
     public RFBitBangerTransmitter() {
         factory = new EncoderFactory(Encoders.getAllTypes());
     }
@@ -74,10 +107,15 @@ public class RFBitBangerTransmitter extends HomeItemAdapter implements HomeItem
         ProtocolEncoder foundEncoder = factory.getEncoder(event);
         if (foundEncoder != null) {
             try {
-                Message parameters = factory.extractMessage(event);
-                int repeat = calculateRepeat(event, foundEncoder);
-                connected = port.playMessage(foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED), repeat, 0);
-                sendCount += connected ? 1 : 0;
+                String key = EncodedMessageCache.keyOf(event);
+                EncodedMessage message = encodedMessages.get(key);
+                if (message == null) {
+                    Message parameters = factory.extractMessage(event);
+                    message = new EncodedMessage(foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED),
+                            calculateRepeat(event, foundEncoder));
+                    encodedMessages.put(key, message);
+                }
+                transmitScheduler.submit(message, event, TransmitScheduler.airTimeUs(message.message, message.repeat));
             } catch (BadMessageException e) {
                 logger.warning("Bad protocol message received: " + event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE));
             }
@@ -102,12 +140,14 @@ public class RFBitBangerTransmitter extends HomeItemAdapter implements HomeItem
         super.activate(server);
         factory.addEncoderTypes(server.getPluginProvider().getPluginsForInterface(ProtocolEncoder.class));
         reconnect();
+        transmitScheduler.start();
     }
 
     /**
      * HomeItem method which stops all object activity for program termination
      */
     public void stop() {
+        transmitScheduler.stop();
     }
 
     /**
@@ -147,6 +187,22 @@ public class RFBitBangerTransmitter extends HomeItemAdapter implements HomeItem
         return Long.toString(sendCount);
     }
 
+    public String getEncoderCacheHitRate() {
+        return Integer.toString(encodedMessages.getHitRate());
+    }
+
+    public String getQueuedMessages() {
+        return Integer.toString(transmitScheduler.getQueueDepth());
+    }
+
+    public String getSupersededMessages() {
+        return Long.toString(transmitScheduler.getSupersededCount());
+    }
+
+    public String getExpiredMessages() {
+        return Long.toString(transmitScheduler.getExpiredCount());
+    }
+
     public String getDeviceName() {
         return deviceName;
     }
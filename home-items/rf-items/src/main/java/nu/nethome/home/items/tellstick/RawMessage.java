@@ -19,35 +19,29 @@
 
 package nu.nethome.home.items.tellstick;
 
-import java.util.Date;
-
 /**
 * Created by Stefan 2013-11-21
+*
+* A message ready to be sent to the Tellstick, as built by {@link TellstickPort#buildCommand(int[], int)}.
+* Raw messages are cached and sent again, so they must not be modified.
 */
 public class RawMessage {
-    private int[] data;
-    private int repeat;
-    private Date creationTime;
-
-    RawMessage(int[] data, int repeat) {
-        this(data, repeat, new Date());
-    }
-
-    public RawMessage(int[] data, int repeat, Date creationTime) {
-        this.data = data;
-        this.repeat = repeat;
-        this.creationTime = creationTime;
-    }
+    private final byte[] frame;
+    private final long airTimeUs;
 
-    int[] getData() {
-        return data;
+    RawMessage(byte[] frame, long airTimeUs) {
+        this.frame = frame;
+        this.airTimeUs = airTimeUs;
     }
 
-    int getRepeat() {
-        return repeat;
+    byte[] getFrame() {
+        return frame;
     }
 
-    public Date getCreationTime() {
-        return creationTime;
+    /**
+     * @return time in microseconds the Tellstick transmits when sending the message
+     */
+    long getAirTimeUs() {
+        return airTimeUs;
     }
 }
@@ -24,12 +24,17 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.util.EncodedMessageCache;
 import nu.nethome.home.util.EncoderFactory;
+import nu.nethome.home.util.RepeatFilter;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.util.ps.*;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -52,6 +57,12 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
     private static final String MODEL2 = ("  <Attribute Name=\"FirmwareVersion\" Type=\"String\" Get=\"getFirmwareVersion\" />"
             + "  <Attribute Name=\"ReceivedMessages\" Type=\"String\" Get=\"getReceivedMessages\" />"
             + "  <Attribute Name=\"SentMessages\" Type=\"String\" Get=\"getSentMessages\" />"
+            + "  <Attribute Name=\"QueuedMessages\" Type=\"String\" Get=\"getQueuedMessages\" />"
+            + "  <Attribute Name=\"SupersededMessages\" Type=\"String\" Get=\"getSupersededMessages\" />"
+            + "  <Attribute Name=\"ExpiredMessages\" Type=\"String\" Get=\"getExpiredMessages\" />"
+            + "  <Attribute Name=\"EncoderCacheHitRate\" Type=\"String\" Get=\"getEncoderCacheHitRate\" Unit=\"%\" />"
+            + "  <Attribute Name=\"RepeatWindow\" Type=\"String\" Get=\"getRepeatWindow\" Set=\"setRepeatWindow\" />"
+            + "  <Attribute Name=\"SuppressedRepeats\" Type=\"String\" Get=\"getSuppressedRepeats\" />"
             + "  <Action Name=\"reconnect\" Method=\"reconnect\" Default=\"true\" />"
             + "</HomeItem> ");
 
@@ -62,12 +73,22 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
     private volatile int receivedMessages = 0;
     private volatile int sentMessages = 0;
     private String portName = "COM14";
-    private SendQueue sendQueue = new SendQueue(TIMEOUT_MILLISECONDS);
+    private final RepeatFilter repeatFilter = new RepeatFilter();
+    private final EncodedMessageCache<RawMessage> encodedMessages = new EncodedMessageCache<RawMessage>();
+    private final Semaphore sendCompleted = new Semaphore(0);
+    private final TransmitScheduler<RawMessage> transmitScheduler = new TransmitScheduler<RawMessage>("Tellstick",
+            new TransmitScheduler.Transmitter<RawMessage>() {
+                @Override
+                public void transmit(RawMessage message) {
+                    sendToTellstick(message);
+                }
+            });
     private String receivedProtocols = "UPM,NexaL,Nexa,Oregon,FineOffset";
     private String transmittedProtocols;
     private Set<String> transmittedProtocolSet = new HashSet<String>();
 
     public Tellstick() {
+        transmitScheduler.setMinimumGapMs(INTER_MESSAGE_DELAY);
         encoderFactory = new EncoderFactory(Encoders.getAllTypes());
         String separator = "";
         StringBuilder protocols = new StringBuilder();
@@ -136,25 +157,28 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
         ProtocolEncoder foundEncoder = encoderFactory.getEncoder(event);
         if (foundEncoder != null && transmittedProtocolSet.contains(foundEncoder.getInfo().getName())) {
             try {
-                Message parameters = encoderFactory.extractMessage(event);
-                int repeat = calculateRepeat(event, foundEncoder);
-                int rawMessage[] = foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED);
-                RawMessage message = sendQueue.newMessage(new RawMessage(rawMessage, repeat));
-                if (message != null) {
-                    tellstick.sendCommand(message.getData(), message.getRepeat());
-                    sentMessages++;
+                String key = EncodedMessageCache.keyOf(event);
+                RawMessage message = encodedMessages.get(key);
+                if (message == null) {
+                    message = encodeMessage(event, foundEncoder);
+                    encodedMessages.put(key, message);
                 }
+                transmitScheduler.submit(message, event, message.getAirTimeUs());
                 return true;
             } catch (BadMessageException e) {
                 logger.warning("Bad protocol message received: " + event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE));
-            } catch (IOException e) {
-                logger.log(Level.WARNING, "Could not send message to Tellstick", e);
-                reconnect();
             }
         }
         return false;
     }
 
+    private RawMessage encodeMessage(Event event, ProtocolEncoder foundEncoder) throws BadMessageException {
+        Message parameters = encoderFactory.extractMessage(event);
+        int repeat = calculateRepeat(event, foundEncoder);
+        int pulses[] = foundEncoder.encode(parameters, ProtocolEncoder.Phase.REPEATED);
+        return new RawMessage(tellstick.buildCommand(pulses, repeat), TransmitScheduler.airTimeUs(pulses, repeat));
+    }
+
     private void addPortNameAttribute(StringBuilder model) {
         model.append("  <Attribute Name=\"PortName\" Type=\"StringList\" Get=\"getPortName\" Set=\"setPortName\" >");
         List<String> ports = TellstickPort.listSerialPorts();
@@ -177,9 +201,32 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
         return result;
     }
 
+    /**
+     * Send a message and wait until the Tellstick reports that it has been transmitted. Called on the
+     * transmit thread of the scheduler.
+     */
+    private void sendToTellstick(RawMessage message) {
+        TellstickPort port = tellstick;
+        if (port == null) {
+            return;
+        }
+        try {
+            sendCompleted.drainPermits();
+            port.sendFrame(message.getFrame());
+            sentMessages++;
+            sendCompleted.tryAcquire(TIMEOUT_MILLISECONDS, TimeUnit.MILLISECONDS);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Could not send message to Tellstick", e);
+            reconnect();
+        } catch (InterruptedException e) {
+            // Stopped, silently ignore
+        }
+    }
+
     @Override
     public void activate() {
         createTellstickPort();
+        transmitScheduler.start();
     }
 
     void createTellstickPort() {
@@ -197,6 +244,7 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
 
     @Override
     public void stop() {
+        transmitScheduler.stop();
         try {
             if (tellstick != null) {
                 tellstick.stop();
@@ -246,7 +294,8 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
     }
 
     private void handleReceivedMessage(String message) {
-        sendQueue.flush();
+        // The Tellstick does not acknowledge a message it was sending when it receives one, so do not wait for it
+        sendCompleted.release();
         TellstickEvent event = new TellstickEvent(message);
         TellstickEventReceiver handler = getHandlerForEvent(event);
         if (handler != null) {
@@ -263,17 +312,7 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
     }
 
     private void handleAck(String message) {
-        try {
-            Thread.sleep(INTER_MESSAGE_DELAY);
-            RawMessage rawMessage = sendQueue.messageAcknowledge();
-            if (message != null) {
-                tellstick.sendCommand(rawMessage.getData(), rawMessage.getRepeat());
-            }
-        } catch (InterruptedException e) {
-            // Silently ignore
-        } catch (IOException e) {
-            logger.log(Level.WARNING, "Could not send message to Tellstick", e);
-        }
+        sendCompleted.release();
     }
 
     @Override
@@ -287,8 +326,10 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
         for (FieldValue f : message.getFields()) {
             event.setAttribute(message.getProtocol() + "." + f.getName(), f.getStringValue());
         }
-        // Send the event internally
-        server.send(event);
+        // Send the event internally, unless it is a repeat of a message we just received
+        if (!repeatFilter.isRepeat(event)) {
+            server.send(event);
+        }
     }
 
     @Override
@@ -318,6 +359,34 @@ public class Tellstick extends HomeItemAdapter implements HomeItem, ProtocolDeco
         return Integer.toString(sentMessages);
     }
 
+    public String getQueuedMessages() {
+        return Integer.toString(transmitScheduler.getQueueDepth());
+    }
+
+    public String getSupersededMessages() {
+        return Long.toString(transmitScheduler.getSupersededCount());
+    }
+
+    public String getExpiredMessages() {
+        return Long.toString(transmitScheduler.getExpiredCount());
+    }
+
+    public String getRepeatWindow() {
+        return repeatFilter.getWindows();
+    }
+
+    public void setRepeatWindow(String repeatWindow) {
+        repeatFilter.setWindows(repeatWindow);
+    }
+
+    public String getSuppressedRepeats() {
+        return Long.toString(repeatFilter.getSuppressedCount());
+    }
+
+    public String getEncoderCacheHitRate() {
+        return Integer.toString(encodedMessages.getHitRate());
+    }
+
     public String getPortName() {
         return portName;
     }
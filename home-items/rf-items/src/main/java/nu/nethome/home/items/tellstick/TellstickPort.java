@@ -22,6 +22,7 @@ package nu.nethome.home.items.tellstick;
 import gnu.io.*;
 import nu.nethome.coders.RollerTrol;
 import nu.nethome.coders.RollerTrolG;
+import nu.nethome.home.util.SerialFramer;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -63,13 +64,18 @@ public class TellstickPort {
     }
 
     private class SerialDevice implements SerialPortEventListener {
-        protected final int MAX_WAIT_TIME_MS = 2000;
         protected Enumeration<CommPortIdentifier> portList;
         protected InputStream inputStream;
         protected OutputStream outputStream;
         protected SerialPort serialPort;
         protected CommPortIdentifier portId = null;
         protected boolean m_CallbackActive = false;
+        private final SerialFramer framer = SerialFramer.lines(new SerialFramer.FrameListener() {
+            @Override
+            public void frameReceived(byte[] data, int offset, int length) {
+                lineReceived(SerialFramer.toString(data, offset, length).trim());
+            }
+        });
 
         public void activate() throws IOException {
             m_CallbackActive = true;
@@ -166,40 +172,12 @@ public class TellstickPort {
             return data.length;
         }
 
-        public String readLine() throws IOException {
-            StringBuilder result = new StringBuilder();
-            byte tempResult[] = new byte[1];
-            int read;
-            int i = 0;
-            int waitCount = 0;
-            long start = System.currentTimeMillis();    // starting time
-
-            // The Linux drivers for the FTDI serial chip does not appear to support waiting for more
-            // than one character at the time. Therefore we have to read the characters one at the time
-            // and then assemble the result.
-            tempResult[0] = 0;
-            while (tempResult[0] != 10) {
-                read = inputStream.read(tempResult);
-                if (read == 1) {
-                    result.append((char) tempResult[0]);
-                    i++;
-                } else {
-                    // If we did not get any character, we wait approximately one character "time"
-                    // and try again, but max for MAX_WAIT_TIME_MS milliseconds.
-                    try {
-                        Thread.sleep(1);
-                        waitCount++;
-                        long current = System.currentTimeMillis();
-                        if (current - start > MAX_WAIT_TIME_MS)
-                            break;
-                    } catch (InterruptedException e) {
-                        // Do Dinada
-                    }
-                }
-            }
-            read = i;
-            logger.finer("Read " + Integer.toString(read) + " bytes with " + Integer.toString(waitCount) + " waits");
-            return result.toString();
+        /**
+         * Read all data the port has received and report the complete lines to the framer's listener
+         */
+        public void readAvailable() throws IOException {
+            int read = framer.readAvailable(inputStream);
+            logger.finer("Read " + Integer.toString(read) + " bytes");
         }
 
         public void deactivate() throws IOException {
@@ -243,16 +221,33 @@ public class TellstickPort {
     }
 
     public void sendCommand(int[] pulseSequence, int repeats) throws IOException {
-        if (isClosed) {
-            throw new IOException("Port is closed");
-        }
-        byte[] byteMessage;
+        sendFrame(buildCommand(pulseSequence, repeats));
+    }
+
+    /**
+     * Build the Tellstick send command for a pulse sequence. The command does not depend on the port, so it
+     * may be built once and sent several times with {@link #sendFrame(byte[])}.
+     *
+     * @param pulseSequence pulse lengths in microseconds, the last one is the space before a repeat
+     * @param repeats       number of times to send the pulse sequence
+     * @return the command to send to the Tellstick
+     */
+    public byte[] buildCommand(int[] pulseSequence, int repeats) {
         if (pulseSequence.length - 1 <= TELLSTICK_BUFFER_LENGTH) {
-            byteMessage = buildSendCommand((byte) repeats, pulseSequence);
+            return buildSendCommand((byte) repeats, pulseSequence);
         } else {
-            byteMessage = buildExtendedSendCommand((byte) repeats, pulseSequence);
+            return buildExtendedSendCommand((byte) repeats, pulseSequence);
+        }
+    }
+
+    /**
+     * Send a command built with {@link #buildCommand(int[], int)}
+     */
+    public void sendFrame(byte[] frame) throws IOException {
+        if (isClosed) {
+            throw new IOException("Port is closed");
         }
-        portDevice.write(byteMessage);
+        portDevice.write(frame);
     }
 
     private byte[] buildSendCommand(byte repeat, int[] rawMessage) {
@@ -457,13 +452,7 @@ public class TellstickPort {
             if (isClosed) {
                 return;
             }
-            String event = portDevice.readLine().trim();
-            if (event.startsWith("+V") && event.length() > 2) {
-                firmwareVersion = event.substring(2).trim();
-            }
-            if (callbackInterface != null) {
-                callbackInterface.received(event);
-            }
+            portDevice.readAvailable();
         } catch (IOException e) {
             logger.log(Level.WARNING, "failed to read from Tellstick serial port: ", e);
             isClosed = true;
@@ -473,6 +462,15 @@ public class TellstickPort {
         }
     }
 
+    void lineReceived(String event) {
+        if (event.startsWith("+V") && event.length() > 2) {
+            firmwareVersion = event.substring(2).trim();
+        }
+        if (callbackInterface != null) {
+            callbackInterface.received(event);
+        }
+    }
+
     public String getFirmwareVersion() {
         return firmwareVersion;
     }
@@ -24,8 +24,6 @@ import nu.nethome.home.item.*;
 import nu.nethome.home.system.Event;
 import nu.nethome.util.plugin.Plugin;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.logging.Logger;
 
 
@@ -46,16 +44,18 @@ public class UPMHygrometer extends HomeItemAdapter implements HomeItem, ValueIte
             + "  <Attribute Name=\"LogFile\" Type=\"String\" Get=\"getLogFile\" 	Set=\"setLogFile\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getConstantK\" 	Set=\"setConstantK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getConstantM\" 	Set=\"setConstantM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
     private static final int BACKWARDS_COMPATIBILITY = 2;
     private static Logger logger = Logger.getLogger(UPMHygrometer.class.getName());
     private ExtendedLoggerComponent moistureLoggerComponent = new ExtendedLoggerComponent(this);
+    private SensorValue sensorValue = new SensorValue(this, "Humidity");
 
     // Public attributes
     private double humidity = 0;
     private String itemHouseCode = "2";
     private String itemDeviceCode = "1";
-    private String lastUpdateString = "";
     private int lowBattery = 0;
     private double constantK = 0.5;
     private double constantM = 0;
@@ -77,11 +77,7 @@ public class UPMHygrometer extends HomeItemAdapter implements HomeItem, ValueIte
             }
             lowBattery = newBatteryLevel ? 1 : 0;
             logger.finer("Hygrometer update: " + humidity + " %");
-            // Format and store the current time.
-            SimpleDateFormat formatter
-                    = new SimpleDateFormat("HH:mm:ss yyyy.MM.dd ");
-            Date currentTime = new Date();
-            lastUpdateString = formatter.format(currentTime);
+            sensorValue.update(humidity);
             return true;
         } else {
             return handleInit(event);
@@ -117,7 +113,7 @@ public class UPMHygrometer extends HomeItemAdapter implements HomeItem, ValueIte
      * @return Returns the humidity.
      */
     public String getValue() {
-        return lastUpdateString.length() > 0 ? String.format("%.1f", humidity) : "";
+        return sensorValue.getValue();
     }
 
     /**
@@ -157,15 +153,7 @@ public class UPMHygrometer extends HomeItemAdapter implements HomeItem, ValueIte
      */
     @SuppressWarnings("UnusedDeclaration")
     public String getLastUpdate() {
-        return lastUpdateString;
-    }
-
-    /**
-     * @param lastUpdate the LastUpdate to set
-     */
-    @SuppressWarnings("UnusedDeclaration")
-    public void setLastUpdate(String lastUpdate) {
-        lastUpdateString = lastUpdate;
+        return sensorValue.getLastUpdate();
     }
 
     /**
@@ -208,4 +196,24 @@ public class UPMHygrometer extends HomeItemAdapter implements HomeItem, ValueIte
     public void setConstantM(String constantM) {
         this.constantM = Double.parseDouble(constantM);
     }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportDeadband() {
+        return sensorValue.getDeadband();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportDeadband(String deadband) {
+        sensorValue.setDeadband(deadband);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportMinInterval() {
+        return sensorValue.getMinReportInterval();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportMinInterval(String minInterval) {
+        sensorValue.setMinReportInterval(minInterval);
+    }
 }
@@ -24,8 +24,6 @@ import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
 import nu.nethome.util.plugin.Plugin;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.logging.Logger;
 
 /**
@@ -50,11 +48,13 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
             + "  <Attribute Name=\"LastUpdate\" Type=\"String\" Get=\"getLastUpdate\" />"
             + "  <Attribute Name=\"K\" Type=\"String\" Get=\"getK\" 	Set=\"setK\" />"
             + "  <Attribute Name=\"M\" Type=\"String\" Get=\"getM\" 	Set=\"setM\" />"
+            + "  <Attribute Name=\"ReportDeadband\" Type=\"String\" Get=\"getReportDeadband\" 	Set=\"setReportDeadband\" />"
+            + "  <Attribute Name=\"ReportMinInterval\" Type=\"String\" Get=\"getReportMinInterval\" 	Set=\"setReportMinInterval\" Unit=\"s\" />"
             + "</HomeItem> ");
 
     private static Logger logger = Logger.getLogger(UPMThermometer.class.getName());
     private ExtendedLoggerComponent tempLoggerComponent = new ExtendedLoggerComponent(this);
-    private static final SimpleDateFormat dateFormatter = new SimpleDateFormat("HH:mm:ss yyyy.MM.dd ");
+    private SensorValue sensorValue = new SensorValue(this, "Temperature");
 
     // Public attributes
     private double temperature = 0;
@@ -62,8 +62,6 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
     private double constantM = (-50.0);
     private String itemHouseCode = "2";
     private String itemDeviceCode = "1";
-    private Date latestUpdateOrCreation = new Date();
-    private boolean hasBeenUpdated = false;
     private boolean batteryIsLow = false;
 
     public UPMThermometer() {
@@ -84,9 +82,7 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
             }
             batteryIsLow = newBatteryLevel;
             logger.finer("Temperature update: " + temperature + " degrees");
-            // Format and store the current time.
-            latestUpdateOrCreation = new Date();
-            hasBeenUpdated = true;
+            sensorValue.update(temperature);
             return true;
         } else {
             return handleInit(event);
@@ -121,7 +117,7 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
     }
 
     public String getValue() {
-        return hasBeenUpdated ? String.format("%.1f", temperature) : "";
+        return sensorValue.getValue();
     }
 
     /**
@@ -193,7 +189,7 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
      */
     @SuppressWarnings("UnusedDeclaration")
     public String getLastUpdate() {
-        return hasBeenUpdated ? dateFormatter.format(latestUpdateOrCreation) : "";
+        return sensorValue.getLastUpdate();
     }
 
     /**
@@ -222,6 +218,26 @@ public class UPMThermometer extends HomeItemAdapter implements HomeItem, ValueIt
 
     @SuppressWarnings("UnusedDeclaration")
     public String getTimeSinceUpdate() {
-        return Long.toString((new Date().getTime() - latestUpdateOrCreation.getTime()) / 1000);
+        return sensorValue.getTimeSinceUpdate();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportDeadband() {
+        return sensorValue.getDeadband();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportDeadband(String deadband) {
+        sensorValue.setDeadband(deadband);
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public String getReportMinInterval() {
+        return sensorValue.getMinReportInterval();
+    }
+
+    @SuppressWarnings("UnusedDeclaration")
+    public void setReportMinInterval(String minInterval) {
+        sensorValue.setMinReportInterval(minInterval);
     }
 }
@@ -100,7 +100,7 @@ public class ZWaveBlind extends HomeItemAdapter implements HomeItem {
         // Check if this is an inward event directed to this instance
         if (isMultiLevelSwithReport(event) && event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) {
             try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+                messageProcessor.process(ZWaveController.messageOf(event));
             } catch (DecoderException e) {
                 // Ignore
             }
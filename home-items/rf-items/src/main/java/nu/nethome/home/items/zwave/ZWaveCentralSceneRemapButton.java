@@ -6,7 +6,6 @@ import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
 import nu.nethome.util.plugin.Plugin;
-import nu.nethome.zwave.Hex;
 import nu.nethome.zwave.messages.ApplicationCommand;
 import nu.nethome.zwave.messages.ApplicationUpdate;
 import nu.nethome.zwave.messages.RequestNodeInfo;
@@ -41,7 +40,7 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
         @Override
         public String getCreationIdentification(Event e) {
             try {
-                final ApplicationCommand.Request request = new ApplicationCommand.Request(Hex.hexStringToByteArray(e.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+                final ApplicationCommand.Request request = new ApplicationCommand.Request(ZWaveController.messageOf(e));
                 final CentralSceneCommandClass.Set command = new CentralSceneCommandClass.Set(request.command.encode());
                 return String.format("ZWave Scene Button, node: %d, scene: %d ", request.node, command.scene);
             } catch (DecoderException|IOException e1) {
@@ -65,6 +64,7 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
     String holdCommand = "";
     String releaseCommand = "";
     private MultiMessageProcessor messageProcessor;
+    private final ZWaveNodeIndex.Registration nodeRegistration;
     CommandLineExecutor commandExecutor;
 
     public ZWaveCentralSceneRemapButton() {
@@ -76,6 +76,14 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
                 return command;
             }
         });
+        nodeRegistration = ZWaveController.NODE_INDEX.createRegistration(new ZWaveNodeIndex.CommandListener() {
+            @Override
+            public void commandReceived(int commandClass, int command, byte[] message) {
+                if (commandClass == CentralSceneCommandClass.COMMAND_CLASS && command == CentralSceneCommandClass.SET) {
+                    processMessage(message);
+                }
+            }
+        });
     }
 
     private void centralSceneCommand(CentralSceneCommandClass.Set command, CommandArgument node) {
@@ -102,21 +110,35 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
     @Override
     public void activate() {
         commandExecutor = new CommandLineExecutor(server, true);
+        nodeRegistration.register(nodeId);
+    }
+
+    @Override
+    public void stop() {
+        nodeRegistration.unregister();
+        super.stop();
     }
 
     @Override
     public boolean receiveEvent(Event event) {
-        if (isCentralSceneSet(event) && event.getAttributeInt("ZWave.Node") == nodeId) {
-            try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+        // Commands are normally routed directly from the controller, see commandReceived
+        if (!nodeRegistration.isRouted() && isCentralSceneSet(event) && event.getAttributeInt("ZWave.Node") == nodeId) {
+            if (processMessage(ZWaveController.messageOf(event))) {
                 return true;
-            } catch (DecoderException e) {
-                // Ignore
             }
         }
         return handleInit(event);
     }
 
+    private boolean processMessage(byte[] message) {
+        try {
+            messageProcessor.process(message);
+            return true;
+        } catch (DecoderException e) {
+            return false;
+        }
+    }
+
     private static boolean isCentralSceneSet(Event e) {
         return e.isType("ZWave_Message") && e.getAttribute("Direction").equals("In") &&
                 e.getAttributeInt("ZWave.CommandClass") == CentralSceneCommandClass.COMMAND_CLASS &&
@@ -127,7 +149,7 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
     protected boolean initAttributes(Event event) {
         final ApplicationCommand.Request request;
         try {
-            request = new ApplicationCommand.Request(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+            request = new ApplicationCommand.Request(ZWaveController.messageOf(event));
             final CentralSceneCommandClass.Set command = new CentralSceneCommandClass.Set(request.command.encode());
             nodeId = request.node;
             scene = command.scene;
@@ -143,6 +165,9 @@ public class ZWaveCentralSceneRemapButton extends HomeItemAdapter {
 
     public void setNodeId(String nodeId) {
         this.nodeId = Integer.parseInt(nodeId);
+        if (nodeRegistration.isRegistered()) {
+            nodeRegistration.register(this.nodeId);
+        }
     }
 
     public String getScene() {
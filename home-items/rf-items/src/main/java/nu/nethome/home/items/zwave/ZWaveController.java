@@ -2,6 +2,7 @@ package nu.nethome.home.items.zwave;
 
 import nu.nethome.home.item.*;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.PayloadEvent;
 import nu.nethome.util.plugin.Plugin;
 import nu.nethome.zwave.*;
 import nu.nethome.zwave.messages.*;
@@ -35,6 +36,7 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
             + "  <Attribute Name=\"HomeId\" Type=\"String\" Get=\"getHomeId\" />"
             + "  <Attribute Name=\"NodeId\" Type=\"String\" Get=\"getNodeId\" />"
             + "  <Attribute Name=\"Nodes\" Type=\"String\" Get=\"getNodes\" Set=\"setNodes\" />"
+            + "  <Attribute Name=\"RoutedCommands\" Type=\"String\" Get=\"getRoutedCommands\" />"
             + "  <Action Name=\"RequestIdentity\" 	Method=\"requestIdentity\" Default=\"true\" />"
             + "  <Action Name=\"Reconnect\"		Method=\"reconnect\" Default=\"true\" />"
             + "  <Action Name=\"StartInclusion\"		Method=\"startInclusion\" />"
@@ -49,6 +51,11 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
     public static final String ZWAVE_ENDPOINT = "ZWave.Endpoint";
     private static final long DELAY_BETWEEN_NODE_CREATIONS_MS = 5000L;
 
+    /**
+     * The items handling commands from each node. There is one Z-Wave network per server, so the index is shared
+     */
+    public static final ZWaveNodeIndex NODE_INDEX = new ZWaveNodeIndex();
+
     private static Logger logger = Logger.getLogger(ZWaveController.class.getName());
 
     private ZWavePort port;
@@ -58,19 +65,26 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
     private int nodeId = 0;
     private List<DiscoveredNode> nodes = new ArrayList<>();
     private State state = new Initial();
+    private long routedCommands = 0;
 
     public boolean receiveEvent(nu.nethome.home.system.Event event) {
         if (event.isType(ZWAVE_EVENT_TYPE) &&
                 event.getAttribute("Direction").equals("Out") &&
                 event.getAttribute(nu.nethome.home.system.Event.EVENT_VALUE_ATTRIBUTE).length() > 0 &&
                 port != null && port.isOpen()) {
-            byte[] message = Hex.hexStringToByteArray(event.getAttribute(nu.nethome.home.system.Event.EVENT_VALUE_ATTRIBUTE));
+            byte[] message = messageOf(event);
             try {
                 port.sendMessage(message);
             } catch (PortException e) {
                 logger.warning("Failed to send ZWave message: " + event.getAttribute(nu.nethome.home.system.Event.EVENT_VALUE_ATTRIBUTE));
             }
             return true;
+        } else if (isReceivedApplicationCommand(event) && NODE_INDEX.isRouting()) {
+            // Pass the already decoded command directly to the items of the node
+            boolean dispatched = NODE_INDEX.dispatch(event.getAttributeInt(ZWAVE_NODE),
+                    event.getAttributeInt(ZWAVE_COMMAND_CLASS), event.getAttributeInt(ZWAVE_COMMAND), payloadOf(event));
+            routedCommands += dispatched ? 1 : 0;
+            return dispatched;
         } else if (event.isType("NodeInclusionEvent")) {
             if (event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE).equals("StartInclusion")) {
                 startInclusion();
@@ -89,6 +103,24 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
         return false;
     }
 
+    private static boolean isReceivedApplicationCommand(Event event) {
+        return event.isType(ZWAVE_EVENT_TYPE) && payloadOf(event) != null &&
+                event.hasAttribute(ZWAVE_COMMAND_CLASS) && event.getAttribute("Direction").equals("In");
+    }
+
+    /**
+     * Get the Z-Wave message of a ZWave_Message event, from the binary payload if it has one and otherwise by
+     * decoding the hex string value
+     */
+    public static byte[] messageOf(Event event) {
+        byte[] payload = payloadOf(event);
+        return payload != null ? payload : Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE));
+    }
+
+    private static byte[] payloadOf(Event event) {
+        return event instanceof PayloadEvent ? ((PayloadEvent) event).getPayload() : null;
+    }
+
     public String getModel() {
         return String.format(MODEL, getPortNames());
     }
@@ -110,6 +142,7 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
 
     @Override
     public void activate() {
+        NODE_INDEX.setRouting(true);
         openPort();
     }
 
@@ -213,19 +246,10 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
      * HomeItem method which stops all object activity for program termination
      */
     public void stop() {
+        NODE_INDEX.setRouting(false);
         closePort();
     }
 
-
-    private void receiveFrameByte(byte frameByte) {
-        String data = String.format("%02X", frameByte);
-        logger.info(data);
-        nu.nethome.home.system.Event event = server.createEvent(ZWAVE_EVENT_TYPE, data);
-        event.setAttribute(ZWAVE_TYPE, "FrameByte");
-        event.setAttribute("Direction", "In");
-        server.send(event);
-    }
-
     private void receiveMessage(byte[] message) {
         try {
             sendMessageAsEvent(message);
@@ -237,8 +261,11 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
 
     private void sendMessageAsEvent(byte[] message) throws IOException, DecoderException {
         String data = Hex.asHexString(message);
-        logger.info(data);
+        logger.fine(data);
         nu.nethome.home.system.Event event = server.createEvent(ZWAVE_EVENT_TYPE, data);
+        if (event instanceof PayloadEvent) {
+            ((PayloadEvent) event).setPayload(message);
+        }
         event.setAttribute(ZWAVE_TYPE, message[0] == 0 ? "Request" : "Response");
         event.setAttribute(ZWAVE_MESSAGE_TYPE, ((int) message[1]) & 0xFF);
         event.setAttribute("Direction", "In");
@@ -381,6 +408,10 @@ public class ZWaveController extends HomeItemAdapter implements HomeItem {
         }
     }
 
+    public String getRoutedCommands() {
+        return Long.toString(routedCommands);
+    }
+
     public String getPortAddress() {
         return portAddress;
     }
@@ -88,6 +88,7 @@ public class ZWaveDimmer extends HomeItemAdapter implements HomeItem {
 
     protected Logger logger = Logger.getLogger(ZWaveDimmer.class.getName());
     private MultiMessageProcessor messageProcessor;
+    private final ZWaveNodeIndex.Registration nodeRegistration;
     private int nodeId;
     protected Integer instance = null;
     // Public attributes
@@ -108,6 +109,14 @@ public class ZWaveDimmer extends HomeItemAdapter implements HomeItem {
                 return command;
             }
         });
+        nodeRegistration = ZWaveController.NODE_INDEX.createRegistration(new ZWaveNodeIndex.CommandListener() {
+            @Override
+            public void commandReceived(int commandClass, int command, byte[] message) {
+                if (commandClass == MultiLevelSwitchCommandClass.COMMAND_CLASS && command == MultiLevelSwitchCommandClass.SWITCH_MULTILEVEL_REPORT) {
+                    processMessage(message);
+                }
+            }
+        });
     }
 
     private void multiLevelReport(MultiLevelSwitchCommandClass.Report report, CommandArgument node) {
@@ -118,24 +127,41 @@ public class ZWaveDimmer extends HomeItemAdapter implements HomeItem {
 
     public boolean receiveEvent(Event event) {
         // Check if this is an inward event directed to this instance
-        if (isMultiLevelSwithReport(event) && event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) {
-            try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
-            } catch (DecoderException e) {
-                // Ignore
-            }
+        // Commands are normally routed directly from the controller, see commandReceived
+        if (!nodeRegistration.isRouted() && isMultiLevelSwithReport(event) &&
+                event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) {
+            processMessage(ZWaveController.messageOf(event));
             return true;
         } else {
             return handleInit(event);
         }
     }
 
+    private void processMessage(byte[] message) {
+        try {
+            messageProcessor.process(message);
+        } catch (DecoderException e) {
+            // Ignore
+        }
+    }
+
     private static boolean isMultiLevelSwithReport(Event e) {
         return e.isType(ZWaveController.ZWAVE_EVENT_TYPE) && e.getAttribute("Direction").equals("In") &&
                 e.getAttributeInt(ZWaveController.ZWAVE_COMMAND_CLASS) == MultiLevelSwitchCommandClass.COMMAND_CLASS &&
                 e.getAttributeInt(ZWaveController.ZWAVE_COMMAND) == MultiLevelSwitchCommandClass.SWITCH_MULTILEVEL_REPORT;
     }
 
+    @Override
+    public void activate() {
+        nodeRegistration.register(nodeId);
+    }
+
+    @Override
+    public void stop() {
+        nodeRegistration.unregister();
+        super.stop();
+    }
+
     @Override
     protected boolean initAttributes(Event event) {
         nodeId = event.getAttributeInt("NodeId");
@@ -171,6 +197,9 @@ public class ZWaveDimmer extends HomeItemAdapter implements HomeItem {
 
     public void setNodeId(String nodeId) {
         this.nodeId = Integer.parseInt(nodeId);
+        if (nodeRegistration.isRegistered()) {
+            nodeRegistration.register(this.nodeId);
+        }
     }
 
     public void sendDimCommand(int newLevel) {
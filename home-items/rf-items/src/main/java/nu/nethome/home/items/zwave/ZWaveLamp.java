@@ -76,6 +76,7 @@ public class ZWaveLamp extends HomeItemAdapter implements HomeItem {
 
     protected Logger logger = Logger.getLogger(ZWaveLamp.class.getName());
     private MultiMessageProcessor messageProcessor;
+    private final ZWaveNodeIndex.Registration nodeRegistration;
     // Public attributes
     private boolean state = false;
     private int nodeId;
@@ -90,6 +91,14 @@ public class ZWaveLamp extends HomeItemAdapter implements HomeItem {
                 return command;
             }
         });
+        nodeRegistration = ZWaveController.NODE_INDEX.createRegistration(new ZWaveNodeIndex.CommandListener() {
+            @Override
+            public void commandReceived(int commandClass, int command, byte[] message) {
+                if (commandClass == SwitchBinaryCommandClass.COMMAND_CLASS && command == SwitchBinaryCommandClass.SWITCH_BINARY_REPORT) {
+                    processMessage(message);
+                }
+            }
+        });
     }
 
     private void switchBinaryReport(SwitchBinaryCommandClass.Report report, CommandArgument node) {
@@ -100,24 +109,41 @@ public class ZWaveLamp extends HomeItemAdapter implements HomeItem {
 
     public boolean receiveEvent(Event event) {
         // Check if this is an inward event directed to this instance
-        if (isSwithBinaryReport(event) && event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) {
-            try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
-            } catch (DecoderException e) {
-                // Ignore
-            }
+        // Commands are normally routed directly from the controller, see commandReceived
+        if (!nodeRegistration.isRouted() && isSwithBinaryReport(event) &&
+                event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) {
+            processMessage(ZWaveController.messageOf(event));
             return true;
         } else {
             return handleInit(event);
         }
     }
 
+    private void processMessage(byte[] message) {
+        try {
+            messageProcessor.process(message);
+        } catch (DecoderException e) {
+            // Ignore
+        }
+    }
+
     private static boolean isSwithBinaryReport(Event e) {
         return e.isType(ZWaveController.ZWAVE_EVENT_TYPE) && e.getAttribute("Direction").equals("In") &&
                 e.getAttributeInt(ZWaveController.ZWAVE_COMMAND_CLASS) == SwitchBinaryCommandClass.COMMAND_CLASS &&
                 e.getAttributeInt(ZWaveController.ZWAVE_COMMAND) == SwitchBinaryCommandClass.SWITCH_BINARY_REPORT;
     }
 
+    @Override
+    public void activate() {
+        nodeRegistration.register(nodeId);
+    }
+
+    @Override
+    public void stop() {
+        nodeRegistration.unregister();
+        super.stop();
+    }
+
     @Override
     protected boolean initAttributes(Event event) {
         nodeId = event.getAttributeInt("NodeId");
@@ -154,6 +180,9 @@ public class ZWaveLamp extends HomeItemAdapter implements HomeItem {
 
     public void setNodeId(String nodeId) {
         this.nodeId = Integer.parseInt(nodeId);
+        if (nodeRegistration.isRegistered()) {
+            nodeRegistration.register(this.nodeId);
+        }
     }
 
     public void sendCommand(int stateCommand) {
@@ -75,6 +75,7 @@ public class ZWaveMeter extends HomeItemAdapter implements HomeItem, ValueItem {
 
     protected Logger logger = Logger.getLogger(ZWaveMeter.class.getName());
     protected MultiMessageProcessor messageProcessor;
+    private final ZWaveNodeIndex.Registration nodeRegistration;
     protected ExtendedLoggerComponent meterLoggerComponent = new ExtendedLoggerComponent(this);
     protected static final SimpleDateFormat dateFormatter = new SimpleDateFormat("HH:mm:ss yyyy.MM.dd ");
 
@@ -88,6 +89,14 @@ public class ZWaveMeter extends HomeItemAdapter implements HomeItem, ValueItem {
 
     public ZWaveMeter() {
         messageProcessor = new MultiMessageProcessor();
+        nodeRegistration = ZWaveController.NODE_INDEX.createRegistration(new ZWaveNodeIndex.CommandListener() {
+            @Override
+            public void commandReceived(int commandClass, int command, byte[] message) {
+                if (isReport(commandClass, command)) {
+                    processMessage(message);
+                }
+            }
+        });
     }
 
     protected void addMessageProcessors() {
@@ -115,27 +124,35 @@ public class ZWaveMeter extends HomeItemAdapter implements HomeItem, ValueItem {
     }
 
     public boolean receiveEvent(Event event) {
-        // Check if this is an inward event directed to this instance
-        if (isCommandForUs(event) && isForThisNode(event)) {
-            try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
-            } catch (DecoderException e) {
-                // Ignore
-            }
+        // Check if this is an inward event directed to this instance. Commands are normally routed directly
+        // from the controller, see commandReceived
+        if (!nodeRegistration.isRouted() && isCommandForUs(event) && isForThisNode(event)) {
+            processMessage(ZWaveController.messageOf(event));
             return true;
         } else {
             return handleInit(event);
         }
     }
 
+    private void processMessage(byte[] message) {
+        try {
+            messageProcessor.process(message);
+        } catch (DecoderException e) {
+            // Ignore
+        }
+    }
+
     private boolean isForThisNode(Event event) {
         return event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId;
     }
 
     protected boolean isCommandForUs(Event e) {
         return e.isType(ZWaveController.ZWAVE_EVENT_TYPE) && e.getAttribute("Direction").equals("In") &&
-                e.getAttributeInt(ZWaveController.ZWAVE_COMMAND_CLASS) == MeterCommandClass.COMMAND_CLASS &&
-                e.getAttributeInt(ZWaveController.ZWAVE_COMMAND) == MeterCommandClass.REPORT;
+                isReport(e.getAttributeInt(ZWaveController.ZWAVE_COMMAND_CLASS), e.getAttributeInt(ZWaveController.ZWAVE_COMMAND));
+    }
+
+    protected boolean isReport(int commandClass, int command) {
+        return commandClass == MeterCommandClass.COMMAND_CLASS && command == MeterCommandClass.REPORT;
     }
 
     @Override
@@ -155,6 +172,13 @@ public class ZWaveMeter extends HomeItemAdapter implements HomeItem, ValueItem {
         super.activate(server);
         addMessageProcessors();
         meterLoggerComponent.activate(server);
+        nodeRegistration.register(nodeId);
+    }
+
+    @Override
+    public void stop() {
+        nodeRegistration.unregister();
+        super.stop();
     }
 
     public String getInstance() {
@@ -177,6 +201,9 @@ public class ZWaveMeter extends HomeItemAdapter implements HomeItem, ValueItem {
 
     public void setNodeId(String nodeId) {
         this.nodeId = Integer.parseInt(nodeId);
+        if (nodeRegistration.isRegistered()) {
+            nodeRegistration.register(this.nodeId);
+        }
     }
 
     public String getValue() {
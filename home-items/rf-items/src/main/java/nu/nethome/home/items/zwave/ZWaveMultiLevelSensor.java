@@ -77,10 +77,8 @@ public class ZWaveMultiLevelSensor extends ZWaveMeter implements HomeItem {
     protected Logger logger = Logger.getLogger(ZWaveMultiLevelSensor.class.getName());
 
     @Override
-    protected boolean isCommandForUs(Event e) {
-        return e.isType(ZWaveController.ZWAVE_EVENT_TYPE) && e.getAttribute("Direction").equals("In") &&
-                e.getAttributeInt(ZWaveController.ZWAVE_COMMAND_CLASS) == MultiLevelSensorCommandClass.COMMAND_CLASS &&
-                e.getAttributeInt(ZWaveController.ZWAVE_COMMAND) == MultiLevelSensorCommandClass.REPORT;
+    protected boolean isReport(int commandClass, int command) {
+        return commandClass == MultiLevelSensorCommandClass.COMMAND_CLASS && command == MultiLevelSensorCommandClass.REPORT;
     }
 
     @Override
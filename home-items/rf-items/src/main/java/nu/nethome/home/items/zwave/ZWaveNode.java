@@ -76,7 +76,7 @@ public class ZWaveNode extends HomeItemAdapter {
         if (event.isType("ZWave_Message") &&
                 event.getAttribute("Direction").equals("In")) {
             try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+                messageProcessor.process(ZWaveController.messageOf(event));
             } catch (DecoderException e) {
                 // Ignore
             }
@@ -51,7 +51,7 @@ public class ZWaveNodeExplorer extends HomeItemAdapter implements HomeItem {
         if (event.isType(ZWAVE_EVENT_TYPE) &&
                 event.getAttribute("Direction").equals("In") &&
                 event.getAttribute(nu.nethome.home.system.Event.EVENT_VALUE_ATTRIBUTE).length() > 0) {
-            byte[] message = Hex.hexStringToByteArray(event.getAttribute(nu.nethome.home.system.Event.EVENT_VALUE_ATTRIBUTE));
+            byte[] message = ZWaveController.messageOf(event);
             processZWaveMessage(message);
             return true;
         }
@@ -0,0 +1,135 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.zwave;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Index from Z-Wave node id to the items handling application commands from that node. The
+ * {@link ZWaveController} decodes each received application command once and passes it directly to the items
+ * registered for the node, instead of every Z-Wave item testing and decoding the broadcast ZWave_Message event.
+ * <p/>
+ * Commands are only routed through the index while a controller is active. Items should keep handling the
+ * broadcast events when {@link Registration#isRouted()} is false, for example before the controller has started.
+ *
+ * @author Stefan
+ */
+public class ZWaveNodeIndex {
+
+    /**
+     * Receives the application commands from a node
+     */
+    public interface CommandListener {
+        /**
+         * @param commandClass command class of the command, after removing any multi instance encapsulation
+         * @param command      the command within the command class
+         * @param message      the complete ApplicationCommand request message. Must not be modified.
+         */
+        void commandReceived(int commandClass, int command, byte[] message);
+    }
+
+    /**
+     * The registration of one item in the index
+     */
+    public class Registration {
+        private final CommandListener listener;
+        private int node;
+        private boolean registered;
+
+        private Registration(CommandListener listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * Register for commands from a node, replacing any earlier registration
+         */
+        public synchronized void register(int node) {
+            unregister();
+            this.node = node;
+            listenersFor(node).add(listener);
+            registered = true;
+        }
+
+        public synchronized void unregister() {
+            if (registered) {
+                listenersFor(node).remove(listener);
+                registered = false;
+            }
+        }
+
+        public synchronized boolean isRegistered() {
+            return registered;
+        }
+
+        /**
+         * @return true if commands from the node are delivered through the index and the broadcast events
+         * should be ignored
+         */
+        public synchronized boolean isRouted() {
+            return registered && routing;
+        }
+    }
+
+    private final ConcurrentMap<Integer, List<CommandListener>> listeners = new ConcurrentHashMap<>();
+    private volatile boolean routing;
+
+    public Registration createRegistration(CommandListener listener) {
+        return new Registration(listener);
+    }
+
+    /**
+     * Called by the controller when it starts and stops routing commands
+     */
+    public void setRouting(boolean routing) {
+        this.routing = routing;
+    }
+
+    public boolean isRouting() {
+        return routing;
+    }
+
+    /**
+     * Pass an application command to the items registered for the node
+     *
+     * @return true if any item is registered for the node
+     */
+    public boolean dispatch(int node, int commandClass, int command, byte[] message) {
+        List<CommandListener> nodeListeners = listeners.get(node);
+        if (nodeListeners == null || nodeListeners.isEmpty()) {
+            return false;
+        }
+        for (CommandListener listener : nodeListeners) {
+            listener.commandReceived(commandClass, command, message);
+        }
+        return true;
+    }
+
+    private List<CommandListener> listenersFor(int node) {
+        List<CommandListener> nodeListeners = listeners.get(node);
+        if (nodeListeners == null) {
+            listeners.putIfAbsent(node, new CopyOnWriteArrayList<CommandListener>());
+            nodeListeners = listeners.get(node);
+        }
+        return nodeListeners;
+    }
+}
@@ -5,9 +5,11 @@ import nu.nethome.home.item.AutoCreationInfo;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
+import nu.nethome.home.item.ItemEventRules;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
+import nu.nethome.home.system.EventRules;
 import nu.nethome.util.plugin.Plugin;
-import nu.nethome.zwave.Hex;
 import nu.nethome.zwave.messages.ApplicationCommand;
 import nu.nethome.zwave.messages.commandclasses.BasicCommandClass;
 import nu.nethome.zwave.messages.commandclasses.CentralSceneCommandClass;
@@ -17,6 +19,7 @@ import nu.nethome.zwave.messages.framework.DecoderException;
 import nu.nethome.zwave.messages.framework.MultiMessageProcessor;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.logging.Logger;
 
 /**
@@ -68,6 +71,12 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
     private String offCommand = "";
     CommandLineExecutor commandExecutor;
     private MultiMessageProcessor messageProcessor;
+    private final ItemEventRules matchRules = new ItemEventRules(new EventRules.Action() {
+        @Override
+        public void perform(Event event) {
+            processEvent(event);
+        }
+    });
 
     public ZWaveRemapButton() {
         messageProcessor = new MultiMessageProcessor();
@@ -78,6 +87,16 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
                 return command;
             }
         });
+        updateMatchConditions();
+    }
+
+    private void updateMatchConditions() {
+        matchRules.setConditions(Collections.singletonList(new EventCondition("ZWave_Message")
+                .with("Direction", "In")
+                .with(ZWaveController.ZWAVE_COMMAND_CLASS, BasicCommandClass.COMMAND_CLASS)
+                .with(ZWaveController.ZWAVE_COMMAND, BasicCommandClass.SET)
+                .with(ZWaveController.ZWAVE_NODE, nodeId)
+                .with(ZWaveController.ZWAVE_ENDPOINT, getInstanceId())));
     }
 
     private void processCommand(boolean on) {
@@ -87,25 +106,34 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
     @Override
     public void activate() {
         commandExecutor = new CommandLineExecutor(server, true);
+        matchRules.register(getEventRules());
+    }
+
+    @Override
+    public void stop() {
+        matchRules.unregister();
+        super.stop();
     }
 
     @Override
     public boolean receiveEvent(Event event) {
-        if (isEnabled && isBasicSet(event) && isForThisInstance(event)) {
+        // When registered, matching events are delivered by the event rules instead
+        if (!matchRules.isRegistered() && matchRules.matches(event) && processEvent(event)) {
+            return true;
+        }
+        return handleInit(event);
+    }
+
+    private boolean processEvent(Event event) {
+        if (isEnabled) {
             try {
-                messageProcessor.process(Hex.hexStringToByteArray(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE)));
+                messageProcessor.process(ZWaveController.messageOf(event));
                 return true;
             } catch (DecoderException e) {
                 // Ignore
             }
         }
-        return handleInit(event);
-    }
-
-    private boolean isForThisInstance(Event event) {
-        return (event.getAttributeInt(ZWaveController.ZWAVE_NODE) == nodeId) &&
-                ((instanceId == null && event.getAttribute(ZWaveController.ZWAVE_ENDPOINT).isEmpty()) ||
-                        (instanceId != null && instanceId.equals(event.getAttributeInt(ZWaveController.ZWAVE_ENDPOINT))));
+        return false;
     }
 
     private static boolean isBasicSet(Event e) {
@@ -121,6 +149,7 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
         if (!endPoint.isEmpty()) {
             instanceId = Integer.parseInt(endPoint);
         }
+        updateMatchConditions();
         return true;
     }
 
@@ -140,6 +169,7 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
             int instanceNum = Integer.parseInt(instance);
             this.instanceId = ((instanceNum > 0) && (instanceNum < 256)) ? instanceNum : this.instanceId;
         }
+        updateMatchConditions();
     }
 
     public String getNodeId() {
@@ -148,6 +178,7 @@ public class ZWaveRemapButton extends HomeItemAdapter implements HomeItem {
 
     public void setNodeId(String nodeId) {
         this.nodeId = Integer.parseInt(nodeId);
+        updateMatchConditions();
     }
 
     public String getOnCommand() {
@@ -19,10 +19,12 @@
 
 package nu.nethome.home.items;
 
+import nu.nethome.home.impl.TimingWheelScheduler;
 import nu.nethome.home.item.ExecutionFailure;
 import nu.nethome.home.item.HomeItemModel;
 import nu.nethome.home.item.HomeItemProxy;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Ignore;
@@ -44,6 +46,7 @@ public class LampGroupTest {
     HomeService server;
     HomeItemModel dimModel;
     HomeItemModel nonDimModel;
+    TimingWheelScheduler scheduler;
 
     @Before
     public void setUp() throws Exception {
@@ -68,7 +71,9 @@ public class LampGroupTest {
         when(lampOff.getAttributeValue(HomeItemProxy.ID_ATTRIBUTE)).thenReturn("2");
         when(lampOff.getModel()).thenReturn(dimModel);
 
-        server = mock(HomeService.class);
+        scheduler = new TimingWheelScheduler("Test", 2);
+        server = mock(HomeService.class, withSettings().extraInterfaces(SharedServices.class));
+        when(((SharedServices) server).getScheduler()).thenReturn(scheduler);
         when(server.openInstance("1")).thenReturn(lampOn1);
         when(server.openInstance("2")).thenReturn(lampOff);
         when(server.openInstance("3")).thenReturn(lampOn2);
@@ -81,6 +86,7 @@ public class LampGroupTest {
     @After
     public void tearDown() {
         lampGroup.stop();
+        scheduler.stop();
     }
 
     @Test
@@ -144,6 +150,30 @@ public class LampGroupTest {
         verify(lampOff, times(1)).callAction("off");
     }
 
+    @Test
+    public void doesNotBlockCallerDuringDelay() throws ExecutionFailure {
+        lampGroup.setDelay("1000");
+        long start = System.currentTimeMillis();
+        lampGroup.performOn();
+        assertThat(System.currentTimeMillis() - start < 500, is(true));
+        sleep(100);
+        verify(lampOn1, times(1)).callAction("on");
+        verify(lampOff, times(0)).callAction("on");
+    }
+
+    @Test
+    public void newCommandCancelsPreviousSequence() throws ExecutionFailure {
+        lampGroup.setDelay("200");
+        lampGroup.performOn();
+        sleep(50);
+        lampGroup.performOff();
+        sleep(100);
+        verify(lampOn1, times(1)).callAction("on");
+        verify(lampOff, times(0)).callAction("on");
+        verify(lampOn2, times(0)).callAction("on");
+        verify(lampOn1, times(1)).callAction("off");
+    }
+
     @Test
     public void canToggle() throws Exception {
         lampGroup.toggle();
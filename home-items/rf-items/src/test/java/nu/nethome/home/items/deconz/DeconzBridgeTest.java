@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.deconz;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import nu.nethome.home.items.util.TstHomeService;
+import nu.nethome.home.system.Event;
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static nu.nethome.home.items.deconz.DeconzConstants.DE_CONZ_ID;
+import static nu.nethome.home.items.deconz.DeconzConstants.DE_CONZ_SENSOR_MESSAGE;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the bridge against a local stand-in for the REST API and the WebSocket of a deCONZ gateway
+ */
+public class DeconzBridgeTest {
+
+    private static final String TOKEN = "ABC123";
+    private static final String LIGHT_OFF = "{\"name\":\"Lamp\",\"type\":\"Dimmable light\",\"modelid\":\"M1\",\"swversion\":\"1.0\"," +
+            "\"state\":{\"on\":false,\"bri\":100,\"reachable\":true}}";
+    private static final String LIGHT_ON = "{\"name\":\"Lamp\",\"type\":\"Dimmable light\",\"modelid\":\"M1\",\"swversion\":\"1.0\"," +
+            "\"state\":{\"on\":true,\"bri\":100,\"reachable\":true}}";
+    private static final String POWER_SENSOR = "{\"name\":\"Plug\",\"type\":\"ZHAPower\",\"modelid\":\"P1\",\"manufacturername\":\"X\"," +
+            "\"swversion\":\"2.0\",\"state\":{\"current\":1,\"power\":100,\"voltage\":230,\"lastupdated\":\"2020-01-01T10:00:00\"}}";
+
+    private HttpServer restServer;
+    private StandInWebSocketServer webSocketServer;
+    private final Map<String, JSONObject> restResources = new ConcurrentHashMap<>();
+    private final AtomicInteger lightRequests = new AtomicInteger();
+    private volatile CountDownLatch lightsReleased = new CountDownLatch(0);
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private DeconzBridge bridge;
+    private TstHomeService service;
+
+    private static class StandInWebSocketServer extends WebSocketServer {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final BlockingQueue<WebSocket> opened = new LinkedBlockingQueue<>();
+
+        StandInWebSocketServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+            opened.add(conn);
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        webSocketServer = new StandInWebSocketServer();
+        webSocketServer.start();
+        webSocketServer.started.await(5, TimeUnit.SECONDS);
+        restResources.put("config", new JSONObject(String.format(
+                "{\"name\":\"Gateway\",\"swversion\":\"2.5\",\"mac\":\"00:11\",\"websocketport\":%d}", webSocketServer.getPort())));
+        restResources.put("lights", new JSONObject().put("1", new JSONObject(LIGHT_OFF)));
+        restResources.put("groups", new JSONObject());
+        restResources.put("sensors", new JSONObject().put("5", new JSONObject(POWER_SENSOR)));
+        restServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        restServer.createContext("/api/" + TOKEN + "/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                String resource = exchange.getRequestURI().getPath().substring(("/api/" + TOKEN + "/").length());
+                if (resource.equals("lights")) {
+                    lightRequests.incrementAndGet();
+                    try {
+                        lightsReleased.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                byte[] body = restResources.get(resource).toString().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            }
+        });
+        restServer.start();
+        service = new TstHomeService() {
+            @Override
+            public void send(Event event) {
+                events.add(event);
+            }
+        };
+        bridge = new DeconzBridge();
+        bridge.setUrl("http://127.0.0.1:" + restServer.getAddress().getPort());
+        bridge.setToken(TOKEN);
+        bridge.activate(service);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bridge.stop();
+        webSocketServer.stop(1000);
+        restServer.stop(0);
+    }
+
+    @Test
+    public void reportsAllResourcesWhenConnected() throws Exception {
+        Event light = nextEvent("deCONZ_Message");
+        Event sensor = nextEvent(DE_CONZ_SENSOR_MESSAGE);
+
+        assertThat(light.getAttribute(DE_CONZ_ID), is("1"));
+        assertThat(light.getAttribute("deCONZ.Command"), is("Off"));
+        assertThat(sensor.getAttribute("deCONZ.power"), is("100"));
+        assertThat(bridge.getState(), is("Connected"));
+    }
+
+    @Test
+    public void reportsPushedChangeWithCompleteState() throws Exception {
+        WebSocket connection = awaitInitialSync();
+
+        connection.send("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"sensors\",\"id\":\"5\"," +
+                "\"state\":{\"power\":120,\"lastupdated\":\"2020-01-01T10:00:05\"}}");
+
+        Event sensor = nextEvent(DE_CONZ_SENSOR_MESSAGE);
+        assertThat(sensor.getAttribute("deCONZ.power"), is("120"));
+        assertThat(sensor.getAttribute("deCONZ.voltage"), is("230"));
+        assertThat(lightRequests.get(), is(1));
+        assertThat(bridge.getPushedChanges(), is("1"));
+    }
+
+    @Test
+    public void doesNotReportUnchangedState() throws Exception {
+        WebSocket connection = awaitInitialSync();
+
+        connection.send("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"state\":{\"on\":false}}");
+        connection.send("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"attr\":{\"lastseen\":\"2020-01-01T10:01Z\"}}");
+
+        assertThat(events.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test
+    public void resyncsAndReportsMissedChangesOnReconnect() throws Exception {
+        WebSocket connection = awaitInitialSync();
+        connection.close();
+        restResources.put("lights", new JSONObject().put("1", new JSONObject(LIGHT_ON)));
+        waitUntilDisconnected();
+
+        bridge.receiveEvent(service.createEvent("MinuteEvent", ""));
+
+        Event light = nextEvent("deCONZ_Message");
+        assertThat(light.getAttribute("deCONZ.Command"), is("On"));
+        assertThat(lightRequests.get(), is(2));
+        // The unchanged sensor is not reported again
+        assertThat(events.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    @Test
+    public void changePushedDuringResyncIsNotOverwrittenByReadState() throws Exception {
+        WebSocket connection = awaitInitialSync();
+        connection.close();
+        waitUntilDisconnected();
+        lightsReleased = new CountDownLatch(1);
+        bridge.receiveEvent(service.createEvent("MinuteEvent", ""));
+        connection = webSocketServer.opened.poll(5, TimeUnit.SECONDS);
+        waitForLightRequests(2);
+
+        // The lamp is turned on after the gateway has read the state it is about to return
+        connection.send("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"state\":{\"on\":true}}");
+        Thread.sleep(200);
+        lightsReleased.countDown();
+
+        Event light = nextEvent("deCONZ_Message");
+        assertThat(light.getAttribute("deCONZ.Command"), is("On"));
+        assertThat(events.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+    }
+
+    private WebSocket awaitInitialSync() throws InterruptedException {
+        WebSocket connection = webSocketServer.opened.poll(5, TimeUnit.SECONDS);
+        nextEvent(DE_CONZ_SENSOR_MESSAGE);
+        return connection;
+    }
+
+    private void waitUntilDisconnected() throws InterruptedException {
+        for (int i = 0; i < 500 && bridge.getState().equals("Connected"); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void waitForLightRequests(int count) throws InterruptedException {
+        for (int i = 0; i < 500 && lightRequests.get() < count; i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    private Event nextEvent(String type) throws InterruptedException {
+        Event event;
+        do {
+            event = events.poll(5, TimeUnit.SECONDS);
+        } while (event != null && !event.isType(type));
+        assertThat(event == null, is(false));
+        return event;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.deconz;
+
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DeconzStateModelTest {
+
+    private static final String LIGHT = "{\"name\":\"Lamp\",\"type\":\"Dimmable light\",\"modelid\":\"M1\",\"swversion\":\"1.0\"," +
+            "\"state\":{\"on\":false,\"bri\":100,\"reachable\":true}}";
+
+    private DeconzStateModel model;
+
+    @Before
+    public void setUp() throws Exception {
+        model = new DeconzStateModel();
+        model.put(DeconzStateModel.LIGHTS, "1", new JSONObject(LIGHT));
+    }
+
+    @Test
+    public void mergesChangedStateIntoResource() throws Exception {
+        boolean changed = model.applyChange(new JSONObject("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"state\":{\"on\":true}}"));
+
+        JSONObject light = model.get(DeconzStateModel.LIGHTS, "1");
+        assertThat(changed, is(true));
+        assertThat(light.getJSONObject("state").getBoolean("on"), is(true));
+        assertThat(light.getJSONObject("state").getInt("bri"), is(100));
+        assertThat(light.getString("name"), is("Lamp"));
+    }
+
+    @Test
+    public void sameValuesAreNoChange() throws Exception {
+        boolean changed = model.applyChange(new JSONObject("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"state\":{\"on\":false,\"bri\":100}}"));
+
+        assertThat(changed, is(false));
+    }
+
+    @Test
+    public void mergesAttributeChanges() throws Exception {
+        boolean changed = model.applyChange(new JSONObject("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"1\",\"attr\":{\"name\":\"Hall\"}}"));
+
+        assertThat(changed, is(true));
+        assertThat(model.get(DeconzStateModel.LIGHTS, "1").getString("name"), is("Hall"));
+    }
+
+    @Test
+    public void changeOfUnknownResourceIsIgnored() throws Exception {
+        boolean changed = model.applyChange(new JSONObject("{\"t\":\"event\",\"e\":\"changed\",\"r\":\"lights\",\"id\":\"2\",\"state\":{\"on\":true}}"));
+
+        assertThat(changed, is(false));
+        assertThat(model.contains(DeconzStateModel.LIGHTS, "2"), is(false));
+    }
+
+    @Test
+    public void returnsCopyOfResource() throws Exception {
+        model.get(DeconzStateModel.LIGHTS, "1").put("name", "Changed");
+
+        assertThat(model.get(DeconzStateModel.LIGHTS, "1").getString("name"), is("Lamp"));
+    }
+
+    @Test
+    public void comparesJsonByContent() throws Exception {
+        assertThat(DeconzStateModel.isSameValue(new JSONObject("{\"a\":1,\"b\":[1,{\"c\":2.0}]}"),
+                new JSONObject("{\"b\":[1,{\"c\":2}],\"a\":1}")), is(true));
+        assertThat(DeconzStateModel.isSameValue(new JSONObject("{\"a\":1}"),
+                new JSONObject("{\"a\":1,\"b\":2}")), is(false));
+    }
+}
@@ -26,6 +26,7 @@ import org.mockito.ArgumentCaptor;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -191,6 +192,31 @@ public class PhilipsHueBridgeTest {
         assertThat(result, hasItems(id1, id2));
     }
 
+    @Test
+    public void canListLampStates() throws Exception {
+        JSONObject lamps = new JSONObject();
+        lamps.put("1", new JSONObject(LAMP_REST_RESPONSE));
+        lamps.put("2", new JSONObject(LAMP_LUX_REST_RESPONSE));
+        when(restClient.get(anyString(), anyString(), any(JSONObject.class))).thenReturn(new JSONData(lamps.toString()));
+        Map<String, Light> result = api.listLightStates(USER_NAME);
+        verify(restClient, times(1)).get(eq("http://1.1.1.1"), eq("/api/test/lights"), any(JSONObject.class));
+        assertThat(result.size(), is(2));
+        assertThat(result.get("1").getName(), is("Soffbordet"));
+        assertThat(result.get("1").getState().isOn(), is(false));
+        assertThat(result.get("2").getState().isOn(), is(true));
+        assertThat(result.get("2").getState().getBrightness(), is(127));
+    }
+
+    @Test
+    public void lampsWithSameStateAreEqual() throws Exception {
+        Light lamp = new Light(new JSONObject(LAMP_REST_RESPONSE));
+        JSONObject changed = new JSONObject(LAMP_REST_RESPONSE);
+        changed.getJSONObject("state").put("bri", 100);
+
+        assertThat(lamp.equals(new Light(new JSONObject(LAMP_REST_RESPONSE))), is(true));
+        assertThat(lamp.equals(new Light(changed)), is(false));
+    }
+
     private static final String REGISTER_USER_OK = "[{\"success\":{\"username\": \"1234567890\"}}]";
 
     @Test
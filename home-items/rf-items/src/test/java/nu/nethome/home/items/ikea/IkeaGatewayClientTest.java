@@ -0,0 +1,136 @@
+package nu.nethome.home.items.ikea;
+
+import org.eclipse.californium.core.CoapResource;
+import org.eclipse.californium.core.CoapServer;
+import org.eclipse.californium.core.coap.CoAP;
+import org.eclipse.californium.core.network.CoapEndpoint;
+import org.eclipse.californium.core.server.resources.CoapExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+/**
+ * Tests the client against a local CoAP server standing in for the IKEA gateway
+ */
+public class IkeaGatewayClientTest {
+
+    private static final String LOCALHOST = "127.0.0.1";
+    private static final String LAMP_OFF = "{\"3311\":[{\"5850\":0}]}";
+    private static final String LAMP_ON = "{\"3311\":[{\"5850\":1}]}";
+
+    private CoapServer gateway;
+    private IkeaGatewayClient client;
+    private String port;
+    private BlockingQueue<JSONData> responses;
+    private IkeaGatewayClient.ResponseListener listener;
+
+    private static class NodeResource extends CoapResource {
+        private String state = LAMP_OFF;
+
+        NodeResource(String name) {
+            super(name);
+            setObservable(true);
+            getAttributes().setObservable();
+        }
+
+        @Override
+        public void handleGET(CoapExchange exchange) {
+            exchange.respond(CoAP.ResponseCode.CONTENT, state);
+        }
+
+        @Override
+        public void handlePUT(CoapExchange exchange) {
+            state = exchange.getRequestText();
+            exchange.respond(CoAP.ResponseCode.CHANGED);
+            changed();
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        CoapResource nodes = new CoapResource("15001") {
+            @Override
+            public void handleGET(CoapExchange exchange) {
+                exchange.respond(CoAP.ResponseCode.CONTENT, "[65537]");
+            }
+        };
+        nodes.add(new NodeResource("65537"));
+        CoapEndpoint gatewayEndpoint = new CoapEndpoint(new InetSocketAddress(LOCALHOST, 0));
+        gateway = new CoapServer();
+        gateway.addEndpoint(gatewayEndpoint);
+        gateway.add(nodes);
+        gateway.start();
+        port = Integer.toString(gatewayEndpoint.getAddress().getPort());
+        client = new IkeaGatewayClient();
+        client.start(new CoapEndpoint(new InetSocketAddress(LOCALHOST, 0)));
+        responses = new LinkedBlockingQueue<>();
+        listener = new IkeaGatewayClient.ResponseListener() {
+            @Override
+            public void responseReceived(String uri, JSONData response) {
+                responses.add(response);
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.stop();
+        gateway.destroy();
+    }
+
+    @Test
+    public void getsNodeIds() throws Exception {
+        assertThat(client.getNodeIds(LOCALHOST, port), is(Arrays.asList(65537)));
+        assertThat(client.isConnected(), is(true));
+    }
+
+    @Test
+    public void passesAsyncResponseToListener() throws Exception {
+        client.sendCoapRequestAsync(lampUri(), "GET", "", listener);
+
+        assertThat(nextResponse().toString(), is(new JSONData(LAMP_OFF).toString()));
+    }
+
+    @Test
+    public void observedNodePushesChanges() throws Exception {
+        client.observe(lampUri(), listener);
+        assertThat(nextResponse().toString(), is(new JSONData(LAMP_OFF).toString()));
+
+        client.sendCoapRequestAsync(lampUri(), "PUT", LAMP_ON, null);
+
+        assertThat(nextResponse().toString(), is(new JSONData(LAMP_ON).toString()));
+        assertThat(client.getObservationCount(), is(1));
+    }
+
+    @Test
+    public void cancelledObservationIsNotNotified() throws Exception {
+        client.observe(lampUri(), listener);
+        nextResponse();
+        client.cancelObservation(lampUri());
+
+        client.sendCoapRequestAsync(lampUri(), "PUT", LAMP_ON, null);
+
+        assertThat(responses.poll(500, TimeUnit.MILLISECONDS), is(nullValue()));
+        assertThat(client.getObservationCount(), is(0));
+    }
+
+    private String lampUri() {
+        return client.createUri(LOCALHOST, port, "/15001/65537");
+    }
+
+    private JSONData nextResponse() throws InterruptedException {
+        JSONData response = responses.poll(5, TimeUnit.SECONDS);
+        assertThat(response == null, is(false));
+        return response;
+    }
+}
@@ -124,7 +124,7 @@ public class NexaLCRemapButtonTest {
 		onEvent.setAttribute("NexaL.Address", "17");
 		onEvent.setAttribute("NexaL.Button", "1");
 		onEvent.setAttribute("NexaL.Command", "1");
-		testItem.receiveEvent(onEvent);
+		server.send(onEvent);
 
 		// Get the faked target instance and verify it has been called
 		TstHomeItemProxy foo = (TstHomeItemProxy)server.openInstance("Foo");
@@ -148,7 +148,7 @@ public class NexaLCRemapButtonTest {
 		onEvent.setAttribute("NexaL.Address", "5000");
 		onEvent.setAttribute("NexaL.Button", "7");
 		onEvent.setAttribute("NexaL.Command", "0");
-		testItem.receiveEvent(onEvent);
+		server.send(onEvent);
 
 		// Get the faked target instance and verify it has been called
 		TstHomeItemProxy foo = (TstHomeItemProxy)server.openInstance("Foo");
@@ -134,7 +134,7 @@ public class NexaRemapButtonTest {
 		onEvent.setAttribute("Nexa.HouseCode", "1");
 		onEvent.setAttribute("Nexa.Button", "1");
 		onEvent.setAttribute("Nexa.Command", "1");
-		m_testItem.receiveEvent(onEvent);
+		server.send(onEvent);
 
 		// Get the faked target instance and verify it has been called
 		TstHomeItemProxy foo = (TstHomeItemProxy)server.openInstance("Foo");
@@ -158,7 +158,7 @@ public class NexaRemapButtonTest {
 		onEvent.setAttribute("Nexa.HouseCode", "6");
 		onEvent.setAttribute("Nexa.Button", "7");
 		onEvent.setAttribute("Nexa.Command", "0");
-		m_testItem.receiveEvent(onEvent);
+		server.send(onEvent);
 
 		// Get the faked target instance and verify it has been called
 		TstHomeItemProxy foo = (TstHomeItemProxy)server.openInstance("Foo");
@@ -180,4 +180,40 @@ public class NexaRemapButtonTest {
         MatcherAssert.assertThat(m_testItem.getButton(), Is.is("5"));
         MatcherAssert.assertThat(m_testItem.getHouseCode(), Is.is("C"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void followsChangedButtonWhenActivated() throws InterruptedException {
+        m_testItem.setOnCommand("call,Foo,OnMethod");
+        m_testItem.setHouseCode("B");
+        m_testItem.activate(server);
+        m_testItem.setButton("2");
+
+        server.send(createOnEvent("1", "1"));
+        server.send(createOnEvent("1", "2"));
+
+        TstHomeItemProxy foo = (TstHomeItemProxy) server.openInstance("Foo");
+        assertEquals(1, foo.getNumberTimesCalled("OnMethod"));
+        m_testItem.stop();
+    }
+
+    @Test
+    public void ignoresEventsWhenStopped() throws InterruptedException {
+        m_testItem.setOnCommand("call,Foo,OnMethod");
+        m_testItem.activate(server);
+        m_testItem.stop();
+
+        server.send(createOnEvent("0", "1"));
+
+        TstHomeItemProxy foo = (TstHomeItemProxy) server.openInstance("Foo");
+        assertEquals(0, foo.getNumberOfCalledActions());
+    }
+
+    private Event createOnEvent(String houseCode, String button) {
+        Event onEvent = server.createEvent("Nexa_Message", "");
+        onEvent.setAttribute("Direction", "In");
+        onEvent.setAttribute("Nexa.HouseCode", houseCode);
+        onEvent.setAttribute("Nexa.Button", button);
+        onEvent.setAttribute("Nexa.Command", "1");
+        return onEvent;
+    }
+}
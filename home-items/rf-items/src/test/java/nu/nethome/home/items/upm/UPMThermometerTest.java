@@ -104,6 +104,33 @@ public class UPMThermometerTest {
         assertThat(proxy.getAttributeValue("BatteryLevel"), is("10"));
     }
 
+    @Test
+    public void onlyChangedValuesAreReported() throws IllegalValueException {
+        temp.receiveEvent(createEvent(20, false));
+        temp.receiveEvent(createEvent(20, false));
+        temp.receiveEvent(createEvent(21, false));
+        assertThat(valueChanges(), is(2));
+    }
+
+    @Test
+    public void changesWithinDeadbandAreNotReported() throws IllegalValueException {
+        proxy.setAttributeValue("ReportDeadband", "2.0");
+        temp.receiveEvent(createEvent(20, false));
+        temp.receiveEvent(createEvent(21, false));
+        assertThat(valueChanges(), is(1));
+    }
+
+    private int valueChanges() {
+        int count = 0;
+        for (Event event : ((TstHomeService) server).sentEvents) {
+            if (event.isType(HomeService.VALUE_CHANGED_EVENT_TYPE) &&
+                    event.getAttribute(HomeService.VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE).equals("Temperature")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     private Event createEvent(int temperature, boolean lowBattery) {
         Event testEvent;
         testEvent = new TstEvent("UPM_Message");
@@ -19,8 +19,9 @@
 
 package nu.nethome.home.items.util;
 
-import nu.nethome.home.system.Event;
+import nu.nethome.home.system.PayloadEvent;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -29,8 +30,9 @@ import java.util.TreeMap;
  * Date: 2012-05-29
  * Time: 20:49
  */
-public class TstEvent implements Event {
+public class TstEvent implements PayloadEvent {
     private Map<String, String> attributes = new TreeMap<String, String>();
+    private byte[] payload;
 
     /**
      * Create a new event with given type and value
@@ -126,6 +128,21 @@ public class TstEvent implements Event {
         return attributes.containsKey(name);
     }
 
+    @Override
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public ByteBuffer getPayloadBuffer() {
+        return payload != null ? ByteBuffer.wrap(payload).asReadOnlyBuffer() : null;
+    }
+
     @Override
     public String[] getAttributeNames() {
         return attributes.keySet().toArray(new String[attributes.size()]);
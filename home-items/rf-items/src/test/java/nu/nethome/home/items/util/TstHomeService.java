@@ -19,6 +19,8 @@
 
 package nu.nethome.home.items.util;
 
+import nu.nethome.home.impl.EventRuleNetwork;
+import nu.nethome.home.impl.TimingWheelScheduler;
 import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemInfo;
 import nu.nethome.home.item.HomeItemProxy;
@@ -32,11 +34,13 @@ import java.util.*;
  * Date: 2012-05-29
  * Time: 20:27
  */
-public class TstHomeService implements HomeService, ServiceConfiguration {
+public class TstHomeService implements HomeService, SharedServices, ServiceConfiguration {
 
     public List<HomeItem> items = new LinkedList<HomeItem>();
     protected Map<String, TstHomeItemProxy> m_Instances = new HashMap<String, TstHomeItemProxy>();
     public List<Event> sentEvents = new ArrayList<Event>();
+    private TaskScheduler scheduler;
+    private final EventRuleNetwork eventRules = new EventRuleNetwork();
 
 
     public int registerInstance(HomeItem item) {
@@ -49,6 +53,7 @@ public class TstHomeService implements HomeService, ServiceConfiguration {
     }
 
     public void send(Event event) {
+        eventRules.distribute(event);
         for(HomeItem i : items) {
       			i.receiveEvent(event);
       		}
@@ -95,6 +100,25 @@ public class TstHomeService implements HomeService, ServiceConfiguration {
         return this;
     }
 
+    @Override
+    public synchronized TaskScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new TimingWheelScheduler("TestScheduler", 1);
+        }
+        return scheduler;
+    }
+
+    @Override
+    public EventRules getEventRules() {
+        return eventRules;
+    }
+
+    @Override
+    public long getDirectoryVersion() {
+        // Instances are never renamed or removed
+        return 0;
+    }
+
     public void stopServer() {
     }
 
@@ -0,0 +1,87 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.zwave;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+public class ZWaveNodeIndexTest {
+
+    private static final byte[] MESSAGE = {0x00, 0x04, 0x00, 0x05, 0x03, 0x25, 0x03, (byte) 0xFF};
+
+    private ZWaveNodeIndex index;
+    private ZWaveNodeIndex.CommandListener listener;
+    private ZWaveNodeIndex.Registration registration;
+
+    @Before
+    public void setUp() throws Exception {
+        index = new ZWaveNodeIndex();
+        listener = mock(ZWaveNodeIndex.CommandListener.class);
+        registration = index.createRegistration(listener);
+    }
+
+    @Test
+    public void dispatchesToRegisteredNode() throws Exception {
+        registration.register(5);
+        assertThat(index.dispatch(5, 0x25, 3, MESSAGE), is(true));
+        verify(listener).commandReceived(0x25, 3, MESSAGE);
+    }
+
+    @Test
+    public void doesNotDispatchToOtherNodes() throws Exception {
+        registration.register(5);
+        assertThat(index.dispatch(6, 0x25, 3, MESSAGE), is(false));
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void reregisteringMovesRegistration() throws Exception {
+        registration.register(5);
+        registration.register(6);
+        assertThat(index.dispatch(5, 0x25, 3, MESSAGE), is(false));
+        assertThat(index.dispatch(6, 0x25, 3, MESSAGE), is(true));
+    }
+
+    @Test
+    public void doesNotDispatchAfterUnregister() throws Exception {
+        registration.register(5);
+        registration.unregister();
+        assertThat(registration.isRegistered(), is(false));
+        assertThat(index.dispatch(5, 0x25, 3, MESSAGE), is(false));
+        verifyZeroInteractions(listener);
+    }
+
+    @Test
+    public void isRoutedOnlyWhenRegisteredAndRouting() throws Exception {
+        assertThat(registration.isRouted(), is(false));
+        index.setRouting(true);
+        assertThat(registration.isRouted(), is(false));
+        registration.register(5);
+        assertThat(registration.isRouted(), is(true));
+        index.setRouting(false);
+        assertThat(registration.isRouted(), is(false));
+    }
+}
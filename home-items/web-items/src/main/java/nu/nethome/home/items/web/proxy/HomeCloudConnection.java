@@ -23,20 +23,22 @@ import nu.nethome.home.item.HomeItem;
 import nu.nethome.home.item.HomeItemAdapter;
 import nu.nethome.home.item.HomeItemType;
 import nu.nethome.home.system.Event;
+import nu.nethome.home.util.PooledHttpClient;
 import nu.nethome.util.plugin.Plugin;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.commons.codec.binary.Hex;
-import org.apache.http.util.ByteArrayBuffer;
+import org.json.JSONArray;
+import org.json.JSONObject;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.HttpURLConnection;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 
@@ -56,12 +58,18 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
             + "  <Attribute Name=\"ServerName\" Type=\"String\" Get=\"getServerName\" Set=\"setServerName\" />"
             + "  <Attribute Name=\"UserPassword\" Type=\"String\" Get=\"getPassword\" Set=\"setPassword\" />"
             + "  <Attribute Name=\"MessageCount\" Type=\"String\" Get=\"getMessageCount\" />"
+            + "  <Attribute Name=\"Multiplexed\" Type=\"Boolean\" Get=\"getMultiplexed\" Set=\"setMultiplexed\" />"
+            + "  <Attribute Name=\"MaxConcurrentRequests\" Type=\"String\" Get=\"getMaxConcurrentRequests\" Set=\"setMaxConcurrentRequests\" />"
+            + "  <Attribute Name=\"RequestsInFlight\" Type=\"String\" Get=\"getRequestsInFlight\" />"
+            + "  <Attribute Name=\"LocalConnectionReuse\" Type=\"String\" Get=\"getLocalConnectionReuse\" Unit=\"%\" />"
             + "  <Action Name=\"Reconnect\" 	Method=\"reconnect\" />"
             + "</HomeItem> ");
 
     private static final int RETRY_INTERVAL_MS = 5000;
     static final String LOGIN_RESOURCE = "api/server-sessions";
     static final String CLOUD_POLL_RESOURCE = "api/servers/%s/poll";
+    static final String CLOUD_MULTIPLEXED_POLL_RESOURCE = "api/servers/%s/multipoll";
+    private static final int BATCH_WAIT_MS = 200;
     private static final String CLOUD_ACCOUNT = "Cloud-Account";
     private static final int MAX_FAILED_LOGIN_ATTEMPTS = 3;
     private static final int MAX_LOGIN_ATTEMPTS_LOCKOUT_MS = 2 * 60 * 1000;
@@ -74,7 +82,9 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
     private String accountKey = "";
     private int serverNumber = 1;
     private String serverName = "No Name";
-    private int messageCount = 0;
+    private final AtomicInteger messageCount = new AtomicInteger();
+    private boolean multiplexed = false;
+    private int maxConcurrentRequests = 4;
     private boolean accountKeyIsBad = false;
     private boolean doReconnect = false;
 
@@ -86,7 +96,10 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
     protected Thread listenThread;
     protected boolean isRunning = false;
     JsonRestClient jsonRestClient;
+    PooledHttpClient localHttpClient;
     private String pollResource;
+    private String multiplexedPollResource;
+    private volatile ProxySession proxySession;
     private String currentSessionToken;
     private int failedLoginAttempts;
 
@@ -100,6 +113,7 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
 
     public void activate() {
         jsonRestClient = new JsonRestClient();
+        localHttpClient = new PooledHttpClient(maxConcurrentRequests, PooledHttpClient.DEFAULT_CONNECT_TIMEOUT, PooledHttpClient.DEFAULT_READ_TIMEOUT);
         isRunning = true;
         listenThread = new Thread(this, "ProxyListenThread");
         listenThread.start();
@@ -107,6 +121,16 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
 
     public void stop() {
         isRunning = false;
+        ProxySession session = proxySession;
+        if (session != null) {
+            session.requestExecutor.shutdownNow();
+        }
+        if (localHttpClient != null) {
+            localHttpClient.close();
+        }
+        if (jsonRestClient != null) {
+            jsonRestClient.close();
+        }
         super.stop();
     }
 
@@ -162,6 +186,11 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
         } else {
             final LoginResp loginResp = loginToCloud(new LoginReq(account, accountKey, serverNumber, serverName));
             connected = true;
+            if (multiplexed) {
+                proxyMultiplexedCloudRequests(loginResp.Id);
+                connected = false;
+                return;
+            }
             HttpResponse lastHttpResponse = HttpResponse.challenge(currentChallenge);
             while (isRunning & !doReconnect) {
                 lastHttpResponse = proxyHttpRequest(lastHttpResponse, loginResp.Id);
@@ -188,11 +217,127 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
         return nextLocalHttpResponse;
     }
 
+    /**
+     * Multiplexed mode. Each poll posts a batch of completed responses and fetches a batch of new requests,
+     * identified by their requestId. Proxied requests are executed on a small pool, so several requests can
+     * be in flight at once. The poll also reports the number of requests in flight, and while that is
+     * non zero the cloud is expected to answer the poll immediately instead of holding it until a new request
+     * arrives, so completed responses are not delayed.
+     */
+    private void proxyMultiplexedCloudRequests(String sessionId) throws InterruptedException, IOException, ConnectionException {
+        List<HttpResponse> responses = new ArrayList<>();
+        responses.add(HttpResponse.challenge(currentChallenge));
+        ProxySession session = new ProxySession();
+        proxySession = session;
+        try {
+            while (isRunning & !doReconnect) {
+                for (HttpRequest request : postResponsesToCloudAndFetchNewRequests(session, responses, sessionId)) {
+                    HttpResponse immediateResponse = handleMultiplexedRequest(session, request);
+                    if (immediateResponse != null) {
+                        session.completedResponses.add(immediateResponse.withRequestId(request.requestId));
+                    }
+                }
+                responses = collectCompletedResponses(session);
+                if (failedLoginAttempts >= MAX_FAILED_LOGIN_ATTEMPTS) {
+                    logger.warning(Integer.toString(MAX_FAILED_LOGIN_ATTEMPTS) + " failed login attempts to " + this.getName() + ". Going temporary offline");
+                    Thread.sleep(MAX_LOGIN_ATTEMPTS_LOCKOUT_MS);
+                    failedLoginAttempts = 0;
+                }
+            }
+        } finally {
+            // Requests still running finish into this session, which is then dropped
+            session.requestExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return response to send at once, or null if the request was handed over to the request pool
+     */
+    private HttpResponse handleMultiplexedRequest(final ProxySession session, final HttpRequest request) throws ConnectionException {
+        if (request.isProxyRequest()) {
+            if (!isAuthenticated(request)) {
+                return HttpResponse.unauthorized();
+            }
+            session.requestsInFlight.incrementAndGet();
+            try {
+                session.requestExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        HttpResponse response = badGateway();
+                        try {
+                            response = performLocalRequest(request);
+                            messageCount.incrementAndGet();
+                        } catch (IOException e) {
+                            logger.fine("Failed local request: " + e);
+                        } catch (RuntimeException e) {
+                            logger.log(Level.WARNING, "Failed local request", e);
+                        } finally {
+                            // Always answer the request, so the cloud is not left waiting and the slot is freed
+                            session.completedResponses.add(response.withRequestId(request.requestId));
+                            session.requestsInFlight.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                session.requestsInFlight.decrementAndGet();
+                return badGateway();
+            }
+            return null;
+        } else if (request.isAuthenticationRequest()) {
+            return verifyAuthenticationRequest(request.loginCredential);
+        }
+        return HttpResponse.empty();
+    }
+
+    private static HttpResponse badGateway() {
+        return new HttpResponse("", new String[0], "", null, HttpURLConnection.HTTP_BAD_GATEWAY);
+    }
+
+    /**
+     * Wait a short while for at least one response if requests are in flight, and then take all completed
+     * responses so they can be sent in one batch.
+     */
+    private List<HttpResponse> collectCompletedResponses(ProxySession session) throws InterruptedException {
+        List<HttpResponse> responses = new ArrayList<>();
+        if (session.completedResponses.isEmpty() && session.requestsInFlight.get() > 0) {
+            HttpResponse first = session.completedResponses.poll(BATCH_WAIT_MS, TimeUnit.MILLISECONDS);
+            if (first != null) {
+                responses.add(first);
+            }
+        }
+        session.completedResponses.drainTo(responses);
+        return responses;
+    }
+
+    private List<HttpRequest> postResponsesToCloudAndFetchNewRequests(ProxySession session, List<HttpResponse> responses, String sessionId) throws IOException, ConnectionException {
+        JSONArray responseArray = new JSONArray();
+        for (HttpResponse response : responses) {
+            responseArray.put(response.toJson());
+        }
+        JSONObject poll = new JSONObject();
+        poll.put("responses", responseArray);
+        int inFlight = session.requestsInFlight.get();
+        poll.put("inFlight", inFlight);
+        poll.put("maxRequests", Math.max(0, maxConcurrentRequests - inFlight));
+        final JSONResponse result = jsonRestClient.post(serviceURL, multiplexedPollResource, poll, sessionId);
+        List<HttpRequest> requests = new ArrayList<>();
+        if (result.getResultCode() == HttpURLConnection.HTTP_CREATED) {
+            JSONArray requestArray = result.getObject().getJSONArray("requests");
+            for (int i = 0; i < requestArray.length(); i++) {
+                requests.add(new HttpRequest(requestArray.getJSONObject(i)));
+            }
+            return requests;
+        } else if (result.getResultCode() == HttpURLConnection.HTTP_NO_CONTENT) {
+            return requests;
+        }
+        throw new ConnectionException("Got unexpected return code: " + result.getResultCode() + "from cloud server");
+    }
+
     private HttpResponse proxyIfAuthenticated(HttpRequest request) throws IOException {
         HttpResponse nextLocalHttpResponse;
         if (isAuthenticated(request)) {
             nextLocalHttpResponse = performLocalRequest(request);
-            messageCount++;
+            messageCount.incrementAndGet();
         } else {
             nextLocalHttpResponse = HttpResponse.unauthorized();
         }
@@ -240,6 +385,7 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
         if (result.getResultCode() == HttpURLConnection.HTTP_CREATED) {
             LoginResp loginResp = new LoginResp(result.getObject());
             pollResource = String.format(CLOUD_POLL_RESOURCE, loginResp.server);
+            multiplexedPollResource = String.format(CLOUD_MULTIPLEXED_POLL_RESOURCE, loginResp.server);
             return loginResp;
         } else if (result.getResultCode() == HttpURLConnection.HTTP_UNAUTHORIZED) {
             accountKeyIsBad = true;
@@ -258,50 +404,58 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
     }
 
     HttpResponse performLocalRequest(HttpRequest request) throws IOException {
-        HttpResponse httpResponse;
-        HttpURLConnection connection = (HttpURLConnection) new URL(localURL + request.url).openConnection();
+        Map<String, String> requestHeaders = new LinkedHashMap<>();
         for (String header : request.headers) {
-            String parts[] = header.split(":");
-            connection.setRequestProperty(parts[0].trim(), parts[1].trim());
-        }
-        connection.setRequestMethod(request.method);
-        connection.setRequestProperty(CLOUD_ACCOUNT, this.account);
-        if (!request.body.isEmpty()) {
-            connection.setDoOutput(true);
-            connection.getOutputStream().write(Base64.decodeBase64(request.body));
-        }
-        ByteArrayBuffer baf = new ByteArrayBuffer(50);
-        int responseCode = connection.getResponseCode();
-        try (InputStream response = responseCode < 300 ? connection.getInputStream() : connection.getErrorStream()) {
-            BufferedInputStream bis = new BufferedInputStream(response);
-            int read;
-            int bufSize = 512;
-            byte[] buffer = new byte[bufSize];
-            while (true) {
-                read = bis.read(buffer);
-                if (read == -1) {
-                    break;
-                }
-                baf.append(buffer, 0, read);
+            int separator = header.indexOf(':');
+            if (separator > 0) {
+                requestHeaders.put(header.substring(0, separator).trim(), header.substring(separator + 1).trim());
             }
-        } catch (IOException e) {
-            return HttpResponse.empty();
         }
+        requestHeaders.put(CLOUD_ACCOUNT, this.account);
+        byte[] body = request.body.isEmpty() ? null : Base64.decodeBase64(request.body);
+        // The local client keeps the connections to the local server open between requests
+        PooledHttpClient.Response response = localHttpClient.execute(request.method, localURL + request.url, requestHeaders, body);
 
-        Map<String, List<String>> map = connection.getHeaderFields();
         List<String> headers = new ArrayList<>();
-        int i = 0;
-        for (Map.Entry<String, List<String>> entry : map.entrySet()) {
-            if (entry.getKey() != null && entry.getValue().get(0) != null && !entry.getKey().equalsIgnoreCase("Transfer-Encoding")) {
-                headers.add(entry.getKey() + ":" + entry.getValue().get(0));
+        for (Map.Entry<String, String> entry : response.getHeaders().entrySet()) {
+            if (!entry.getKey().equalsIgnoreCase("Transfer-Encoding")) {
+                headers.add(entry.getKey() + ":" + entry.getValue());
             }
         }
-        httpResponse = new HttpResponse(new String(Base64.encodeBase64(baf.toByteArray())), headers.toArray(new String[headers.size()]), "", null, responseCode);
-        return httpResponse;
+        return new HttpResponse(new String(Base64.encodeBase64(response.getBody())), headers.toArray(new String[headers.size()]), "", null, response.getResponseCode());
     }
 
     public String getMessageCount() {
-        return String.valueOf(messageCount);
+        return String.valueOf(messageCount.get());
+    }
+
+    public String getMultiplexed() {
+        return getBooleanAttribute(multiplexed);
+    }
+
+    public void setMultiplexed(String multiplexed) {
+        boolean newValue = setBooleanAttribute(multiplexed);
+        if (newValue != this.multiplexed && connected) {
+            doReconnect = true;
+        }
+        this.multiplexed = newValue;
+    }
+
+    public String getMaxConcurrentRequests() {
+        return Integer.toString(maxConcurrentRequests);
+    }
+
+    public void setMaxConcurrentRequests(String maxConcurrentRequests) {
+        this.maxConcurrentRequests = Math.max(1, Integer.parseInt(maxConcurrentRequests));
+    }
+
+    public String getRequestsInFlight() {
+        ProxySession session = proxySession;
+        return Integer.toString(session == null ? 0 : session.requestsInFlight.get());
+    }
+
+    public String getLocalConnectionReuse() {
+        return localHttpClient == null ? "" : Integer.toString(localHttpClient.getReusePercentage());
     }
 
     public String getAccount() {
@@ -369,5 +523,23 @@ public class HomeCloudConnection extends HomeItemAdapter implements Runnable, Ho
             super(message);
         }
     }
-}
 
+    /**
+     * The proxied requests of one multiplexed cloud session. Local requests cannot be interrupted, so requests
+     * still running when a session ends complete into their own session and are never answered in the next one.
+     */
+    private class ProxySession {
+        final BlockingQueue<HttpResponse> completedResponses = new LinkedBlockingQueue<>();
+        final AtomicInteger requestsInFlight = new AtomicInteger();
+        final ExecutorService requestExecutor = Executors.newFixedThreadPool(maxConcurrentRequests, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "ProxyRequestThread-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
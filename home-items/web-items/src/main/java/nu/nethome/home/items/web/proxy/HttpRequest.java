@@ -10,6 +10,7 @@ public class HttpRequest {
     public final String url;
     public final String[] headers;
     public final String loginCredential;
+    public final String requestId;
 
     public HttpRequest(JSONObject json) {
         url = json.getString("url");
@@ -27,6 +28,7 @@ public class HttpRequest {
         }
         method = json.getString("method");
         body = json.getString("body");
+        requestId = json.has("requestId") ? json.getString("requestId") : null;
     }
 
     public HttpRequest(String url, String[] headers, String loginCredential, String sessionToken) {
@@ -40,6 +42,7 @@ public class HttpRequest {
         this.sessionToken = sessionToken;
         this.method = method;
         this.body = body;
+        this.requestId = null;
     }
 
     private HttpRequest() {
@@ -49,6 +52,7 @@ public class HttpRequest {
         sessionToken = "";
         method = "GET";
         body = "";
+        requestId = null;
     }
 
     public static HttpRequest empty() {
@@ -63,6 +67,9 @@ public class HttpRequest {
         jsonObject.put("sessionToken", sessionToken);
         jsonObject.put("method", method);
         jsonObject.put("body", body);
+        if (requestId != null) {
+            jsonObject.put("requestId", requestId);
+        }
         return jsonObject;
     }
 
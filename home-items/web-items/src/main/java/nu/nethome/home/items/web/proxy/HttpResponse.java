@@ -12,17 +12,23 @@ public class HttpResponse {
     public final String challenge;
     public final String sessionToken;
     private final int responseCode;
+    public final String requestId;
 
     public HttpResponse(String body, String[] headers, String challenge) {
         this(body, headers, challenge, null, HttpURLConnection.HTTP_OK);
     }
 
     public HttpResponse(String body, String[] headers, String challenge, String sessionToken, int responseCode) {
+        this(body, headers, challenge, sessionToken, responseCode, null);
+    }
+
+    private HttpResponse(String body, String[] headers, String challenge, String sessionToken, int responseCode, String requestId) {
         this.body = body;
         this.headers = headers;
         this.challenge = challenge;
         this.sessionToken = sessionToken;
         this.responseCode = responseCode;
+        this.requestId = requestId;
     }
 
     private HttpResponse() {
@@ -31,6 +37,15 @@ public class HttpResponse {
         this.challenge = "";
         this.sessionToken = null;
         this.responseCode = HttpURLConnection.HTTP_OK;
+        this.requestId = null;
+    }
+
+    /**
+     * Create a copy of this response which answers the request with the specified id.
+     * Used in the multiplexed mode where several requests are in flight at once.
+     */
+    public HttpResponse withRequestId(String requestId) {
+        return new HttpResponse(body, headers, challenge, sessionToken, responseCode, requestId);
     }
 
     public JSONObject toJson() {
@@ -42,6 +57,9 @@ public class HttpResponse {
         if (sessionToken != null) {
             jsonObject.put("sessionToken", sessionToken);
         }
+        if (requestId != null) {
+            jsonObject.put("requestId", requestId);
+        }
         return jsonObject;
     }
 
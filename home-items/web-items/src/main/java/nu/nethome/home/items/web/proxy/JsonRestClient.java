@@ -19,14 +19,13 @@
 
 package nu.nethome.home.items.web.proxy;
 
+import nu.nethome.home.util.PooledHttpClient;
 import org.json.JSONObject;
-import javax.net.ssl.HttpsURLConnection;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 import javax.net.ssl.TrustManagerFactory;
 import java.io.*;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -34,83 +33,51 @@ import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
+import java.util.HashMap;
+import java.util.Map;
 
 public class JsonRestClient {
 
     private static final int READ_TIMEOUT = 60000;
+    private static final int MAX_CONNECTIONS = 2;
 
     private static final SSLSocketFactory factory = getLetsEncryptTrustedSocketFactory();
 
+    private final PooledHttpClient httpClient;
+
+    public JsonRestClient() {
+        httpClient = new PooledHttpClient(MAX_CONNECTIONS, PooledHttpClient.DEFAULT_CONNECT_TIMEOUT, READ_TIMEOUT);
+        fixTrustIssue(httpClient);
+    }
+
     public JSONResponse get(String baseUrl, String resource, JSONObject argument) throws IOException {
-        return performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "GET", "");
+        return performRequest(baseUrl, resource, argument, "GET", "");
     }
 
     public JSONResponse put(String baseUrl, String resource, JSONObject argument) throws IOException {
-        return performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "PUT", "");
+        return performRequest(baseUrl, resource, argument, "PUT", "");
     }
 
     public JSONResponse post(String baseUrl, String resource, JSONObject argument, String sessionId) throws IOException {
-        return performRequest(baseUrl, resource, argument != null ?argument.toString() : "", "POST", sessionId);
+        return performRequest(baseUrl, resource, argument, "POST", sessionId);
     }
 
-    private JSONResponse performRequest(String baseUrl, String resource, String body, String method, String sessionId) throws IOException {
-        HttpURLConnection connection = null;
-        DataOutputStream wr = null;
-        BufferedReader rd = null;
-        StringBuilder sb = new StringBuilder();
-        String line;
-        URL serverAddress;
+    /**
+     * Close the idle connections to the service
+     */
+    public void close() {
+        httpClient.close();
+    }
 
-        try {
-            serverAddress = new URL(baseUrl + resource);
-
-            //Set up the initial connection
-            connection = (HttpURLConnection) serverAddress.openConnection();
-            fixTrustIssue(connection);
-            connection.setRequestMethod(method);
-            connection.setDoOutput(true);
-            connection.setReadTimeout(READ_TIMEOUT);
-            connection.setInstanceFollowRedirects(false);
-            connection.setRequestProperty("Content-Type", "application/json");
-            if (!sessionId.isEmpty()) {
-                connection.setRequestProperty("id", sessionId);
-            }
-            connection.setUseCaches(false);
-            if (body.length() > 0) {
-                byte[] data = body.getBytes("UTF8");
-                connection.setRequestProperty("Content-Length", Integer.toString(data.length));
-                wr = new DataOutputStream(connection.getOutputStream());
-                wr.write(data);
-                wr.flush();
-                wr.close();
-                wr = null;
-            }
-            connection.connect();
-            if (connection.getResponseCode() <= 299) {
-                rd = new BufferedReader(new InputStreamReader(connection.getInputStream()));
-            } else if (connection.getErrorStream() != null){
-                rd = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-            }
-
-            if (rd != null) {
-                while ((line = rd.readLine()) != null) {
-                    sb.append(line);
-                    sb.append('\n');
-                }
-            }
-
-        } finally {
-            if (rd != null) {
-                rd.close();
-            }
-            if (wr != null) {
-                wr.close();
-            }
-            if (connection != null) {
-                connection.disconnect();
-            }
+    private JSONResponse performRequest(String baseUrl, String resource, JSONObject argument, String method, String sessionId) throws IOException {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Content-Type", "application/json");
+        if (!sessionId.isEmpty()) {
+            headers.put("id", sessionId);
         }
-        return new JSONResponse(sb.toString(), connection.getResponseCode());
+        byte[] body = argument != null ? argument.toString().getBytes(StandardCharsets.UTF_8) : null;
+        PooledHttpClient.Response response = httpClient.execute(method, baseUrl + resource, headers, body);
+        return new JSONResponse(response.getBodyAsString(), response.getResponseCode());
     }
 
     /**
@@ -121,11 +88,11 @@ public class JsonRestClient {
      * There is a more general solution which I might concider:
      * https://stackoverflow.com/questions/24555890/using-a-custom-truststore-in-java-as-well-as-the-default-one
      *
-     * @param connection
+     * @param client
      */
-    private void fixTrustIssue(HttpURLConnection connection) {
-        if (connection instanceof HttpsURLConnection) {
-            ((HttpsURLConnection)connection).setSSLSocketFactory(factory);
+    private static void fixTrustIssue(PooledHttpClient client) {
+        if (factory != null) {
+            client.setSslSocketFactory(factory);
         }
     }
 
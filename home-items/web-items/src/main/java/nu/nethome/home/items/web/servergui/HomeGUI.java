@@ -66,9 +66,11 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
             + "  <Attribute Name=\"PlanPage\" Type=\"Item\" Get=\"getPlanPage\" 	Set=\"setPlanPage\" />"
             + "  <Attribute Name=\"Location\" Type=\"Item\" Get=\"getDefaultLocation\" 	Set=\"setDefaultLocation\" />"
             + "  <Attribute Name=\"AllowEdit\" Type=\"Boolean\" Get=\"getAllowEdit\" 	Set=\"setAllowEdit\" />"
+            + "  <Attribute Name=\"PageRenderTimes\" Type=\"String\" Get=\"getPageRenderTimes\" />"
             + "</HomeItem> ");
     public static final int REPORT_ITEMS_PERIOD_MS = 60000;
     public static final int MAX_EVENT_ID_LENGTH = 60;
+    private static final String FOOTER = "</div>\n</body>\n</html>\n";
 
     protected HomeService homeServer;
 
@@ -88,6 +90,8 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
     private boolean allowEdit = true;
     private CreationEventCache creationEvents = new CreationEventCache();
     private long lastItemReportTime = 0L;
+    private final PageFragmentCache fragments = new PageFragmentCache();
+    private final PageRenderStatistics renderStatistics = new PageRenderStatistics();
 
     public HomeGUI() {
     }
@@ -151,6 +155,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
         pages.add(new GraphPage(localURL, homeServer));
         homeServer.registerFinalEventListener(this);
         creationEvents.addItemInfo(hserver.listClasses());
+        fragments.invalidate();
     }
 
     private EditPermission getEditPermission() {
@@ -222,6 +227,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
         // Loop through all page plugins and find the appropriate one and call it
         for (HomePageInterface pagePlugin : pages) {
             if (arguments.getPage().equalsIgnoreCase(pagePlugin.getPageNameURL())) {
+                long startTime = System.nanoTime();
 
                 // Print static start of page
                 printHeader(p, pagePlugin);
@@ -238,6 +244,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
 
                 // Print the end of the page and finish the loop
                 printFooter(p);
+                renderStatistics.addRenderTime(pagePlugin.getPageNameURL(), System.nanoTime() - startTime);
                 return;
             }
         }
@@ -481,7 +488,16 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
         }
     }
 
-    protected void printHeader(PrintWriter p, HomePageInterface pagePlugin) throws ServletException, IOException {
+    protected void printHeader(PrintWriter p, final HomePageInterface pagePlugin) throws ServletException, IOException {
+        p.print(fragments.get("header:" + pagePlugin.getPageNameURL(), new PageFragmentCache.Renderer() {
+            @Override
+            public void render(PrintWriter p) {
+                renderHeader(p, pagePlugin);
+            }
+        }));
+    }
+
+    private void renderHeader(PrintWriter p, HomePageInterface pagePlugin) {
         p.println("<!DOCTYPE HTML PUBLIC \"-//W3C//DTD HTML 4.01 Transitional//EN\" \"http://www.w3.org/TR/html4/loose.dtd\">");
         p.println("<html lang=\"en\"><head>");
         p.println("  <title>NewNetHome</title>");
@@ -516,15 +532,13 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
     }
 
     protected void printFooter(PrintWriter p) throws ServletException, IOException {
-        p.println("</div>");
-        p.println("</body>");
-        p.println("</html>");
+        p.print(FOOTER);
 
         p.flush();
         p.close();
     }
 
-    protected void printNavigationBar(PrintWriter p, HomePageInterface selectedPage, HomeGUIArguments arguments) throws ServletException, IOException {
+    protected void printNavigationBar(PrintWriter p, final HomePageInterface selectedPage, HomeGUIArguments arguments) throws ServletException, IOException {
         String editClassString = "";
         if (arguments.isEditMode() && selectedPage.supportsEdit()) {
             editClassString = " edit";
@@ -540,17 +554,12 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
                 p.println("   <li>" + controlButton.print(arguments, homeServer) + "</li>");
             }
         } else {
-            // Loop through all page plugins and add their link to the nav bar
-            for (HomePageInterface pagePlugin : pages) {
-                if (pagePlugin.getPageName() != null) {
-                    String classString = "";
-                    if (selectedPage == pagePlugin) {
-                        classString = " class=\"active\"";
-                    }
-                    p.println("   <li" + classString + "><a href=\"" + localURL + "?page=" + pagePlugin.getPageNameURL() + "\">" + pagePlugin.getPageName() + "</a></li>");
-                    p.println("   <li><div class=\"menu_divider\"></div></li>");
+            p.print(fragments.get("pagelinks:" + selectedPage.getPageNameURL(), new PageFragmentCache.Renderer() {
+                @Override
+                public void render(PrintWriter p) {
+                    renderPageLinks(p, selectedPage);
                 }
-            }
+            }));
         }
 
         p.println("<!-- preferences -->");
@@ -587,6 +596,19 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
         p.println("</div>");
     }
 
+    private void renderPageLinks(PrintWriter p, HomePageInterface selectedPage) {
+        // Loop through all page plugins and add their link to the nav bar
+        for (HomePageInterface pagePlugin : pages) {
+            if (pagePlugin.getPageName() != null) {
+                String classString = "";
+                if (selectedPage == pagePlugin) {
+                    classString = " class=\"active\"";
+                }
+                p.println("   <li" + classString + "><a href=\"" + localURL + "?page=" + pagePlugin.getPageNameURL() + "\">" + pagePlugin.getPageName() + "</a></li>");
+                p.println("   <li><div class=\"menu_divider\"></div></li>");
+            }
+        }
+    }
 
     public static String toURL(String aText) {
         String result;
@@ -669,6 +691,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
      */
     public void setLocalURL(String LocalURL) {
         localURL = LocalURL;
+        fragments.invalidate();
     }
 
     public String getCustomLeftBannerFile() {
@@ -677,6 +700,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
 
     public void setCustomLeftBannerFile(String customLeftBannerFile) {
         this.customLeftBannerFile = customLeftBannerFile;
+        fragments.invalidate();
     }
 
     public String getCustomRightBannerFile() {
@@ -685,6 +709,7 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
 
     public void setCustomRightBannerFile(String customRightBannerFile) {
         this.customRightBannerFile = customRightBannerFile;
+        fragments.invalidate();
     }
 
     public String getPlanPage() {
@@ -711,6 +736,10 @@ public class HomeGUI extends HttpServlet implements FinalEventListener, HomeItem
         this.allowEdit = allowEdit.equalsIgnoreCase("Yes") || allowEdit.equalsIgnoreCase("True");
     }
 
+    public String getPageRenderTimes() {
+        return renderStatistics.toString();
+    }
+
     @Override
     public void receiveFinalEvent(Event event, boolean isHandled) {
         creationEvents.newEvent(event, isHandled);
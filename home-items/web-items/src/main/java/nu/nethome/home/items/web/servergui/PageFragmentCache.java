@@ -0,0 +1,70 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nu.nethome.home.items.web.servergui;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds pre-rendered static parts of the GUI pages, such as the page head and the navigation links. A fragment
+ * is rendered the first time it is requested and then reused until the configuration of the GUI changes.
+ */
+public class PageFragmentCache {
+
+    public interface Renderer {
+        void render(PrintWriter p);
+    }
+
+    private volatile Map<String, String> fragments = new ConcurrentHashMap<>();
+
+    /**
+     * Get a fragment, rendering it if it is not cached
+     *
+     * @param key      identity of the fragment
+     * @param renderer renders the fragment if it is not cached
+     * @return the rendered fragment
+     */
+    public String get(String key, Renderer renderer) {
+        Map<String, String> current = fragments;
+        String fragment = current.get(key);
+        if (fragment == null) {
+            StringWriter buffer = new StringWriter();
+            PrintWriter p = new PrintWriter(buffer);
+            renderer.render(p);
+            p.flush();
+            fragment = buffer.toString();
+            current.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    /**
+     * Discard all fragments, called when the configuration they were rendered from changes. A fragment which is
+     * being rendered while this is called is not kept.
+     */
+    public void invalidate() {
+        fragments = new ConcurrentHashMap<>();
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package nu.nethome.home.items.web.servergui;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Keeps track of the time it takes to render each GUI page
+ */
+public class PageRenderStatistics {
+
+    public static final double NANO_PER_MILLI = 1000000.0;
+
+    private static class PageTimes {
+        long count;
+        long sumTime;
+        long maxTime;
+    }
+
+    private final Map<String, PageTimes> pages = new TreeMap<>();
+
+    /**
+     * Record the rendering of a page
+     *
+     * @param page URL name of the page
+     * @param time render time in ns
+     */
+    public synchronized void addRenderTime(String page, long time) {
+        PageTimes times = pages.get(page);
+        if (times == null) {
+            times = new PageTimes();
+            pages.put(page, times);
+        }
+        times.count++;
+        times.sumTime += time;
+        if (time > times.maxTime) {
+            times.maxTime = time;
+        }
+    }
+
+    public synchronized long getRenderCount(String page) {
+        PageTimes times = pages.get(page);
+        return times == null ? 0 : times.count;
+    }
+
+    /**
+     * @return average render time of the page in ms
+     */
+    public synchronized double getAverageRenderTime(String page) {
+        PageTimes times = pages.get(page);
+        return times == null ? 0 : (times.sumTime / times.count) / NANO_PER_MILLI;
+    }
+
+    /**
+     * @return max render time of the page in ms
+     */
+    public synchronized double getMaxRenderTime(String page) {
+        PageTimes times = pages.get(page);
+        return times == null ? 0 : times.maxTime / NANO_PER_MILLI;
+    }
+
+    public synchronized void reset() {
+        pages.clear();
+    }
+
+    /**
+     * @return a summary of the render times of all rendered pages, in the form "page: average/max ms (count)"
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, PageTimes> page : pages.entrySet()) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(String.format("%s: %.1f/%.1f ms (%d)", page.getKey(),
+                    (page.getValue().sumTime / page.getValue().count) / NANO_PER_MILLI,
+                    page.getValue().maxTime / NANO_PER_MILLI, page.getValue().count));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * Copyright (C) 2005-2016, Stefan Strömberg <stefangs@nethome.nu>
+ * <p>
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ * <p>
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ * <p>
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * <p>
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.items.web.proxy;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import nu.nethome.home.util.PooledHttpClient;
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Runs the cloud proxy against a stand-in cloud server and a local server with a small latency per request,
+ * so the multiplexed requests overlap.
+ */
+public class HomeCloudConnectionProxyTest {
+
+    private static final String ACCOUNT = "ACCOUNT";
+    private static final String PASSWORD = "PASSWORD";
+    private static final String SERVER_ID = "SERVER";
+    private static final int REQUEST_COUNT = 20;
+    private static final int LOCAL_LATENCY_MS = 10;
+    private static final String SLOW_REQUEST = "slow";
+
+    private HttpServer cloudServer;
+    private HttpServer localServer;
+    private ExecutorService localServerExecutor;
+    private volatile StandInCloud cloud;
+    private HomeCloudConnection connection;
+    private final CountDownLatch slowRequestReleased = new CountDownLatch(1);
+    private final CountDownLatch slowRequestAnswered = new CountDownLatch(1);
+
+    @Before
+    public void setUp() throws Exception {
+        localServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        localServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                boolean isSlow = exchange.getRequestURI().getPath().equals("/" + SLOW_REQUEST);
+                try {
+                    if (isSlow) {
+                        slowRequestReleased.await(5, TimeUnit.SECONDS);
+                    } else {
+                        Thread.sleep(LOCAL_LATENCY_MS);
+                    }
+                } catch (InterruptedException e) {
+                    // Answer anyway
+                }
+                byte[] body = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+                exchange.close();
+                if (isSlow) {
+                    slowRequestAnswered.countDown();
+                }
+            }
+        });
+        localServerExecutor = Executors.newFixedThreadPool(REQUEST_COUNT);
+        localServer.setExecutor(localServerExecutor);
+        localServer.start();
+
+        cloudServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        cloudServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                cloud.handle(exchange);
+            }
+        });
+        cloudServer.start();
+
+        connection = new HomeCloudConnection();
+        connection.setAccount(ACCOUNT);
+        connection.setPassword(PASSWORD);
+        connection.setServiceURL("http://127.0.0.1:" + cloudServer.getAddress().getPort() + "/");
+        connection.setLocalURL("http://127.0.0.1:" + localServer.getAddress().getPort() + "/");
+        connection.jsonRestClient = new JsonRestClient();
+        connection.localHttpClient = new PooledHttpClient();
+        connection.isRunning = true;
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        slowRequestReleased.countDown();
+        cloudServer.stop(0);
+        localServer.stop(0);
+        localServerExecutor.shutdownNow();
+        connection.localHttpClient.close();
+    }
+
+    @Test
+    public void serialModeProxiesAllRequests() throws Exception {
+        runSession(new StandInCloud(REQUEST_COUNT, false));
+
+        assertAllRequestsAnswered();
+    }
+
+    @Test
+    public void multiplexedModeProxiesAllRequests() throws Exception {
+        connection.setMultiplexed("True");
+        connection.setMaxConcurrentRequests("4");
+
+        runSession(new StandInCloud(REQUEST_COUNT, false));
+
+        assertAllRequestsAnswered();
+        assertThat(connection.getRequestsInFlight(), is("0"));
+        assertThat(cloud.minReportedInFlight, is(0));
+        assertThat(cloud.maxOfferedRequests, is(4));
+    }
+
+    @Test
+    public void requestStillRunningWhenSessionEndsDoesNotAffectNextSession() throws Exception {
+        connection.setMultiplexed("True");
+        connection.setMaxConcurrentRequests("4");
+        StandInCloud firstSession = new StandInCloud(0, true);
+        firstSession.pendingRequests.add(SLOW_REQUEST);
+        runSession(firstSession);
+        slowRequestReleased.countDown();
+        assertThat(slowRequestAnswered.await(5, TimeUnit.SECONDS), is(true));
+        waitUntilNoRequestsInFlight();
+
+        runSession(new StandInCloud(REQUEST_COUNT, false));
+
+        assertAllRequestsAnswered();
+        assertThat(cloud.responses.containsKey(SLOW_REQUEST), is(false));
+        assertThat(cloud.minReportedInFlight, is(0));
+        assertThat(cloud.maxOfferedRequests, is(4));
+    }
+
+    private void runSession(StandInCloud sessionCloud) throws Exception {
+        cloud = sessionCloud;
+        try {
+            connection.connectAndProxyCloudRequests();
+        } catch (HomeCloudConnection.ConnectionException e) {
+            // The stand-in cloud ends the session when all requests are answered
+        }
+    }
+
+    private void assertAllRequestsAnswered() {
+        assertThat(cloud.responses.size(), is(REQUEST_COUNT));
+        for (Map.Entry<String, JSONObject> response : cloud.responses.entrySet()) {
+            String body = new String(Base64.decodeBase64(response.getValue().getString("body")), StandardCharsets.UTF_8);
+            assertThat(body, is("/" + response.getKey()));
+        }
+    }
+
+    private void waitUntilNoRequestsInFlight() throws InterruptedException {
+        for (int i = 0; i < 100 && !connection.getRequestsInFlight().equals("0"); i++) {
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Implements the cloud side of both the serial and the multiplexed poll protocol. It first logs in to the
+     * proxy, then hands out the proxy requests and ends the session when all have been answered, or when all
+     * have been handed out if isEndedWhenHandedOut is set.
+     */
+    private class StandInCloud implements HttpHandler {
+        final Map<String, JSONObject> responses = Collections.synchronizedMap(new TreeMap<String, JSONObject>());
+        final Deque<String> pendingRequests = new ArrayDeque<>();
+        final int requestCount;
+        final boolean isEndedWhenHandedOut;
+        String sessionToken;
+        String lastSerialRequest;
+        int minReportedInFlight = Integer.MAX_VALUE;
+        int maxOfferedRequests;
+
+        StandInCloud(int requestCount, boolean isEndedWhenHandedOut) {
+            this.requestCount = requestCount;
+            this.isEndedWhenHandedOut = isEndedWhenHandedOut;
+            for (int i = 0; i < requestCount; i++) {
+                pendingRequests.add(String.format("request%02d", i));
+            }
+        }
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String path = exchange.getRequestURI().getPath();
+            JSONObject body = new JSONObject(readAll(exchange.getRequestBody()));
+            if (path.endsWith("/server-sessions")) {
+                reply(exchange, HttpURLConnection.HTTP_CREATED, new LoginResp("S1", SERVER_ID).toJson());
+            } else if (path.endsWith("/poll")) {
+                handleSerialPoll(exchange, body);
+            } else if (path.endsWith("/multipoll")) {
+                handleMultiplexedPoll(exchange, body);
+            } else {
+                reply(exchange, HttpURLConnection.HTTP_NOT_FOUND, null);
+            }
+        }
+
+        private void handleSerialPoll(HttpExchange exchange, JSONObject response) throws IOException {
+            if (sessionToken == null) {
+                if (!response.has("sessionToken")) {
+                    reply(exchange, HttpURLConnection.HTTP_CREATED, loginRequest(response.getString("challenge")));
+                    return;
+                }
+                sessionToken = response.getString("sessionToken");
+            } else {
+                responses.put(lastSerialRequest, response);
+            }
+            if (pendingRequests.isEmpty()) {
+                reply(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, null);
+                return;
+            }
+            lastSerialRequest = pendingRequests.poll();
+            reply(exchange, HttpURLConnection.HTTP_CREATED, proxyRequest(lastSerialRequest));
+        }
+
+        private void handleMultiplexedPoll(HttpExchange exchange, JSONObject poll) throws IOException {
+            minReportedInFlight = Math.min(minReportedInFlight, poll.getInt("inFlight"));
+            maxOfferedRequests = Math.max(maxOfferedRequests, poll.getInt("maxRequests"));
+            JSONArray requests = new JSONArray();
+            JSONArray polledResponses = poll.getJSONArray("responses");
+            for (int i = 0; i < polledResponses.length(); i++) {
+                JSONObject response = polledResponses.getJSONObject(i);
+                if (!response.has("requestId")) {
+                    // Initial challenge
+                    requests.put(loginRequest(response.getString("challenge")).put("requestId", "login"));
+                } else if (response.getString("requestId").equals("login")) {
+                    sessionToken = response.getString("sessionToken");
+                } else {
+                    responses.put(response.getString("requestId"), response);
+                }
+            }
+            if (sessionToken != null && (isEndedWhenHandedOut ? pendingRequests.isEmpty() : responses.size() == requestCount)) {
+                reply(exchange, HttpURLConnection.HTTP_UNAUTHORIZED, null);
+                return;
+            }
+            if (sessionToken != null) {
+                for (int i = 0; i < poll.getInt("maxRequests") && !pendingRequests.isEmpty(); i++) {
+                    String id = pendingRequests.poll();
+                    requests.put(proxyRequest(id).put("requestId", id));
+                }
+            }
+            reply(exchange, requests.length() > 0 ? HttpURLConnection.HTTP_CREATED : HttpURLConnection.HTTP_NO_CONTENT,
+                    requests.length() > 0 ? new JSONObject().put("requests", requests) : null);
+        }
+
+        private JSONObject loginRequest(String challenge) {
+            try {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                byte[] hash = digest.digest((ACCOUNT + PASSWORD + challenge).getBytes(StandardCharsets.UTF_8));
+                return new HttpRequest("", new String[0], Hex.encodeHexString(hash), "").toJson();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private JSONObject proxyRequest(String id) {
+            return new HttpRequest(id, new String[]{"Accept: text/plain"}, "", sessionToken).toJson();
+        }
+
+        private void reply(HttpExchange exchange, int code, JSONObject body) throws IOException {
+            byte[] data = body == null ? new byte[0] : body.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(code, data.length == 0 ? -1 : data.length);
+            if (data.length > 0) {
+                // The body stream is already closed when there is no body
+                OutputStream out = exchange.getResponseBody();
+                out.write(data);
+            }
+            exchange.close();
+        }
+
+        private String readAll(InputStream in) throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                result.write(buffer, 0, read);
+            }
+            String data = new String(result.toByteArray(), StandardCharsets.UTF_8);
+            return data.isEmpty() ? "{}" : data;
+        }
+    }
+}
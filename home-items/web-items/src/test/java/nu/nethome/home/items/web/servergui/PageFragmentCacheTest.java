@@ -0,0 +1,63 @@
+package nu.nethome.home.items.web.servergui;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class PageFragmentCacheTest {
+
+    private PageFragmentCache cache;
+    private int renderCount;
+    private final PageFragmentCache.Renderer renderer = new PageFragmentCache.Renderer() {
+        @Override
+        public void render(PrintWriter p) {
+            renderCount++;
+            p.print("fragment" + renderCount);
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new PageFragmentCache();
+        renderCount = 0;
+    }
+
+    @Test
+    public void rendersFragmentOnlyOnce() throws Exception {
+        assertThat(cache.get("a", renderer), is("fragment1"));
+        assertThat(cache.get("a", renderer), is("fragment1"));
+        assertThat(renderCount, is(1));
+    }
+
+    @Test
+    public void rendersEachKeySeparately() throws Exception {
+        assertThat(cache.get("a", renderer), is("fragment1"));
+        assertThat(cache.get("b", renderer), is("fragment2"));
+        assertThat(cache.size(), is(2));
+    }
+
+    @Test
+    public void rendersAgainAfterInvalidate() throws Exception {
+        cache.get("a", renderer);
+        cache.invalidate();
+
+        assertThat(cache.size(), is(0));
+        assertThat(cache.get("a", renderer), is("fragment2"));
+    }
+
+    @Test
+    public void summarizesRenderTimes() throws Exception {
+        PageRenderStatistics statistics = new PageRenderStatistics();
+        statistics.addRenderTime("plan", 2000000);
+        statistics.addRenderTime("plan", 4000000);
+
+        assertThat(statistics.getRenderCount("plan"), is(2L));
+        assertThat(statistics.getAverageRenderTime("plan"), is(3.0));
+        assertThat(statistics.getMaxRenderTime("plan"), is(4.0));
+        assertThat(statistics.getRenderCount("rooms"), is(0L));
+    }
+}
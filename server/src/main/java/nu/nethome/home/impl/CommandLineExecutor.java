@@ -23,10 +23,13 @@ import nu.nethome.home.item.*;
 import nu.nethome.home.system.DirectoryEntry;
 import nu.nethome.home.system.Event;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.util.TransmitScheduler;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 
 /**
@@ -38,9 +41,18 @@ import java.util.List;
  */
 public class CommandLineExecutor {
 
+    private static final int PLAN_CACHE_SIZE = 32;
+
     protected HomeService server;
     protected boolean subscriptionActivated = false;
     protected boolean allowExec = false;
+    private volatile TransmitScheduler.Priority transmitPriority;
+    private final Map<String, CommandPlan> planCache = new LinkedHashMap<String, CommandPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CommandPlan> eldest) {
+            return size() > PLAN_CACHE_SIZE;
+        }
+    };
 
     /**
      * Default constructor. This should ONLY be used when the CommandLineExecutor
@@ -70,9 +82,34 @@ public class CommandLineExecutor {
      * @param line Command line to be executed
      * @return The result of the command execution.
      */
-    public String executeCommandLine(String line) {
-        List<String> list = CommandLineParser.parseLine(line);
-        Iterator<String> it = list.iterator();
+    public String executeCommandLine(final String line) {
+        TransmitScheduler.Priority priority = transmitPriority;
+        if (priority == null) {
+            return executeLine(line);
+        }
+        final String[] result = new String[1];
+        TransmitScheduler.runWithPriority(priority, new Runnable() {
+            @Override
+            public void run() {
+                result[0] = executeLine(line);
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Specify the transmission priority of RF commands sent as a result of the executed command lines,
+     * for example {@link TransmitScheduler.Priority#TIMER} for the commands of a timer.
+     *
+     * @param transmitPriority priority, or null to leave the priority unspecified
+     */
+    public void setTransmitPriority(TransmitScheduler.Priority transmitPriority) {
+        this.transmitPriority = transmitPriority;
+    }
+
+    private String executeLine(String line) {
+        CommandPlan plan = getPlan(line);
+        Iterator<String> it = plan.getTokens().iterator();
         String result;
         // Check if there is a command at all, if not - that ok, just return
         if (!it.hasNext()) {
@@ -114,22 +151,21 @@ public class CommandLineExecutor {
         String instance = it.next();
 
         // Try to open the specified instance
-        HomeItemProxy meta;
-        meta = server.openInstance(instance);
-        if (meta == null) {
+        CommandPlan.Binding binding = plan.bind(server);
+        if (binding.instance == null) {
             return String.format("error,3,Could not find instance (%s) specified", instance);
         }
         if (command.equalsIgnoreCase("get")) {
-            result = performGet(it, meta);
+            result = performGet(it, binding);
         } else if (command.equalsIgnoreCase("set")) {
-            result = performSet(it, meta);
+            result = performSet(it, binding);
         } else if (command.equalsIgnoreCase("call")) {
             if (it.hasNext()) {
                 result = "ok";
                 String action = it.next();
                 String value;
                 try {
-                    value = meta.callAction(action);
+                    value = binding.callAction(action);
                 } catch (ExecutionFailure e) {
                     return "error,10," + e.getMessage();
                 }
@@ -143,6 +179,21 @@ public class CommandLineExecutor {
         return result;
     }
 
+    /**
+     * Get the parsed and bound form of a command line. Plans for the most recently used command lines are
+     * cached, so a command line that is executed repeatedly is only parsed once.
+     */
+    private CommandPlan getPlan(String line) {
+        synchronized (planCache) {
+            CommandPlan plan = planCache.get(line);
+            if (plan == null) {
+                plan = new CommandPlan(line);
+                planCache.put(line, plan);
+            }
+            return plan;
+        }
+    }
+
     String performSend(Iterator<String> it) {
         if (!it.hasNext()) {
             return "error,9,No Event Type supplied";
@@ -167,8 +218,8 @@ public class CommandLineExecutor {
         return result;
     }
 
-    String performGet(Iterator<String> it, HomeItemProxy item) {
-        HomeItemModel meta = item.getModel();
+    String performGet(Iterator<String> it, CommandPlan.Binding binding) {
+        HomeItemProxy item = binding.instance;
         String attributeName;
         List<Attribute> attributeList;
         StringBuilder result = new StringBuilder("ok");
@@ -180,16 +231,19 @@ public class CommandLineExecutor {
                         .append(CommandLineParser.quote(att.getValue()));
             }
         } else {
+            // Attribute names start after the command and the instance name
+            int tokenIndex = 2;
             while (it.hasNext()) {
                 attributeName = it.next();
                 result.append(",").append(CommandLineParser.quote(attributeName)).append(",")
-                        .append(CommandLineParser.quote(item.getAttributeValue(attributeName)));
+                        .append(CommandLineParser.quote(binding.getAttributeValue(tokenIndex++, attributeName)));
             }
         }
         return result.toString();
     }
 
-    String performSet(Iterator<String> it, HomeItemProxy meta) {
+    String performSet(Iterator<String> it, CommandPlan.Binding binding) {
+        int tokenIndex = 2;
         while (it.hasNext()) {
             String attribute = it.next();
             if (!it.hasNext()) {
@@ -197,7 +251,9 @@ public class CommandLineExecutor {
             }
             String value = it.next();
             try {
-                if (!meta.setAttributeValue(attribute, value)) {
+                boolean isSet = binding.setAttributeValue(tokenIndex, attribute, value);
+                tokenIndex += 2;
+                if (!isSet) {
                     return "error,8,Invalid attribute: " + CommandLineParser.quote(attribute);
                 }
             } catch (IllegalValueException e) {
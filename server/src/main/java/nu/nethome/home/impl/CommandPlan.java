@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.ExecutionFailure;
+import nu.nethome.home.item.HomeItemModel;
+import nu.nethome.home.item.HomeItemProxy;
+import nu.nethome.home.item.IllegalValueException;
+import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A parsed command line for the {@link CommandLineExecutor}. For commands operating on an instance, the plan
+ * also binds the opened instance and the attribute models and action model the command refers to, so
+ * they do not have to be looked up by name on every execution. The binding is redone when the item directory
+ * of the server has changed, that is when an instance has been created, renamed or removed.
+ */
+class CommandPlan {
+
+    private static final long NOT_BOUND = -1;
+    private static final Binding NO_INSTANCE = new Binding(null, null, null);
+
+    private final List<String> tokens;
+    private long boundVersion = NOT_BOUND;
+    private Binding binding = NO_INSTANCE;
+
+    CommandPlan(String line) {
+        tokens = Collections.unmodifiableList(CommandLineParser.parseLine(line));
+    }
+
+    List<String> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Opens the instance the command refers to, or returns the current binding if the directory
+     * has not changed since it was bound.
+     *
+     * @param server server to open the instance in
+     * @return the binding, where the instance is null if it does not exist
+     */
+    synchronized Binding bind(HomeService server) {
+        if (server instanceof SharedServices) {
+            long version = ((SharedServices) server).getDirectoryVersion();
+            if (version != boundVersion) {
+                binding = createBinding(server.openInstance(tokens.get(1)));
+                boundVersion = (binding.instance == null || binding.attributes != null) ? version : NOT_BOUND;
+            }
+            return binding;
+        }
+        // Without a directory version we cannot tell when a binding is stale
+        return createBinding(server.openInstance(tokens.get(1)));
+    }
+
+    private Binding createBinding(HomeItemProxy proxy) {
+        if (!(proxy instanceof LocalHomeItemProxy)) {
+            return new Binding(proxy, null, null);
+        }
+        HomeItemModel model = proxy.getModel();
+        if (!(model instanceof StaticHomeItemModel) || ((StaticHomeItemModel) model).isMorphing()) {
+            // The model of a morphing item may change, so it has to be looked up every time
+            return new Binding(proxy, null, null);
+        }
+        StaticHomeItemModel staticModel = (StaticHomeItemModel) model;
+        ReflectionAttributeModel[] attributes = new ReflectionAttributeModel[tokens.size()];
+        ActionModel action = null;
+        try {
+            for (int i = 2; i < tokens.size(); i++) {
+                if (staticModel.hasAttribute(tokens.get(i))) {
+                    attributes[i] = staticModel.getAttribute(tokens.get(i));
+                }
+            }
+            // The activate action is handled by the proxy itself, so it must not bypass the proxy
+            if (tokens.size() > 2 && staticModel.hasAction(tokens.get(2)) &&
+                    !tokens.get(2).equals(LocalHomeItemProxy.ACTIVATE_ACTION)) {
+                action = staticModel.getAction(tokens.get(2));
+            }
+        } catch (ModelException e) {
+            // Cannot happen, we have checked that they exist
+        }
+        return new Binding(proxy, attributes, action);
+    }
+
+    /**
+     * An instance together with the attribute and action models the command refers to
+     */
+    static class Binding {
+        final HomeItemProxy instance;
+        private final ReflectionAttributeModel[] attributes;
+        private final ActionModel action;
+
+        Binding(HomeItemProxy instance, ReflectionAttributeModel[] attributes, ActionModel action) {
+            this.instance = instance;
+            this.attributes = attributes;
+            this.action = action;
+        }
+
+        String getAttributeValue(int tokenIndex, String attributeName) {
+            ReflectionAttributeModel attribute = getAttribute(tokenIndex);
+            if (attribute != null) {
+                return ((LocalHomeItemProxy) instance).getAttributeValue(attribute);
+            }
+            return instance.getAttributeValue(attributeName);
+        }
+
+        boolean setAttributeValue(int tokenIndex, String attributeName, String value) throws IllegalValueException {
+            ReflectionAttributeModel attribute = getAttribute(tokenIndex);
+            if (attribute != null) {
+                return ((LocalHomeItemProxy) instance).setAttributeValue(attribute, value);
+            }
+            return instance.setAttributeValue(attributeName, value);
+        }
+
+        String callAction(String actionName) throws ExecutionFailure {
+            if (action != null) {
+                return ((LocalHomeItemProxy) instance).callAction(action);
+            }
+            return instance.callAction(actionName);
+        }
+
+        private ReflectionAttributeModel getAttribute(int tokenIndex) {
+            return (attributes != null && tokenIndex < attributes.length) ? attributes[tokenIndex] : null;
+        }
+    }
+}
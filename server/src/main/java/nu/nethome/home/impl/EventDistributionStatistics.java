@@ -19,6 +19,8 @@
 
 package nu.nethome.home.impl;
 
+import java.util.Arrays;
+
 /**
  * Keeps track of Event distribution timing and statistics
  * @author Stefan Str�mberg
@@ -26,6 +28,9 @@ package nu.nethome.home.impl;
 public class EventDistributionStatistics {
 	
 	public static final double NANO_PER_MILLI = 1000000.0;
+	// The round time histogram has 2^SUB_BUCKET_BITS buckets per power of two, giving at most 12.5% error
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
 	private volatile long m_RoundStartTime;
 	private volatile boolean m_RoundActive = false;
 	private volatile long m_ItemStartTime;
@@ -35,6 +40,7 @@ public class EventDistributionStatistics {
 	private volatile long m_MinRoundTime = Long.MAX_VALUE;
 	private volatile long m_SumRoundTime = 0;
 	private volatile long m_NumberOfRounds = 0;
+	private final long[] m_RoundTimeHistogram = new long[Long.SIZE * SUB_BUCKETS];
 
 	private volatile long m_MaxItemTime = 0;
 	private volatile long m_MinItemTime = Long.MAX_VALUE;
@@ -52,6 +58,7 @@ public class EventDistributionStatistics {
 			m_MinRoundTime = Long.MAX_VALUE;
 			m_SumRoundTime = 0;
 			m_NumberOfRounds = 0;
+			Arrays.fill(m_RoundTimeHistogram, 0);
 			m_MaxItemTime = 0;
 			m_MinItemTime = Long.MAX_VALUE;
 			m_SumItemTime = 0;
@@ -85,6 +92,7 @@ public class EventDistributionStatistics {
             }
 			m_SumRoundTime+= time;
 			m_NumberOfRounds++;
+			m_RoundTimeHistogram[bucketIndex(time)]++;
 		}
 	}
 	
@@ -184,6 +192,47 @@ public class EventDistributionStatistics {
 		}
 	}
 
+	/**
+	 * Get the distribution round time which the given percentage of all rounds has not exceeded. The value
+	 * is the upper limit of the histogram bucket the percentile falls in, so it may be up to 12.5% too high.
+	 * @param percentile percentage of rounds, 0 - 100
+	 * @return time in ms, 0 if no rounds are distributed yet
+	 */
+	public double getRoundTimePercentile(double percentile) {
+		synchronized (this) {
+			if (m_NumberOfRounds == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(m_NumberOfRounds * Math.min(percentile, 100.0) / 100.0));
+			long count = 0;
+			for (int i = 0; i < m_RoundTimeHistogram.length; i++) {
+				count += m_RoundTimeHistogram[i];
+				if (count >= rank) {
+					return Math.min(bucketUpperLimit(i), m_MaxRoundTime) / NANO_PER_MILLI;
+				}
+			}
+			return getMaxRoundTime();
+		}
+	}
+
+	static int bucketIndex(long time) {
+		if (time < SUB_BUCKETS) {
+			return (int) Math.max(time, 0);
+		}
+		int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(time);
+		int subBucket = (int) (time >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+	}
+
+	static long bucketUpperLimit(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+		return lower + (1L << shift) - 1;
+	}
+
 	/**
 	 * Get number of rounds distributed
 	 * @return number of rounds
@@ -0,0 +1,155 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads an event log written by {@link EventLogWriter}
+ */
+public class EventLogReader implements Closeable {
+
+    /**
+     * An event read from the log
+     */
+    public static class Record {
+        private final Event event;
+        private final long time;
+        private final boolean handled;
+
+        Record(Event event, long time, boolean handled) {
+            this.event = event;
+            this.time = time;
+            this.handled = handled;
+        }
+
+        public Event getEvent() {
+            return event;
+        }
+
+        /**
+         * @return time in ms when the event was recorded
+         */
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return true if the event was handled by any HomeItem when it was recorded
+         */
+        public boolean isHandled() {
+            return handled;
+        }
+    }
+
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<>();
+    private final long startTime;
+    private long time;
+
+    public EventLogReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in));
+        if (this.in.readInt() != EventLogWriter.MAGIC) {
+            throw new IOException("Not an event log");
+        }
+        int version = this.in.readUnsignedByte();
+        if (version != EventLogWriter.VERSION) {
+            throw new IOException("Unsupported event log version " + version);
+        }
+        startTime = this.in.readLong();
+        time = startTime;
+    }
+
+    /**
+     * @return time in ms when the recording was started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Read the next event
+     *
+     * @return the next event or null if the end of the log is reached
+     * @throws IOException if the log could not be read or is corrupt
+     */
+    public Record next() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return null;
+        }
+        try {
+            time += readNumber(first);
+            boolean handled = (in.readUnsignedByte() & EventLogWriter.HANDLED_FLAG) != 0;
+            long attributeCount = readNumber(in.readUnsignedByte());
+            Event event = new InternalEvent("");
+            for (long i = 0; i < attributeCount; i++) {
+                String name = readString();
+                event.setAttribute(name, readString());
+            }
+            return new Record(event, time, handled);
+        } catch (EOFException e) {
+            throw new IOException("Event log is truncated", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        int index = (int) readNumber(in.readUnsignedByte());
+        if (index > 0) {
+            if (index > strings.size()) {
+                throw new IOException("Bad string reference in event log");
+            }
+            return strings.get(index - 1);
+        }
+        byte[] bytes = new byte[(int) readNumber(in.readUnsignedByte())];
+        in.readFully(bytes);
+        String value = new String(bytes, EventLogWriter.CHARSET);
+        if (strings.size() < EventLogWriter.MAX_STRING_TABLE_SIZE) {
+            strings.add(value);
+        }
+        return value;
+    }
+
+    private long readNumber(int firstByte) throws IOException {
+        long value = firstByte & 0x7F;
+        int shift = 7;
+        int current = firstByte;
+        while ((current & 0x80) != 0) {
+            current = in.readUnsignedByte();
+            value |= (long) (current & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes events to a compact binary event log which can be read with {@link EventLogReader}.
+ * <p/>
+ * The log starts with a header of the magic number, the format version and the start time. Each record is the
+ * time in ms since the previous record, a flag byte and the attributes of the event. Numbers are written as
+ * variable length integers. Strings are written once and then referred to by their index, so the attribute
+ * names and the common values only take a byte or two per event.
+ */
+public class EventLogWriter implements Closeable {
+
+    static final int MAGIC = 0x4E48454C;
+    static final int VERSION = 1;
+    static final int HANDLED_FLAG = 1;
+    static final int MAX_STRING_TABLE_SIZE = 4096;
+    static final Charset CHARSET = Charset.forName("UTF-8");
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<>();
+    private long lastTime;
+    private long eventCount;
+
+    public EventLogWriter(OutputStream out, long startTime) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(out));
+        this.out.writeInt(MAGIC);
+        this.out.writeByte(VERSION);
+        this.out.writeLong(startTime);
+        lastTime = startTime;
+    }
+
+    /**
+     * Write an event to the log
+     *
+     * @param event     event to write
+     * @param isHandled true if the event was handled by any HomeItem
+     * @param time      time of the event in ms, times before the previous event are written as the previous time
+     */
+    public synchronized void write(Event event, boolean isHandled, long time) throws IOException {
+        writeNumber(Math.max(time - lastTime, 0));
+        lastTime = Math.max(time, lastTime);
+        out.writeByte(isHandled ? HANDLED_FLAG : 0);
+        String[] names = event.getAttributeNames();
+        writeNumber(names.length);
+        for (String name : names) {
+            writeString(name);
+            writeString(event.getAttribute(name));
+        }
+        eventCount++;
+    }
+
+    public synchronized long getEventCount() {
+        return eventCount;
+    }
+
+    public synchronized void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private void writeString(String value) throws IOException {
+        Integer index = strings.get(value);
+        if (index != null) {
+            writeNumber(index + 1);
+            return;
+        }
+        byte[] bytes = value.getBytes(CHARSET);
+        writeNumber(0);
+        writeNumber(bytes.length);
+        out.write(bytes);
+        if (strings.size() < MAX_STRING_TABLE_SIZE) {
+            strings.put(value, strings.size());
+        }
+    }
+
+    private void writeNumber(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+}
@@ -0,0 +1,338 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItem;
+import nu.nethome.home.item.HomeItemAdapter;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.FinalEventListener;
+import nu.nethome.util.plugin.SelectivePluginScanner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Load test harness which replays an event log recorded in a real installation into a HomeServer. The items
+ * are loaded from a saved item file, but items in the hardware and port categories are replaced by stubs so
+ * no real devices or network ports are used. The events are sent with the recorded timing compressed by the
+ * replay speed, and the result reports the throughput, the number of events dropped because the event queue
+ * was full and the distribution time percentiles.
+ * <p/>
+ * Usage: EventReplay [-p&lt;plugin directory&gt;] [-s&lt;speed&gt;] &lt;item file&gt; &lt;event log&gt;
+ * <br/>
+ * A speed of 0 sends the events as fast as possible.
+ */
+public class EventReplay {
+
+    public static final String REPLAY_END_EVENT = "ReplayEnd";
+    public static final List<String> DEFAULT_STUBBED_CATEGORIES = Arrays.asList("Hardware", "Ports");
+    private static final long END_TIMEOUT_MS = 60000;
+    private static final long END_RETRY_INTERVAL_MS = 10;
+    private static final double NANO_PER_SECOND = 1000000000.0;
+
+    private static Logger logger = Logger.getLogger(EventReplay.class.getName());
+    private final HomeServer server;
+    private final Set<String> stubbedCategories;
+    private final List<HomeItem> items = new ArrayList<>();
+
+    /**
+     * The outcome of a replay
+     */
+    public static class Result {
+        private final long eventCount;
+        private final long droppedEventCount;
+        private final long elapsedNanos;
+        private final double[] percentiles = new double[3];
+        private final double maxTime;
+        private final double averageTime;
+
+        Result(long eventCount, long droppedEventCount, long elapsedNanos, EventDistributionStatistics statistics) {
+            this.eventCount = eventCount;
+            this.droppedEventCount = droppedEventCount;
+            this.elapsedNanos = elapsedNanos;
+            percentiles[0] = statistics.getRoundTimePercentile(50);
+            percentiles[1] = statistics.getRoundTimePercentile(90);
+            percentiles[2] = statistics.getRoundTimePercentile(99);
+            maxTime = statistics.getMaxRoundTime();
+            averageTime = statistics.getAvarageRoundTime();
+        }
+
+        public long getEventCount() {
+            return eventCount;
+        }
+
+        public long getDroppedEventCount() {
+            return droppedEventCount;
+        }
+
+        /**
+         * @return number of distributed events per second
+         */
+        public double getThroughput() {
+            return elapsedNanos == 0 ? 0 : (eventCount - droppedEventCount) * NANO_PER_SECOND / elapsedNanos;
+        }
+
+        public double getMedianTime() {
+            return percentiles[0];
+        }
+
+        public double get90PercentileTime() {
+            return percentiles[1];
+        }
+
+        public double get99PercentileTime() {
+            return percentiles[2];
+        }
+
+        public double getMaxTime() {
+            return maxTime;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Replayed events: %d%n", eventCount)
+                    + String.format("Dropped events: %d%n", droppedEventCount)
+                    + String.format("Elapsed time: %.2f s%n", elapsedNanos / NANO_PER_SECOND)
+                    + String.format("Throughput: %.1f events/s%n", getThroughput())
+                    + String.format("Distribution time: avg %.2f ms, p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                    averageTime, percentiles[0], percentiles[1], percentiles[2], maxTime);
+        }
+    }
+
+    /**
+     * Replaces a hardware item during replay. It keeps the name and ID of the replaced item so other items can
+     * find it, but it does not talk to any device.
+     */
+    public static class StubItem extends HomeItemAdapter {
+
+        private static final String MODEL = ("<?xml version = \"1.0\"?> \n"
+                + "<HomeItem Class=\"ReplayStub\" Category=\"Hardware\" >"
+                + "  <Attribute Name=\"StubbedClass\" Type=\"String\" Get=\"getStubbedClass\" Default=\"true\" />"
+                + "  <Attribute Name=\"ReceivedEvents\" Type=\"String\" Get=\"getReceivedEvents\" />"
+                + "</HomeItem> ");
+
+        private final String stubbedClass;
+        private volatile long receivedEvents;
+
+        public StubItem(HomeItem item) {
+            stubbedClass = item.getClass().getSimpleName();
+            name = item.getName();
+            id = item.getItemId();
+        }
+
+        @Override
+        public String getModel() {
+            return MODEL;
+        }
+
+        @Override
+        public boolean receiveEvent(Event event) {
+            receivedEvents++;
+            return false;
+        }
+
+        public String getStubbedClass() {
+            return stubbedClass;
+        }
+
+        public String getReceivedEvents() {
+            return Long.toString(receivedEvents);
+        }
+    }
+
+    public EventReplay(HomeServer server, Collection<String> stubbedCategories) {
+        this.server = server;
+        this.stubbedCategories = new HashSet<>(stubbedCategories);
+    }
+
+    /**
+     * Load the items from an item file, replace the items in the stubbed categories, and register and activate
+     * them in start order. The server itself is activated first so the event distribution is running, but it
+     * is not registered, so it never saves the loaded items.
+     *
+     * @return number of activated items
+     */
+    public int loadItems(String fileName, HomeItemFactory factory) {
+        server.activate(server);
+        List<HomeItem> loadedItems = new ArrayList<>();
+        long maxId = 0;
+        for (HomeItem item : new HomeItemFileLoader().loadItems(fileName, factory, server)) {
+            if (item != server) {
+                loadedItems.add(isStubbed(item) ? new StubItem(item) : item);
+                maxId = Math.max(maxId, item.getItemId());
+            }
+        }
+        HomeServer.sortOnStartOrder(loadedItems);
+        for (HomeItem item : loadedItems) {
+            if (item.getItemId() == 0) {
+                item.setItemId(++maxId);
+            }
+            int result = server.registerInstance(item);
+            if (result == 0 && !item.getName().startsWith("#")) {
+                items.add(item);
+            } else if (result != 0) {
+                logger.warning("Failed to register Item " + item.getName() + " Error " + result);
+            }
+        }
+        int activated = 0;
+        for (HomeItem item : items) {
+            try {
+                item.activate(server);
+                activated++;
+            } catch (Exception e) {
+                logger.warning("Failed to activate Item " + item.getName() + " Error " + e.getMessage());
+            }
+        }
+        logger.info("Activated " + activated + " of " + loadedItems.size() + " Items for replay");
+        return activated;
+    }
+
+    /**
+     * Replay the events of the log and wait until all of them are distributed
+     *
+     * @param log   the events to replay
+     * @param speed how many times faster than recorded to replay the events, 0 means as fast as possible
+     * @return the result of the replay
+     */
+    public Result replay(EventLogReader log, double speed) throws IOException, InterruptedException {
+        final CountDownLatch endDistributed = new CountDownLatch(1);
+        FinalEventListener listener = new FinalEventListener() {
+            @Override
+            public void receiveFinalEvent(Event event, boolean isHandled) {
+                if (event.isType(REPLAY_END_EVENT)) {
+                    endDistributed.countDown();
+                }
+            }
+        };
+        server.registerFinalEventListener(listener);
+        try {
+            server.resetStatistics();
+            long startNanos = System.nanoTime();
+            long eventCount = 0;
+            long firstTime = 0;
+            for (EventLogReader.Record record = log.next(); record != null; record = log.next()) {
+                if (eventCount == 0) {
+                    firstTime = record.getTime();
+                }
+                if (speed > 0) {
+                    sleepUntil(startNanos + (long) ((record.getTime() - firstTime) * EventDistributionStatistics.NANO_PER_MILLI / speed));
+                }
+                server.send(record.getEvent());
+                eventCount++;
+            }
+            long droppedEventCount = server.getDroppedEventCount();
+            sendEndEvent();
+            if (!endDistributed.await(END_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                logger.warning("Replayed events were not distributed within " + END_TIMEOUT_MS + " ms");
+            }
+            return new Result(eventCount, droppedEventCount, System.nanoTime() - startNanos, server.getDistributionStatistics());
+        } finally {
+            server.unregisterFinalEventListener(listener);
+        }
+    }
+
+    /**
+     * Stop all replay items and the server
+     */
+    public void stop() {
+        server.stopAndRemoveItems();
+        server.stop();
+        items.clear();
+    }
+
+    private boolean isStubbed(HomeItem item) {
+        try {
+            return stubbedCategories.contains(StaticHomeItemModel.getModel(item).getCategory());
+        } catch (ModelException e) {
+            return true;
+        }
+    }
+
+    private void sendEndEvent() throws InterruptedException {
+        long dropped = server.getDroppedEventCount();
+        server.send(new InternalEvent(REPLAY_END_EVENT));
+        while (server.getDroppedEventCount() != dropped) {
+            Thread.sleep(END_RETRY_INTERVAL_MS);
+            dropped = server.getDroppedEventCount();
+            server.send(new InternalEvent(REPLAY_END_EVENT));
+        }
+    }
+
+    private static void sleepUntil(long nanoTime) throws InterruptedException {
+        long delay = nanoTime - System.nanoTime();
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+    public static void main(String[] args) {
+        List<String> pluginDirectories = new LinkedList<>();
+        pluginDirectories.add("../../plugins");
+        double speed = 1;
+        int i = 0;
+        while (i < args.length && args[i].startsWith("-")) {
+            if (args[i].startsWith("-p")) {
+                pluginDirectories.add(args[i].substring(2));
+            } else if (args[i].startsWith("-s")) {
+                speed = Double.parseDouble(args[i].substring(2));
+            }
+            i++;
+        }
+        if (args.length - i != 2) {
+            System.err.println("Usage: EventReplay [-p<plugin directory>] [-s<speed>] <item file> <event log>");
+            System.exit(1);
+        }
+        SelectivePluginScanner pluginProvider = new SelectivePluginScanner(".hmp", "3dparty");
+        try {
+            List<File> files = new LinkedList<>();
+            for (String name : pluginDirectories) {
+                files.add(new File(name));
+            }
+            pluginProvider.scanForPlugins(files);
+        } catch (IOException e) {
+            logger.warning("Could not open plugin directory");
+        }
+        HomeServer server = new HomeServer();
+        server.setName("Home Server");
+        EventReplay replay = new EventReplay(server, DEFAULT_STUBBED_CATEGORIES);
+        int status = 0;
+        try (EventLogReader log = new EventLogReader(new FileInputStream(args[i + 1]))) {
+            replay.loadItems(args[i], new PluginHomeItemFactory(pluginProvider));
+            System.out.print(replay.replay(log, speed));
+        } catch (IOException | InterruptedException e) {
+            System.err.println("Replay failed: " + e.getMessage());
+            status = 1;
+        } finally {
+            replay.stop();
+        }
+        System.exit(status);
+    }
+}
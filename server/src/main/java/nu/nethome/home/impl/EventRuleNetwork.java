@@ -0,0 +1,228 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
+import nu.nethome.home.system.EventRules;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * EventRules implemented as a discrimination network. The root is keyed on the event type, and below it each
+ * node tests one attribute, with one child node per tested value. The attribute tests of a condition are
+ * always applied in attribute name order, so conditions with the same leading tests share nodes. For example
+ * all Nexa remap buttons share the Type and Direction nodes and then branch on Nexa.Button and Nexa.HouseCode.
+ * Matching an event is one map lookup per tested attribute of each visited node, independent of the number
+ * of rules sharing the node.
+ */
+public class EventRuleNetwork implements EventRules {
+
+    private static Logger logger = Logger.getLogger(EventRuleNetwork.class.getName());
+
+    private final Map<String, Node> typeNodes = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int ruleCount;
+
+    @Override
+    public Rule addRule(EventCondition condition, Action action) {
+        NetworkRule rule = new NetworkRule(condition, action);
+        lock.writeLock().lock();
+        try {
+            Node node = typeNodes.get(condition.getType());
+            if (node == null) {
+                node = new Node();
+                typeNodes.put(condition.getType(), node);
+            }
+            node.useCount++;
+            for (Map.Entry<String, String> test : condition.getAttributes().entrySet()) {
+                node = node.getOrCreateChild(test.getKey(), test.getValue());
+                node.useCount++;
+            }
+            node.rules.add(rule);
+            ruleCount++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return rule;
+    }
+
+    /**
+     * Match an event against all rules and perform the actions of the matching rules
+     *
+     * @param event event to match
+     * @return true if any rule matched
+     */
+    public boolean distribute(Event event) {
+        List<NetworkRule> matches = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Node node = typeNodes.get(event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE));
+            if (node != null) {
+                node.match(event, matches);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (NetworkRule rule : matches) {
+            try {
+                rule.action.perform(event);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to perform action for rule " + rule.condition, e);
+            }
+        }
+        return !matches.isEmpty();
+    }
+
+    public int getRuleCount() {
+        lock.readLock().lock();
+        try {
+            return ruleCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return number of attribute test nodes in the network, not counting the type nodes
+     */
+    public int getNodeCount() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (Node node : typeNodes.values()) {
+                count += node.countChildren();
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeRule(NetworkRule rule) {
+        lock.writeLock().lock();
+        try {
+            Node typeNode = typeNodes.get(rule.condition.getType());
+            if (typeNode == null || !typeNode.contains(rule, rule.condition.getAttributes().entrySet().iterator())) {
+                return;
+            }
+            if (--typeNode.useCount == 0) {
+                typeNodes.remove(rule.condition.getType());
+            }
+            Node node = typeNode;
+            for (Map.Entry<String, String> test : rule.condition.getAttributes().entrySet()) {
+                node = node.releaseChild(test.getKey(), test.getValue());
+            }
+            node.rules.remove(rule);
+            ruleCount--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static class Node {
+        // Attribute name -> attribute value -> child node
+        private final Map<String, Map<String, Node>> tests = new HashMap<>();
+        private final List<NetworkRule> rules = new ArrayList<>();
+        private int useCount;
+
+        Node getOrCreateChild(String attribute, String value) {
+            Map<String, Node> children = tests.get(attribute);
+            if (children == null) {
+                children = new HashMap<>();
+                tests.put(attribute, children);
+            }
+            Node child = children.get(value);
+            if (child == null) {
+                child = new Node();
+                children.put(value, child);
+            }
+            return child;
+        }
+
+        /**
+         * Decrements the use count of a child and removes it when it is no longer used
+         */
+        Node releaseChild(String attribute, String value) {
+            Map<String, Node> children = tests.get(attribute);
+            Node child = children.get(value);
+            if (--child.useCount == 0) {
+                children.remove(value);
+                if (children.isEmpty()) {
+                    tests.remove(attribute);
+                }
+            }
+            return child;
+        }
+
+        boolean contains(NetworkRule rule, Iterator<Map.Entry<String, String>> path) {
+            if (!path.hasNext()) {
+                return rules.contains(rule);
+            }
+            Map.Entry<String, String> test = path.next();
+            Map<String, Node> children = tests.get(test.getKey());
+            Node child = children != null ? children.get(test.getValue()) : null;
+            return child != null && child.contains(rule, path);
+        }
+
+        void match(Event event, List<NetworkRule> matches) {
+            matches.addAll(rules);
+            for (Map.Entry<String, Map<String, Node>> test : tests.entrySet()) {
+                Node child = test.getValue().get(event.getAttribute(test.getKey()));
+                if (child != null) {
+                    child.match(event, matches);
+                }
+            }
+        }
+
+        int countChildren() {
+            int count = 0;
+            for (Map<String, Node> children : tests.values()) {
+                for (Node child : children.values()) {
+                    count += 1 + child.countChildren();
+                }
+            }
+            return count;
+        }
+    }
+
+    private class NetworkRule implements Rule {
+        private final EventCondition condition;
+        private final Action action;
+
+        NetworkRule(EventCondition condition, Action action) {
+            this.condition = condition;
+            this.action = action;
+        }
+
+        @Override
+        public void remove() {
+            removeRule(this);
+        }
+    }
+}
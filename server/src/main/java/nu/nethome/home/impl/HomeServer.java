@@ -24,6 +24,7 @@ import nu.nethome.home.items.MDNSScanner;
 import nu.nethome.home.items.UPnPScanner;
 import nu.nethome.home.items.UsbScanner;
 import nu.nethome.home.system.*;
+import nu.nethome.home.util.TransmitScheduler;
 import nu.nethome.util.plugin.PluginProvider;
 
 import java.io.File;
@@ -33,6 +34,7 @@ import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
@@ -49,7 +51,7 @@ import static java.lang.Class.forName;
  * @author Stefan Stromberg
  */
 @SuppressWarnings("UnusedDeclaration")
-public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceConfiguration, ValueItem {
+public class HomeServer implements HomeItem, HomeService, SharedServices, ServiceState, ServiceConfiguration, ValueItem {
 
     private static final String MODEL;
 
@@ -63,14 +65,21 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
                 + "  <Attribute Name=\"UpgradeCommand\" Type=\"String\" Get=\"getUpgradeCommand\" Set=\"setUpgradeCommand\" />"
                 + "  <Attribute Name=\"LogFile\" Type=\"String\" Get=\"getLogFile\" 	Set=\"setLogFile\" />"
                 + "  <Attribute Name=\"PythonScriptFile\" Type=\"String\" Get=\"getPythonFile\" 	Set=\"setPythonFile\" />"
+                + "  <Attribute Name=\"PythonInterpreters\" Type=\"String\" Get=\"getPythonInterpreters\" 	Set=\"setPythonInterpreters\" />"
                 + "  <Attribute Name=\"GlobalLogger\" Type=\"String\" Get=\"getGlobalLogger\" 	Set=\"setGlobalLogger\" />"
                 + "  <Attribute Name=\"WarningAction\" Type=\"Command\" Get=\"getWarningAction\" 	Set=\"setWarningAction\" />"
                 + "  <Attribute Name=\"ErrorAction\" Type=\"Command\" Get=\"getErrorAction\" 	Set=\"setErrorAction\" />"
                 + "  <Attribute Name=\"UpTime\" Type=\"String\" Get=\"getUpTime\" />"
                 + "  <Attribute Name=\"MaxDistributionTime\" Type=\"String\" Get=\"getMaxDistributionTime\" Unit=\"ms\" />"
                 + "  <Attribute Name=\"AverageDistributionTime\" Type=\"String\" Get=\"getAverageDistributionTime\"  Unit=\"ms\" />"
+                + "  <Attribute Name=\"DistributionTimePercentiles\" Type=\"String\" Get=\"getDistributionTimePercentiles\" />"
+                + "  <Attribute Name=\"DroppedEvents\" Type=\"String\" Get=\"getDroppedEvents\" />"
                 + "  <Attribute Name=\"MaxItemTime\" Type=\"String\" Get=\"getMaxItemTime\"  Unit=\"ms\" />"
                 + "  <Attribute Name=\"MaxItemName\" Type=\"String\" Get=\"getMaxItemName\" />"
+                + "  <Attribute Name=\"ScheduledTasks\" Type=\"String\" Get=\"getScheduledTasks\" />"
+                + "  <Attribute Name=\"SchedulerLateness\" Type=\"String\" Get=\"getSchedulerLateness\" />"
+                + "  <Attribute Name=\"MaxSchedulerLateness\" Type=\"String\" Get=\"getMaxSchedulerLateness\" Unit=\"ms\" />"
+                + "  <Attribute Name=\"PythonStatistics\" Type=\"String\" Get=\"getPythonStatistics\" />"
                 + "  <Attribute Name=\"AlarmCount\" Type=\"String\" Get=\"getCurrentAlarmCountString\" />"
                 + "  <Attribute Name=\"TotalLogRows\" Type=\"String\" Get=\"getTotalLogRecordCountString\" />"
                 + "  <Action Name=\"LoadItems\" Method=\"loadItems\" />"
@@ -94,6 +103,10 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
     private static final int MS_PER_DAY = (MS_PER_HOUR * 24);
     private static final int UPGRADE_HOLDOFF_TIME = 500;
     private static final int MINUTES_PER_HOUR = 60;
+    private static final int SCHEDULER_THREAD_COUNT = 4;
+    private static final int MAX_PYTHON_STATISTICS = 10;
+    private static final String EVENT_RULES_NAME = "<EventRules>";
+    private static final double[] DISTRIBUTION_PERCENTILES = {50, 90, 99};
     private String name;
     private long id = 1L;
     private boolean doUpgrade = false;
@@ -102,10 +115,15 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
     private long maxID = 0;
     private LinkedBlockingQueue<Event> eventQueue;
     private EventDistributionStatistics statistics = new EventDistributionStatistics();
-    private Timer minuteTimer = new Timer();
+    private final TimingWheelScheduler scheduler = new TimingWheelScheduler("Scheduler", SCHEDULER_THREAD_COUNT);
+    // The minute tick has a thread of its own, so it is not delayed by item tasks blocking the shared scheduler
+    private final TimingWheelScheduler minuteScheduler = new TimingWheelScheduler("MinuteTimer", 1);
+    private TaskScheduler.ScheduledTask minuteTask;
+    private final EventRuleNetwork eventRules = new EventRuleNetwork();
     private Event minuteEvent;
     private String fileName = "system.xml";
     private int sentEventCount = 0;
+    private final AtomicLong droppedEventCount = new AtomicLong();
     private final ItemDirectory itemDirectory = new ItemDirectory();
     private HomeItemFactory factory;
     private HomeItemLoader homeItemLoader;
@@ -261,14 +279,14 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         date.set(Calendar.SECOND, 0);
         date.set(Calendar.MILLISECOND, 0);
         // Schedule the job at m_Interval minutes interval
-        minuteTimer.schedule(
-                new TimerTask() {
+        minuteTask = minuteScheduler.scheduleAtFixedRate(
+                new Runnable() {
                     @Override
                     public void run() {
                         send(minuteEvent);
                     }
                 },
-                date.getTime(),
+                date.getTimeInMillis() - System.currentTimeMillis(),
                 MS_PER_MINUTE
         );
         activated = true;
@@ -319,6 +337,11 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         return null;
     }
 
+    @Override
+    public long getDirectoryVersion() {
+        return itemDirectory.getVersion();
+    }
+
     public boolean renameInstance(String fromInstanceName, String toInstanceName) {
         return itemDirectory.renameInstance(fromInstanceName, toInstanceName);
     }
@@ -350,6 +373,7 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
      * and sends the event to each of them.
      */
     public void send(Event event) {
+        TransmitScheduler.markPriority(event);
         logger.fine(event.toString());
         if (!eventQueue.offer(event)) {
             handleEventDistributionFaliure(event);
@@ -374,6 +398,7 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
     }
 
     private void handleEventDistributionFaliure(Event event) {
+        droppedEventCount.incrementAndGet();
         if (statistics.isItemCurrentlyProcessingEvent()) {
             logger.severe("Event queue full. Current Item processing is \"" + statistics.getCurrentItemName() + "\"  since " + getCurrentItemProcessingTime() + " ms");
         } else {
@@ -394,7 +419,9 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
                 }
                 // Loop over all Items and offer the event
                 statistics.startDistributionRound();
-                boolean eventIsHandled = false;
+                statistics.startItemDistribution(EVENT_RULES_NAME);
+                boolean eventIsHandled = eventRules.distribute(event);
+                statistics.endItemDistribution();
                 for (HomeItem home : itemDirectory.getHomeItems()) {
                     try {
                         itemName = home.getName();
@@ -462,8 +489,13 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         Event quitEvent = new InternalEvent(QUIT_EVENT);
         send(quitEvent);
 
-        // Stop the minute timer
-        minuteTimer.cancel();
+        // Stop the minute timer and all other scheduled tasks
+        if (minuteTask != null) {
+            minuteTask.cancel();
+        }
+        minuteScheduler.stop();
+        scheduler.stop();
+        python.stop();
     }
 
     public String getSentEventCount() {
@@ -569,7 +601,7 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         }
     }
 
-    private void sortOnStartOrder(List<HomeItem> sortedItems) {
+    static void sortOnStartOrder(List<HomeItem> sortedItems) {
         Collections.sort(sortedItems, new Comparator<HomeItem>() {
             public int compare(HomeItem o1, HomeItem o2) {
                 try {
@@ -722,6 +754,32 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         return String.format("%.2f", value);
     }
 
+    public String getDistributionTimePercentiles() {
+        StringBuilder result = new StringBuilder();
+        for (double percentile : DISTRIBUTION_PERCENTILES) {
+            if (result.length() > 0) {
+                result.append(", ");
+            }
+            result.append(String.format("p%.0f:%.2fms", percentile, statistics.getRoundTimePercentile(percentile)));
+        }
+        return result.toString();
+    }
+
+    public String getDroppedEvents() {
+        return Long.toString(getDroppedEventCount());
+    }
+
+    /**
+     * @return number of events which could not be distributed since the event queue was full
+     */
+    public long getDroppedEventCount() {
+        return droppedEventCount.get();
+    }
+
+    EventDistributionStatistics getDistributionStatistics() {
+        return statistics;
+    }
+
     public String getMaxItemTime() {
         Double value = statistics.getMaxItemTime();
         return String.format("%.2f", value);
@@ -738,6 +796,42 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
 
     public void resetStatistics() {
         statistics.resetStatistics();
+        droppedEventCount.set(0);
+        scheduler.resetStatistics();
+        python.resetStatistics();
+    }
+
+    public TaskScheduler getScheduler() {
+        return scheduler;
+    }
+
+    public EventRules getEventRules() {
+        return eventRules;
+    }
+
+    public String getScheduledTasks() {
+        return Integer.toString(scheduler.getPendingTaskCount());
+    }
+
+    public String getSchedulerLateness() {
+        long[] histogram = scheduler.getLatenessHistogram();
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < histogram.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            if (i < TaskScheduler.LATENESS_LIMITS_MS.length) {
+                result.append("<").append(TaskScheduler.LATENESS_LIMITS_MS[i]);
+            } else {
+                result.append(">=").append(TaskScheduler.LATENESS_LIMITS_MS[i - 1]);
+            }
+            result.append("ms:").append(histogram[i]);
+        }
+        return result.toString();
+    }
+
+    public String getMaxSchedulerLateness() {
+        return Long.toString(scheduler.getMaxLateness());
     }
 
     public String getVersion() {
@@ -823,6 +917,33 @@ public class HomeServer implements HomeItem, HomeService, ServiceState, ServiceC
         }
     }
 
+    public String getPythonInterpreters() {
+        return Integer.toString(python.getInterpreterCount());
+    }
+
+    public void setPythonInterpreters(String count) {
+        try {
+            python.setInterpreterCount(Integer.parseInt(count));
+        } catch (NumberFormatException e) {
+            // Keep current value
+        }
+    }
+
+    /**
+     * @return execution times of the most expensive python functions
+     */
+    public String getPythonStatistics() {
+        StringBuilder result = new StringBuilder();
+        List<Python.ExecutionStatistics> functions = python.getStatistics();
+        for (int i = 0; i < functions.size() && i < MAX_PYTHON_STATISTICS; i++) {
+            if (i > 0) {
+                result.append("; ");
+            }
+            result.append(functions.get(i).toString());
+        }
+        return result.toString();
+    }
+
     /**
      * Gets the loggerComponentDescriptor. See {@link ValueItemLogger}.
      *
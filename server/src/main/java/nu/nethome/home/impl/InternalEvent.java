@@ -19,15 +19,17 @@
 
 package nu.nethome.home.impl;
 
-import nu.nethome.home.system.Event;
+import nu.nethome.home.system.PayloadEvent;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
-public class InternalEvent implements Event {
+public class InternalEvent implements PayloadEvent {
 
     private Map<String, String> attributes = new TreeMap<String, String>();
+    private byte[] payload;
 
     /**
      * Create a new event with given type and value
@@ -123,6 +125,21 @@ public class InternalEvent implements Event {
         return attributes.containsKey(name);
     }
 
+    @Override
+    public void setPayload(byte[] payload) {
+        this.payload = payload;
+    }
+
+    @Override
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    @Override
+    public ByteBuffer getPayloadBuffer() {
+        return payload != null ? ByteBuffer.wrap(payload).asReadOnlyBuffer() : null;
+    }
+
     @Override
     public String[] getAttributeNames() {
         return attributes.keySet().toArray(new String[attributes.size()]);
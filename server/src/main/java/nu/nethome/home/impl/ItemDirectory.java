@@ -33,6 +33,7 @@ public class ItemDirectory {
     private volatile Map<Long, HomeItem> homeItemIDMap = new TreeMap<Long, HomeItem>();
     private volatile Map<Long, String> categoryMap = new TreeMap<Long, String>();
     private volatile RelationCache relationCache = new RelationCache();
+    private volatile long version = 0;
 
     public ItemDirectory() {
     }
@@ -45,6 +46,13 @@ public class ItemDirectory {
         return Collections.unmodifiableList(homeItems);
     }
 
+    /**
+     * @return a number that changes every time an instance is registered, renamed or removed
+     */
+    public long getVersion() {
+        return version;
+    }
+
     public synchronized int registerInstance(HomeItem item, boolean bulk) {
         String name = item.getName();
         if (name == null) {
@@ -72,6 +80,7 @@ public class ItemDirectory {
             newHomeItems.add(item);
             homeItems = newHomeItems;
         }
+        version++;
         return 0;
     }
 
@@ -127,6 +136,7 @@ public class ItemDirectory {
 
         // Rename the instance
         item.setName(toInstanceName);
+        version++;
 
         return true;
     }
@@ -146,6 +156,7 @@ public class ItemDirectory {
         final ArrayList<HomeItem> newHomeItems = new ArrayList<>(homeItems);
         newHomeItems.remove(item);
         homeItems = newHomeItems;
+        version++;
         return item;
     }
 
@@ -154,5 +165,6 @@ public class ItemDirectory {
         homeItems.clear();
         homeItemNameMap.clear();
         homeItemIDMap.clear();
+        version++;
     }
 }
\ No newline at end of file
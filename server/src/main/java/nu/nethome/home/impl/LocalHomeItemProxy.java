@@ -27,6 +27,11 @@ import java.util.List;
 
 public class LocalHomeItemProxy implements HomeItemProxy {
 
+    /**
+     * Action activating the item in the server of the proxy, which is not declared in the model of the item
+     */
+    static final String ACTIVATE_ACTION = "activate";
+
     private final HomeItem item;
     private final StaticHomeItemModel model;
     private HomeService server;
@@ -47,7 +52,19 @@ public class LocalHomeItemProxy implements HomeItemProxy {
             return Long.toString(item.getItemId());
         }
         try {
-            return model.getAttribute(attributeName).getValue(item);
+            return getAttributeValue(model.getAttribute(attributeName));
+        } catch (ModelException e) {
+            // Ignore
+        }
+        return "";
+    }
+
+    /**
+     * Get attribute value via an attribute model already looked up in the model of this item
+     */
+    String getAttributeValue(ReflectionAttributeModel attribute) {
+        try {
+            return attribute.getValue(item);
         } catch (InvocationTargetException | IllegalAccessException | ModelException e) {
             // Ignore
         }
@@ -67,7 +84,23 @@ public class LocalHomeItemProxy implements HomeItemProxy {
     @Override
     public boolean setAttributeValue(String attributeName, String attributeValue) throws IllegalValueException {
         try {
-            return setAttributeValue(attributeName, attributeValue, isItemActivated());
+            return setAttributeValue(model.getAttribute(attributeName), attributeValue);
+        } catch (ModelException e) {
+            // Ignore
+        }
+        return false;
+    }
+
+    public boolean setAttributeValue(String attributeName, String attributeValue, boolean isActivated) throws IllegalValueException, ModelException, InvocationTargetException, IllegalAccessException {
+        return setAttributeValue(model.getAttribute(attributeName), attributeValue, isActivated);
+    }
+
+    /**
+     * Set attribute value via an attribute model already looked up in the model of this item
+     */
+    boolean setAttributeValue(ReflectionAttributeModel attribute, String attributeValue) throws IllegalValueException {
+        try {
+            return setAttributeValue(attribute, attributeValue, isItemActivated());
         } catch (InvocationTargetException e) {
             if (e.getCause() instanceof IllegalValueException) {
                 throw (IllegalValueException) e.getCause();
@@ -78,11 +111,11 @@ public class LocalHomeItemProxy implements HomeItemProxy {
         return false;
     }
 
-    public boolean setAttributeValue(String attributeName, String attributeValue, boolean isActivated) throws IllegalValueException, ModelException, InvocationTargetException, IllegalAccessException {
+    private boolean setAttributeValue(ReflectionAttributeModel attribute, String attributeValue, boolean isActivated) throws ModelException, InvocationTargetException, IllegalAccessException {
         if (isActivated) {
-            model.getAttribute(attributeName).setValue(item, attributeValue);
+            attribute.setValue(item, attributeValue);
         } else {
-            model.getAttribute(attributeName).initValue(item, attributeValue);
+            attribute.initValue(item, attributeValue);
         }
         return true;
     }
@@ -93,13 +126,25 @@ public class LocalHomeItemProxy implements HomeItemProxy {
 
     @Override
     public String callAction(String actionName) throws ExecutionFailure {
-        if (actionName.equals("activate")) {
+        if (actionName.equals(ACTIVATE_ACTION)) {
             item.activate(server);
             return "";
         }
         try {
-            return model.getAction(actionName).call(item);
-        } catch (InvocationTargetException | IllegalAccessException | ModelException e) {
+            return callAction(model.getAction(actionName));
+        } catch (ModelException e) {
+            // Ignore
+        }
+        return "";
+    }
+
+    /**
+     * Call an action already looked up in the model of this item
+     */
+    String callAction(ActionModel action) {
+        try {
+            return action.call(item);
+        } catch (InvocationTargetException | IllegalAccessException e) {
             // Ignore
         }
         return "";
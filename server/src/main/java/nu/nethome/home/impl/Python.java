@@ -31,54 +31,283 @@ import org.python.util.PythonInterpreter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static java.lang.Class.forName;
 
 /**
+ * Executes Python code with Jython. Code snippets are compiled once and the compiled code is cached, and the
+ * script file is reloaded when a file watch reports that it has changed. Snippets are executed on a pool of
+ * interpreters, by default a single one. Note that each interpreter has its own global variables, so scripts that
+ * keep state in globals should only use one interpreter.
+ *
  * @author Jari Sarkka
  */
 public class Python {
-    private String scriptSourceFileName = "";
-    private long sourceFilelastModifiedDate = 0;
-    private PythonInterpreter interp;
+    public static final int CODE_CACHE_SIZE = 128;
+    public static final int MAX_STATISTICS_ENTRIES = 256;
+    private static final String OTHER_FUNCTIONS = "<other>";
+    private static final Pattern FUNCTION_CALL = Pattern.compile("^\\s*([A-Za-z_][\\w.]*)\\s*\\(");
+    private static final double NANO_PER_MILLI = 1000000.0;
+    private static final long BORROW_POLL_MS = 100;
     private static Logger logger = Logger.getLogger(Python.class.getName());
 
+    private String scriptSourceFileName = "";
+    private volatile HomeServer server;
+    private int interpreterCount = 1;
+    private int createdInterpreterCount = 0;
+    private final LinkedBlockingQueue<Interpreter> idleInterpreters = new LinkedBlockingQueue<>();
+    private final AtomicLong scriptVersion = new AtomicLong(1);
+    private long compiledScriptVersion = 0;
+    private PyCode compiledScript;
+    private long scriptLastModified = 0;
+    private volatile ScriptWatcher scriptWatcher;
+    private final Map<String, PyCode> codeCache = new LinkedHashMap<String, PyCode>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PyCode> eldest) {
+            return size() > CODE_CACHE_SIZE;
+        }
+    };
+    private final Map<String, ExecutionStatistics> statistics = new HashMap<>();
+
     public void run(HomeServer server) {
         try {
             forName("org.python.util.PythonInterpreter", false, this.getClass().getClassLoader());
-            interp = new PythonInterpreter();
-            interp.set("server", server);
-            interp.set("log", logger);
         } catch (ClassNotFoundException e) {
             logger.info("Python not available");
             return;
         }
+        this.server = server;
+        startScriptWatcher();
+    }
+
+    public void stop() {
+        server = null;
+        stopScriptWatcher();
+        idleInterpreters.clear();
+        synchronized (this) {
+            createdInterpreterCount = 0;
+        }
     }
 
-    public synchronized boolean executePython(String pythonCode) throws FileNotFoundException {
+    public boolean executePython(String pythonCode) throws FileNotFoundException {
         if (!isActivated()) {
             return false;
         }
+        Interpreter interpreter;
+        try {
+            interpreter = borrowInterpreter();
+        } catch (InterruptedException e) {
+            return false;
+        }
+        if (interpreter == null) {
+            return false;
+        }
+        boolean result = false;
+        long startTime = 0;
         try {
-            reinterpretIfNeeded();
-            interp.exec(pythonCode);
-            return true;
+            interpreter.loadScriptIfNeeded();
+            startTime = System.nanoTime();
+            interpreter.exec(getCode(interpreter, pythonCode));
+            result = true;
         } catch (PySyntaxError e) {
             logger.warning("Failed executing python: " + e.toString().trim());
         } catch (Exception e) {
             logger.warning("Failed executing python: " + e.getMessage());
+        } finally {
+            returnInterpreter(interpreter);
+        }
+        if (startTime != 0) {
+            recordExecution(pythonCode, System.nanoTime() - startTime, result);
         }
-        return false;
+        return result;
     }
 
-    private void reinterpretIfNeeded() throws FileNotFoundException {
-        File file = new File(getScriptSourceFileName());
-        if (file.lastModified() > sourceFilelastModifiedDate) {
-            PyCode code = interp.compile(new InputStreamReader(new FileInputStream(file)));
-            interp.exec(code);
-            sourceFilelastModifiedDate = file.lastModified();
+    /**
+     * Borrow an idle interpreter, or create one if the pool is not full. Waits for an interpreter to be returned
+     * if all are busy, until Python is stopped.
+     *
+     * @return the interpreter, or null if Python was stopped while waiting
+     */
+    private Interpreter borrowInterpreter() throws InterruptedException {
+        while (isActivated()) {
+            Interpreter interpreter = idleInterpreters.poll();
+            if (interpreter != null) {
+                return interpreter;
+            }
+            synchronized (this) {
+                if (createdInterpreterCount < interpreterCount) {
+                    createdInterpreterCount++;
+                    return new Interpreter(server);
+                }
+            }
+            interpreter = idleInterpreters.poll(BORROW_POLL_MS, TimeUnit.MILLISECONDS);
+            if (interpreter != null) {
+                return interpreter;
+            }
+        }
+        return null;
+    }
+
+    private void returnInterpreter(Interpreter interpreter) {
+        synchronized (this) {
+            if (createdInterpreterCount > interpreterCount || !isActivated()) {
+                // The pool has been shrunk or stopped, so let this interpreter go
+                createdInterpreterCount = Math.max(createdInterpreterCount - 1, 0);
+                return;
+            }
+        }
+        idleInterpreters.offer(interpreter);
+    }
+
+    private PyCode getCode(Interpreter interpreter, String pythonCode) {
+        synchronized (codeCache) {
+            PyCode code = codeCache.get(pythonCode);
+            if (code != null) {
+                return code;
+            }
+        }
+        // Compile outside the lock, the worst case is that two threads compile the same snippet
+        PyCode code = interpreter.compile(pythonCode);
+        synchronized (codeCache) {
+            codeCache.put(pythonCode, code);
+        }
+        return code;
+    }
+
+    /**
+     * @return the compiled script file, compiled again if the file has changed
+     */
+    private synchronized PyCode getScript(long version, Interpreter interpreter) throws IOException {
+        if (compiledScriptVersion != version) {
+            File file = new File(getScriptSourceFileName());
+            compiledScript = null;
+            if (file.exists()) {
+                try (InputStreamReader reader = new InputStreamReader(new FileInputStream(file))) {
+                    compiledScript = interpreter.interp.compile(reader);
+                }
+            }
+            compiledScriptVersion = version;
+        }
+        return compiledScript;
+    }
+
+    /**
+     * @return the current version of the script file
+     */
+    private long getScriptVersion() {
+        if (scriptWatcher == null) {
+            // No file watch available, fall back to checking the modification time
+            long lastModified = new File(getScriptSourceFileName()).lastModified();
+            synchronized (this) {
+                if (lastModified > scriptLastModified) {
+                    scriptLastModified = lastModified;
+                    scriptVersion.incrementAndGet();
+                }
+            }
+        }
+        return scriptVersion.get();
+    }
+
+    private void recordExecution(String pythonCode, long nanoSeconds, boolean succeeded) {
+        String function = getFunctionName(pythonCode);
+        ExecutionStatistics functionStatistics;
+        synchronized (statistics) {
+            functionStatistics = statistics.get(function);
+            if (functionStatistics == null) {
+                if (statistics.size() >= MAX_STATISTICS_ENTRIES) {
+                    function = OTHER_FUNCTIONS;
+                    functionStatistics = statistics.get(function);
+                }
+                if (functionStatistics == null) {
+                    functionStatistics = new ExecutionStatistics(function);
+                    statistics.put(function, functionStatistics);
+                }
+            }
+        }
+        functionStatistics.record(nanoSeconds, succeeded);
+    }
+
+    static String getFunctionName(String pythonCode) {
+        Matcher matcher = FUNCTION_CALL.matcher(pythonCode);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+        String snippet = pythonCode.trim();
+        return snippet.length() > 40 ? snippet.substring(0, 40) : snippet;
+    }
+
+    /**
+     * @return execution statistics per called function, the functions with the longest total execution time first
+     */
+    public List<ExecutionStatistics> getStatistics() {
+        List<ExecutionStatistics> result;
+        synchronized (statistics) {
+            result = new ArrayList<>(statistics.values());
+        }
+        Collections.sort(result, new Comparator<ExecutionStatistics>() {
+            @Override
+            public int compare(ExecutionStatistics o1, ExecutionStatistics o2) {
+                long t1 = o1.getTotalNanoSeconds();
+                long t2 = o2.getTotalNanoSeconds();
+                return t1 > t2 ? -1 : (t1 == t2 ? 0 : 1);
+            }
+        });
+        return result;
+    }
+
+    public void resetStatistics() {
+        synchronized (statistics) {
+            statistics.clear();
+        }
+    }
+
+    int getCachedCodeCount() {
+        synchronized (codeCache) {
+            return codeCache.size();
+        }
+    }
+
+    private synchronized void startScriptWatcher() {
+        stopScriptWatcher();
+        if (getScriptSourceFileName().isEmpty()) {
+            return;
+        }
+        try {
+            scriptWatcher = new ScriptWatcher(new File(getScriptSourceFileName()).getAbsoluteFile().toPath());
+            scriptWatcher.start();
+        } catch (IOException | RuntimeException e) {
+            logger.info("Cannot watch python script, checking modification time instead: " + e.getMessage());
+            scriptWatcher = null;
+        }
+        scriptVersion.incrementAndGet();
+    }
+
+    private synchronized void stopScriptWatcher() {
+        if (scriptWatcher != null) {
+            scriptWatcher.close();
+            scriptWatcher = null;
         }
     }
 
@@ -87,10 +316,162 @@ public class Python {
     }
 
     public void setScriptSourceFileName(String scriptSourceFileName) {
+        boolean changed = !scriptSourceFileName.equals(this.scriptSourceFileName);
         this.scriptSourceFileName = scriptSourceFileName;
+        if (changed && isActivated()) {
+            startScriptWatcher();
+        }
+    }
+
+    public synchronized int getInterpreterCount() {
+        return interpreterCount;
+    }
+
+    public synchronized void setInterpreterCount(int interpreterCount) {
+        this.interpreterCount = Math.max(interpreterCount, 1);
+        while (createdInterpreterCount > this.interpreterCount && idleInterpreters.poll() != null) {
+            createdInterpreterCount--;
+        }
     }
 
     public boolean isActivated() {
-        return interp != null;
+        return server != null;
+    }
+
+    /**
+     * An interpreter in the pool, keeping track of which version of the script it has executed
+     */
+    private class Interpreter {
+        private final PythonInterpreter interp;
+        private long loadedScriptVersion = 0;
+
+        Interpreter(HomeServer server) {
+            interp = new PythonInterpreter();
+            interp.set("server", server);
+            interp.set("log", logger);
+        }
+
+        void loadScriptIfNeeded() throws IOException {
+            long version = getScriptVersion();
+            if (version != loadedScriptVersion) {
+                PyCode script = getScript(version, this);
+                if (script != null) {
+                    interp.exec(script);
+                }
+                loadedScriptVersion = version;
+            }
+        }
+
+        PyCode compile(String pythonCode) {
+            return interp.compile(pythonCode);
+        }
+
+        void exec(PyCode code) {
+            interp.exec(code);
+        }
+    }
+
+    /**
+     * Watches the directory of the script file and steps the script version when the file is changed
+     */
+    private class ScriptWatcher extends Thread {
+        private final WatchService watchService;
+        private final Path fileName;
+
+        ScriptWatcher(Path file) throws IOException {
+            super("PythonScriptWatcher");
+            setDaemon(true);
+            fileName = file.getFileName();
+            watchService = FileSystems.getDefault().newWatchService();
+            try {
+                file.getParent().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            } catch (IOException e) {
+                watchService.close();
+                throw e;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    WatchKey key = watchService.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || fileName.equals(event.context())) {
+                            scriptVersion.incrementAndGet();
+                        }
+                    }
+                    if (!key.reset()) {
+                        logger.warning("Python script directory can no longer be watched");
+                        return;
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Watcher closed
+            }
+        }
+
+        void close() {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                // Ignore, we are stopping anyway
+            }
+        }
+    }
+
+    /**
+     * Execution time statistics for one Python function
+     */
+    public static class ExecutionStatistics {
+        private final String function;
+        private long count;
+        private long failureCount;
+        private long totalNanoSeconds;
+        private long maxNanoSeconds;
+
+        ExecutionStatistics(String function) {
+            this.function = function;
+        }
+
+        synchronized void record(long nanoSeconds, boolean succeeded) {
+            count++;
+            if (!succeeded) {
+                failureCount++;
+            }
+            totalNanoSeconds += nanoSeconds;
+            maxNanoSeconds = Math.max(maxNanoSeconds, nanoSeconds);
+        }
+
+        public String getFunction() {
+            return function;
+        }
+
+        public synchronized long getCount() {
+            return count;
+        }
+
+        public synchronized long getFailureCount() {
+            return failureCount;
+        }
+
+        public synchronized long getTotalNanoSeconds() {
+            return totalNanoSeconds;
+        }
+
+        public synchronized double getAverageMilliSeconds() {
+            return count == 0 ? 0 : totalNanoSeconds / NANO_PER_MILLI / count;
+        }
+
+        public synchronized double getMaxMilliSeconds() {
+            return maxNanoSeconds / NANO_PER_MILLI;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("%s: %d calls, %.2f ms avg, %.2f ms max%s", function, count,
+                    getAverageMilliSeconds(), getMaxMilliSeconds(), failureCount > 0 ? ", " + failureCount + " failed" : "");
+        }
     }
 }
@@ -0,0 +1,351 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A TaskScheduler based on a hierarchical timing wheel. Each wheel level has a fixed number of buckets, where
+ * each bucket holds the tasks expiring within one tick of that level. Tasks further away than a level can hold
+ * are placed in a coarser overflow level which is created when first needed, and are moved down to finer
+ * levels as time advances.
+ * Only buckets that contain tasks are put in a DelayQueue, so a single thread can wait for the next bucket to
+ * expire regardless of the number of tasks, and expired tasks are handed over to a small thread pool.
+ * Adding and cancelling tasks are O(1) operations.
+ */
+public class TimingWheelScheduler implements TaskScheduler {
+
+    public static final long TICK_MS = 1;
+    public static final int WHEEL_SIZE = 64;
+
+    private static Logger logger = Logger.getLogger(TimingWheelScheduler.class.getName());
+
+    private final DelayQueue<Bucket> delayQueue = new DelayQueue<>();
+    private final TimingWheel wheel;
+    private final ExecutorService executor;
+    private final Thread expiryThread;
+    private final AtomicLongArray latenessHistogram = new AtomicLongArray(LATENESS_LIMITS_MS.length + 1);
+    private final AtomicLong maxLateness = new AtomicLong();
+    private volatile boolean isRunning = true;
+    private int pendingTaskCount;
+
+    public TimingWheelScheduler(final String name, int threadCount) {
+        wheel = new TimingWheel(TICK_MS, currentTime());
+        executor = Executors.newFixedThreadPool(threadCount, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "Worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        expiryThread = new Thread(name) {
+            @Override
+            public void run() {
+                expireBuckets();
+            }
+        };
+        expiryThread.setDaemon(true);
+        expiryThread.start();
+    }
+
+    /**
+     * Stops the scheduler. Pending tasks are discarded and running tasks are interrupted.
+     */
+    public void stop() {
+        isRunning = false;
+        expiryThread.interrupt();
+        executor.shutdownNow();
+        try {
+            expiryThread.join(1000);
+        } catch (InterruptedException e) {
+            // Just continue
+        }
+        synchronized (this) {
+            delayQueue.clear();
+            pendingTaskCount = 0;
+        }
+    }
+
+    @Override
+    public ScheduledTask schedule(Runnable task, long delayMs) {
+        return scheduleAt(task, currentTime() + delayMs);
+    }
+
+    @Override
+    public ScheduledTask scheduleAt(Runnable task, long timeMs) {
+        Entry entry = new Entry(task, timeMs, 0);
+        add(entry);
+        return entry;
+    }
+
+    @Override
+    public ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs) {
+        if (periodMs <= 0) {
+            throw new IllegalArgumentException("Period must be positive");
+        }
+        Entry entry = new Entry(task, currentTime() + initialDelayMs, periodMs);
+        add(entry);
+        return entry;
+    }
+
+    @Override
+    public synchronized int getPendingTaskCount() {
+        return pendingTaskCount;
+    }
+
+    @Override
+    public long[] getLatenessHistogram() {
+        long[] result = new long[latenessHistogram.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = latenessHistogram.get(i);
+        }
+        return result;
+    }
+
+    public long getMaxLateness() {
+        return maxLateness.get();
+    }
+
+    public void resetStatistics() {
+        for (int i = 0; i < latenessHistogram.length(); i++) {
+            latenessHistogram.set(i, 0);
+        }
+        maxLateness.set(0);
+    }
+
+    long currentTime() {
+        return System.currentTimeMillis();
+    }
+
+    private synchronized void add(Entry entry) {
+        if (entry.isCancelled || !isRunning) {
+            return;
+        }
+        if (!wheel.add(entry)) {
+            // Already expired
+            try {
+                executor.execute(entry);
+            } catch (RejectedExecutionException e) {
+                // Scheduler is stopping
+            }
+        }
+    }
+
+    private void expireBuckets() {
+        while (isRunning) {
+            try {
+                Bucket bucket = delayQueue.take();
+                while (bucket != null) {
+                    synchronized (this) {
+                        wheel.advanceClock(bucket.getExpiration());
+                        for (Entry entry : bucket.flush()) {
+                            add(entry);
+                        }
+                    }
+                    bucket = delayQueue.poll();
+                }
+            } catch (InterruptedException e) {
+                // Check if we are still running
+            }
+        }
+    }
+
+    private void recordLateness(long latenessMs) {
+        int i = 0;
+        while (i < LATENESS_LIMITS_MS.length && latenessMs >= LATENESS_LIMITS_MS[i]) {
+            i++;
+        }
+        latenessHistogram.incrementAndGet(i);
+        long max = maxLateness.get();
+        while (latenessMs > max && !maxLateness.compareAndSet(max, latenessMs)) {
+            max = maxLateness.get();
+        }
+    }
+
+    private class TimingWheel {
+        private final long tickMs;
+        private final long interval;
+        private final Bucket[] buckets = new Bucket[WHEEL_SIZE];
+        private long currentTime;
+        private TimingWheel overflowWheel;
+
+        TimingWheel(long tickMs, long startMs) {
+            this.tickMs = tickMs;
+            this.interval = tickMs * WHEEL_SIZE;
+            this.currentTime = startMs - (startMs % tickMs);
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket();
+            }
+        }
+
+        /**
+         * @return false if the entry has already expired
+         */
+        boolean add(Entry entry) {
+            long expiration = entry.expiration;
+            if (expiration < currentTime + tickMs) {
+                return false;
+            } else if (expiration < currentTime + interval) {
+                long virtualId = expiration / tickMs;
+                Bucket bucket = buckets[(int) (virtualId % WHEEL_SIZE)];
+                bucket.add(entry);
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    delayQueue.offer(bucket);
+                }
+                return true;
+            } else {
+                if (overflowWheel == null) {
+                    overflowWheel = new TimingWheel(interval, currentTime);
+                }
+                return overflowWheel.add(entry);
+            }
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflowWheel != null) {
+                    overflowWheel.advanceClock(currentTime);
+                }
+            }
+        }
+    }
+
+    /**
+     * All entries in a bucket expire within the same tick. Access to the entries is guarded by the scheduler.
+     */
+    private class Bucket implements Delayed {
+        private final Set<Entry> entries = new LinkedHashSet<>();
+        private final AtomicLong expiration = new AtomicLong(-1);
+
+        void add(Entry entry) {
+            entries.add(entry);
+            entry.bucket = this;
+            pendingTaskCount++;
+        }
+
+        void remove(Entry entry) {
+            if (entries.remove(entry)) {
+                entry.bucket = null;
+                pendingTaskCount--;
+            }
+        }
+
+        List<Entry> flush() {
+            List<Entry> result = new ArrayList<>(entries);
+            for (Entry entry : result) {
+                remove(entry);
+            }
+            expiration.set(-1);
+            return result;
+        }
+
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(getExpiration() - currentTime(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            long otherExpiration = ((Bucket) other).getExpiration();
+            long expiration = getExpiration();
+            return expiration < otherExpiration ? -1 : (expiration == otherExpiration ? 0 : 1);
+        }
+    }
+
+    private class Entry implements ScheduledTask, Runnable {
+        private final Runnable task;
+        private final long period;
+        private volatile long expiration;
+        private volatile boolean isCancelled;
+        private Bucket bucket;
+
+        Entry(Runnable task, long expiration, long period) {
+            this.task = task;
+            this.expiration = expiration;
+            this.period = period;
+        }
+
+        @Override
+        public boolean cancel() {
+            synchronized (TimingWheelScheduler.this) {
+                if (isCancelled) {
+                    return false;
+                }
+                isCancelled = true;
+                if (bucket != null) {
+                    bucket.remove(this);
+                    return true;
+                }
+                return period > 0;
+            }
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+
+        @Override
+        public long getScheduledTime() {
+            return expiration;
+        }
+
+        @Override
+        public void run() {
+            if (isCancelled) {
+                return;
+            }
+            recordLateness(currentTime() - expiration);
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Scheduled task failed", e);
+            }
+            if (period > 0) {
+                // Rescheduled after execution, so a slow task is never executed in parallel with itself
+                expiration += period;
+                add(this);
+            }
+        }
+    }
+}
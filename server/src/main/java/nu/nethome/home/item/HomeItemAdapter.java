@@ -20,7 +20,15 @@
 package nu.nethome.home.item;
 
 import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventRules;
 import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
+import nu.nethome.home.system.TaskScheduler;
+import nu.nethome.home.util.AsyncIoExecutor;
+
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This Adapter is simply a helper to avoid some of the boiler plate code in the HomeItem
@@ -28,9 +36,12 @@ import nu.nethome.home.system.HomeService;
  */
 public abstract class HomeItemAdapter implements HomeItem {
 
+    private static Logger logger = Logger.getLogger(HomeItemAdapter.class.getName());
+
     protected long id = 0;
     protected String name = "No Name Yet";
     protected HomeService server = null;
+    private AsyncIoExecutor asyncIo;
 
     public boolean receiveEvent(Event event) {
         return false;
@@ -75,12 +86,151 @@ public abstract class HomeItemAdapter implements HomeItem {
 
     public void stop() {
         this.server = null;
+        synchronized (this) {
+            if (asyncIo != null) {
+                asyncIo.shutdown();
+                asyncIo = null;
+            }
+        }
     }
 
     protected boolean isActivated() {
         return server != null;
     }
 
+    /**
+     * @return the scheduler of the server
+     * @throws IllegalStateException if the server does not provide {@link SharedServices}
+     */
+    protected TaskScheduler getScheduler() {
+        HomeService service = server;
+        if (!(service instanceof SharedServices)) {
+            throw new IllegalStateException(name + " needs a scheduler, which " +
+                    (service == null ? "an item that is not activated" : service.getClass().getName()) + " does not provide");
+        }
+        return ((SharedServices) service).getScheduler();
+    }
+
+    /**
+     * @return the event rules of the server, or null if the server does not provide {@link SharedServices}.
+     * The item then has to match the events in receiveEvent itself.
+     */
+    protected EventRules getEventRules() {
+        HomeService service = server;
+        return service instanceof SharedServices ? ((SharedServices) service).getEventRules() : null;
+    }
+
+    /**
+     * Report that the value of an attribute has changed by sending a {@link HomeService#VALUE_CHANGED_EVENT_TYPE}
+     * event. Items that depend on the value can then react at once instead of polling it.
+     *
+     * @param attributeName name of the changed attribute
+     * @param value         new value of the attribute
+     */
+    protected void reportValueChange(String attributeName, String value) {
+        if (isActivated()) {
+            Event event = server.createEvent(HomeService.VALUE_CHANGED_EVENT_TYPE, value);
+            event.setAttribute(Event.EVENT_SENDER_ATTRIBUTE, name);
+            event.setAttribute(HomeService.VALUE_CHANGED_ITEM_ID_ATTRIBUTE, Long.toString(id));
+            event.setAttribute(HomeService.VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE, attributeName);
+            server.send(event);
+        }
+    }
+
+    /**
+     * Run an outbound I/O operation, such as a command to a bridge, on the I/O thread of the item, so the
+     * caller is not blocked for the length of a network timeout. The operations of an item are run one at the
+     * time in the order they were executed. When the operation is done the completion is called on the I/O
+     * thread, if the item is still active, and an {@link HomeService#IO_RESULT_EVENT_TYPE} event is sent.
+     * If the item is not activated the operation is run directly in the calling thread. A failure is then logged
+     * and passed to the completion, but a result is not, since there is no server to report it to.
+     *
+     * @param operation  name of the operation, used as value of the result event
+     * @param task       the I/O operation
+     * @param completion receives the result, may be null
+     * @return false if the operation was rejected because too many operations are waiting, or if it was run
+     * directly and failed
+     */
+    protected <T> boolean executeIo(final String operation, AsyncIoExecutor.IoTask<T> task,
+                                    final AsyncIoExecutor.Completion<T> completion) {
+        AsyncIoExecutor executor = getAsyncIo();
+        if (executor == null) {
+            try {
+                task.call();
+                return true;
+            } catch (Exception e) {
+                logger.log(Level.INFO, "Failed " + operation + " in " + name, e);
+                if (completion != null) {
+                    completion.failed(e);
+                }
+                return false;
+            }
+        }
+        boolean isQueued = executor.submit(task, new AsyncIoExecutor.Completion<T>() {
+            @Override
+            public void completed(T result) {
+                if (isActivated()) {
+                    if (completion != null) {
+                        completion.completed(result);
+                    }
+                    reportIoResult(operation, "Ok", null);
+                }
+            }
+
+            @Override
+            public void failed(Exception e) {
+                if (isActivated()) {
+                    if (completion != null) {
+                        completion.failed(e);
+                    }
+                    reportIoResult(operation, e instanceof TimeoutException ? "TimedOut" : "Failed", e);
+                }
+            }
+        });
+        if (!isQueued) {
+            reportIoResult(operation, "Rejected", null);
+        }
+        return isQueued;
+    }
+
+    private synchronized AsyncIoExecutor getAsyncIo() {
+        if (asyncIo == null && isActivated()) {
+            asyncIo = new AsyncIoExecutor(name, AsyncIoExecutor.DEFAULT_QUEUE_SIZE, AsyncIoExecutor.DEFAULT_TIMEOUT_MS);
+        }
+        return asyncIo;
+    }
+
+    private void reportIoResult(String operation, String status, Exception e) {
+        HomeService currentServer = server;
+        if (currentServer != null) {
+            Event event = currentServer.createEvent(HomeService.IO_RESULT_EVENT_TYPE, operation);
+            event.setAttribute(Event.EVENT_SENDER_ATTRIBUTE, name);
+            event.setAttribute(HomeService.IO_RESULT_ITEM_ID_ATTRIBUTE, Long.toString(id));
+            event.setAttribute(HomeService.IO_RESULT_STATUS_ATTRIBUTE, status);
+            if (e != null) {
+                event.setAttribute(HomeService.IO_RESULT_ERROR_ATTRIBUTE, String.valueOf(e.getMessage()));
+            }
+            currentServer.send(event);
+        }
+    }
+
+    /**
+     * @return number of I/O operations waiting or running, for use as an attribute of items using
+     * {@link #executeIo}
+     */
+    public String getIoInFlight() {
+        AsyncIoExecutor executor = asyncIo;
+        return Integer.toString(executor != null ? executor.getInFlight() : 0);
+    }
+
+    /**
+     * @return average time in ms from when I/O operations are executed until they are done
+     */
+    public String getIoLatency() {
+        AsyncIoExecutor executor = asyncIo;
+        return Long.toString(executor != null ? executor.getAverageLatencyMs() : 0);
+    }
+
     protected int setIntAttribute(String value, int min, int max) throws IllegalValueException {
         try {
             final int i = Integer.parseInt(value);
@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
+import nu.nethome.home.system.EventRules;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Keeps the event conditions of a HomeItem in the server's {@link EventRules}. When the conditions change, the
+ * rules are replaced. Before the item is registered, for example when it is not yet activated, the item can match
+ * events against the conditions itself with {@link #matches(Event)}.
+ */
+public class ItemEventRules {
+    private final EventRules.Action action;
+    private List<EventCondition> conditions = new ArrayList<>();
+    private final List<EventRules.Rule> rules = new ArrayList<>();
+    private EventRules eventRules;
+
+    public ItemEventRules(EventRules.Action action) {
+        this.action = action;
+    }
+
+    /**
+     * Set the conditions of the events to perform the action for. Equal conditions are only added once.
+     */
+    public synchronized void setConditions(Collection<EventCondition> conditions) {
+        this.conditions = new ArrayList<>(new LinkedHashSet<>(conditions));
+        if (eventRules != null) {
+            removeRules();
+            addRules();
+        }
+    }
+
+    /**
+     * Add the conditions as rules, so the action is performed by the event rules
+     *
+     * @param eventRules the event rules of the server, if null the conditions are not registered
+     */
+    public synchronized void register(EventRules eventRules) {
+        unregister();
+        this.eventRules = eventRules;
+        if (eventRules != null) {
+            addRules();
+        }
+    }
+
+    public synchronized void unregister() {
+        removeRules();
+        eventRules = null;
+    }
+
+    public synchronized boolean isRegistered() {
+        return eventRules != null;
+    }
+
+    /**
+     * @return true if the event matches any of the conditions
+     */
+    public synchronized boolean matches(Event event) {
+        for (EventCondition condition : conditions) {
+            if (condition.matches(event)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addRules() {
+        for (EventCondition condition : conditions) {
+            rules.add(eventRules.addRule(condition, action));
+        }
+    }
+
+    private void removeRules() {
+        for (EventRules.Rule rule : rules) {
+            rule.remove();
+        }
+        rules.clear();
+    }
+}
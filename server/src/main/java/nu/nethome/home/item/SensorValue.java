@@ -0,0 +1,129 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Keeps the latest value of a sensor item, such as a thermometer, and the time it was received. Sensors repeat
+ * their reports, and most reports do not change the value. The value is only reported as changed with
+ * {@link HomeItemAdapter#reportValueChange} when it differs from the last reported value by at least the
+ * deadband, and at most once per minimum report interval. Items depending on the value, such as value triggers,
+ * can then react on the changes instead of polling the sensor.
+ *
+ * @author Stefan
+ */
+public class SensorValue {
+
+    private static final String DATE_FORMAT = "HH:mm:ss yyyy.MM.dd ";
+
+    private final HomeItemAdapter item;
+    private final String attributeName;
+    private double value;
+    private boolean hasValue;
+    private long updateTime = System.currentTimeMillis();
+    private String reportedValue;
+    private double reportedNumericValue;
+    private long reportTime;
+    private double deadband;
+    private int minReportInterval;
+
+    /**
+     * @param item          the item owning the value
+     * @param attributeName name of the item attribute presenting the value
+     */
+    public SensorValue(HomeItemAdapter item, String attributeName) {
+        this.item = item;
+        this.attributeName = attributeName;
+    }
+
+    /**
+     * Update the value with a new sensor report, and report it as changed if it passes the filtering
+     *
+     * @return true if the value was reported as changed
+     */
+    public boolean update(double newValue) {
+        long now = System.currentTimeMillis();
+        value = newValue;
+        hasValue = true;
+        updateTime = now;
+        String formattedValue = getValue();
+        if (isChangeReported(formattedValue, now)) {
+            reportedValue = formattedValue;
+            reportedNumericValue = newValue;
+            reportTime = now;
+            item.reportValueChange(attributeName, formattedValue);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean isChangeReported(String formattedValue, long now) {
+        if (reportedValue == null) {
+            return true;
+        }
+        return !formattedValue.equals(reportedValue) &&
+                Math.abs(value - reportedNumericValue) >= deadband &&
+                now - reportTime >= minReportInterval * 1000L;
+    }
+
+    public boolean hasValue() {
+        return hasValue;
+    }
+
+    public double getNumericValue() {
+        return value;
+    }
+
+    /**
+     * @return the value with one decimal, or an empty string if no value has been received
+     */
+    public String getValue() {
+        return hasValue ? String.format("%.1f", value) : "";
+    }
+
+    public String getLastUpdate() {
+        return hasValue ? new SimpleDateFormat(DATE_FORMAT).format(new Date(updateTime)) : "";
+    }
+
+    /**
+     * @return seconds since the latest value was received, or since creation if no value has been received
+     */
+    public String getTimeSinceUpdate() {
+        return Long.toString((System.currentTimeMillis() - updateTime) / 1000);
+    }
+
+    public String getDeadband() {
+        return Double.toString(deadband);
+    }
+
+    public void setDeadband(String deadband) {
+        this.deadband = Double.parseDouble(deadband.replace(",", "."));
+    }
+
+    public String getMinReportInterval() {
+        return Integer.toString(minReportInterval);
+    }
+
+    public void setMinReportInterval(String minReportInterval) {
+        this.minReportInterval = Integer.parseInt(minReportInterval);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import nu.nethome.home.system.TaskScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes a sequence of steps on the server {@link TaskScheduler} without blocking the calling thread.
+ * When there is a delay, each step is scheduled the specified time after the previous step has completed.
+ * Without delay the steps are independent of each other and are all scheduled at once, so they may execute
+ * in parallel. Starting a new sequence cancels the steps of the previous sequence that have not yet started.
+ */
+public class StepSequencer {
+
+    private static Logger logger = Logger.getLogger(StepSequencer.class.getName());
+
+    private final TaskScheduler scheduler;
+    private final List<TaskScheduler.ScheduledTask> pendingTasks = new ArrayList<>();
+    private int generation;
+
+    public StepSequencer(TaskScheduler scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Start executing a new sequence of steps, cancelling any sequence in progress
+     *
+     * @param steps   steps to execute
+     * @param delayMs delay in milliseconds between the steps
+     */
+    public synchronized void start(List<? extends Runnable> steps, long delayMs) {
+        cancel();
+        List<Runnable> sequence = new ArrayList<Runnable>(steps);
+        if (sequence.isEmpty()) {
+            return;
+        }
+        if (delayMs <= 0) {
+            for (int i = 0; i < sequence.size(); i++) {
+                pendingTasks.add(scheduler.schedule(new Step(sequence, i, 0), 0));
+            }
+        } else {
+            pendingTasks.add(scheduler.schedule(new Step(sequence, 0, delayMs), 0));
+        }
+    }
+
+    /**
+     * Cancel all steps of the current sequence which have not yet started
+     */
+    public synchronized void cancel() {
+        generation++;
+        for (TaskScheduler.ScheduledTask task : pendingTasks) {
+            task.cancel();
+        }
+        pendingTasks.clear();
+    }
+
+    private class Step implements Runnable {
+        private final List<Runnable> sequence;
+        private final int index;
+        private final long delayMs;
+        private final int stepGeneration;
+
+        Step(List<Runnable> sequence, int index, long delayMs) {
+            this.sequence = sequence;
+            this.index = index;
+            this.delayMs = delayMs;
+            this.stepGeneration = generation;
+        }
+
+        @Override
+        public void run() {
+            synchronized (StepSequencer.this) {
+                if (stepGeneration != generation) {
+                    return;
+                }
+            }
+            try {
+                sequence.get(index).run();
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to execute sequence step", e);
+            }
+            if (delayMs > 0) {
+                scheduleNext();
+            }
+        }
+
+        private void scheduleNext() {
+            synchronized (StepSequencer.this) {
+                if (stepGeneration == generation && index + 1 < sequence.size()) {
+                    pendingTasks.clear();
+                    pendingTasks.add(scheduler.schedule(new Step(sequence, index + 1, delayMs), delayMs));
+                }
+            }
+        }
+    }
+}
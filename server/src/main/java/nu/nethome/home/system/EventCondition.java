@@ -0,0 +1,103 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.system;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * A declared condition on an event: the event type and a number of attributes which must have specific values.
+ * A missing attribute has the value "". Conditions are immutable, {@link #with(String, String)} returns a new
+ * condition with one more attribute test.
+ */
+public final class EventCondition {
+    private final String type;
+    private final SortedMap<String, String> attributes;
+
+    public EventCondition(String type) {
+        this(type, new TreeMap<String, String>());
+    }
+
+    private EventCondition(String type, SortedMap<String, String> attributes) {
+        this.type = type;
+        this.attributes = Collections.unmodifiableSortedMap(attributes);
+    }
+
+    public EventCondition with(String attributeName, String value) {
+        SortedMap<String, String> newAttributes = new TreeMap<>(attributes);
+        newAttributes.put(attributeName, value);
+        return new EventCondition(type, newAttributes);
+    }
+
+    public EventCondition with(String attributeName, int value) {
+        return with(attributeName, Integer.toString(value));
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the attribute tests, sorted by attribute name
+     */
+    public SortedMap<String, String> getAttributes() {
+        return attributes;
+    }
+
+    public boolean matches(Event event) {
+        if (!event.isType(type)) {
+            return false;
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (!attribute.getValue().equals(event.getAttribute(attribute.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EventCondition)) {
+            return false;
+        }
+        EventCondition other = (EventCondition) o;
+        return type.equals(other.type) && attributes.equals(other.attributes);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * type.hashCode() + attributes.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(Event.EVENT_TYPE_ATTRIBUTE).append("=").append(type);
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            result.append(",").append(attribute.getKey()).append("=").append(attribute.getValue());
+        }
+        return result.toString();
+    }
+}
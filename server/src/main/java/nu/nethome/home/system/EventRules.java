@@ -0,0 +1,55 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.system;
+
+/**
+ * Server wide event rules. Instead of testing every event in receiveEvent, a HomeItem can declare the
+ * {@link EventCondition}s of the events it is interested in. The conditions of all rules are compiled into a
+ * shared network, so each event is matched once and only the actions of the matching rules are performed.
+ * Actions are performed on the event distribution thread.
+ */
+public interface EventRules {
+
+    /**
+     * Action to perform for an event matching a rule
+     */
+    interface Action {
+        void perform(Event event);
+    }
+
+    /**
+     * Handle to an added rule
+     */
+    interface Rule {
+        /**
+         * Remove the rule, its action will not be performed for any more events
+         */
+        void remove();
+    }
+
+    /**
+     * Add a rule
+     *
+     * @param condition condition an event has to fulfil
+     * @param action    action to perform for each matching event
+     * @return handle to the rule
+     */
+    Rule addRule(EventCondition condition, Action action);
+}
@@ -31,6 +31,23 @@ import java.util.List;
 public interface HomeService {
 
     String MINUTE_EVENT_TYPE = "MinuteEvent";
+
+    /**
+     * Event sent by items when the value of one of their attributes changes, so items depending on the value
+     * do not have to poll it. The event value is the new attribute value.
+     */
+    String VALUE_CHANGED_EVENT_TYPE = "ValueChanged";
+    String VALUE_CHANGED_ITEM_ID_ATTRIBUTE = "ItemId";
+    String VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE = "Attribute";
+
+    /**
+     * Event sent by items when an asynchronous I/O operation has completed, failed or been rejected.
+     * The event value is the name of the operation and the status is Ok, Failed, TimedOut or Rejected.
+     */
+    String IO_RESULT_EVENT_TYPE = "IoResult";
+    String IO_RESULT_ITEM_ID_ATTRIBUTE = "ItemId";
+    String IO_RESULT_STATUS_ATTRIBUTE = "Status";
+    String IO_RESULT_ERROR_ATTRIBUTE = "Error";
     
      boolean executePython(String pythonCode);
 
@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.system;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link Event} that can carry binary data next to its attributes. This is optional for an Event
+ * implementation to provide, so it is kept out of that interface. Receivers check for it with instanceof and fall
+ * back on the attributes when the event cannot carry a payload.
+ */
+public interface PayloadEvent extends Event {
+
+    /**
+     * Attach binary data to the Event, for example a received protocol frame, so receivers do not have to encode
+     * and decode it as an attribute. The array is not copied, so it must not be modified after it is attached.
+     * The payload is not one of the attributes and is only available to receivers in the same process.
+     *
+     * @param payload the binary data, or null to remove it
+     */
+    void setPayload(byte[] payload);
+
+    /**
+     * Get the attached binary data. The array is shared with all receivers of the Event and must not be modified.
+     *
+     * @return the binary data, or null if the Event has no payload
+     */
+    byte[] getPayload();
+
+    /**
+     * @return a read only view of the attached binary data, or null if the Event has no payload
+     */
+    ByteBuffer getPayloadBuffer();
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.system;
+
+/**
+ * Services the server shares between its HomeItems. This is optional for a {@link HomeService} implementation to
+ * provide, so it is kept out of that interface. HomeItems get the services through
+ * {@link nu.nethome.home.item.HomeItemAdapter}. Items using the scheduler can only run in a service providing it.
+ */
+public interface SharedServices {
+
+    /**
+     * Get the server wide scheduler for delayed and periodic tasks
+     */
+    TaskScheduler getScheduler();
+
+    /**
+     * Get the server wide event rules, where items can declare which events they act on
+     */
+    EventRules getEventRules();
+
+    /**
+     * Get the version of the item directory. The version changes whenever an instance is created, renamed or
+     * removed, so references to instances looked up by name can be kept until it changes.
+     */
+    long getDirectoryVersion();
+}
@@ -0,0 +1,93 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.system;
+
+/**
+ * Server wide scheduler for delayed and periodic tasks. HomeItems should use this instead of creating
+ * their own timer threads. Tasks are executed on a small shared thread pool, so they should not block
+ * for long periods.
+ */
+public interface TaskScheduler {
+
+    /**
+     * Upper limits in ms for the intervals of the lateness histogram. The last interval has no upper limit.
+     */
+    long[] LATENESS_LIMITS_MS = {10, 100, 1000, 10000};
+
+    /**
+     * Handle to a scheduled task
+     */
+    interface ScheduledTask {
+        /**
+         * Cancel the task. A periodic task will not be executed again, but an execution that has
+         * already started is allowed to complete.
+         *
+         * @return true if the task was pending and is now cancelled
+         */
+        boolean cancel();
+
+        boolean isCancelled();
+
+        /**
+         * @return the time in ms since epoch when the task is next due
+         */
+        long getScheduledTime();
+    }
+
+    /**
+     * Execute a task once after the specified delay
+     *
+     * @param task    task to execute
+     * @param delayMs delay in milliseconds
+     * @return handle to the scheduled task
+     */
+    ScheduledTask schedule(Runnable task, long delayMs);
+
+    /**
+     * Execute a task once at the specified time. If the time has already passed, the task is executed
+     * as soon as possible.
+     *
+     * @param task   task to execute
+     * @param timeMs time in milliseconds since epoch
+     * @return handle to the scheduled task
+     */
+    ScheduledTask scheduleAt(Runnable task, long timeMs);
+
+    /**
+     * Execute a task repeatedly with a fixed rate. An execution is never started before the previous
+     * execution of the same task has completed.
+     *
+     * @param task           task to execute
+     * @param initialDelayMs delay in milliseconds before the first execution
+     * @param periodMs       time in milliseconds between the start of successive executions
+     * @return handle to the scheduled task
+     */
+    ScheduledTask scheduleAtFixedRate(Runnable task, long initialDelayMs, long periodMs);
+
+    /**
+     * @return number of tasks waiting for their scheduled time
+     */
+    int getPendingTaskCount();
+
+    /**
+     * @return number of executed tasks per lateness interval, see {@link #LATENESS_LIMITS_MS}
+     */
+    long[] getLatenessHistogram();
+}
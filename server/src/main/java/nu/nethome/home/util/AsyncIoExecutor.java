@@ -0,0 +1,231 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the outbound network I/O of an item, such as commands to a bridge, on a worker thread instead of in the
+ * thread calling the item. The tasks are run one at the time in the order they were submitted, so commands to a
+ * device are not reordered.
+ * <ul>
+ * <li>The queue is bounded, when it is full new tasks are rejected instead of piling up behind a device that
+ * does not respond.</li>
+ * <li>A task that has waited longer than the timeout when its turn comes is not run, but failed with a
+ * {@link TimeoutException}. The time a running task may take is limited by the timeouts of the client it uses.</li>
+ * <li>The result of each task is passed to its {@link Completion} in the worker thread.</li>
+ * </ul>
+ * The worker thread is started when needed and ends when the executor has been idle for a while.
+ *
+ * @author Stefan
+ */
+public class AsyncIoExecutor {
+
+    public static final int DEFAULT_QUEUE_SIZE = 20;
+    public static final long DEFAULT_TIMEOUT_MS = 30000;
+    private static final long IDLE_THREAD_TIMEOUT_S = 60;
+    private static Logger logger = Logger.getLogger(AsyncIoExecutor.class.getName());
+
+    /**
+     * An I/O operation
+     *
+     * @param <T> type of the result
+     */
+    public interface IoTask<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Receives the result of an I/O operation in the worker thread
+     *
+     * @param <T> type of the result
+     */
+    public interface Completion<T> {
+        void completed(T result);
+
+        /**
+         * @param e the exception thrown by the task, or a {@link TimeoutException} if it timed out in the queue
+         */
+        void failed(Exception e);
+    }
+
+    private final String name;
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong totalLatencyMs = new AtomicLong();
+    private final AtomicLong maxLatencyMs = new AtomicLong();
+
+    public AsyncIoExecutor(final String name, int queueSize, long timeoutMs) {
+        this.name = name;
+        this.timeoutMs = timeoutMs;
+        executor = new ThreadPoolExecutor(1, 1, IDLE_THREAD_TIMEOUT_S, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, name + "-IO");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Queue a task
+     *
+     * @param task       the I/O operation
+     * @param completion receives the result, may be null
+     * @return false if the task was rejected because the queue is full or the executor is shut down
+     */
+    public <T> boolean submit(final IoTask<T> task, final Completion<T> completion) {
+        final long submitted = System.currentTimeMillis();
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        runTask(task, completion, submitted);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            inFlight.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            logger.fine("Rejected I/O task in " + name);
+            return false;
+        }
+    }
+
+    public <T> boolean submit(IoTask<T> task) {
+        return submit(task, null);
+    }
+
+    private <T> void runTask(IoTask<T> task, Completion<T> completion, long submitted) {
+        if (System.currentTimeMillis() - submitted > timeoutMs) {
+            timedOutCount.incrementAndGet();
+            failTask(completion, new TimeoutException(String.format("I/O task in %s waited more than %d ms",
+                    name, timeoutMs)));
+            return;
+        }
+        T result;
+        try {
+            result = task.call();
+        } catch (Exception e) {
+            recordLatency(submitted);
+            failedCount.incrementAndGet();
+            failTask(completion, e);
+            return;
+        }
+        recordLatency(submitted);
+        completedCount.incrementAndGet();
+        if (completion != null) {
+            try {
+                completion.completed(result);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to complete I/O task in " + name, e);
+            }
+        }
+    }
+
+    private <T> void failTask(Completion<T> completion, Exception e) {
+        if (completion != null) {
+            try {
+                completion.failed(e);
+            } catch (RuntimeException e2) {
+                logger.log(Level.WARNING, "Failed to complete I/O task in " + name, e2);
+            }
+        } else {
+            logger.log(Level.FINE, "I/O task failed in " + name, e);
+        }
+    }
+
+    private void recordLatency(long submitted) {
+        long latency = System.currentTimeMillis() - submitted;
+        totalLatencyMs.addAndGet(latency);
+        long max;
+        do {
+            max = maxLatencyMs.get();
+        } while (latency > max && !maxLatencyMs.compareAndSet(max, latency));
+    }
+
+    /**
+     * Discard the queued tasks and interrupt the running one. Completions of discarded tasks are not called.
+     */
+    public void shutdown() {
+        inFlight.addAndGet(-executor.shutdownNow().size());
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * @return number of tasks queued or running
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    /**
+     * @return average time from submission until a task has been run, in milliseconds
+     */
+    public long getAverageLatencyMs() {
+        long count = completedCount.get() + failedCount.get();
+        return count > 0 ? totalLatencyMs.get() / count : 0;
+    }
+
+    public long getMaxLatencyMs() {
+        return maxLatencyMs.get();
+    }
+}
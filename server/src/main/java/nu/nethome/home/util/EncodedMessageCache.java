@@ -0,0 +1,140 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.system.Event;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of encoded protocol messages for RF transmitters. The same few hundred lamp commands are sent
+ * over and over, so a transmitter can keep the result of encoding a protocol message event (the pulse train or
+ * the finished device frame) and skip extracting the message, encoding and compressing it the next time.
+ * <p/>
+ * The cache key is built from the event type, the protocol fields and the attributes that affect how the message
+ * is sent (repeat and modulation), see {@link #keyOf(Event)}. The least recently used entry is evicted when the
+ * cache is full.
+ *
+ * @param <V> the encoded message type of the transmitter
+ * @author Stefan
+ */
+public class EncodedMessageCache<V> {
+
+    public static final int DEFAULT_SIZE = 512;
+    private static final String MESSAGE_SUFFIX = "_Message";
+    private static final String[] SEND_ATTRIBUTES = {"Repeat", "Modulation"};
+
+    private final Map<String, V> entries;
+    private long hitCount;
+    private long missCount;
+
+    public EncodedMessageCache() {
+        this(DEFAULT_SIZE);
+    }
+
+    public EncodedMessageCache(final int maxSize) {
+        entries = new LinkedHashMap<String, V>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    /**
+     * Build the cache key of a protocol message event, for example
+     * "Nexa_Message;Button=2;Command=1;HouseCode=1|Repeat=5".
+     *
+     * @return the key or null if the event is not a protocol message
+     */
+    public static String keyOf(Event event) {
+        String type = event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE);
+        if (!type.endsWith(MESSAGE_SUFFIX) || type.length() == MESSAGE_SUFFIX.length()) {
+            return null;
+        }
+        String prefix = type.substring(0, type.length() - MESSAGE_SUFFIX.length()) + ".";
+        String[] names = event.getAttributeNames();
+        String[] fields = new String[names.length];
+        int fieldCount = 0;
+        for (String name : names) {
+            if (name.startsWith(prefix)) {
+                fields[fieldCount++] = name;
+            }
+        }
+        // Attribute order depends on how the event was built, so sort to get the same key for the same message
+        Arrays.sort(fields, 0, fieldCount);
+        StringBuilder key = new StringBuilder(type);
+        for (int i = 0; i < fieldCount; i++) {
+            key.append(';').append(fields[i], prefix.length(), fields[i].length())
+                    .append('=').append(event.getAttribute(fields[i]));
+        }
+        for (String attribute : SEND_ATTRIBUTES) {
+            if (event.hasAttribute(attribute)) {
+                key.append('|').append(attribute).append('=').append(event.getAttribute(attribute));
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * @return the cached message or null if it is not cached
+     */
+    public synchronized V get(String key) {
+        V result = key != null ? entries.get(key) : null;
+        if (result != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return result;
+    }
+
+    public synchronized void put(String key, V encodedMessage) {
+        if (key != null) {
+            entries.put(key, encodedMessage);
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return share of the lookups that were found in the cache, in percent
+     */
+    public synchronized int getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (int) (hitCount * 100 / lookups);
+    }
+}
@@ -0,0 +1,601 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A small HTTP/1.1 client which keeps connections open between requests. Connections are pooled per host
+ * (scheme, host and port), and the number of simultaneous connections to one host is limited.
+ * <p/>
+ * The client is thread safe and is meant to be shared, a connection is only used by one request at a time.
+ *
+ * @author Stefan
+ */
+public class PooledHttpClient {
+
+    /**
+     * Reads the body of a response. The stream is limited to the body of the response and must not be closed
+     * by the reader, any unread data is skipped by the client.
+     */
+    public interface ResponseReader<T> {
+        T read(int responseCode, Map<String, String> headers, InputStream body) throws IOException;
+    }
+
+    /**
+     * A fully read HTTP response
+     */
+    public static class Response {
+        private final int responseCode;
+        private final Map<String, String> headers;
+        private final byte[] body;
+
+        public Response(int responseCode, Map<String, String> headers, byte[] body) {
+            this.responseCode = responseCode;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public int getResponseCode() {
+            return responseCode;
+        }
+
+        /**
+         * @return response headers, with the names as received. The map is case insensitive.
+         */
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public String getBodyAsString() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+    public static final int DEFAULT_CONNECT_TIMEOUT = 5000;
+    public static final int DEFAULT_READ_TIMEOUT = 20000;
+    private static final long IDLE_TIMEOUT_MS = 30000;
+    private static final String CRLF = "\r\n";
+
+    private static final ResponseReader<byte[]> BYTE_ARRAY_READER = new ResponseReader<byte[]>() {
+        @Override
+        public byte[] read(int responseCode, Map<String, String> headers, InputStream body) throws IOException {
+            ByteArrayOutputStream result = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = body.read(buffer)) > 0) {
+                result.write(buffer, 0, read);
+            }
+            return result.toByteArray();
+        }
+    };
+
+    private static final PooledHttpClient sharedInstance = new PooledHttpClient();
+
+    private final int maxConnectionsPerHost;
+    private final int connectTimeout;
+    private final int readTimeout;
+    private SSLSocketFactory sslSocketFactory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong connectionsOpened = new AtomicLong();
+    private final AtomicLong connectionsReused = new AtomicLong();
+    private final AtomicLong failedRequestCount = new AtomicLong();
+
+    public PooledHttpClient() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_CONNECT_TIMEOUT, DEFAULT_READ_TIMEOUT);
+    }
+
+    /**
+     * @param maxConnectionsPerHost max number of simultaneous connections to one host
+     * @param connectTimeout        timeout in ms for connecting, and for waiting for a free connection
+     * @param readTimeout           socket read timeout in ms
+     */
+    public PooledHttpClient(int maxConnectionsPerHost, int connectTimeout, int readTimeout) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+    }
+
+    /**
+     * Get the client shared by items talking to devices on the local network, such as light bridges. Sharing it
+     * means that connections to a device are reused and limited across all items using the device.
+     */
+    public static PooledHttpClient getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Set the socket factory to use for https connections, for example to trust a specific CA
+     */
+    public void setSslSocketFactory(SSLSocketFactory sslSocketFactory) {
+        this.sslSocketFactory = sslSocketFactory;
+    }
+
+    public Response get(String url) throws IOException {
+        return execute("GET", url, Collections.<String, String>emptyMap(), null);
+    }
+
+    /**
+     * Perform a request and read the complete response
+     *
+     * @param method  HTTP method
+     * @param url     absolute http or https URL
+     * @param headers request headers, Host, Content-Length and Connection are set by the client
+     * @param body    request body or null
+     * @return the response
+     * @throws IOException if the request failed
+     */
+    public Response execute(String method, String url, Map<String, String> headers, byte[] body) throws IOException {
+        final Response[] result = new Response[1];
+        execute(method, url, headers, body, new ResponseReader<Void>() {
+            @Override
+            public Void read(int responseCode, Map<String, String> headers, InputStream stream) throws IOException {
+                result[0] = new Response(responseCode, headers, BYTE_ARRAY_READER.read(responseCode, headers, stream));
+                return null;
+            }
+        });
+        return result[0];
+    }
+
+    /**
+     * Perform a request and let the supplied reader consume the response body directly from the connection
+     *
+     * @return the result of the reader
+     * @throws IOException if the request failed
+     */
+    public <T> T execute(String method, String url, Map<String, String> headers, byte[] body, ResponseReader<T> reader) throws IOException {
+        requestCount.incrementAndGet();
+        URL target = new URL(url);
+        Host host = getHost(target);
+        host.acquire(connectTimeout);
+        try {
+            Connection connection = host.takeIdle();
+            if (connection != null) {
+                try {
+                    connectionsReused.incrementAndGet();
+                    return connection.perform(method, target, headers, body, reader);
+                } catch (StaleConnectionException e) {
+                    // The server closed the connection while it was idle. Retry on a new connection, unless the
+                    // server may already have acted on a request which is not safe to perform twice
+                    if (e.isRequestSent() && !isIdempotent(method)) {
+                        throw e;
+                    }
+                    connectionsReused.decrementAndGet();
+                }
+            }
+            connection = host.open();
+            try {
+                return connection.perform(method, target, headers, body, reader);
+            } catch (StaleConnectionException e) {
+                throw new IOException("Connection closed by " + target.getHost());
+            }
+        } catch (IOException e) {
+            failedRequestCount.incrementAndGet();
+            throw e;
+        } finally {
+            host.release();
+        }
+    }
+
+    private static boolean isIdempotent(String method) {
+        return method.equals("GET") || method.equals("HEAD") || method.equals("DELETE");
+    }
+
+    private Host getHost(URL url) {
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        String key = url.getProtocol() + "://" + url.getHost() + ":" + port;
+        Host host = hosts.get(key);
+        if (host == null) {
+            synchronized (hosts) {
+                host = hosts.get(key);
+                if (host == null) {
+                    host = new Host(url.getHost(), port, url.getProtocol().equalsIgnoreCase("https"));
+                    hosts.put(key, host);
+                }
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Close all idle connections
+     */
+    public void close() {
+        for (Host host : hosts.values()) {
+            host.closeIdle();
+        }
+    }
+
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    public long getConnectionsOpened() {
+        return connectionsOpened.get();
+    }
+
+    public long getConnectionsReused() {
+        return connectionsReused.get();
+    }
+
+    public long getFailedRequestCount() {
+        return failedRequestCount.get();
+    }
+
+    /**
+     * @return percentage of requests which were sent on an already open connection
+     */
+    public int getReusePercentage() {
+        long requests = requestCount.get();
+        return requests == 0 ? 0 : (int) ((connectionsReused.get() * 100) / requests);
+    }
+
+    private static class StaleConnectionException extends IOException {
+        private final boolean isRequestSent;
+
+        /**
+         * @param isRequestSent true if the request was written, and the server may have processed it
+         */
+        StaleConnectionException(boolean isRequestSent) {
+            super("Stale connection");
+            this.isRequestSent = isRequestSent;
+        }
+
+        boolean isRequestSent() {
+            return isRequestSent;
+        }
+    }
+
+    private class Host {
+        private final String hostName;
+        private final int port;
+        private final boolean isSecure;
+        private final Semaphore permits = new Semaphore(maxConnectionsPerHost, true);
+        private final Deque<Connection> idle = new ArrayDeque<>();
+
+        Host(String hostName, int port, boolean isSecure) {
+            this.hostName = hostName;
+            this.port = port;
+            this.isSecure = isSecure;
+        }
+
+        void acquire(int timeout) throws IOException {
+            try {
+                if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Timeout waiting for connection to " + hostName);
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for connection to " + hostName);
+            }
+        }
+
+        void release() {
+            permits.release();
+        }
+
+        synchronized Connection takeIdle() {
+            long now = System.currentTimeMillis();
+            Connection connection;
+            while ((connection = idle.pollFirst()) != null) {
+                if (now - connection.lastUsed < IDLE_TIMEOUT_MS && !connection.socket.isClosed()) {
+                    return connection;
+                }
+                connection.close();
+            }
+            return null;
+        }
+
+        synchronized void returnIdle(Connection connection) {
+            connection.lastUsed = System.currentTimeMillis();
+            idle.addFirst(connection);
+        }
+
+        synchronized void closeIdle() {
+            for (Connection connection : idle) {
+                connection.close();
+            }
+            idle.clear();
+        }
+
+        Connection open() throws IOException {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(hostName, port), connectTimeout);
+                socket.setSoTimeout(readTimeout);
+                socket.setTcpNoDelay(true);
+                if (isSecure) {
+                    socket = startTls(socket);
+                }
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+            connectionsOpened.incrementAndGet();
+            return new Connection(this, socket);
+        }
+
+        /**
+         * Layer TLS on the connected socket. The socket is created for the host name, so the server name is sent
+         * (SNI), and the server certificate is verified to be issued for the host name.
+         */
+        private Socket startTls(Socket socket) throws IOException {
+            SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, hostName, port, true);
+            try {
+                SSLParameters parameters = sslSocket.getSSLParameters();
+                parameters.setEndpointIdentificationAlgorithm("HTTPS");
+                sslSocket.setSSLParameters(parameters);
+                sslSocket.startHandshake();
+            } catch (IOException e) {
+                sslSocket.close();
+                throw e;
+            }
+            return sslSocket;
+        }
+
+        String hostHeader() {
+            boolean isDefaultPort = (isSecure && port == 443) || (!isSecure && port == 80);
+            return isDefaultPort ? hostName : hostName + ":" + port;
+        }
+    }
+
+    private class Connection {
+        private final Host host;
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private long lastUsed;
+
+        Connection(Host host, Socket socket) throws IOException {
+            this.host = host;
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        <T> T perform(String method, URL url, Map<String, String> headers, byte[] body, ResponseReader<T> reader) throws IOException {
+            boolean keepOpen = false;
+            try {
+                writeRequest(method, url, headers, body);
+                String statusLine = readLine(true);
+                int responseCode = parseStatus(statusLine);
+                Map<String, String> responseHeaders = readHeaders();
+                BodyInputStream bodyStream = createBodyStream(method, responseCode, responseHeaders);
+                T result = reader.read(responseCode, responseHeaders, bodyStream);
+                bodyStream.skipRemaining();
+                keepOpen = bodyStream.isDelimited() && !"close".equalsIgnoreCase(responseHeaders.get("Connection"))
+                        && statusLine.startsWith("HTTP/1.1");
+                return result;
+            } finally {
+                if (keepOpen) {
+                    host.returnIdle(this);
+                } else {
+                    close();
+                }
+            }
+        }
+
+        private void writeRequest(String method, URL url, Map<String, String> headers, byte[] body) throws IOException {
+            String path = url.getFile().isEmpty() ? "/" : url.getFile();
+            StringBuilder request = new StringBuilder();
+            request.append(method).append(' ').append(path).append(" HTTP/1.1").append(CRLF);
+            request.append("Host: ").append(host.hostHeader()).append(CRLF);
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                request.append(header.getKey()).append(": ").append(header.getValue()).append(CRLF);
+            }
+            if (body != null || !isIdempotent(method)) {
+                request.append("Content-Length: ").append(body == null ? 0 : body.length).append(CRLF);
+            }
+            request.append(CRLF);
+            try {
+                out.write(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+                if (body != null) {
+                    out.write(body);
+                }
+                out.flush();
+            } catch (IOException e) {
+                throw new StaleConnectionException(false);
+            }
+        }
+
+        private int parseStatus(String statusLine) throws IOException {
+            String[] parts = statusLine.split(" ", 3);
+            if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+                throw new IOException("Bad HTTP status line: " + statusLine);
+            }
+            try {
+                return Integer.parseInt(parts[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Bad HTTP status line: " + statusLine);
+            }
+        }
+
+        private Map<String, String> readHeaders() throws IOException {
+            Map<String, String> result = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+            String line;
+            while (!(line = readLine(false)).isEmpty()) {
+                int colon = line.indexOf(':');
+                if (colon > 0) {
+                    result.put(line.substring(0, colon).trim(), line.substring(colon + 1).trim());
+                }
+            }
+            return result;
+        }
+
+        private String readLine(boolean isFirstLine) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            try {
+                while ((c = in.read()) != '\n') {
+                    if (c < 0) {
+                        if (isFirstLine && line.length() == 0) {
+                            throw new StaleConnectionException(true);
+                        }
+                        throw new EOFException("Unexpected end of HTTP response");
+                    }
+                    if (c != '\r') {
+                        line.append((char) c);
+                    }
+                }
+            } catch (StaleConnectionException | EOFException e) {
+                throw e;
+            } catch (IOException e) {
+                if (isFirstLine && line.length() == 0 && !(e instanceof InterruptedIOException)) {
+                    throw new StaleConnectionException(true);
+                }
+                throw e;
+            }
+            return line.toString();
+        }
+
+        private BodyInputStream createBodyStream(String method, int responseCode, Map<String, String> headers) throws IOException {
+            if (method.equals("HEAD") || responseCode / 100 == 1 || responseCode == 204 || responseCode == 304) {
+                return new BodyInputStream(0);
+            }
+            String transferEncoding = headers.get("Transfer-Encoding");
+            if (transferEncoding != null && transferEncoding.equalsIgnoreCase("chunked")) {
+                return new BodyInputStream(-1);
+            }
+            String contentLength = headers.get("Content-Length");
+            if (contentLength != null) {
+                try {
+                    return new BodyInputStream(Long.parseLong(contentLength));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad Content-Length: " + contentLength);
+                }
+            }
+            return new BodyInputStream(Long.MAX_VALUE);
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Not much to do about it...
+            }
+        }
+
+        /**
+         * Input stream of one response body. Handles Content-Length, chunked and read-to-close bodies.
+         */
+        private class BodyInputStream extends InputStream {
+            private final boolean isChunked;
+            private final boolean isDelimited;
+            private long remaining;
+            private boolean isDone;
+
+            /**
+             * @param length body length, -1 for chunked and Long.MAX_VALUE for read until closed
+             */
+            BodyInputStream(long length) {
+                isChunked = length == -1;
+                isDelimited = length != Long.MAX_VALUE;
+                remaining = isChunked ? 0 : length;
+                isDone = length == 0;
+            }
+
+            boolean isDelimited() {
+                return isDelimited && isDone;
+            }
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                int read = read(one, 0, 1);
+                return read < 0 ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (isDone) {
+                    return -1;
+                }
+                if (remaining == 0 && isChunked) {
+                    remaining = readChunkSize();
+                    if (remaining == 0) {
+                        // Trailing headers
+                        readHeaders();
+                        isDone = true;
+                        return -1;
+                    }
+                }
+                int read = in.read(buffer, offset, (int) Math.min(length, remaining));
+                if (read < 0) {
+                    if (isDelimited) {
+                        throw new EOFException("Unexpected end of HTTP response body");
+                    }
+                    isDone = true;
+                    return -1;
+                }
+                remaining -= read;
+                if (remaining == 0) {
+                    if (isChunked) {
+                        readLine(false);
+                    } else {
+                        isDone = true;
+                    }
+                }
+                return read;
+            }
+
+            private long readChunkSize() throws IOException {
+                String line = readLine(false);
+                int extension = line.indexOf(';');
+                try {
+                    return Long.parseLong((extension >= 0 ? line.substring(0, extension) : line).trim(), 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Bad chunk size: " + line);
+                }
+            }
+
+            void skipRemaining() throws IOException {
+                if (!isDelimited) {
+                    return;
+                }
+                byte[] buffer = new byte[1024];
+                while (read(buffer, 0, buffer.length) >= 0) {
+                    // Skip
+                }
+            }
+
+            @Override
+            public void close() {
+                // The connection is managed by the client
+            }
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Distributes the pulses extracted from a sampled signal to a number of consumers, each running in its own
+ * worker thread. Every consumer sees every pulse in order, so the protocol decoders can be spread over the
+ * worker threads and run on separate cores, while the sampler thread only extracts the pulses.
+ * <p/>
+ * The pulses are kept in a ring buffer with one writer and one read position per worker. The writer never
+ * blocks or takes a lock, if the slowest worker is a full ring behind the pulse is dropped and counted. Each
+ * worker processes all pulses available when it wakes up as one block. When it has run out of pulses it spins
+ * for a short while and then parks until the writer publishes the next pulse and unparks it.
+ *
+ * @author Stefan
+ */
+public class PulseRing {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+    private static final int IDLE_SPINS = 100;
+    private static Logger logger = Logger.getLogger(PulseRing.class.getName());
+
+    /**
+     * Receives the pulses in a worker thread
+     */
+    public interface PulseConsumer {
+        /**
+         * @param length length of the pulse in micro seconds
+         * @param mark   true if it is a mark pulse, false for a space
+         */
+        void pulse(double length, boolean mark);
+    }
+
+    private final String name;
+    private final double[] lengths;
+    private final boolean[] marks;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();
+    private final List<Worker> workers = new ArrayList<>();
+    private long nextSequence;
+    private long cachedMinimumSequence;
+    private volatile long droppedCount;
+    private volatile boolean running;
+
+    public PulseRing(String name, int capacity, List<? extends PulseConsumer> consumers) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.name = name;
+        lengths = new double[capacity];
+        marks = new boolean[capacity];
+        mask = capacity - 1;
+        for (PulseConsumer consumer : consumers) {
+            workers.add(new Worker(consumer, workers.size()));
+        }
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        for (Worker worker : workers) {
+            worker.start();
+        }
+    }
+
+    public synchronized void stop() {
+        running = false;
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * Add a pulse. Must only be called from one thread at a time, normally the sampler thread.
+     *
+     * @return false if the ring was full and the pulse was dropped
+     */
+    public boolean publish(double length, boolean mark) {
+        long sequence = nextSequence;
+        if (sequence - cachedMinimumSequence > mask) {
+            cachedMinimumSequence = minimumWorkerSequence();
+            if (sequence - cachedMinimumSequence > mask) {
+                droppedCount++;
+                return false;
+            }
+        }
+        int index = (int) (sequence & mask);
+        lengths[index] = length;
+        marks[index] = mark;
+        nextSequence = sequence + 1;
+        // A full write, so a worker marking itself as parked either sees the pulse or is seen as parked
+        published.set(nextSequence);
+        for (int i = 0; i < workers.size(); i++) {
+            workers.get(i).wakeUp();
+        }
+        return true;
+    }
+
+    /**
+     * Wait until all workers have processed all published pulses, for example at the end of a recorded signal.
+     *
+     * @return true if the workers caught up within the timeout
+     */
+    public boolean awaitProcessed(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long target = published.get();
+        while (minimumWorkerSequence() < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    private long minimumWorkerSequence() {
+        long minimum = published.get();
+        for (Worker worker : workers) {
+            minimum = Math.min(minimum, worker.sequence.get());
+        }
+        return minimum;
+    }
+
+    private class Worker implements Runnable {
+        private final PulseConsumer consumer;
+        private final int number;
+        private final AtomicLong sequence = new AtomicLong();
+        private volatile boolean parked;
+        private volatile Thread thread;
+
+        Worker(PulseConsumer consumer, int number) {
+            this.consumer = consumer;
+            this.number = number;
+        }
+
+        void start() {
+            // Pulses published while stopped are skipped
+            sequence.set(published.get());
+            thread = new Thread(this, name + " worker " + number);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void wakeUp() {
+            if (parked) {
+                parked = false;
+                LockSupport.unpark(thread);
+            }
+        }
+
+        void stop() {
+            if (thread != null) {
+                LockSupport.unpark(thread);
+                try {
+                    thread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                thread = null;
+            }
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get();
+            int idleCount = 0;
+            while (running) {
+                long available = published.get();
+                if (next == available) {
+                    if (++idleCount < IDLE_SPINS) {
+                        Thread.yield();
+                    } else {
+                        parked = true;
+                        if (running && published.get() == next) {
+                            LockSupport.park(this);
+                        }
+                        parked = false;
+                    }
+                    continue;
+                }
+                idleCount = 0;
+                while (next < available) {
+                    int index = (int) (next & mask);
+                    try {
+                        consumer.pulse(lengths[index], marks[index]);
+                    } catch (RuntimeException e) {
+                        logger.log(Level.WARNING, "Failed processing pulse in " + name, e);
+                    }
+                    next++;
+                }
+                sequence.lazySet(next);
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.system.Event;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Suppresses repeated protocol messages from RF receivers. Remotes and sensors send each message 3-10 times,
+ * and without filtering every repeat is sent as a separate event to all items.
+ * <p/>
+ * A received message is a repeat if a message with the same type and field values (see
+ * {@link EncodedMessageCache#keyOf(Event)}) was received within the repeat window of its protocol. The window
+ * is counted from the last received copy, so a burst of repeats gives one event however long it is. Recent
+ * messages are kept in a small open addressed hash table, where expired entries are reused.
+ * <p/>
+ * The windows are configured with a string like "500,Oregon=2000", where the first value is the default window
+ * in milliseconds and the following are windows for specific protocols. A window of 0 lets all messages through.
+ *
+ * @author Stefan
+ */
+public class RepeatFilter {
+
+    public static final long DEFAULT_WINDOW_MS = 500;
+    private static final String MESSAGE_SUFFIX = "_Message";
+    private static final int TABLE_SIZE = 64;
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    private final String[] keys = new String[TABLE_SIZE];
+    private final long[] lastReceived = new long[TABLE_SIZE];
+    private final long[] windows = new long[TABLE_SIZE];
+    private final Map<String, Long> protocolWindows = new TreeMap<String, Long>();
+    private final Map<String, Long> suppressedPerProtocol = new TreeMap<String, Long>();
+    private long defaultWindowMs = DEFAULT_WINDOW_MS;
+    private long suppressedCount;
+
+    /**
+     * Check if a received message is a repeat of a recent one, and remember it.
+     *
+     * @param event a received protocol message
+     * @return true if the message is a repeat and should not be sent
+     */
+    public boolean isRepeat(Event event) {
+        return isRepeat(event, System.currentTimeMillis());
+    }
+
+    synchronized boolean isRepeat(Event event, long now) {
+        String key = EncodedMessageCache.keyOf(event);
+        if (key == null) {
+            return false;
+        }
+        String type = event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE);
+        String protocol = type.substring(0, type.length() - MESSAGE_SUFFIX.length());
+        long window = getWindowMs(protocol);
+        if (window <= 0) {
+            return false;
+        }
+        int freeSlot = -1;
+        int slot = key.hashCode() & TABLE_MASK;
+        for (int i = 0; i < TABLE_SIZE && keys[slot] != null; i++, slot = (slot + 1) & TABLE_MASK) {
+            boolean expired = now - lastReceived[slot] > windows[slot];
+            if (keys[slot].equals(key)) {
+                lastReceived[slot] = now;
+                windows[slot] = window;
+                if (!expired) {
+                    countSuppressed(protocol);
+                    return true;
+                }
+                return false;
+            }
+            if (expired && freeSlot < 0) {
+                freeSlot = slot;
+            }
+        }
+        if (freeSlot < 0 && keys[slot] == null) {
+            freeSlot = slot;
+        }
+        // If the table is full of live messages this one is simply not remembered
+        if (freeSlot >= 0) {
+            keys[freeSlot] = key;
+            lastReceived[freeSlot] = now;
+            windows[freeSlot] = window;
+        }
+        return false;
+    }
+
+    private void countSuppressed(String protocol) {
+        suppressedCount++;
+        Long count = suppressedPerProtocol.get(protocol);
+        suppressedPerProtocol.put(protocol, count == null ? 1L : count + 1);
+    }
+
+    public synchronized long getWindowMs(String protocol) {
+        Long window = protocolWindows.get(protocol);
+        return window != null ? window : defaultWindowMs;
+    }
+
+    public synchronized String getWindows() {
+        StringBuilder result = new StringBuilder(Long.toString(defaultWindowMs));
+        for (Map.Entry<String, Long> window : protocolWindows.entrySet()) {
+            result.append(',').append(window.getKey()).append('=').append(window.getValue());
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param windows windows in milliseconds, like "500,Oregon=2000"
+     * @throws NumberFormatException if a window is not a number
+     */
+    public void setWindows(String windows) {
+        long newDefault = DEFAULT_WINDOW_MS;
+        Map<String, Long> newProtocolWindows = new HashMap<String, Long>();
+        for (String window : windows.split(",")) {
+            String[] parts = window.split("=");
+            if (parts.length == 1 && !parts[0].trim().isEmpty()) {
+                newDefault = Long.parseLong(parts[0].trim());
+            } else if (parts.length == 2) {
+                newProtocolWindows.put(parts[0].trim(), Long.parseLong(parts[1].trim()));
+            }
+        }
+        synchronized (this) {
+            defaultWindowMs = newDefault;
+            protocolWindows.clear();
+            protocolWindows.putAll(newProtocolWindows);
+        }
+    }
+
+    /**
+     * @return total number of suppressed repeats
+     */
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public synchronized long getSuppressedCount(String protocol) {
+        Long count = suppressedPerProtocol.get(protocol);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return suppressed repeats per protocol, like "Nexa=12,UPM=3"
+     */
+    public synchronized String getSuppressedCounts() {
+        StringBuilder result = new StringBuilder();
+        for (Map.Entry<String, Long> count : suppressedPerProtocol.entrySet()) {
+            result.append(result.length() > 0 ? "," : "").append(count.getKey()).append('=').append(count.getValue());
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,281 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.logging.Logger;
+
+/**
+ * Assembles the byte stream from a serial port into frames. Received data is read in bulk into a ring buffer
+ * and each complete frame is reported to a {@link FrameListener} as soon as its last byte has arrived. Partial
+ * frames are kept in the buffer until the rest arrives, so the reader never has to wait for a frame to complete.
+ * <p/>
+ * Two framings are supported: frames terminated by a delimiter byte, like the text lines of Tellstick and
+ * JeeLink, and binary frames beginning with a start byte followed by a length byte, like the telegrams of the
+ * FHZ1000PC.
+ * <p/>
+ * Data can either be pushed from a serial port event with {@link #readAvailable(InputStream)} or
+ * {@link #receive(byte[], int, int)}, or pulled by a dedicated thread with {@link #readFrom(InputStream)}.
+ * The methods are not thread safe, all data must be passed from one thread at a time.
+ *
+ * @author Stefan
+ */
+public class SerialFramer {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final int LENGTH_PREFIX_HEADER_LENGTH = 2;
+    private static Logger logger = Logger.getLogger(SerialFramer.class.getName());
+
+    /**
+     * Receives the complete frames
+     */
+    public interface FrameListener {
+        /**
+         * Called for each complete frame. The data is only valid during the call, since the buffer is reused.
+         *
+         * @param data   buffer holding the frame
+         * @param offset start of the frame in the buffer
+         * @param length length of the frame
+         */
+        void frameReceived(byte[] data, int offset, int length);
+    }
+
+    private final FrameListener listener;
+    private final boolean lengthPrefixed;
+    private final byte marker;
+    private final byte[] buffer;
+    private final byte[] frame;
+    private final int mask;
+    private long head;
+    private long tail;
+    private long scanned;
+    private long discardedBytes;
+    private boolean overflowed;
+
+    private SerialFramer(FrameListener listener, boolean lengthPrefixed, byte marker, int capacity) {
+        if (capacity <= LENGTH_PREFIX_HEADER_LENGTH || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        this.listener = listener;
+        this.lengthPrefixed = lengthPrefixed;
+        this.marker = marker;
+        buffer = new byte[capacity];
+        frame = new byte[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Creates a framer for frames terminated by a delimiter. The delimiter is not included in the frame.
+     *
+     * @param delimiter byte ending each frame, for example '\n'
+     * @param capacity  buffer size in bytes, must be a power of two. Longer frames are discarded.
+     * @param listener  receiver of the frames
+     */
+    public static SerialFramer delimited(byte delimiter, int capacity, FrameListener listener) {
+        return new SerialFramer(listener, false, delimiter, capacity);
+    }
+
+    /**
+     * Creates a framer for text lines terminated by '\n'.
+     */
+    public static SerialFramer lines(FrameListener listener) {
+        return delimited((byte) '\n', DEFAULT_CAPACITY, listener);
+    }
+
+    /**
+     * Creates a framer for binary frames consisting of a start byte, a length byte and then the number of payload
+     * bytes given by the length byte. Only the payload is included in the frame, and any data before the start
+     * byte is discarded.
+     *
+     * @param startByte byte beginning each frame
+     * @param listener  receiver of the frame payloads
+     */
+    public static SerialFramer lengthPrefixed(byte startByte, FrameListener listener) {
+        // The length is one byte, so the longest possible frame always fits
+        return new SerialFramer(listener, true, startByte, 512);
+    }
+
+    /**
+     * Decodes a frame as an ASCII string, as a convenience for line based protocols.
+     */
+    public static String toString(byte[] data, int offset, int length) {
+        return new String(data, offset, length, ASCII);
+    }
+
+    /**
+     * Reads the data that is available without blocking and reports the frames it completes. Suitable for
+     * calling from a serial port's data available event.
+     *
+     * @param in stream to read from
+     * @return number of bytes read
+     * @throws IOException if the stream fails
+     */
+    public int readAvailable(InputStream in) throws IOException {
+        int total = 0;
+        int available;
+        while ((available = in.available()) > 0) {
+            int read = in.read(buffer, writePosition(), Math.min(available, contiguousSpace()));
+            if (read < 0) {
+                break;
+            }
+            total += read;
+            received(read);
+        }
+        return total;
+    }
+
+    /**
+     * Reads as much data as fits in the buffer, blocking until at least one byte is available, and reports the
+     * frames it completes. Suitable for a dedicated receive thread.
+     *
+     * @param in stream to read from
+     * @return number of bytes read or -1 at end of stream
+     * @throws IOException if the stream fails
+     */
+    public int readFrom(InputStream in) throws IOException {
+        int read = in.read(buffer, writePosition(), contiguousSpace());
+        if (read > 0) {
+            received(read);
+        }
+        return read;
+    }
+
+    /**
+     * Passes data that has already been read from the port and reports the frames it completes.
+     */
+    public void receive(byte[] data, int offset, int length) {
+        while (length > 0) {
+            int chunk = Math.min(length, contiguousSpace());
+            System.arraycopy(data, offset, buffer, writePosition(), chunk);
+            offset += chunk;
+            length -= chunk;
+            received(chunk);
+        }
+    }
+
+    /**
+     * Discard any partially received frame, for example after the port has been reopened.
+     */
+    public void clear() {
+        head = tail;
+        scanned = tail;
+        overflowed = false;
+    }
+
+    /**
+     * @return number of buffered bytes not yet part of a complete frame
+     */
+    public int getBufferedBytes() {
+        return (int) (tail - head);
+    }
+
+    /**
+     * @return number of bytes thrown away because they did not form a valid frame or did not fit in the buffer
+     */
+    public long getDiscardedBytes() {
+        return discardedBytes;
+    }
+
+    private int writePosition() {
+        return (int) (tail & mask);
+    }
+
+    /**
+     * Free space from the write position to the end of the buffer array, but at least one byte. When the buffer
+     * is full the oldest data is discarded, which never happens for frames that fit in the buffer.
+     */
+    private int contiguousSpace() {
+        if (tail - head == buffer.length) {
+            discard(buffer.length);
+            overflowed = true;
+            logger.fine("Discarded too long frame");
+        }
+        int free = buffer.length - (int) (tail - head);
+        return Math.min(free, buffer.length - writePosition());
+    }
+
+    private void received(int count) {
+        tail += count;
+        if (lengthPrefixed) {
+            extractLengthPrefixedFrames();
+        } else {
+            extractDelimitedFrames();
+        }
+    }
+
+    private void extractDelimitedFrames() {
+        while (scanned < tail) {
+            if (buffer[(int) (scanned & mask)] == marker) {
+                if (overflowed) {
+                    // Rest of a frame that did not fit, it cannot be used
+                    discardedBytes += scanned - head;
+                    overflowed = false;
+                } else {
+                    deliver(head, (int) (scanned - head));
+                }
+                scanned++;
+                head = scanned;
+            } else {
+                scanned++;
+            }
+        }
+    }
+
+    private void extractLengthPrefixedFrames() {
+        while (head < tail) {
+            if (buffer[(int) (head & mask)] != marker) {
+                discard(1);
+                continue;
+            }
+            if (tail - head < LENGTH_PREFIX_HEADER_LENGTH) {
+                return;
+            }
+            int length = buffer[(int) ((head + 1) & mask)] & 0xFF;
+            if (tail - head < LENGTH_PREFIX_HEADER_LENGTH + length) {
+                return;
+            }
+            deliver(head + LENGTH_PREFIX_HEADER_LENGTH, length);
+            head += LENGTH_PREFIX_HEADER_LENGTH + length;
+        }
+        scanned = head;
+    }
+
+    private void discard(int count) {
+        head += count;
+        scanned = Math.max(scanned, head);
+        discardedBytes += count;
+    }
+
+    private void deliver(long start, int length) {
+        int offset = (int) (start & mask);
+        if (offset + length <= buffer.length) {
+            listener.frameReceived(buffer, offset, length);
+        } else {
+            // The frame wraps around the end of the ring buffer, assemble it in the frame buffer
+            int firstPart = buffer.length - offset;
+            System.arraycopy(buffer, offset, frame, 0, firstPart);
+            System.arraycopy(buffer, 0, frame, firstPart, length - firstPart);
+            listener.frameReceived(frame, 0, length);
+        }
+    }
+}
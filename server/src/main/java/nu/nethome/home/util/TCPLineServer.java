@@ -0,0 +1,560 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A line based TCP server driven by a single selector thread. All sockets are non blocking, so a client which
+ * does not read its data can never stall the thread that sends to it. Every session has a bounded outbound
+ * buffer, and when an asynchronous line (typically a subscribed event) does not fit, the session is handled
+ * according to the configured {@link SlowConsumerPolicy}.
+ * <p/>
+ * Received lines are executed on a small worker pool. A client may pipeline several commands without waiting
+ * for the replies, the commands of one session are always executed and answered in the order they were received.
+ * Reading from a session is suspended while it has too many lines waiting for execution, or while its outbound
+ * buffer is full, so a client that pipelines commands without reading the replies cannot make the buffer grow.
+ * Lines are encoded as UTF-8.
+ *
+ * @author Stefan
+ */
+public class TCPLineServer implements Runnable {
+
+    /**
+     * What to do with a session whose outbound buffer is full
+     */
+    public enum SlowConsumerPolicy {
+        /** Drop the line that did not fit, keep the session */
+        DROP,
+        /** Disconnect the session */
+        DISCONNECT
+    }
+
+    /**
+     * Executes the lines received on one session
+     */
+    public interface LineHandler {
+        /**
+         * Execute a received line. Called on a worker thread, never concurrently for the same session.
+         *
+         * @param line received line without line terminator
+         * @return reply to send to the client, or null if the session should be closed
+         */
+        String executeLine(String line);
+
+        /**
+         * Called once when the session has been closed, for whatever reason
+         */
+        void sessionClosed();
+    }
+
+    /**
+     * Creates the {@link LineHandler} for a newly connected session
+     */
+    public interface SessionFactory {
+        LineHandler createHandler(Session session);
+    }
+
+    public static final String LINE_TERMINATOR = "\n\r";
+    public static final Charset CHARSET = StandardCharsets.UTF_8;
+    public static final int DEFAULT_MAX_OUTBOUND_BYTES = 64 * 1024;
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MAX_PENDING_LINES = 100;
+    private static final int READ_BUFFER_SIZE = 4096;
+
+    private static Logger logger = Logger.getLogger(TCPLineServer.class.getName());
+
+    private final int port;
+    private final String name;
+    private final SessionFactory sessionFactory;
+    private final int workerCount;
+    private volatile int maxOutboundBytes = DEFAULT_MAX_OUTBOUND_BYTES;
+    private volatile SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP;
+    private final Queue<Session> pendingChanges = new ConcurrentLinkedQueue<>();
+    private final List<Session> sessions = Collections.synchronizedList(new LinkedList<Session>());
+    private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+    private final AtomicLong droppedLineCount = new AtomicLong();
+    private final AtomicLong slowConsumerDisconnectCount = new AtomicLong();
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private ExecutorService workers;
+    private Thread selectorThread;
+    private volatile boolean isRunning = false;
+
+    /**
+     * @param port           TCP port to listen on
+     * @param name           name used for the threads of the server
+     * @param workerCount    number of threads executing received lines
+     * @param sessionFactory creates the handler of each new session
+     */
+    public TCPLineServer(int port, String name, int workerCount, SessionFactory sessionFactory) {
+        this.port = port;
+        this.name = name;
+        this.workerCount = workerCount;
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * Bind the listening socket and start the selector thread
+     *
+     * @throws IOException if the port could not be bound
+     */
+    public synchronized void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.socket().setReuseAddress(true);
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        workers = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "Worker-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        isRunning = true;
+        selectorThread = new Thread(this, name + "Selector");
+        selectorThread.start();
+    }
+
+    /**
+     * Close the listening socket and all open sessions
+     */
+    public synchronized void stop() {
+        if (!isRunning) {
+            return;
+        }
+        isRunning = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            // Continue closing down
+        }
+        workers.shutdown();
+    }
+
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    public void run() {
+        try {
+            while (isRunning) {
+                selector.select();
+                processPendingChanges();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                session.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                session.write();
+                            }
+                        } catch (IOException | CancelledKeyException e) {
+                            if (isRunning) {
+                                logger.fine("Failed socket operation in " + name + " " + e);
+                            }
+                            session.doClose();
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Selector failed in " + name, e);
+        } finally {
+            closeAll();
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        Session session = new Session(channel);
+        session.key = channel.register(selector, SelectionKey.OP_READ, session);
+        logger.info("Connection from " + session.getRemoteAddress());
+        sessions.add(session);
+        session.handler = sessionFactory.createHandler(session);
+    }
+
+    private void processPendingChanges() {
+        Session session;
+        while ((session = pendingChanges.poll()) != null) {
+            session.applyPendingChanges();
+        }
+    }
+
+    private void closeAll() {
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Not much to do about it...
+        }
+        for (Session session : new ArrayList<>(sessions)) {
+            session.doClose();
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Not much to do about it...
+        }
+    }
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return number of lines dropped because a session's outbound buffer was full
+     */
+    public long getDroppedLineCount() {
+        return droppedLineCount.get();
+    }
+
+    /**
+     * @return number of sessions disconnected because they did not read their data fast enough
+     */
+    public long getSlowConsumerDisconnectCount() {
+        return slowConsumerDisconnectCount.get();
+    }
+
+    public int getMaxOutboundBytes() {
+        return maxOutboundBytes;
+    }
+
+    public void setMaxOutboundBytes(int maxOutboundBytes) {
+        this.maxOutboundBytes = maxOutboundBytes;
+    }
+
+    public SlowConsumerPolicy getSlowConsumerPolicy() {
+        return slowConsumerPolicy;
+    }
+
+    public void setSlowConsumerPolicy(SlowConsumerPolicy slowConsumerPolicy) {
+        this.slowConsumerPolicy = slowConsumerPolicy;
+    }
+
+    /**
+     * Represents a session with a connected TCP-Client.
+     */
+    public class Session implements Runnable {
+        private final SocketChannel channel;
+        private final String remoteAddress;
+        private final Deque<ByteBuffer> outbound = new ArrayDeque<>();
+        private final Deque<String> pendingLines = new ArrayDeque<>();
+        private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
+        private SelectionKey key;
+        private LineHandler handler;
+        private int outboundBytes = 0;
+        private boolean isExecuting = false;
+        private boolean readSuspended = false;
+        private boolean lastWasCarriageReturn = false;
+        private volatile boolean closeRequested = false;
+        private volatile boolean closeWhenFlushed = false;
+        private volatile boolean isClosed = false;
+
+        Session(SocketChannel channel) {
+            this.channel = channel;
+            this.remoteAddress = channel.socket().getInetAddress().getHostAddress();
+        }
+
+        public String getRemoteAddress() {
+            return remoteAddress;
+        }
+
+        public boolean isOpen() {
+            return !isClosed && !closeRequested;
+        }
+
+        /**
+         * Queue an asynchronous line, for example an event, for sending. The line is subject to the outbound
+         * buffer limit of the session. Never blocks.
+         *
+         * @param line line to send, without line terminator
+         * @return true if the line was queued, false if it was dropped or the session is closed
+         */
+        public boolean sendLine(String line) {
+            if (!isOpen()) {
+                return false;
+            }
+            byte[] data = (line + LINE_TERMINATOR).getBytes(CHARSET);
+            synchronized (this) {
+                if (outboundBytes + data.length > maxOutboundBytes) {
+                    if (slowConsumerPolicy == SlowConsumerPolicy.DISCONNECT) {
+                        slowConsumerDisconnectCount.incrementAndGet();
+                        logger.warning("Disconnecting slow client " + remoteAddress + " from " + name);
+                        close();
+                    } else {
+                        droppedLineCount.incrementAndGet();
+                    }
+                    return false;
+                }
+                enqueue(data);
+            }
+            return true;
+        }
+
+        /**
+         * Queue text for sending, regardless of the outbound buffer limit. Used for replies and other output
+         * the client has asked for. Reading from the session is suspended while the buffer is over the limit.
+         *
+         * @param text text to send, including any line terminator
+         */
+        public void sendText(String text) {
+            if (!isOpen()) {
+                return;
+            }
+            byte[] data = text.getBytes(CHARSET);
+            synchronized (this) {
+                enqueue(data);
+                if (!readSuspended && outboundBytes > maxOutboundBytes) {
+                    requestChange();
+                }
+            }
+        }
+
+        /**
+         * @return true if no more lines should be read until the session has caught up
+         */
+        private boolean isReadBlocked() {
+            return pendingLines.size() >= MAX_PENDING_LINES || outboundBytes > maxOutboundBytes;
+        }
+
+        private void enqueue(byte[] data) {
+            boolean wasEmpty = outbound.isEmpty();
+            outbound.addLast(ByteBuffer.wrap(data));
+            outboundBytes += data.length;
+            if (wasEmpty) {
+                requestChange();
+            }
+        }
+
+        /**
+         * Close the session. Any data not yet sent is discarded.
+         */
+        public void close() {
+            closeRequested = true;
+            requestChange();
+        }
+
+        private void requestChange() {
+            pendingChanges.add(this);
+            selector.wakeup();
+        }
+
+        /**
+         * Called on the selector thread
+         */
+        private void applyPendingChanges() {
+            if (isClosed) {
+                return;
+            }
+            if (closeRequested) {
+                doClose();
+                return;
+            }
+            int ops = SelectionKey.OP_READ;
+            boolean isFlushed;
+            synchronized (this) {
+                readSuspended = isReadBlocked();
+                if (readSuspended) {
+                    ops = 0;
+                }
+                isFlushed = outbound.isEmpty();
+                if (!isFlushed) {
+                    ops |= SelectionKey.OP_WRITE;
+                }
+            }
+            if (isFlushed && closeWhenFlushed) {
+                doClose();
+            } else if (key.isValid()) {
+                key.interestOps(ops);
+            }
+        }
+
+        private void read() throws IOException {
+            readBuffer.clear();
+            int count = channel.read(readBuffer);
+            if (count < 0) {
+                doClose();
+                return;
+            }
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                byte b = readBuffer.get();
+                if (b == '\n' || b == '\r') {
+                    // Same line termination rules as BufferedReader.readLine
+                    if (!(b == '\n' && lastWasCarriageReturn)) {
+                        lineReceived(new String(lineBuffer.toByteArray(), CHARSET));
+                        lineBuffer.reset();
+                    }
+                    lastWasCarriageReturn = (b == '\r');
+                } else {
+                    lastWasCarriageReturn = false;
+                    if (lineBuffer.size() >= MAX_LINE_LENGTH) {
+                        logger.warning("Too long line from " + remoteAddress + " in " + name);
+                        doClose();
+                        return;
+                    }
+                    lineBuffer.write(b);
+                }
+            }
+        }
+
+        private void lineReceived(String line) {
+            boolean startExecution;
+            synchronized (this) {
+                if (closeWhenFlushed) {
+                    return;
+                }
+                pendingLines.addLast(line);
+                startExecution = !isExecuting;
+                isExecuting = true;
+                if (!readSuspended && isReadBlocked()) {
+                    readSuspended = true;
+                    key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+                }
+            }
+            if (startExecution) {
+                workers.execute(this);
+            }
+        }
+
+        /**
+         * Executes the pending lines of the session in order. Runs on a worker thread.
+         */
+        public void run() {
+            while (true) {
+                String line;
+                synchronized (this) {
+                    line = pendingLines.pollFirst();
+                    if (line == null || isClosed) {
+                        isExecuting = false;
+                        return;
+                    }
+                    if (readSuspended && pendingLines.size() < MAX_PENDING_LINES / 2) {
+                        requestChange();
+                    }
+                }
+                String result;
+                try {
+                    result = handler.executeLine(line);
+                } catch (Exception e) {
+                    logger.log(Level.WARNING, "Failed executing line in " + name, e);
+                    result = "error,1,Internal error";
+                }
+                if (result == null) {
+                    synchronized (this) {
+                        closeWhenFlushed = true;
+                        pendingLines.clear();
+                        isExecuting = false;
+                    }
+                    requestChange();
+                    return;
+                }
+                sendText(result + LINE_TERMINATOR);
+            }
+        }
+
+        private void write() throws IOException {
+            synchronized (this) {
+                while (!outbound.isEmpty()) {
+                    ByteBuffer buffer = outbound.peekFirst();
+                    int written = channel.write(buffer);
+                    outboundBytes -= written;
+                    if (buffer.hasRemaining()) {
+                        // Socket buffer full, wait for next OP_WRITE
+                        if (readSuspended && !closeWhenFlushed && !isReadBlocked()) {
+                            readSuspended = false;
+                            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                        }
+                        return;
+                    }
+                    outbound.removeFirst();
+                }
+                if (!closeWhenFlushed) {
+                    readSuspended = isReadBlocked();
+                    key.interestOps(readSuspended ? 0 : SelectionKey.OP_READ);
+                    return;
+                }
+            }
+            doClose();
+        }
+
+        /**
+         * Performs the actual close, on the selector thread
+         */
+        private void doClose() {
+            if (isClosed) {
+                return;
+            }
+            isClosed = true;
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Not much to do about it...
+            }
+            synchronized (this) {
+                outbound.clear();
+                outboundBytes = 0;
+                pendingLines.clear();
+            }
+            sessions.remove(this);
+            if (handler != null) {
+                handler.sessionClosed();
+            }
+            logger.info("Disconnected from " + remoteAddress);
+        }
+    }
+}
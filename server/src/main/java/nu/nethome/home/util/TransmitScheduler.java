@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.system.Event;
+
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Queues the messages of an RF transmitter and sends them one at the time on a transmit thread, so that bursts
+ * of commands (a lamp group switching 30 lamps while timers fire at sunset) do not overrun the radio channel.
+ * <ul>
+ * <li>Messages are sent in priority order: interactive commands before timer commands before refresh
+ * commands, and in the order they were submitted within the same priority.</li>
+ * <li>A new message to the same device supersedes a message to the device that is still waiting in the queue,
+ * since only the latest command matters.</li>
+ * <li>Transmissions are paced to the air time of the messages, optionally limited by a duty cycle.</li>
+ * <li>Messages that have waited longer than the maximum queue time are discarded.</li>
+ * </ul>
+ *
+ * @param <T> the message type of the transmitter
+ * @author Stefan
+ */
+public class TransmitScheduler<T> {
+
+    public static final String PRIORITY_ATTRIBUTE = "Priority";
+    public static final int DEFAULT_MAX_QUEUE_TIME_MS = 30000;
+    private static final String MESSAGE_SUFFIX = "_Message";
+    private static final Set<String> COMMAND_FIELDS = new HashSet<>(Arrays.asList("Command", "DimLevel", "Level"));
+    private static final ThreadLocal<Priority> currentPriority = new ThreadLocal<>();
+    private static Logger logger = Logger.getLogger(TransmitScheduler.class.getName());
+
+    /**
+     * Transmission priority, highest first
+     */
+    public enum Priority {
+        /** Commands from a user or a remote control */
+        INTERACTIVE("Interactive"),
+        /** Commands from timers and schedules */
+        TIMER("Timer"),
+        /** Repeated commands to make sure devices are in the right state */
+        REFRESH("Refresh");
+
+        private final String attributeValue;
+
+        Priority(String attributeValue) {
+            this.attributeValue = attributeValue;
+        }
+
+        public String getAttributeValue() {
+            return attributeValue;
+        }
+
+        public static Priority fromAttributeValue(String value) {
+            for (Priority priority : values()) {
+                if (priority.attributeValue.equalsIgnoreCase(value)) {
+                    return priority;
+                }
+            }
+            return INTERACTIVE;
+        }
+    }
+
+    /**
+     * Sends a message on the radio channel
+     */
+    public interface Transmitter<T> {
+        /**
+         * Send the message. Called on the transmit thread, one message at the time. The method may block until
+         * the transmission is complete.
+         */
+        void transmit(T message);
+    }
+
+    private static class Entry<T> implements Comparable<Entry<T>> {
+        final T message;
+        final String deviceKey;
+        final Priority priority;
+        final long airTimeUs;
+        final long sequence;
+        final long creationTime;
+        boolean superseded;
+
+        Entry(T message, String deviceKey, Priority priority, long airTimeUs, long sequence, long creationTime) {
+            this.message = message;
+            this.deviceKey = deviceKey;
+            this.priority = priority;
+            this.airTimeUs = airTimeUs;
+            this.sequence = sequence;
+            this.creationTime = creationTime;
+        }
+
+        @Override
+        public int compareTo(Entry<T> other) {
+            int result = priority.compareTo(other.priority);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private final String name;
+    private final Transmitter<T> transmitter;
+    private final PriorityQueue<Entry<T>> queue = new PriorityQueue<>();
+    private final Map<String, Entry<T>> pendingByDevice = new HashMap<>();
+    private int maxQueueTimeMs = DEFAULT_MAX_QUEUE_TIME_MS;
+    private int minimumGapMs = 0;
+    private int dutyCyclePercent = 100;
+    private long sequence;
+    private int queueDepth;
+    private long nextTransmitTime;
+    private long transmittedCount;
+    private long supersededCount;
+    private long expiredCount;
+    private Thread transmitThread;
+
+    /**
+     * @param name        name of the transmitter, used for the transmit thread
+     * @param transmitter sends the messages
+     */
+    public TransmitScheduler(String name, Transmitter<T> transmitter) {
+        this.name = name;
+        this.transmitter = transmitter;
+    }
+
+    /**
+     * Execute a task with the specified transmission priority. Events sent from the calling thread during the
+     * task are marked with the priority, see {@link #markPriority(Event)}.
+     */
+    public static void runWithPriority(Priority priority, Runnable task) {
+        Priority previous = currentPriority.get();
+        currentPriority.set(priority);
+        try {
+            task.run();
+        } finally {
+            currentPriority.set(previous);
+        }
+    }
+
+    /**
+     * Mark an event with the transmission priority of the calling thread, unless the event already has a priority
+     * or the thread has none.
+     */
+    public static void markPriority(Event event) {
+        Priority priority = currentPriority.get();
+        if (priority != null && !event.hasAttribute(PRIORITY_ATTRIBUTE)) {
+            event.setAttribute(PRIORITY_ATTRIBUTE, priority.getAttributeValue());
+        }
+    }
+
+    /**
+     * @return the transmission priority of a protocol message event, interactive if not specified
+     */
+    public static Priority priorityOf(Event event) {
+        return Priority.fromAttributeValue(event.getAttribute(PRIORITY_ATTRIBUTE));
+    }
+
+    /**
+     * Identify the device a protocol message event is addressed to: the protocol and all protocol fields except
+     * the ones carrying the command, for example "Nexa,Button=2,HouseCode=1".
+     *
+     * @return the device key or null if the event is not a protocol message
+     */
+    public static String deviceKeyOf(Event event) {
+        String type = event.getAttribute(Event.EVENT_TYPE_ATTRIBUTE);
+        if (!type.endsWith(MESSAGE_SUFFIX) || type.length() == MESSAGE_SUFFIX.length()) {
+            return null;
+        }
+        String protocol = type.substring(0, type.length() - MESSAGE_SUFFIX.length());
+        String prefix = protocol + ".";
+        SortedMap<String, String> address = new TreeMap<>();
+        for (String attributeName : event.getAttributeNames()) {
+            if (attributeName.startsWith(prefix)) {
+                String field = attributeName.substring(prefix.length());
+                if (!COMMAND_FIELDS.contains(field)) {
+                    address.put(field, event.getAttribute(attributeName));
+                }
+            }
+        }
+        StringBuilder result = new StringBuilder(protocol);
+        for (Map.Entry<String, String> field : address.entrySet()) {
+            result.append(',').append(field.getKey()).append('=').append(field.getValue());
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return the air time in microseconds of a pulse train repeated the specified number of times
+     */
+    public static long airTimeUs(int[] pulses, int repeat) {
+        long result = 0;
+        for (int pulse : pulses) {
+            result += pulse;
+        }
+        return result * Math.max(repeat, 1);
+    }
+
+    /**
+     * Queue a message for a protocol message event. Priority and device are taken from the event.
+     *
+     * @param message   message to transmit
+     * @param event     the event the message was encoded from
+     * @param airTimeUs time the message occupies the channel in microseconds
+     */
+    public void submit(T message, Event event, long airTimeUs) {
+        submit(message, deviceKeyOf(event), priorityOf(event), airTimeUs);
+    }
+
+    /**
+     * Queue a message
+     *
+     * @param message   message to transmit
+     * @param deviceKey identifies the addressed device, a pending message with the same key is superseded.
+     *                  Null if the message should never supersede another.
+     * @param priority  transmission priority
+     * @param airTimeUs time the message occupies the channel in microseconds
+     */
+    public synchronized void submit(T message, String deviceKey, Priority priority, long airTimeUs) {
+        long entrySequence = sequence++;
+        if (deviceKey != null) {
+            Entry<T> pending = pendingByDevice.get(deviceKey);
+            if (pending != null) {
+                // Keep the place in the queue of the superseded message so repeated commands do not starve
+                pending.superseded = true;
+                entrySequence = pending.sequence;
+                priority = pending.priority.compareTo(priority) < 0 ? pending.priority : priority;
+                queueDepth--;
+                supersededCount++;
+            }
+        }
+        Entry<T> entry = new Entry<>(message, deviceKey, priority, airTimeUs, entrySequence, System.currentTimeMillis());
+        queue.add(entry);
+        if (deviceKey != null) {
+            pendingByDevice.put(deviceKey, entry);
+        }
+        queueDepth++;
+        notifyAll();
+    }
+
+    public synchronized void start() {
+        if (transmitThread == null) {
+            transmitThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    transmitLoop();
+                }
+            }, name + " transmitter");
+            transmitThread.setDaemon(true);
+            transmitThread.start();
+        }
+    }
+
+    /**
+     * Stop the transmit thread and discard all queued messages
+     */
+    public void stop() {
+        Thread thread;
+        synchronized (this) {
+            thread = transmitThread;
+            transmitThread = null;
+            clear();
+            notifyAll();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Discard all queued messages
+     */
+    public synchronized void clear() {
+        queue.clear();
+        pendingByDevice.clear();
+        queueDepth = 0;
+    }
+
+    private void transmitLoop() {
+        Thread self = Thread.currentThread();
+        while (true) {
+            Entry<T> entry;
+            synchronized (this) {
+                entry = waitForNextEntry(self);
+                if (entry == null) {
+                    return;
+                }
+            }
+            long start = System.currentTimeMillis();
+            try {
+                transmitter.transmit(entry.message);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Failed to transmit on " + name, e);
+            }
+            long end = System.currentTimeMillis();
+            long channelTimeMs = entry.airTimeUs * 100 / dutyCyclePercent / 1000;
+            synchronized (this) {
+                transmittedCount++;
+                nextTransmitTime = Math.max(end, start + channelTimeMs) + minimumGapMs;
+            }
+        }
+    }
+
+    /**
+     * Wait until there is a message to send and the channel is free, and take the message from the queue.
+     *
+     * @return the message or null if the scheduler has been stopped
+     */
+    private Entry<T> waitForNextEntry(Thread self) {
+        try {
+            while (transmitThread == self) {
+                Entry<T> next = peekNextEntry();
+                long now = System.currentTimeMillis();
+                if (next == null) {
+                    wait();
+                } else if (now < nextTransmitTime) {
+                    wait(nextTransmitTime - now);
+                } else {
+                    queue.poll();
+                    queueDepth--;
+                    if (next.deviceKey != null) {
+                        pendingByDevice.remove(next.deviceKey);
+                    }
+                    return next;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+        return null;
+    }
+
+    /**
+     * @return the first message in the queue that is neither superseded nor expired
+     */
+    private Entry<T> peekNextEntry() {
+        long oldestAllowed = System.currentTimeMillis() - maxQueueTimeMs;
+        Entry<T> next = queue.peek();
+        while (next != null && (next.superseded || next.creationTime < oldestAllowed)) {
+            queue.poll();
+            if (!next.superseded) {
+                expiredCount++;
+                queueDepth--;
+                pendingByDevice.remove(next.deviceKey);
+            }
+            next = queue.peek();
+        }
+        return next;
+    }
+
+    public synchronized int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public synchronized long getTransmittedCount() {
+        return transmittedCount;
+    }
+
+    public synchronized long getSupersededCount() {
+        return supersededCount;
+    }
+
+    public synchronized long getExpiredCount() {
+        return expiredCount;
+    }
+
+    public synchronized int getMaxQueueTimeMs() {
+        return maxQueueTimeMs;
+    }
+
+    /**
+     * @param maxQueueTimeMs messages waiting longer than this are discarded
+     */
+    public synchronized void setMaxQueueTimeMs(int maxQueueTimeMs) {
+        this.maxQueueTimeMs = maxQueueTimeMs;
+    }
+
+    public synchronized int getMinimumGapMs() {
+        return minimumGapMs;
+    }
+
+    /**
+     * @param minimumGapMs minimum silence between two transmissions, in addition to the air time
+     */
+    public synchronized void setMinimumGapMs(int minimumGapMs) {
+        this.minimumGapMs = minimumGapMs;
+    }
+
+    public synchronized int getDutyCyclePercent() {
+        return dutyCyclePercent;
+    }
+
+    /**
+     * @param dutyCyclePercent max share of the time the transmitter may occupy the channel, 1 - 100
+     */
+    public synchronized void setDutyCyclePercent(int dutyCyclePercent) {
+        this.dutyCyclePercent = Math.min(Math.max(dutyCyclePercent, 1), 100);
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.HomeService;
+import nu.nethome.home.system.SharedServices;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.*;
+
+public class CommandLineExecutorTest {
+
+    private MockHomeItem item;
+    private HomeService server;
+    private CommandLineExecutor executor;
+
+    @Before
+    public void setUp() throws Exception {
+        item = new MockHomeItem();
+        server = mock(HomeService.class);
+        when(server.openInstance("Foo")).thenReturn(new LocalHomeItemProxy(item, server));
+        executor = new CommandLineExecutor(server, false);
+    }
+
+    @Test
+    public void getsAttributeValue() throws Exception {
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Foo"));
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Foo"));
+    }
+
+    @Test
+    public void getsUnknownAttributeAsEmpty() throws Exception {
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo,Unknown"), is("ok,AttValueFoo,Foo,Unknown,"));
+    }
+
+    @Test
+    public void setsAttributeValue() throws Exception {
+        assertThat(executor.executeCommandLine("set,Foo,AttValueFoo,Fie"), is("ok"));
+        assertThat(item.getAttValueFoo(), is("Fie"));
+        assertThat(executor.executeCommandLine("set,Foo,AttValueFoo,Fum"), is("ok"));
+        assertThat(item.getAttValueFoo(), is("Fum"));
+    }
+
+    @Test
+    public void reportsInvalidAttributeInSet() throws Exception {
+        assertThat(executor.executeCommandLine("set,Foo,Unknown,Fie"), is("error,8,Invalid attribute: Unknown"));
+    }
+
+    @Test
+    public void callsAction() throws Exception {
+        assertThat(executor.executeCommandLine("call,Foo,ReturnFoo"), is("ok,Foo"));
+        assertThat(item.getCalledMethods().contains("returnFoo"), is(true));
+    }
+
+    @Test
+    public void reportsMissingInstance() throws Exception {
+        assertThat(executor.executeCommandLine("get,Fie,AttValueFoo"),
+                is("error,3,Could not find instance (Fie) specified"));
+    }
+
+    @Test
+    public void opensInstanceForEachExecutionWithoutDirectoryVersion() throws Exception {
+        executor.executeCommandLine("get,Foo,AttValueFoo");
+        executor.executeCommandLine("get,Foo,AttValueFoo");
+
+        verify(server, times(2)).openInstance("Foo");
+    }
+
+    @Test
+    public void opensInstanceOnceWhileDirectoryIsUnchanged() throws Exception {
+        useServerWithDirectoryVersion();
+
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Foo"));
+        item.setAttValueFoo("Fie");
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Fie"));
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Fie"));
+
+        verify(server, times(1)).openInstance("Foo");
+    }
+
+    @Test
+    public void reopensInstanceWhenInstanceIsRenamed() throws Exception {
+        useServerWithDirectoryVersion();
+        executor.executeCommandLine("get,Foo,AttValueFoo");
+        MockHomeItem renamedItem = new MockHomeItem();
+        renamedItem.setAttValueFoo("Renamed");
+        when(server.openInstance("Foo")).thenReturn(new LocalHomeItemProxy(renamedItem, server));
+        doReturn(2L).when((SharedServices) server).getDirectoryVersion();
+
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"), is("ok,AttValueFoo,Renamed"));
+        verify(server, times(2)).openInstance("Foo");
+    }
+
+    @Test
+    public void reportsMissingInstanceWhenInstanceIsRemoved() throws Exception {
+        useServerWithDirectoryVersion();
+        executor.executeCommandLine("get,Foo,AttValueFoo");
+        when(server.openInstance("Foo")).thenReturn(null);
+        doReturn(2L).when((SharedServices) server).getDirectoryVersion();
+
+        assertThat(executor.executeCommandLine("get,Foo,AttValueFoo"),
+                is("error,3,Could not find instance (Foo) specified"));
+    }
+
+    private void useServerWithDirectoryVersion() throws Exception {
+        server = mock(HomeService.class, withSettings().extraInterfaces(SharedServices.class));
+        doReturn(1L).when((SharedServices) server).getDirectoryVersion();
+        when(server.openInstance("Foo")).thenReturn(new LocalHomeItemProxy(item, server));
+        executor = new CommandLineExecutor(server, false);
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
+
+public class EventLogTest {
+
+    private static final long START = 1400000000000L;
+
+    @Test
+    public void readsWrittenEventsWithTimeAndHandledFlag() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventLogWriter writer = new EventLogWriter(bytes, START);
+        writer.write(nexaEvent(1), true, START + 10);
+        writer.write(nexaEvent(2), false, START + 3000000);
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(new ByteArrayInputStream(bytes.toByteArray()));
+        assertThat(reader.getStartTime(), is(START));
+        EventLogReader.Record first = reader.next();
+        EventLogReader.Record second = reader.next();
+
+        assertThat(first.getTime(), is(START + 10));
+        assertThat(first.isHandled(), is(true));
+        assertThat(first.getEvent().toString(), is(nexaEvent(1).toString()));
+        assertThat(second.getTime(), is(START + 3000000));
+        assertThat(second.isHandled(), is(false));
+        assertThat(second.getEvent().getAttribute("Nexa.Button"), is("2"));
+        assertThat(reader.next(), is(nullValue()));
+        assertThat(writer.getEventCount(), is(2L));
+    }
+
+    @Test
+    public void repeatedStringsAreWrittenOnce() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventLogWriter writer = new EventLogWriter(bytes, START);
+        writer.write(nexaEvent(1), true, START);
+        writer.flush();
+        int firstSize = bytes.size();
+        writer.write(nexaEvent(1), true, START + 100);
+        writer.flush();
+
+        // Delta time, flags, attribute count and one byte per string reference
+        assertThat(bytes.size() - firstSize, is(3 + 2 * 5));
+    }
+
+    @Test
+    public void eventsBeforePreviousTimeGetPreviousTime() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventLogWriter writer = new EventLogWriter(bytes, START);
+        writer.write(nexaEvent(1), true, START + 100);
+        writer.write(nexaEvent(1), true, START + 50);
+        writer.close();
+
+        EventLogReader reader = new EventLogReader(new ByteArrayInputStream(bytes.toByteArray()));
+        reader.next();
+        assertThat(reader.next().getTime(), is(START + 100));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws Exception {
+        new EventLogReader(new ByteArrayInputStream("<?xml version = \"1.0\"?>".getBytes("UTF-8")));
+    }
+
+    @Test(expected = IOException.class)
+    public void reportsTruncatedLog() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        EventLogWriter writer = new EventLogWriter(bytes, START);
+        writer.write(nexaEvent(1), true, START);
+        writer.close();
+        byte[] log = bytes.toByteArray();
+
+        new EventLogReader(new ByteArrayInputStream(Arrays.copyOf(log, log.length - 3))).next();
+    }
+
+    @Test
+    public void percentilesAreWithinBucketResolution() throws Exception {
+        for (long time = 1; time < 10000000000L; time = time * 3 + 1) {
+            long limit = EventDistributionStatistics.bucketUpperLimit(EventDistributionStatistics.bucketIndex(time));
+            assertThat(time <= limit, is(true));
+            assertThat((double) (limit - time), lessThan(time * 0.125 + 1));
+        }
+    }
+
+    private static Event nexaEvent(int button) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Nexa.HouseCode", 1);
+        event.setAttribute("Nexa.Button", button);
+        event.setAttribute("Nexa.Command", 1);
+        return event;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.item.HomeItemAdapter;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.HomeService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EventReplayTest {
+
+    private static final long START = 1400000000000L;
+    private static final String ITEMS = "<?xml version = \"1.0\" encoding=\"UTF-8\"?>\n<HomeItems>\n"
+            + "\t<HomeItem Class=\"ReplayLamp\" >\n"
+            + "\t\t<Attribute Name=\"ID\">10</Attribute>\n"
+            + "\t\t<Attribute Name=\"Name\">Lamp</Attribute>\n"
+            + "\t</HomeItem>\n"
+            + "\t<HomeItem Class=\"ReplayPort\" >\n"
+            + "\t\t<Attribute Name=\"ID\">11</Attribute>\n"
+            + "\t\t<Attribute Name=\"Name\">Port</Attribute>\n"
+            + "\t</HomeItem>\n"
+            + "</HomeItems>\n";
+
+    private HomeServer server;
+    private EventReplay replay;
+    private File itemFile;
+    private ReplayLamp lamp;
+
+    public static class ReplayLamp extends HomeItemAdapter {
+        private int receivedEvents;
+
+        @Override
+        public String getModel() {
+            return "<?xml version = \"1.0\"?> \n<HomeItem Class=\"ReplayLamp\" Category=\"Lamps\" ></HomeItem> ";
+        }
+
+        @Override
+        public boolean receiveEvent(Event event) {
+            if (event.isType("Nexa_Message")) {
+                receivedEvents++;
+                return true;
+            }
+            return false;
+        }
+    }
+
+    public static class ReplayPort extends HomeItemAdapter {
+        @Override
+        public String getModel() {
+            return "<?xml version = \"1.0\"?> \n<HomeItem Class=\"ReplayPort\" Category=\"Hardware\" ></HomeItem> ";
+        }
+
+        @Override
+        public void activate(HomeService server) {
+            throw new IllegalStateException("Hardware should not be activated during replay");
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        server = new HomeServer();
+        replay = new EventReplay(server, EventReplay.DEFAULT_STUBBED_CATEGORIES);
+        itemFile = File.createTempFile("replay", ".xml");
+        try (FileWriter writer = new FileWriter(itemFile)) {
+            writer.write(ITEMS);
+        }
+        lamp = new ReplayLamp();
+        HomeItemFactory factory = mock(HomeItemFactory.class);
+        when(factory.createInstance("ReplayLamp")).thenReturn(lamp);
+        when(factory.createInstance("ReplayPort")).thenReturn(new ReplayPort());
+        assertThat(replay.loadItems(itemFile.getPath(), factory), is(2));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        replay.stop();
+        itemFile.delete();
+    }
+
+    @Test
+    public void replacesHardwareItemsWithStubs() throws Exception {
+        assertThat(server.openInstance("Port").getAttributeValue("StubbedClass"), is("ReplayPort"));
+        assertThat(server.openInstance("Port").getAttributeValue("ID"), is("11"));
+        assertThat(server.openInstance("Lamp").getModel().getCategory(), is("Lamps"));
+    }
+
+    @Test
+    public void replaysAllEventsAndReportsResult() throws Exception {
+        ByteArrayOutputStream log = new ByteArrayOutputStream();
+        EventLogWriter writer = new EventLogWriter(log, START);
+        for (int i = 0; i < 10; i++) {
+            Event event = new InternalEvent("Nexa_Message");
+            event.setAttribute("Nexa.Button", i);
+            writer.write(event, true, START + i * 100);
+        }
+        writer.close();
+
+        long start = System.currentTimeMillis();
+        EventReplay.Result result = replay.replay(new EventLogReader(new ByteArrayInputStream(log.toByteArray())), 10);
+
+        // 900 ms of recorded events replayed ten times faster
+        assertThat(System.currentTimeMillis() - start >= 90, is(true));
+        assertThat(lamp.receivedEvents, is(10));
+        assertThat(result.getEventCount(), is(10L));
+        assertThat(result.getDroppedEventCount(), is(0L));
+        assertThat(result.getThroughput() > 0, is(true));
+        assertThat(result.getMedianTime() <= result.get99PercentileTime(), is(true));
+        assertThat(server.openInstance("Port").getAttributeValue("ReceivedEvents"), is("11"));
+    }
+}
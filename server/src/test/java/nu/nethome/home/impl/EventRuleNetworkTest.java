@@ -0,0 +1,154 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.EventCondition;
+import nu.nethome.home.system.EventRules;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class EventRuleNetworkTest {
+
+    private EventRuleNetwork network;
+    private EventRules.Action action1;
+    private EventRules.Action action2;
+
+    @Before
+    public void setUp() throws Exception {
+        network = new EventRuleNetwork();
+        action1 = mock(EventRules.Action.class);
+        action2 = mock(EventRules.Action.class);
+    }
+
+    @Test
+    public void performsActionOfMatchingRule() throws Exception {
+        network.addRule(nexaButton(1, 2), action1);
+        network.addRule(nexaButton(1, 3), action2);
+        Event event = nexaEvent(1, 2);
+
+        assertThat(network.distribute(event), is(true));
+
+        verify(action1).perform(event);
+        verify(action2, never()).perform(any(Event.class));
+    }
+
+    @Test
+    public void doesNotMatchOtherEventTypeOrMissingAttribute() throws Exception {
+        network.addRule(nexaButton(1, 2), action1);
+        Event otherType = new InternalEvent("NexaL_Message");
+        otherType.setAttribute("Direction", "In");
+        otherType.setAttribute("Nexa.HouseCode", 1);
+        otherType.setAttribute("Nexa.Button", 2);
+        Event noDirection = new InternalEvent("Nexa_Message");
+        noDirection.setAttribute("Nexa.HouseCode", 1);
+        noDirection.setAttribute("Nexa.Button", 2);
+
+        assertThat(network.distribute(otherType), is(false));
+        assertThat(network.distribute(noDirection), is(false));
+        verify(action1, never()).perform(any(Event.class));
+    }
+
+    @Test
+    public void matchesEmptyValueForMissingAttribute() throws Exception {
+        network.addRule(new EventCondition("ZWave_Message").with("ZWave.Endpoint", ""), action1);
+
+        assertThat(network.distribute(new InternalEvent("ZWave_Message")), is(true));
+    }
+
+    @Test
+    public void conditionWithOnlyTypeMatchesAllEventsOfType() throws Exception {
+        network.addRule(new EventCondition("Nexa_Message"), action1);
+        network.addRule(nexaButton(1, 2), action2);
+        Event event = nexaEvent(1, 2);
+
+        network.distribute(event);
+
+        verify(action1).perform(event);
+        verify(action2).perform(event);
+    }
+
+    @Test
+    public void sharesNodesForCommonTests() throws Exception {
+        network.addRule(nexaButton(1, 1), action1);
+        assertThat(network.getNodeCount(), is(3));
+
+        network.addRule(nexaButton(1, 2), action1);
+        network.addRule(nexaButton(2, 1), action1);
+
+        // Direction, Button 1, Button 2, HouseCode 1 under both buttons and HouseCode 2 under Button 1
+        assertThat(network.getNodeCount(), is(6));
+        assertThat(network.getRuleCount(), is(3));
+    }
+
+    @Test
+    public void removedRuleIsNotMatchedAndNodesAreReleased() throws Exception {
+        EventRules.Rule rule1 = network.addRule(nexaButton(1, 2), action1);
+        network.addRule(nexaButton(1, 3), action2);
+
+        rule1.remove();
+        rule1.remove();
+
+        assertThat(network.distribute(nexaEvent(1, 2)), is(false));
+        assertThat(network.getRuleCount(), is(1));
+        assertThat(network.getNodeCount(), is(3));
+        verify(action1, never()).perform(any(Event.class));
+    }
+
+    @Test
+    public void failingActionDoesNotStopOtherActions() throws Exception {
+        doThrow(new IllegalStateException("Fail")).when(action1).perform(any(Event.class));
+        network.addRule(nexaButton(1, 2), action1);
+        network.addRule(nexaButton(1, 2), action2);
+        Event event = nexaEvent(1, 2);
+
+        network.distribute(event);
+
+        verify(action2).perform(event);
+    }
+
+    @Test
+    public void conditionMatchesLikeNetwork() throws Exception {
+        assertThat(nexaButton(1, 2).matches(nexaEvent(1, 2)), is(true));
+        assertThat(nexaButton(1, 2).matches(nexaEvent(2, 2)), is(false));
+        assertThat(nexaButton(1, 2), is(nexaButton(1, 2)));
+    }
+
+    private static EventCondition nexaButton(int houseCode, int button) {
+        return new EventCondition("Nexa_Message")
+                .with("Direction", "In")
+                .with("Nexa.HouseCode", houseCode)
+                .with("Nexa.Button", button);
+    }
+
+    private static Event nexaEvent(int houseCode, int button) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Nexa.HouseCode", houseCode);
+        event.setAttribute("Nexa.Button", button);
+        event.setAttribute("Nexa.Command", 1);
+        return event;
+    }
+}
@@ -0,0 +1,75 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class InternalEventTest {
+
+    private static final byte[] MESSAGE = {0x00, 0x04, 0x00, 0x05, 0x03, 0x25, 0x03, (byte) 0xFF};
+
+    private InternalEvent event;
+
+    @Before
+    public void setUp() throws Exception {
+        event = new InternalEvent("ZWave_Message", "00040005032503FF");
+    }
+
+    @Test
+    public void hasNoPayloadByDefault() throws Exception {
+        assertThat(event.getPayload() == null, is(true));
+        assertThat(event.getPayloadBuffer() == null, is(true));
+    }
+
+    @Test
+    public void payloadIsPassedWithoutCopying() throws Exception {
+        event.setPayload(MESSAGE);
+        assertThat(event.getPayload() == MESSAGE, is(true));
+    }
+
+    @Test
+    public void payloadBufferIsViewOfPayload() throws Exception {
+        event.setPayload(MESSAGE);
+        ByteBuffer buffer = event.getPayloadBuffer();
+        assertThat(buffer.remaining(), is(MESSAGE.length));
+        assertThat(buffer.get(7), is((byte) 0xFF));
+    }
+
+    @Test(expected = ReadOnlyBufferException.class)
+    public void payloadBufferIsReadOnly() throws Exception {
+        event.setPayload(MESSAGE);
+        event.getPayloadBuffer().put(0, (byte) 1);
+    }
+
+    @Test
+    public void payloadIsNotAnAttribute() throws Exception {
+        event.setPayload(MESSAGE);
+        assertThat(Arrays.asList(event.getAttributeNames()).contains("Payload"), is(false));
+        assertThat(event.getAttributeNames().length, is(2));
+    }
+}
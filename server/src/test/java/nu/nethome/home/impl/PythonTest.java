@@ -0,0 +1,211 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Mockito.mock;
+
+public class PythonTest {
+
+    public static final AtomicInteger counter = new AtomicInteger();
+    public static CountDownLatch latch;
+    public static CountDownLatch release;
+    private Python python;
+    private File script;
+
+    @Before
+    public void setUp() throws Exception {
+        counter.set(0);
+        script = File.createTempFile("python", ".py");
+        writeScript("from nu.nethome.home.impl import PythonTest\n" +
+                "def increment(n):\n" +
+                "    PythonTest.counter.addAndGet(n)\n");
+        python = new Python();
+        python.setScriptSourceFileName(script.getAbsolutePath());
+        python.run(mock(HomeServer.class));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        python.stop();
+        script.delete();
+    }
+
+    @Test
+    public void executesFunctionInScript() throws Exception {
+        assertThat(python.executePython("increment(2)"), is(true));
+
+        assertThat(counter.get(), is(2));
+    }
+
+    @Test
+    public void compilesEachSnippetOnce() throws Exception {
+        python.executePython("increment(1)");
+        python.executePython("increment(1)");
+        python.executePython("increment(2)");
+
+        assertThat(counter.get(), is(4));
+        assertThat(python.getCachedCodeCount(), is(2));
+    }
+
+    @Test
+    public void reportsBadCode() throws Exception {
+        assertThat(python.executePython("increment(1"), is(false));
+        assertThat(python.executePython("noSuchFunction()"), is(false));
+    }
+
+    @Test
+    public void reloadsChangedScript() throws Exception {
+        python.executePython("increment(1)");
+
+        writeScript("from nu.nethome.home.impl import PythonTest\n" +
+                "def increment(n):\n" +
+                "    PythonTest.counter.addAndGet(n * 10)\n");
+        // Allow the file watch (or the modification time) to notice the change
+        for (int i = 0; i < 50 && counter.get() < 11; i++) {
+            Thread.sleep(100);
+            counter.set(1);
+            python.executePython("increment(1)");
+        }
+
+        assertThat(counter.get(), is(11));
+    }
+
+    @Test
+    public void recordsStatisticsPerFunction() throws Exception {
+        python.executePython("increment(1)");
+        python.executePython("increment(2)");
+        python.executePython("noSuchFunction()");
+
+        List<Python.ExecutionStatistics> statistics = python.getStatistics();
+        assertThat(statistics.size(), is(2));
+        Python.ExecutionStatistics increment = find(statistics, "increment");
+        assertThat(increment.getCount(), is(2L));
+        assertThat(increment.getFailureCount(), is(0L));
+        assertThat(find(statistics, "noSuchFunction").getFailureCount(), is(1L));
+
+        python.resetStatistics();
+        assertThat(python.getStatistics().size(), is(0));
+    }
+
+    @Test
+    public void extractsFunctionName() throws Exception {
+        assertThat(Python.getFunctionName("on_warning()"), is("on_warning"));
+        assertThat(Python.getFunctionName(" lamps.turn_on('Hall', 1)"), is("lamps.turn_on"));
+        assertThat(Python.getFunctionName("x = 1"), is("x = 1"));
+    }
+
+    @Test
+    public void executesConcurrentlyWithSeveralInterpreters() throws Exception {
+        python.setInterpreterCount(2);
+        latch = new CountDownLatch(2);
+        final String code = "from nu.nethome.home.impl import PythonTest\n" +
+                "from java.util.concurrent import TimeUnit\n" +
+                "PythonTest.latch.countDown()\n" +
+                "if PythonTest.latch.await(5, TimeUnit.SECONDS):\n" +
+                "    PythonTest.counter.incrementAndGet()\n";
+        Thread other = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    python.executePython(code);
+                } catch (IOException e) {
+                    // Counter will not be incremented
+                }
+            }
+        };
+        other.start();
+
+        python.executePython(code);
+        other.join();
+
+        assertThat(counter.get(), is(2));
+    }
+
+    @Test
+    public void stopReleasesCallerWaitingForInterpreter() throws Exception {
+        latch = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        Thread busy = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    python.executePython("from nu.nethome.home.impl import PythonTest\n" +
+                            "from java.util.concurrent import TimeUnit\n" +
+                            "PythonTest.latch.countDown()\n" +
+                            "PythonTest.release.await(5, TimeUnit.SECONDS)\n");
+                } catch (IOException e) {
+                    // Test fails on the latch
+                }
+            }
+        };
+        busy.start();
+        assertThat(latch.await(5, TimeUnit.SECONDS), is(true));
+        final CountDownLatch waiterDone = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    python.executePython("increment(1)");
+                } catch (IOException e) {
+                    // Test checks the counter
+                }
+                waiterDone.countDown();
+            }
+        };
+        waiter.start();
+        Thread.sleep(200);
+
+        python.stop();
+
+        assertThat(waiterDone.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(counter.get(), is(0));
+        release.countDown();
+        busy.join();
+    }
+
+    private static Python.ExecutionStatistics find(List<Python.ExecutionStatistics> statistics, String function) {
+        for (Python.ExecutionStatistics functionStatistics : statistics) {
+            if (functionStatistics.getFunction().equals(function)) {
+                return functionStatistics;
+            }
+        }
+        return null;
+    }
+
+    private void writeScript(String content) throws IOException {
+        try (FileWriter writer = new FileWriter(script)) {
+            writer.write(content);
+        }
+    }
+}
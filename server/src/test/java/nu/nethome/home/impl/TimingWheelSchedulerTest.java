@@ -0,0 +1,182 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.impl;
+
+import nu.nethome.home.system.TaskScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class TimingWheelSchedulerTest {
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private TimingWheelScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new TimingWheelScheduler("Test", 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    @Test
+    public void executesTaskAfterDelay() throws Exception {
+        final CountDownLatch executed = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                executed.countDown();
+            }
+        }, 50);
+
+        assertThat(executed.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(System.currentTimeMillis() - start >= 50, is(true));
+        assertThat(scheduler.getPendingTaskCount(), is(0));
+    }
+
+    @Test
+    public void neverExecutesTasksEarly() throws Exception {
+        final int taskCount = 200;
+        final CountDownLatch executed = new CountDownLatch(taskCount);
+        final AtomicInteger earlyCount = new AtomicInteger();
+        Random random = new Random(17);
+        for (int i = 0; i < taskCount; i++) {
+            final long time = System.currentTimeMillis() + random.nextInt(500);
+            scheduler.scheduleAt(new Runnable() {
+                @Override
+                public void run() {
+                    if (System.currentTimeMillis() < time) {
+                        earlyCount.incrementAndGet();
+                    }
+                    executed.countDown();
+                }
+            }, time);
+        }
+
+        assertThat(executed.await(3, TimeUnit.SECONDS), is(true));
+        assertThat(earlyCount.get(), is(0));
+        assertThat(sum(scheduler.getLatenessHistogram()), is((long) taskCount));
+    }
+
+    @Test
+    public void cancelledTaskIsNotExecuted() throws Exception {
+        final AtomicInteger executions = new AtomicInteger();
+        TaskScheduler.ScheduledTask task = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                executions.incrementAndGet();
+            }
+        }, 50);
+        assertThat(scheduler.getPendingTaskCount(), is(1));
+
+        assertThat(task.cancel(), is(true));
+        Thread.sleep(100);
+
+        assertThat(task.isCancelled(), is(true));
+        assertThat(task.cancel(), is(false));
+        assertThat(executions.get(), is(0));
+        assertThat(scheduler.getPendingTaskCount(), is(0));
+    }
+
+    @Test
+    public void keepsTasksFarInTheFuture() throws Exception {
+        TaskScheduler.ScheduledTask inAnHour = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, HOUR_MS);
+        TaskScheduler.ScheduledTask inAWeek = scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, HOUR_MS * 24 * 7);
+
+        assertThat(scheduler.getPendingTaskCount(), is(2));
+        assertThat(inAnHour.cancel(), is(true));
+        assertThat(inAWeek.cancel(), is(true));
+        assertThat(scheduler.getPendingTaskCount(), is(0));
+    }
+
+    @Test
+    public void repeatsFixedRateTaskUntilCancelled() throws Exception {
+        final CountDownLatch executed = new CountDownLatch(3);
+        TaskScheduler.ScheduledTask task = scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                executed.countDown();
+            }
+        }, 10, 20);
+
+        assertThat(executed.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(task.cancel(), is(true));
+        Thread.sleep(50);
+        assertThat(scheduler.getPendingTaskCount(), is(0));
+    }
+
+    @Test
+    public void failingTaskIsRepeated() throws Exception {
+        final CountDownLatch executed = new CountDownLatch(2);
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                executed.countDown();
+                throw new IllegalStateException("Fail");
+            }
+        }, 0, 10);
+
+        assertThat(executed.await(2, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void countsLateTasks() throws Exception {
+        final CountDownLatch executed = new CountDownLatch(1);
+        scheduler.scheduleAt(new Runnable() {
+            @Override
+            public void run() {
+                executed.countDown();
+            }
+        }, System.currentTimeMillis() - 5000);
+
+        assertThat(executed.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(scheduler.getLatenessHistogram()[3], is(1L));
+        assertThat(scheduler.getMaxLateness() >= 5000, is(true));
+    }
+
+    private static long sum(long[] values) {
+        long result = 0;
+        for (long value : values) {
+            result += value;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.system.Event;
+import nu.nethome.home.system.HomeService;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SensorValueTest {
+
+    private HomeService server;
+    private SensorValue sensorValue;
+
+    @Before
+    public void setUp() throws Exception {
+        server = mock(HomeService.class);
+        when(server.createEvent(anyString(), anyString())).thenAnswer(new Answer<Event>() {
+            @Override
+            public Event answer(InvocationOnMock invocation) {
+                InternalEvent event = new InternalEvent((String) invocation.getArguments()[0]);
+                event.setAttribute(Event.EVENT_VALUE_ATTRIBUTE, (String) invocation.getArguments()[1]);
+                return event;
+            }
+        });
+        HomeItemAdapter item = new HomeItemAdapter() {
+            @Override
+            public String getModel() {
+                return "";
+            }
+        };
+        item.setItemId(17);
+        item.activate(server);
+        sensorValue = new SensorValue(item, "Temperature");
+    }
+
+    @Test
+    public void hasNoValueBeforeFirstUpdate() throws Exception {
+        assertThat(sensorValue.hasValue(), is(false));
+        assertThat(sensorValue.getValue(), is(""));
+        assertThat(sensorValue.getLastUpdate(), is(""));
+    }
+
+    @Test
+    public void firstValueIsReported() throws Exception {
+        assertThat(sensorValue.update(21.5), is(true));
+
+        ArgumentCaptor<Event> captor = ArgumentCaptor.forClass(Event.class);
+        verify(server).send(captor.capture());
+        Event event = captor.getValue();
+        assertThat(event.isType(HomeService.VALUE_CHANGED_EVENT_TYPE), is(true));
+        assertThat(event.getAttribute(Event.EVENT_VALUE_ATTRIBUTE), is(String.format("%.1f", 21.5)));
+        assertThat(event.getAttribute(HomeService.VALUE_CHANGED_ITEM_ID_ATTRIBUTE), is("17"));
+        assertThat(event.getAttribute(HomeService.VALUE_CHANGED_ATTRIBUTE_ATTRIBUTE), is("Temperature"));
+        assertThat(sensorValue.getLastUpdate().length() > 0, is(true));
+    }
+
+    @Test
+    public void repeatedValueIsNotReported() throws Exception {
+        sensorValue.update(21.5);
+
+        assertThat(sensorValue.update(21.5), is(false));
+        assertThat(sensorValue.update(21.52), is(false));
+        verify(server, times(1)).send(any(Event.class));
+    }
+
+    @Test
+    public void changeWithinDeadbandIsNotReported() throws Exception {
+        sensorValue.setDeadband("0.5");
+        sensorValue.update(21.0);
+
+        assertThat(sensorValue.update(21.3), is(false));
+        assertThat(sensorValue.update(20.6), is(false));
+        assertThat(sensorValue.update(21.6), is(true));
+        assertThat(sensorValue.getValue(), is(String.format("%.1f", 21.6)));
+    }
+
+    @Test
+    public void changesAreNotReportedMoreOftenThanMinInterval() throws Exception {
+        sensorValue.setMinReportInterval("60");
+        sensorValue.update(21.0);
+
+        assertThat(sensorValue.update(22.0), is(false));
+        assertThat(sensorValue.getValue(), is(String.format("%.1f", 22.0)));
+        verify(server, times(1)).send(any(Event.class));
+    }
+
+    @Test
+    public void attributesCanBeSet() throws Exception {
+        sensorValue.setDeadband("0,2");
+        sensorValue.setMinReportInterval("30");
+
+        assertThat(sensorValue.getDeadband(), is("0.2"));
+        assertThat(sensorValue.getMinReportInterval(), is("30"));
+    }
+}
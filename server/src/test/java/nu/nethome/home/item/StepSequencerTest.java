@@ -0,0 +1,133 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.item;
+
+import nu.nethome.home.impl.TimingWheelScheduler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class StepSequencerTest {
+
+    private TimingWheelScheduler scheduler;
+    private StepSequencer sequencer;
+    private List<String> executed;
+
+    @Before
+    public void setUp() throws Exception {
+        scheduler = new TimingWheelScheduler("Test", 4);
+        sequencer = new StepSequencer(scheduler);
+        executed = Collections.synchronizedList(new ArrayList<String>());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    @Test
+    public void executesStepsInOrderWithDelay() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        long start = System.currentTimeMillis();
+
+        sequencer.start(Arrays.asList(step("1", done), step("2", done), step("3", done)), 30);
+
+        assertThat(System.currentTimeMillis() - start < 30, is(true));
+        assertThat(done.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(System.currentTimeMillis() - start >= 60, is(true));
+        assertThat(executed, is(Arrays.asList("1", "2", "3")));
+    }
+
+    @Test
+    public void executesIndependentStepsInParallelWithoutDelay() throws Exception {
+        final CountDownLatch allStarted = new CountDownLatch(3);
+        final CountDownLatch done = new CountDownLatch(3);
+        List<Runnable> steps = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            steps.add(new Runnable() {
+                @Override
+                public void run() {
+                    allStarted.countDown();
+                    try {
+                        // Only completes if the other steps are running at the same time
+                        if (allStarted.await(1, TimeUnit.SECONDS)) {
+                            done.countDown();
+                        }
+                    } catch (InterruptedException e) {
+                        // Ignore
+                    }
+                }
+            });
+        }
+
+        sequencer.start(steps, 0);
+
+        assertThat(done.await(2, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void restartCancelsRemainingSteps() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        CountDownLatch second = new CountDownLatch(1);
+        sequencer.start(Arrays.asList(step("1", first), step("2", null)), 100);
+        assertThat(first.await(2, TimeUnit.SECONDS), is(true));
+
+        sequencer.start(Arrays.asList(step("3", second)), 100);
+
+        assertThat(second.await(2, TimeUnit.SECONDS), is(true));
+        Thread.sleep(200);
+        assertThat(executed, is(Arrays.asList("1", "3")));
+    }
+
+    @Test
+    public void cancelStopsSequence() throws Exception {
+        CountDownLatch first = new CountDownLatch(1);
+        sequencer.start(Arrays.asList(step("1", first), step("2", null)), 50);
+        assertThat(first.await(2, TimeUnit.SECONDS), is(true));
+
+        sequencer.cancel();
+
+        Thread.sleep(150);
+        assertThat(executed, is(Arrays.asList("1")));
+        assertThat(scheduler.getPendingTaskCount(), is(0));
+    }
+
+    private Runnable step(final String name, final CountDownLatch done) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executed.add(name);
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        };
+    }
+}
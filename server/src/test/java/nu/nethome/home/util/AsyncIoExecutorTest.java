@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+
+public class AsyncIoExecutorTest {
+
+    private AsyncIoExecutor executor;
+    private final BlockingQueue<Object> results = new LinkedBlockingQueue<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private final AsyncIoExecutor.Completion<Object> recorder = new AsyncIoExecutor.Completion<Object>() {
+        @Override
+        public void completed(Object result) {
+            results.add(result);
+        }
+
+        @Override
+        public void failed(Exception e) {
+            results.add(e);
+        }
+    };
+
+    private final AsyncIoExecutor.IoTask<Object> blockingTask = new AsyncIoExecutor.IoTask<Object>() {
+        @Override
+        public Object call() throws Exception {
+            started.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return "Released";
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void runsTasksInOrderOnWorkerThread() throws Exception {
+        executor = new AsyncIoExecutor("Test", 10, 5000);
+        final List<Integer> order = new CopyOnWriteArrayList<>();
+        final Thread caller = Thread.currentThread();
+        for (int i = 0; i < 5; i++) {
+            final int task = i;
+            executor.submit(new AsyncIoExecutor.IoTask<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    order.add(task);
+                    return Thread.currentThread() != caller;
+                }
+            }, recorder);
+        }
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(results.poll(5, TimeUnit.SECONDS), is((Object) true));
+        }
+        assertThat(order.toString(), is("[0, 1, 2, 3, 4]"));
+        assertThat(executor.getCompletedCount(), is(5L));
+        // A task is in flight until its completion has returned
+        waitUntilIdle();
+        assertThat(executor.getInFlight(), is(0));
+    }
+
+    @Test
+    public void passesExceptionToCompletion() throws Exception {
+        executor = new AsyncIoExecutor("Test", 10, 5000);
+
+        executor.submit(new AsyncIoExecutor.IoTask<Object>() {
+            @Override
+            public Object call() throws Exception {
+                throw new IOException("No route to host");
+            }
+        }, recorder);
+
+        assertThat(results.poll(5, TimeUnit.SECONDS), instanceOf(IOException.class));
+        assertThat(executor.getFailedCount(), is(1L));
+    }
+
+    @Test
+    public void rejectsTasksWhenQueueIsFull() throws Exception {
+        executor = new AsyncIoExecutor("Test", 2, 5000);
+        executor.submit(blockingTask, recorder);
+        waitUntilRunning();
+
+        assertThat(executor.submit(blockingTask, recorder), is(true));
+        assertThat(executor.submit(blockingTask, recorder), is(true));
+        assertThat(executor.submit(blockingTask, recorder), is(false));
+        assertThat(executor.getRejectedCount(), is(1L));
+        assertThat(executor.getInFlight(), is(3));
+    }
+
+    @Test
+    public void failsTasksThatHaveWaitedTooLong() throws Exception {
+        executor = new AsyncIoExecutor("Test", 10, 100);
+        executor.submit(blockingTask);
+        waitUntilRunning();
+        executor.submit(blockingTask, recorder);
+        Thread.sleep(200);
+
+        release.countDown();
+
+        assertThat(results.poll(5, TimeUnit.SECONDS), instanceOf(TimeoutException.class));
+        assertThat(executor.getTimedOutCount(), is(1L));
+    }
+
+    @Test
+    public void measuresLatency() throws Exception {
+        executor = new AsyncIoExecutor("Test", 10, 5000);
+        executor.submit(new AsyncIoExecutor.IoTask<Object>() {
+            @Override
+            public Object call() throws Exception {
+                Thread.sleep(50);
+                return "Done";
+            }
+        }, recorder);
+
+        results.poll(5, TimeUnit.SECONDS);
+
+        assertThat(executor.getMaxLatencyMs() >= 50, is(true));
+        assertThat(executor.getAverageLatencyMs() >= 50, is(true));
+    }
+
+    @Test
+    public void shutdownDiscardsQueuedTasks() throws Exception {
+        executor = new AsyncIoExecutor("Test", 10, 5000);
+        executor.submit(blockingTask);
+        waitUntilRunning();
+        executor.submit(blockingTask, recorder);
+
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(5, TimeUnit.SECONDS), is(true));
+        assertThat(results.isEmpty(), is(true));
+        assertThat(executor.getInFlight(), is(0));
+        assertThat(executor.submit(blockingTask), is(false));
+    }
+
+    private void waitUntilRunning() throws InterruptedException {
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        for (int i = 0; i < 100 && executor.getInFlight() > 0; i++) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.system.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+
+public class EncodedMessageCacheTest {
+
+    private EncodedMessageCache<String> cache;
+
+    @Before
+    public void setUp() throws Exception {
+        cache = new EncodedMessageCache<>(2);
+    }
+
+    @Test
+    public void keyContainsProtocolFieldsInSortedOrder() throws Exception {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "Out");
+        event.setAttribute("Nexa.HouseCode", 1);
+        event.setAttribute("Nexa.Command", 1);
+        event.setAttribute("Nexa.Button", 2);
+        event.setAttribute("Repeat", 5);
+
+        assertThat(EncodedMessageCache.keyOf(event), is("Nexa_Message;Button=2;Command=1;HouseCode=1|Repeat=5"));
+    }
+
+    @Test
+    public void keyDoesNotDependOnAttributeOrder() throws Exception {
+        Event first = new InternalEvent("Nexa_Message");
+        first.setAttribute("Nexa.HouseCode", 1);
+        first.setAttribute("Nexa.Button", 2);
+        Event second = new InternalEvent("Nexa_Message");
+        second.setAttribute("Nexa.Button", 2);
+        second.setAttribute("Nexa.HouseCode", 1);
+
+        assertThat(EncodedMessageCache.keyOf(first), is(EncodedMessageCache.keyOf(second)));
+    }
+
+    @Test
+    public void keyDiffersForDifferentCommandAndRepeat() throws Exception {
+        Event on = nexaEvent(1);
+        Event off = nexaEvent(0);
+        Event repeated = nexaEvent(1);
+        repeated.setAttribute("Repeat", 10);
+
+        assertThat(EncodedMessageCache.keyOf(on), is(not(EncodedMessageCache.keyOf(off))));
+        assertThat(EncodedMessageCache.keyOf(on), is(not(EncodedMessageCache.keyOf(repeated))));
+    }
+
+    @Test
+    public void noKeyForOtherEvents() throws Exception {
+        assertThat(EncodedMessageCache.keyOf(new InternalEvent("MinuteEvent")), is(nullValue()));
+        assertThat(cache.get(null), is(nullValue()));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedMessage() throws Exception {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+
+        assertThat(cache.size(), is(2));
+        assertThat(cache.get("a"), is("A"));
+        assertThat(cache.get("b"), is(nullValue()));
+        assertThat(cache.get("c"), is("C"));
+    }
+
+    @Test
+    public void countsHitsAndMisses() throws Exception {
+        assertThat(cache.getHitRate(), is(0));
+        cache.get("a");
+        cache.put("a", "A");
+        cache.get("a");
+        cache.get("a");
+        cache.get("a");
+
+        assertThat(cache.getHitCount(), is(3L));
+        assertThat(cache.getMissCount(), is(1L));
+        assertThat(cache.getHitRate(), is(75));
+    }
+
+    private static Event nexaEvent(int command) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Nexa.HouseCode", 1);
+        event.setAttribute("Nexa.Button", 2);
+        event.setAttribute("Nexa.Command", command);
+        return event;
+    }
+}
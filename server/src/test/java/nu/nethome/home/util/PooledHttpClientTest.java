@@ -0,0 +1,319 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLHandshakeException;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class PooledHttpClientTest {
+
+    private static final int PORT = 9032;
+    private static final int SECURE_PORT = 9033;
+    private static final int RAW_PORT = 9034;
+    private static final String BASE_URL = "http://127.0.0.1:" + PORT;
+    private static final String SECURE_URL = "https://127.0.0.1:" + SECURE_PORT;
+    private HttpServer server;
+    private PooledHttpClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        startServer();
+        client = new PooledHttpClient(2, 1000, 2000);
+    }
+
+    private void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", PORT), 0);
+        server.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                byte[] body = readAll(exchange.getRequestBody());
+                String reply = exchange.getRequestMethod() + ":" + new String(body, StandardCharsets.UTF_8) + ":" +
+                        exchange.getRequestHeaders().getFirst("X-Test");
+                send(exchange, 200, reply.getBytes(StandardCharsets.UTF_8), false);
+            }
+        });
+        server.createContext("/chunked", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "chunked body".getBytes(StandardCharsets.UTF_8), true);
+            }
+        });
+        server.createContext("/missing", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 404, "no".getBytes(StandardCharsets.UTF_8), false);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        client.close();
+        server.stop(0);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            result.write(buffer, 0, read);
+        }
+        return result.toByteArray();
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body, boolean chunked) throws IOException {
+        exchange.sendResponseHeaders(code, chunked ? 0 : body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body);
+        out.close();
+    }
+
+    @Test
+    public void sendsMethodHeadersAndBody() throws Exception {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("X-Test", "foo");
+
+        PooledHttpClient.Response response = client.execute("PUT", BASE_URL + "/echo", headers, "fie".getBytes());
+
+        assertThat(response.getResponseCode(), is(200));
+        assertThat(response.getBodyAsString(), is("PUT:fie:foo"));
+    }
+
+    @Test
+    public void reusesConnection() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            assertThat(client.get(BASE_URL + "/echo").getResponseCode(), is(200));
+        }
+
+        assertThat(client.getRequestCount(), is(10L));
+        assertThat(client.getConnectionsOpened(), is(1L));
+        assertThat(client.getConnectionsReused(), is(9L));
+    }
+
+    @Test
+    public void readsChunkedResponseAndReusesConnection() throws Exception {
+        assertThat(client.get(BASE_URL + "/chunked").getBodyAsString(), is("chunked body"));
+        assertThat(client.get(BASE_URL + "/chunked").getBodyAsString(), is("chunked body"));
+
+        assertThat(client.getConnectionsOpened(), is(1L));
+    }
+
+    @Test
+    public void returnsErrorResponses() throws Exception {
+        PooledHttpClient.Response response = client.get(BASE_URL + "/missing");
+
+        assertThat(response.getResponseCode(), is(404));
+        assertThat(response.getBodyAsString(), is("no"));
+    }
+
+    @Test
+    public void streamsBodyToReader() throws Exception {
+        int length = client.execute("GET", BASE_URL + "/chunked", Collections.<String, String>emptyMap(), null,
+                new PooledHttpClient.ResponseReader<Integer>() {
+                    @Override
+                    public Integer read(int responseCode, Map<String, String> headers, InputStream body) throws IOException {
+                        // Only read part of the body, the client has to skip the rest
+                        return body.read(new byte[5]);
+                    }
+                });
+
+        assertThat(length, is(5));
+        assertThat(client.get(BASE_URL + "/echo").getResponseCode(), is(200));
+        assertThat(client.getConnectionsOpened(), is(1L));
+    }
+
+    @Test
+    public void opensNewConnectionWhenIdleConnectionIsClosed() throws Exception {
+        client.get(BASE_URL + "/echo");
+        server.stop(0);
+        startServer();
+
+        assertThat(client.get(BASE_URL + "/echo").getResponseCode(), is(200));
+        assertThat(client.getFailedRequestCount(), is(0L));
+        assertThat(client.getConnectionsOpened(), is(2L));
+    }
+
+    @Test
+    public void acceptsCertificateForHost() throws Exception {
+        HttpsServer secureServer = startSecureServer("localhost.jks");
+        try {
+            assertThat(client.get(SECURE_URL + "/echo").getResponseCode(), is(200));
+        } finally {
+            secureServer.stop(0);
+        }
+    }
+
+    @Test(expected = SSLHandshakeException.class)
+    public void rejectsCertificateForOtherHost() throws Exception {
+        HttpsServer secureServer = startSecureServer("otherhost.jks");
+        try {
+            client.get(SECURE_URL + "/echo");
+        } finally {
+            secureServer.stop(0);
+        }
+    }
+
+    @Test
+    public void doesNotResendPostWhenReusedConnectionFails() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        ServerSocket rawServer = startServerAnsweringFirstRequestOnly(requests);
+        String url = "http://127.0.0.1:" + RAW_PORT + "/";
+        try {
+            assertThat(client.get(url).getResponseCode(), is(200));
+            try {
+                client.execute("POST", url, Collections.<String, String>emptyMap(), "fie".getBytes());
+            } catch (IOException e) {
+                // Expected
+            }
+            assertThat(requests.get(), is(2));
+        } finally {
+            rawServer.close();
+        }
+    }
+
+    @Test
+    public void resendsGetWhenReusedConnectionFails() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        ServerSocket rawServer = startServerAnsweringFirstRequestOnly(requests);
+        String url = "http://127.0.0.1:" + RAW_PORT + "/";
+        try {
+            assertThat(client.get(url).getResponseCode(), is(200));
+            try {
+                client.get(url);
+            } catch (IOException e) {
+                // Expected, the retried request is not answered either
+            }
+            assertThat(requests.get(), is(3));
+        } finally {
+            rawServer.close();
+        }
+    }
+
+    private HttpsServer startSecureServer(String keyStoreName) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        InputStream keyStoreStream = getClass().getResourceAsStream(keyStoreName);
+        try {
+            keyStore.load(keyStoreStream, "nethome".toCharArray());
+        } finally {
+            keyStoreStream.close();
+        }
+        KeyManagerFactory keyManagers = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        keyManagers.init(keyStore, "nethome".toCharArray());
+        TrustManagerFactory trustManagers = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        trustManagers.init(keyStore);
+        SSLContext serverContext = SSLContext.getInstance("TLS");
+        serverContext.init(keyManagers.getKeyManagers(), null, null);
+        SSLContext clientContext = SSLContext.getInstance("TLS");
+        clientContext.init(null, trustManagers.getTrustManagers(), null);
+        client.setSslSocketFactory(clientContext.getSocketFactory());
+
+        HttpsServer secureServer = HttpsServer.create(new InetSocketAddress("127.0.0.1", SECURE_PORT), 0);
+        secureServer.setHttpsConfigurator(new HttpsConfigurator(serverContext));
+        secureServer.createContext("/echo", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                send(exchange, 200, "secure".getBytes(StandardCharsets.UTF_8), false);
+            }
+        });
+        secureServer.start();
+        return secureServer;
+    }
+
+    /**
+     * Start a server which answers the first request it receives, and closes the connection without answering
+     * on all following requests
+     */
+    private ServerSocket startServerAnsweringFirstRequestOnly(final AtomicInteger requests) throws IOException {
+        final ServerSocket rawServer = new ServerSocket(RAW_PORT);
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Socket socket = rawServer.accept();
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                                StandardCharsets.ISO_8859_1));
+                        while (readRequest(in)) {
+                            if (requests.incrementAndGet() > 1) {
+                                break;
+                            }
+                            socket.getOutputStream().write(("HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n")
+                                    .getBytes(StandardCharsets.ISO_8859_1));
+                            socket.getOutputStream().flush();
+                        }
+                        socket.close();
+                    }
+                } catch (IOException e) {
+                    // Server closed
+                }
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return rawServer;
+    }
+
+    private static boolean readRequest(BufferedReader in) throws IOException {
+        String line;
+        int contentLength = 0;
+        boolean hasRequest = false;
+        while ((line = in.readLine()) != null && !line.isEmpty()) {
+            hasRequest = true;
+            if (line.toLowerCase().startsWith("content-length:")) {
+                contentLength = Integer.parseInt(line.substring(15).trim());
+            }
+        }
+        for (int i = 0; i < contentLength; i++) {
+            in.read();
+        }
+        return hasRequest;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class PulseRingTest {
+
+    private PulseRing ring;
+
+    @After
+    public void tearDown() throws Exception {
+        if (ring != null) {
+            ring.stop();
+        }
+    }
+
+    private static class RecordingConsumer implements PulseRing.PulseConsumer {
+        final List<Double> lengths = new ArrayList<>();
+        final List<Boolean> marks = new ArrayList<>();
+        volatile Thread thread;
+
+        @Override
+        public void pulse(double length, boolean mark) {
+            thread = Thread.currentThread();
+            lengths.add(length);
+            marks.add(mark);
+        }
+    }
+
+    @Test
+    public void everyConsumerGetsAllPulsesInOrder() throws Exception {
+        RecordingConsumer first = new RecordingConsumer();
+        RecordingConsumer second = new RecordingConsumer();
+        ring = new PulseRing("Test", 16, Arrays.asList(first, second));
+        ring.start();
+        List<Double> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            while (!ring.publish(i, i % 2 == 0)) {
+                Thread.yield();
+            }
+            expected.add((double) i);
+        }
+
+        assertThat(ring.awaitProcessed(5, TimeUnit.SECONDS), is(true));
+        assertThat(first.lengths, is(expected));
+        assertThat(second.lengths, is(expected));
+        assertThat(first.marks.get(0), is(true));
+        assertThat(first.marks.get(1), is(false));
+        assertThat(ring.getPublishedCount(), is(1000L));
+    }
+
+    @Test
+    public void consumersRunInSeparateThreads() throws Exception {
+        RecordingConsumer first = new RecordingConsumer();
+        RecordingConsumer second = new RecordingConsumer();
+        ring = new PulseRing("Test", 16, Arrays.asList(first, second));
+        ring.start();
+        ring.publish(100, true);
+
+        assertThat(ring.awaitProcessed(5, TimeUnit.SECONDS), is(true));
+        assertThat(first.thread == second.thread, is(false));
+        assertThat(first.thread == Thread.currentThread(), is(false));
+    }
+
+    @Test
+    public void dropsPulsesWhenConsumerIsAFullRingBehind() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<Double> received = new ArrayList<>();
+        PulseRing.PulseConsumer slowConsumer = new PulseRing.PulseConsumer() {
+            @Override
+            public void pulse(double length, boolean mark) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    // Stopped
+                }
+                received.add(length);
+            }
+        };
+        ring = new PulseRing("Test", 4, Arrays.asList(slowConsumer));
+        ring.start();
+        int accepted = 0;
+        for (int i = 0; i < 10; i++) {
+            accepted += ring.publish(i, true) ? 1 : 0;
+        }
+
+        assertThat(accepted, is(4));
+        assertThat(ring.getDroppedCount(), is(6L));
+        release.countDown();
+        assertThat(ring.awaitProcessed(5, TimeUnit.SECONDS), is(true));
+        assertThat(received, is(Arrays.asList(0.0, 1.0, 2.0, 3.0)));
+        assertThat(ring.publish(10, true), is(true));
+    }
+
+    @Test
+    public void idleWorkerIsParkedUntilNextPulse() throws Exception {
+        RecordingConsumer consumer = new RecordingConsumer();
+        ring = new PulseRing("Test", 16, Arrays.asList(consumer));
+        ring.start();
+        ring.publish(100, true);
+        assertThat(ring.awaitProcessed(5, TimeUnit.SECONDS), is(true));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (consumer.thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+
+        assertThat(consumer.thread.getState(), is(Thread.State.WAITING));
+        ring.publish(200, false);
+        assertThat(ring.awaitProcessed(5, TimeUnit.SECONDS), is(true));
+        assertThat(consumer.lengths, is(Arrays.asList(100.0, 200.0)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void capacityMustBePowerOfTwo() throws Exception {
+        new PulseRing("Test", 100, new ArrayList<PulseRing.PulseConsumer>());
+    }
+}
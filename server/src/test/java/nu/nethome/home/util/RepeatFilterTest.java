@@ -0,0 +1,109 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.system.Event;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class RepeatFilterTest {
+
+    private RepeatFilter filter;
+
+    @Before
+    public void setUp() throws Exception {
+        filter = new RepeatFilter();
+    }
+
+    @Test
+    public void suppressesRepeatsWithinWindow() throws Exception {
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 1000), is(false));
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 1100), is(true));
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 1200), is(true));
+
+        assertThat(filter.getSuppressedCount(), is(2L));
+        assertThat(filter.getSuppressedCount("Nexa"), is(2L));
+    }
+
+    @Test
+    public void windowIsCountedFromLastRepeat() throws Exception {
+        filter.isRepeat(nexaEvent(1, 1), 1000);
+        filter.isRepeat(nexaEvent(1, 1), 1400);
+
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 1800), is(true));
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 2400), is(false));
+    }
+
+    @Test
+    public void messagesWithOtherFieldValuesAreNotRepeats() throws Exception {
+        filter.isRepeat(nexaEvent(1, 1), 1000);
+
+        assertThat(filter.isRepeat(nexaEvent(1, 0), 1100), is(false));
+        assertThat(filter.isRepeat(nexaEvent(2, 1), 1100), is(false));
+        assertThat(filter.getSuppressedCount(), is(0L));
+    }
+
+    @Test
+    public void usesProtocolSpecificWindows() throws Exception {
+        filter.setWindows("200,UPM=2000,Nexa=0");
+        Event upm = new InternalEvent("UPM_Message");
+        upm.setAttribute("UPM.Temperature", 217);
+
+        filter.isRepeat(upm, 1000);
+        assertThat(filter.isRepeat(upm, 2500), is(true));
+        filter.isRepeat(nexaEvent(1, 1), 1000);
+        assertThat(filter.isRepeat(nexaEvent(1, 1), 1010), is(false));
+        assertThat(filter.getWindowMs("Oregon"), is(200L));
+        assertThat(filter.getWindows(), is("200,Nexa=0,UPM=2000"));
+        assertThat(filter.getSuppressedCounts(), is("UPM=1"));
+    }
+
+    @Test
+    public void otherEventsAreNeverRepeats() throws Exception {
+        filter.isRepeat(new InternalEvent("MinuteEvent"), 1000);
+
+        assertThat(filter.isRepeat(new InternalEvent("MinuteEvent"), 1000), is(false));
+    }
+
+    @Test
+    public void reusesExpiredEntries() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            assertThat(filter.isRepeat(nexaEvent(i, 1), i * 1000), is(false));
+        }
+        for (int i = 0; i < 50; i++) {
+            filter.isRepeat(nexaEvent(i, 0), 2000000);
+        }
+
+        assertThat(filter.isRepeat(nexaEvent(5, 0), 2000100), is(true));
+    }
+
+    private static Event nexaEvent(int button, int command) {
+        Event event = new InternalEvent("Nexa_Message");
+        event.setAttribute("Direction", "In");
+        event.setAttribute("Nexa.HouseCode", 1);
+        event.setAttribute("Nexa.Button", button);
+        event.setAttribute("Nexa.Command", command);
+        return event;
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+public class SerialFramerTest {
+
+    private PipedOutputStream port;
+    private PipedInputStream portInput;
+    private List<String> frames;
+    private List<byte[]> binaryFrames;
+    private SerialFramer.FrameListener listener;
+
+    @Before
+    public void setUp() throws Exception {
+        port = new PipedOutputStream();
+        portInput = new PipedInputStream(port, 4096);
+        frames = new ArrayList<>();
+        binaryFrames = new ArrayList<>();
+        listener = new SerialFramer.FrameListener() {
+            @Override
+            public void frameReceived(byte[] data, int offset, int length) {
+                frames.add(SerialFramer.toString(data, offset, length));
+                binaryFrames.add(Arrays.copyOfRange(data, offset, offset + length));
+            }
+        };
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        port.close();
+        portInput.close();
+    }
+
+    @Test
+    public void reportsEachCompleteLine() throws Exception {
+        SerialFramer framer = SerialFramer.lines(listener);
+        port.write("+V2\r\n+W123\r\n".getBytes());
+
+        assertThat(framer.readAvailable(portInput), is(12));
+
+        assertThat(frames.size(), is(2));
+        assertThat(frames.get(0), is("+V2\r"));
+        assertThat(frames.get(1), is("+W123\r"));
+    }
+
+    @Test
+    public void keepsPartialLineUntilRestArrives() throws Exception {
+        SerialFramer framer = SerialFramer.lines(listener);
+        port.write("+W12".getBytes());
+        framer.readAvailable(portInput);
+
+        assertThat(frames.size(), is(0));
+        assertThat(framer.getBufferedBytes(), is(4));
+
+        port.write("34\n+V".getBytes());
+        framer.readAvailable(portInput);
+
+        assertThat(frames.size(), is(1));
+        assertThat(frames.get(0), is("+W1234"));
+        assertThat(framer.getBufferedBytes(), is(2));
+    }
+
+    @Test
+    public void readAvailableDoesNotBlockWithoutData() throws Exception {
+        SerialFramer framer = SerialFramer.lines(listener);
+
+        assertThat(framer.readAvailable(portInput), is(0));
+    }
+
+    @Test
+    public void assemblesLinesWrappingAroundTheBuffer() throws Exception {
+        SerialFramer framer = SerialFramer.delimited((byte) '\n', 16, listener);
+        for (int i = 0; i < 20; i++) {
+            port.write(("Line" + i + "\n").getBytes());
+            framer.readAvailable(portInput);
+        }
+
+        assertThat(frames.size(), is(20));
+        for (int i = 0; i < 20; i++) {
+            assertThat(frames.get(i), is("Line" + i));
+        }
+    }
+
+    @Test
+    public void discardsTooLongLine() throws Exception {
+        SerialFramer framer = SerialFramer.delimited((byte) '\n', 16, listener);
+        port.write("This line is much too long for the buffer\nOk\n".getBytes());
+        framer.readAvailable(portInput);
+
+        assertThat(frames.size(), is(1));
+        assertThat(frames.get(0), is("Ok"));
+        assertThat(framer.getDiscardedBytes(), is(41L));
+    }
+
+    @Test
+    public void readsFromBlockingReceiveThread() throws Exception {
+        final SerialFramer framer = SerialFramer.lines(listener);
+        Thread receiver = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (framer.readFrom(portInput) >= 0) {
+                        // Frames are reported to the listener
+                    }
+                } catch (Exception e) {
+                    // Pipe closed
+                }
+            }
+        });
+        receiver.start();
+        port.write("A1\n".getBytes());
+        port.flush();
+        port.write("B2\nC".getBytes());
+        port.close();
+        receiver.join(5000);
+
+        assertThat(frames, is(Arrays.asList("A1", "B2")));
+    }
+
+    @Test
+    public void extractsLengthPrefixedFrames() throws Exception {
+        SerialFramer framer = SerialFramer.lengthPrefixed((byte) 0x81, listener);
+        // Garbage, a complete frame and the first half of the next one
+        port.write(new byte[]{0x01, (byte) 0x81, 3, 4, 5, 6, (byte) 0x81, 2, 7});
+        framer.readAvailable(portInput);
+
+        assertThat(binaryFrames.size(), is(1));
+        assertThat(binaryFrames.get(0), is(new byte[]{4, 5, 6}));
+        assertThat(framer.getDiscardedBytes(), is(1L));
+
+        port.write(new byte[]{8});
+        framer.readAvailable(portInput);
+
+        assertThat(binaryFrames.size(), is(2));
+        assertThat(binaryFrames.get(1), is(new byte[]{7, 8}));
+    }
+
+    @Test
+    public void acceptsDataAlreadyRead() throws Exception {
+        SerialFramer framer = SerialFramer.delimited((byte) '\n', 16, listener);
+        byte[] data = "First\nSecond line\nThird\n".getBytes();
+
+        framer.receive(data, 0, data.length);
+
+        assertThat(frames, is(Arrays.asList("First", "Second line", "Third")));
+    }
+}
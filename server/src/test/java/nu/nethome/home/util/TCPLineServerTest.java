@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class TCPLineServerTest {
+
+    private static final int PORT = 9031;
+    private static final int LONG_LINE_LENGTH = 16 * 1024;
+    private static final int LONG_LINE_COUNT = 2000;
+    private TCPLineServer server;
+    private final List<TCPLineServer.Session> sessions = Collections.synchronizedList(new ArrayList<TCPLineServer.Session>());
+    private volatile CountDownLatch blockExecution;
+    private final AtomicInteger executedCount = new AtomicInteger();
+    private CountDownLatch closed;
+
+    @Before
+    public void setUp() throws Exception {
+        closed = new CountDownLatch(1);
+        server = new TCPLineServer(PORT, "Test", 2, new TCPLineServer.SessionFactory() {
+            @Override
+            public TCPLineServer.LineHandler createHandler(TCPLineServer.Session session) {
+                sessions.add(session);
+                return new TCPLineServer.LineHandler() {
+                    @Override
+                    public String executeLine(String line) {
+                        executedCount.incrementAndGet();
+                        if (blockExecution != null) {
+                            try {
+                                blockExecution.await(2, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                // Continue
+                            }
+                        }
+                        return line.equals("quit") ? null : "ok," + line;
+                    }
+
+                    @Override
+                    public void sessionClosed() {
+                        closed.countDown();
+                    }
+                };
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    private Socket connect() throws Exception {
+        Socket socket = new Socket("127.0.0.1", PORT);
+        socket.setSoTimeout(2000);
+        long end = System.currentTimeMillis() + 1000;
+        while (server.getSessionCount() == 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(5);
+        }
+        return socket;
+    }
+
+    @Test
+    public void pipelinedCommandsAreAnsweredInOrder() throws Exception {
+        Socket socket = connect();
+        OutputStream out = socket.getOutputStream();
+        out.write("a\nb\r\nc\n".getBytes());
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+        assertThat(in.readLine(), is("ok,a"));
+        assertThat(in.readLine(), is(""));
+        assertThat(in.readLine(), is("ok,b"));
+        assertThat(in.readLine(), is(""));
+        assertThat(in.readLine(), is("ok,c"));
+        socket.close();
+    }
+
+    @Test
+    public void linesAreEncodedAsUtf8() throws Exception {
+        Socket socket = connect();
+        socket.getOutputStream().write("r\u00e4ksm\u00f6rg\u00e5s\n".getBytes(StandardCharsets.UTF_8));
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+        assertThat(in.readLine(), is("ok,r\u00e4ksm\u00f6rg\u00e5s"));
+        socket.close();
+    }
+
+    @Test
+    public void quitClosesSession() throws Exception {
+        Socket socket = connect();
+        socket.getOutputStream().write("quit\n".getBytes());
+
+        assertThat(closed.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(socket.getInputStream().read(), is(-1));
+        assertThat(server.getSessionCount(), is(0));
+    }
+
+    @Test
+    public void dropsLinesToSlowClient() throws Exception {
+        server.setMaxOutboundBytes(100);
+        Socket socket = connect();
+        TCPLineServer.Session session = sessions.get(0);
+        int sent = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (session.sendLine("0123456789")) {
+                sent++;
+            }
+        }
+
+        assertThat(sent < 100000, is(true));
+        assertThat(server.getDroppedLineCount(), is((long) (100000 - sent)));
+        assertThat(session.isOpen(), is(true));
+        socket.close();
+    }
+
+    @Test
+    public void disconnectsSlowClient() throws Exception {
+        server.setMaxOutboundBytes(100);
+        server.setSlowConsumerPolicy(TCPLineServer.SlowConsumerPolicy.DISCONNECT);
+        connect();
+        TCPLineServer.Session session = sessions.get(0);
+        for (int i = 0; i < 100000 && session.sendLine("0123456789"); i++) {
+            // Fill the buffer
+        }
+
+        assertThat(closed.await(2, TimeUnit.SECONDS), is(true));
+        assertThat(server.getSlowConsumerDisconnectCount(), is(1L));
+        assertThat(server.getSessionCount(), is(0));
+    }
+
+    @Test
+    public void sendingDoesNotWaitForCommandExecution() throws Exception {
+        blockExecution = new CountDownLatch(1);
+        Socket socket = connect();
+        socket.getOutputStream().write("slow\n".getBytes());
+        sessions.get(0).sendLine("event");
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+
+        assertThat(in.readLine(), is("event"));
+        blockExecution.countDown();
+        assertThat(in.readLine(), is(""));
+        assertThat(in.readLine(), is("ok,slow"));
+        socket.close();
+    }
+
+    @Test
+    public void stopsReadingFromClientThatDoesNotReadReplies() throws Exception {
+        server.setMaxOutboundBytes(1000);
+        final Socket socket = connect();
+        final byte[] line = new byte[LONG_LINE_LENGTH + 1];
+        Arrays.fill(line, (byte) 'x');
+        line[LONG_LINE_LENGTH] = '\n';
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    OutputStream out = socket.getOutputStream();
+                    for (int i = 0; i < LONG_LINE_COUNT; i++) {
+                        out.write(line);
+                    }
+                } catch (IOException e) {
+                    // Closed when the test ends
+                }
+            }
+        });
+        writer.setDaemon(true);
+        writer.start();
+
+        int executed;
+        do {
+            executed = executedCount.get();
+            Thread.sleep(500);
+        } while (executedCount.get() != executed);
+
+        assertThat(executed < LONG_LINE_COUNT / 2, is(true));
+        socket.close();
+    }
+}
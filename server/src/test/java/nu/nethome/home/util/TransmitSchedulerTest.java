@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2005-2013, Stefan Strömberg <stefangs@nethome.nu>
+ *
+ * This file is part of OpenNetHome  (http://www.nethome.nu)
+ *
+ * OpenNetHome is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * OpenNetHome is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package nu.nethome.home.util;
+
+import nu.nethome.home.impl.InternalEvent;
+import nu.nethome.home.system.Event;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static nu.nethome.home.util.TransmitScheduler.Priority.*;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+
+public class TransmitSchedulerTest {
+
+    private TransmitScheduler<String> scheduler;
+    private List<String> transmitted;
+    private List<Long> transmitTimes;
+    private CountDownLatch firstTransmitStarted;
+    private CountDownLatch releaseFirstTransmit;
+    private Semaphore transmissions;
+
+    @Before
+    public void setUp() throws Exception {
+        transmitted = Collections.synchronizedList(new ArrayList<String>());
+        transmitTimes = Collections.synchronizedList(new ArrayList<Long>());
+        firstTransmitStarted = new CountDownLatch(1);
+        releaseFirstTransmit = new CountDownLatch(0);
+        transmissions = new Semaphore(0);
+        scheduler = new TransmitScheduler<>("Test", new TransmitScheduler.Transmitter<String>() {
+            @Override
+            public void transmit(String message) {
+                firstTransmitStarted.countDown();
+                try {
+                    releaseFirstTransmit.await();
+                } catch (InterruptedException e) {
+                    // Stopped
+                }
+                transmitted.add(message);
+                transmitTimes.add(System.currentTimeMillis());
+                transmissions.release();
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        scheduler.stop();
+    }
+
+    /**
+     * Start the scheduler and block the transmitter on the first message, so following messages are queued
+     */
+    private void startWithBusyChannel() throws InterruptedException {
+        releaseFirstTransmit = new CountDownLatch(1);
+        scheduler.start();
+        scheduler.submit("busy", null, INTERACTIVE, 0);
+        assertThat(firstTransmitStarted.await(5, TimeUnit.SECONDS), is(true));
+    }
+
+    private void releaseAndAwait(int count) throws InterruptedException {
+        releaseFirstTransmit.countDown();
+        assertThat(transmissions.tryAcquire(count, 5, TimeUnit.SECONDS), is(true));
+    }
+
+    @Test
+    public void transmitsInPriorityOrder() throws Exception {
+        startWithBusyChannel();
+        scheduler.submit("refresh", "a", REFRESH, 0);
+        scheduler.submit("timer1", "b", TIMER, 0);
+        scheduler.submit("interactive", "c", INTERACTIVE, 0);
+        scheduler.submit("timer2", "d", TIMER, 0);
+
+        assertThat(scheduler.getQueueDepth(), is(4));
+        releaseAndAwait(5);
+
+        assertThat(transmitted, is(Arrays.asList("busy", "interactive", "timer1", "timer2", "refresh")));
+        assertThat(scheduler.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void newMessageToSameDeviceSupersedesPendingOne() throws Exception {
+        startWithBusyChannel();
+        scheduler.submit("lamp1 on", "lamp1", TIMER, 0);
+        scheduler.submit("lamp2 on", "lamp2", TIMER, 0);
+        scheduler.submit("lamp1 off", "lamp1", TIMER, 0);
+
+        assertThat(scheduler.getQueueDepth(), is(2));
+        releaseAndAwait(3);
+
+        assertThat(transmitted, is(Arrays.asList("busy", "lamp1 off", "lamp2 on")));
+        assertThat(scheduler.getSupersededCount(), is(1L));
+    }
+
+    @Test
+    public void supersedingMessageKeepsHighestPriority() throws Exception {
+        startWithBusyChannel();
+        scheduler.submit("lamp2 on", "lamp2", TIMER, 0);
+        scheduler.submit("lamp1 on", "lamp1", INTERACTIVE, 0);
+        scheduler.submit("lamp1 refresh", "lamp1", REFRESH, 0);
+        releaseAndAwait(3);
+
+        assertThat(transmitted, is(Arrays.asList("busy", "lamp1 refresh", "lamp2 on")));
+    }
+
+    @Test
+    public void discardsExpiredMessages() throws Exception {
+        scheduler.setMaxQueueTimeMs(50);
+        startWithBusyChannel();
+        scheduler.submit("old", "a", INTERACTIVE, 0);
+        Thread.sleep(100);
+        scheduler.submit("new", "b", INTERACTIVE, 0);
+        releaseAndAwait(2);
+
+        assertThat(transmitted, is(Arrays.asList("busy", "new")));
+        assertThat(scheduler.getExpiredCount(), is(1L));
+        assertThat(scheduler.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void pacesTransmissionsToAirTime() throws Exception {
+        scheduler.start();
+        scheduler.submit("first", null, INTERACTIVE, 100000);
+        scheduler.submit("second", null, INTERACTIVE, 100000);
+        assertThat(transmissions.tryAcquire(2, 5, TimeUnit.SECONDS), is(true));
+
+        assertThat(transmitTimes.get(1) - transmitTimes.get(0) >= 90, is(true));
+    }
+
+    @Test
+    public void dutyCycleStretchesChannelTime() throws Exception {
+        scheduler.setDutyCyclePercent(50);
+        scheduler.start();
+        scheduler.submit("first", null, INTERACTIVE, 50000);
+        scheduler.submit("second", null, INTERACTIVE, 50000);
+        assertThat(transmissions.tryAcquire(2, 5, TimeUnit.SECONDS), is(true));
+
+        assertThat(transmitTimes.get(1) - transmitTimes.get(0) >= 90, is(true));
+    }
+
+    @Test
+    public void stopDiscardsQueuedMessages() throws Exception {
+        startWithBusyChannel();
+        scheduler.submit("queued", "a", INTERACTIVE, 0);
+        scheduler.stop();
+
+        assertThat(scheduler.getQueueDepth(), is(0));
+    }
+
+    @Test
+    public void deviceKeyIgnoresCommandFields() throws Exception {
+        Event on = nexaLEvent(1, 0);
+        Event dim = nexaLEvent(1, 50);
+        dim.setAttribute("NexaL.Command", 0);
+        dim.setAttribute("Repeat", 10);
+
+        assertThat(TransmitScheduler.deviceKeyOf(on), is("NexaL,Address=123,Button=1"));
+        assertThat(TransmitScheduler.deviceKeyOf(dim), is(TransmitScheduler.deviceKeyOf(on)));
+        assertThat(TransmitScheduler.deviceKeyOf(nexaLEvent(2, 0)), is("NexaL,Address=123,Button=2"));
+        assertThat(TransmitScheduler.deviceKeyOf(new InternalEvent("MinuteEvent")), is(nullValue()));
+    }
+
+    @Test
+    public void eventsAreMarkedWithPriorityOfThread() throws Exception {
+        final Event event = nexaLEvent(1, 0);
+        TransmitScheduler.runWithPriority(TIMER, new Runnable() {
+            @Override
+            public void run() {
+                TransmitScheduler.markPriority(event);
+            }
+        });
+        Event unmarked = nexaLEvent(1, 0);
+        TransmitScheduler.markPriority(unmarked);
+
+        assertThat(TransmitScheduler.priorityOf(event), is(TIMER));
+        assertThat(unmarked.hasAttribute(TransmitScheduler.PRIORITY_ATTRIBUTE), is(false));
+        assertThat(TransmitScheduler.priorityOf(unmarked), is(INTERACTIVE));
+    }
+
+    @Test
+    public void calculatesAirTime() throws Exception {
+        assertThat(TransmitScheduler.airTimeUs(new int[]{100, 200, 300}, 5), is(3000L));
+    }
+
+    private static Event nexaLEvent(int button, int dimLevel) {
+        Event event = new InternalEvent("NexaL_Message");
+        event.setAttribute("Direction", "Out");
+        event.setAttribute("NexaL.Address", 123);
+        event.setAttribute("NexaL.Button", button);
+        event.setAttribute("NexaL.Command", 1);
+        event.setAttribute("NexaL.DimLevel", dimLevel);
+        return event;
+    }
+}